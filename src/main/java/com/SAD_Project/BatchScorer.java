@@ -0,0 +1,409 @@
+package com.SAD_Project;
+
+import com.SAD_Project.service.MatchRuleCompiler; // 性別的編號
+import com.SAD_Project.service.MatchRuleEngine; // 配對規則查詢表
+import com.SAD_Project.service.TenantRegistry; // 租戶名稱與編號
+import com.SAD_Project.util.ChineseZodiacCalculator; // 計算生肖
+import com.SAD_Project.util.ErrorCode; // 錯誤代碼
+import com.SAD_Project.util.Locales; // 等級名稱的語言
+import com.SAD_Project.util.ZodiacCalculator; // 解析生日、計算星座
+
+import org.springframework.boot.logging.LogLevel; // 日誌等級
+import org.springframework.boot.logging.LoggingSystem; // Spring Boot 的日誌設定介面
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// 這個class是離線的批次配對工具，給資料團隊一次評分大量的歷史資料，不用經過網頁伺服器，也不啟動 Spring
+// 輸入是 CSV，每行一組：生日1,性別1,生日2,性別2 (生日的格式和 API 一樣，性別是 男、女 或空白)
+// 輸出每一行對應輸入的同一行，在原本的內容後面加上 ,分數,等級；資料有錯的行加上 ,,錯誤代碼
+// 輸入檔用 mmap 讀取並切成固定大小的區塊，分給所有 CPU 核心同時評分，結果依照原本的順序用 FileChannel 寫出
+//   java -Dloader.main=com.SAD_Project.BatchScorer -cp target/sad-project-1.0.0.jar \
+//        org.springframework.boot.loader.PropertiesLauncher [選項] --output <輸出檔> <輸入檔>...
+// 輸出檔一定要用 --output 指定 (不是第一個參數)，順序弄錯也不會把輸入檔清空；輸出檔和輸入檔是同一個檔案時直接結束
+public class BatchScorer {
+
+    // 每個區塊的大小，區塊的邊界會對齊到下一行的開頭
+    private static final int CHUNK_SIZE = 32 << 20;
+
+    // 一行最多幾個位元組 (超過就不是合理的資料)，區塊會多對應這麼多位元組，讓最後一行可以讀完
+    private static final int MAX_LINE = 4096;
+
+    // 「男」和「女」的 UTF-8 位元組
+    private static final byte[] MALE = "男".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FEMALE = "女".getBytes(StandardCharsets.UTF_8);
+
+    // 每一種結果要接在行尾的位元組 (,分數,等級\n)，啟動時用 MatchRuleEngine 全部算好，評分時只要查表
+    // 一般模式的索引是 (星座1 * 3 + 性別1) * 36 + 星座2 * 3 + 性別2，合併模式是 (星座1 * 12 + 生肖1) * 144 + 星座2 * 12 + 生肖2
+    private final byte[][] suffixes;
+
+    // 每個錯誤代碼接在行尾的位元組 (,,錯誤代碼\n)，索引是 ErrorCode 的 ordinal
+    private final byte[][] errorSuffixes;
+
+    private final boolean combined;
+
+    public BatchScorer(MatchRuleEngine engine, int tenant, int locale, boolean combined) {
+        this.combined = combined;
+
+        int side = combined ? 12 * 12 : 12 * MatchRuleCompiler.GENDER_SLOTS;
+        suffixes = new byte[side * side][];
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                MatchRuleEngine.MatchResult result = combined
+                        ? engine.computeCombinedMatch(tenant, locale, row / 12, row % 12, column / 12, column % 12)
+                        : engine.computeMatch(tenant, locale,
+                                row / MatchRuleCompiler.GENDER_SLOTS, row % MatchRuleCompiler.GENDER_SLOTS,
+                                column / MatchRuleCompiler.GENDER_SLOTS, column % MatchRuleCompiler.GENDER_SLOTS);
+                suffixes[row * side + column] =
+                        ("," + result.getScore() + "," + result.getLevel() + "\n").getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        ErrorCode[] codes = ErrorCode.values();
+        errorSuffixes = new byte[codes.length][];
+        for (ErrorCode code : codes) {
+            errorSuffixes[code.ordinal()] = (",," + code.name() + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        // 沒有 Spring Boot 的日誌設定，把規則編譯的訊息關掉，只留下警告
+        LoggingSystem.get(BatchScorer.class.getClassLoader()).setLogLevel(null, LogLevel.WARN);
+
+        boolean combined = false;
+        String tenantName = null;
+        int locale = Locales.ZH_TW;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path output = null;
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--output":
+                    output = Paths.get(requireValue(args, ++i));
+                    break;
+                case "--mode":
+                    String mode = requireValue(args, ++i);
+                    if (!mode.equals("western") && !mode.equals("combined")) {
+                        fail("不支援的模式：" + mode);
+                    }
+                    combined = mode.equals("combined");
+                    break;
+                case "--tenant":
+                    tenantName = requireValue(args, ++i);
+                    break;
+                case "--lang":
+                    locale = localeOf(requireValue(args, ++i));
+                    break;
+                case "--threads":
+                    threads = threadsOf(requireValue(args, ++i));
+                    break;
+                default:
+                    if (args[i].startsWith("--")) {
+                        fail("不認得的選項：" + args[i]);
+                    }
+                    inputs.add(Paths.get(args[i]));
+            }
+        }
+        if (output == null || inputs.isEmpty()) {
+            usage();
+        }
+        for (Path input : inputs) {
+            if (Files.exists(output) && Files.isSameFile(output, input)) {
+                fail("輸出檔不能是輸入檔：" + input);
+            }
+        }
+
+        // 指定租戶時只載入這一個租戶的規則 (編號是 1)
+        TenantRegistry tenants = tenantName != null ? new TenantRegistry(new String[]{tenantName}) : new TenantRegistry();
+        int tenant = tenantName != null ? tenants.indexOf(tenantName) : TenantRegistry.DEFAULT_TENANT;
+        BatchScorer scorer = new BatchScorer(new MatchRuleEngine(tenants), tenant, locale, combined);
+
+        long start = System.nanoTime();
+        long[] counts = scorer.run(output, inputs, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("評分 %d 筆 (其中 %d 筆資料有錯)，讀取 %.1f MB，%d 個執行緒，花費 %.2f 秒%n",
+                counts[0], counts[1], counts[2] / 1048576.0, threads, seconds);
+        System.out.printf("每秒 %.0f 筆，%.1f MB/s%n", counts[0] / seconds, counts[2] / 1048576.0 / seconds);
+    }
+
+    // 評分所有輸入檔，結果依序寫進同一個輸出檔
+    // 回傳 {總筆數, 有錯的筆數, 讀取的位元組數}
+    public long[] run(Path output, List<Path> inputs, int threads)
+            throws IOException, InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long[] counts = new long[3];
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            // 最多同時處理 threads * 2 個區塊，寫得比算得慢時不會把整個檔案的結果都放在記憶體裡
+            Deque<Future<Chunk>> pending = new ArrayDeque<>();
+            List<FileChannel> channels = new ArrayList<>();
+            try {
+                for (Path input : inputs) {
+                    FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+                    channels.add(in);
+                    long size = in.size();
+                    counts[2] += size;
+                    for (long chunkStart = 0; chunkStart < size; chunkStart += CHUNK_SIZE) {
+                        Chunk chunk = new Chunk(in, size, chunkStart, Math.min(chunkStart + CHUNK_SIZE, size));
+                        pending.add(pool.submit(() -> score(chunk)));
+                        if (pending.size() >= threads * 2) {
+                            write(out, pending.poll().get(), counts);
+                        }
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    write(out, pending.poll().get(), counts);
+                }
+            } finally {
+                for (FileChannel in : channels) {
+                    in.close();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return counts;
+    }
+
+    // 一個區塊：檔案裡的 [start, end) 這一段，以及評分後的結果
+    private static final class Chunk {
+        private final FileChannel channel;
+        private final long fileSize;
+        private final long start;
+        private final long end;
+
+        private byte[] output;  // 評分結果
+        private int length;     // output 用到的長度
+        private long records;   // 這個區塊的筆數
+        private long errors;    // 資料有錯的筆數
+
+        private Chunk(FileChannel channel, long fileSize, long start, long end) {
+            this.channel = channel;
+            this.fileSize = fileSize;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    // 評分一個區塊
+    // 開頭在 [start, end) 之間的行都屬於這個區塊，所以除了第一個區塊，都要先跳過前一個區塊的最後一行
+    private Chunk score(Chunk chunk) throws IOException {
+        long mapStart = chunk.start == 0 ? 0 : chunk.start - 1; // 多讀前一個位元組，才知道 start 是不是一行的開頭
+        long mapEnd = Math.min(chunk.end + MAX_LINE, chunk.fileSize);
+        MappedByteBuffer in = chunk.channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+        int mapped = in.limit();
+        int limit = (int) (chunk.end - mapStart);
+        boolean lastChunk = mapEnd == chunk.fileSize;
+
+        int position = 0;
+        if (chunk.start > 0) {
+            while (position < mapped && in.get(position) != '\n') {
+                position++;
+            }
+            position++; // 跳過換行
+        }
+
+        byte[] line = new byte[MAX_LINE];
+        byte[] output = new byte[(int) (chunk.end - chunk.start) + ((int) (chunk.end - chunk.start) >> 1) + 64];
+        int length = 0;
+        long records = 0;
+        long errors = 0;
+
+        while (position < limit) {
+            // 把這一行複製到 line，同時找換行
+            int lineLength = 0;
+            while (position < mapped) {
+                byte b = in.get(position);
+                if (b == '\n') {
+                    break;
+                }
+                if (lineLength == MAX_LINE) {
+                    throw new IOException("第 " + (mapStart + position) + " 個位元組附近的一行超過 " + MAX_LINE + " 個位元組");
+                }
+                line[lineLength++] = b;
+                position++;
+            }
+            if (position == mapped && !lastChunk) {
+                throw new IOException("第 " + (mapStart + position) + " 個位元組附近的一行超過 " + MAX_LINE + " 個位元組");
+            }
+            position++; // 跳過換行
+            if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                lineLength--; // Windows 的換行
+            }
+
+            byte[] suffix = scoreLine(line, lineLength);
+            if (suffix[1] == ',') {
+                errors++; // 錯誤的結尾是 ,,錯誤代碼，分數的位置是空的
+            }
+            records++;
+
+            // 輸出空間不夠就加倍
+            if (length + lineLength + suffix.length > output.length) {
+                output = Arrays.copyOf(output, Math.max(output.length * 2, length + lineLength + suffix.length));
+            }
+            System.arraycopy(line, 0, output, length, lineLength);
+            length += lineLength;
+            System.arraycopy(suffix, 0, output, length, suffix.length);
+            length += suffix.length;
+        }
+
+        chunk.output = output;
+        chunk.length = length;
+        chunk.records = records;
+        chunk.errors = errors;
+        return chunk;
+    }
+
+    // 評分一行 line[0, length)，回傳要接在行尾的位元組
+    // 檢查的順序和 AnalysisController 一樣：先檢查兩個生日，再檢查性別
+    private byte[] scoreLine(byte[] line, int length) {
+        // 找出四個欄位的結尾，缺少的欄位當成空白，第四個逗號之後的內容不理會
+        int comma1 = indexOf(line, 0, length);
+        int comma2 = indexOf(line, comma1 + 1, length);
+        int comma3 = indexOf(line, comma2 + 1, length);
+        int comma4 = indexOf(line, comma3 + 1, length);
+
+        int packedDate1 = ZodiacCalculator.parseBirthDate(line, 0, comma1);
+        int packedDate2 = ZodiacCalculator.parseBirthDate(line, Math.min(comma2 + 1, length), comma3);
+        int gender1 = genderIndex(line, Math.min(comma1 + 1, length), comma2);
+        int gender2 = genderIndex(line, Math.min(comma3 + 1, length), comma4);
+
+        if (combined) {
+            int animal1 = ChineseZodiacCalculator.animalIndex(packedDate1);
+            int animal2 = ChineseZodiacCalculator.animalIndex(packedDate2);
+            if (animal1 < 0) {
+                return errorSuffixes[ErrorCode.fromDateError(animal1).ordinal()];
+            }
+            if (animal2 < 0) {
+                return errorSuffixes[ErrorCode.fromDateError(animal2).ordinal()];
+            }
+            if (gender1 < 0 || gender2 < 0) {
+                return errorSuffixes[ErrorCode.BAD_GENDER.ordinal()];
+            }
+            return suffixes[(ZodiacCalculator.calculateZodiacIndex(packedDate1) * 12 + animal1) * 144
+                    + ZodiacCalculator.calculateZodiacIndex(packedDate2) * 12 + animal2];
+        }
+
+        if (packedDate1 < 0) {
+            return errorSuffixes[ErrorCode.fromDateError(packedDate1).ordinal()];
+        }
+        if (packedDate2 < 0) {
+            return errorSuffixes[ErrorCode.fromDateError(packedDate2).ordinal()];
+        }
+        if (gender1 < 0 || gender2 < 0) {
+            return errorSuffixes[ErrorCode.BAD_GENDER.ordinal()];
+        }
+        int side = 12 * MatchRuleCompiler.GENDER_SLOTS;
+        return suffixes[(ZodiacCalculator.calculateZodiacIndex(packedDate1) * MatchRuleCompiler.GENDER_SLOTS + gender1) * side
+                + ZodiacCalculator.calculateZodiacIndex(packedDate2) * MatchRuleCompiler.GENDER_SLOTS + gender2];
+    }
+
+    // 從 from 開始找下一個逗號，找不到就回傳 length (欄位一直到行尾)
+    private static int indexOf(byte[] line, int from, int length) {
+        for (int i = from; i < length; i++) {
+            if (line[i] == ',') {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    // 性別欄位：男 0、女 1、空白 2 (沒有填)，其他回傳 -1
+    private static int genderIndex(byte[] line, int start, int end) {
+        while (start < end && line[start] == ' ') {
+            start++;
+        }
+        while (end > start && line[end - 1] == ' ') {
+            end--;
+        }
+        if (start == end) {
+            return MatchRuleCompiler.GENDER_UNSPECIFIED;
+        }
+        if (matches(line, start, end, MALE)) {
+            return 0;
+        }
+        if (matches(line, start, end, FEMALE)) {
+            return 1;
+        }
+        return -1;
+    }
+
+    private static boolean matches(byte[] line, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (line[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 把一個區塊的結果寫進輸出檔，FileChannel.write 不保證一次寫完，所以要寫到沒有剩下為止
+    private static void write(FileChannel out, Chunk chunk, long[] counts) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(chunk.output, 0, chunk.length);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        counts[0] += chunk.records;
+        counts[1] += chunk.errors;
+        chunk.output = null; // 寫完就可以回收
+    }
+
+    private static String requireValue(String[] args, int index) {
+        if (index >= args.length) {
+            usage();
+        }
+        return args[index];
+    }
+
+    // --lang 只接受 Locales.TAGS 裡的語言 (不分大小寫)，不像 Accept-Language 那樣不認得就用預設語言
+    private static int localeOf(String tag) {
+        for (int locale = 0; locale < Locales.COUNT; locale++) {
+            if (Locales.TAGS[locale].equalsIgnoreCase(tag)) {
+                return locale;
+            }
+        }
+        fail("不支援的語言：" + tag);
+        return -1;
+    }
+
+    // --threads 要是整數，小於 1 的當作 1
+    private static int threadsOf(String value) {
+        try {
+            return Math.max(1, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            fail("不支援的執行緒數：" + value);
+            return -1;
+        }
+    }
+
+    private static void fail(String message) {
+        System.err.println(message);
+        usage();
+    }
+
+    private static void usage() {
+        System.err.println("用法：BatchScorer [--mode western|combined] [--tenant 租戶] [--lang zh-TW|zh-CN|en] "
+                + "[--threads 執行緒數] --output <輸出檔> <輸入檔>...");
+        System.exit(1);
+    }
+}
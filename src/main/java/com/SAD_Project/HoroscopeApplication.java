@@ -1,11 +1,14 @@
 package com.SAD_Project;
 
+import com.SAD_Project.web.WebSocketConfig;
+
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 @SpringBootApplication
 public class HoroscopeApplication {
     public static void main(String[] args) {
+        WebSocketConfig.limitSendBuffers(); // WebSocket 送出緩衝區的大小要在 Tomcat 載入之前設定
         SpringApplication.run(HoroscopeApplication.class, args);
     }
 }
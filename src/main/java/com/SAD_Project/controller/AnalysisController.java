@@ -1,7 +1,11 @@
 package com.SAD_Project.controller;
 
 import com.SAD_Project.model.Couple;
+import com.SAD_Project.monitoring.PhaseEvent;
+import com.SAD_Project.monitoring.RequestEvent;
 import com.SAD_Project.service.MatchRuleEngine;
+import com.SAD_Project.util.ErrorCode;
+import com.SAD_Project.util.Locales;
 
 import org.springframework.beans.factory.annotation.Autowired; // Spring 的自動注入註解
 import org.springframework.stereotype.Service; // 標記這是服務類別
@@ -18,64 +22,124 @@ public class AnalysisController {
     private MatchRuleEngine matchRuleEngine;
 
     // 這個方法負責執行配對分析, couple 參數包含兩個人的生日和性別資料
-    public AnalysisResult doAnalysis(Couple couple) {
-        try {
-            // 呼叫 MatchRuleEngine 的方法來計算兩個人的星座
-            String zodiac1 = matchRuleEngine.calculateZodiac(couple.getBirthDate1());
-            String zodiac2 = matchRuleEngine.calculateZodiac(couple.getBirthDate2());
-
-            if (zodiac1 == null || zodiac2 == null) {
-                return AnalysisResult.error("無法根據生日推算星座");
-            }
+    // 生日和星座已經在建立 Couple 時算好，這裡只檢查結果並查表
+    // 輸入錯誤時回傳事先建立好的錯誤結果，不丟例外也不組錯誤訊息
+    // tenant 是 TenantRegistry 的租戶編號，決定要用哪一套配對規則；locale 是 Locales 的語言編號，決定評價文字的語言
+    public AnalysisResult doAnalysis(int tenant, int locale, Couple couple) {
+        // 先檢查兩個人的生日
+        if (couple.getPackedDate1() < 0) {
+            return AnalysisResult.error(ErrorCode.fromDateError(couple.getPackedDate1()));
+        }
+        if (couple.getPackedDate2() < 0) {
+            return AnalysisResult.error(ErrorCode.fromDateError(couple.getPackedDate2()));
+        }
 
-            MatchRuleEngine.MatchResult matchResult = matchRuleEngine.computeMatch(zodiac1, zodiac2); // 根據兩個星座來計算配對分數和評價
+        // 性別可以不填 (只套用和性別無關的規則)，填了就只接受「男」或「女」
+        if (couple.getGenderIndex1() < 0 || couple.getGenderIndex2() < 0) {
+            return AnalysisResult.error(ErrorCode.BAD_GENDER);
+        }
 
-            if (matchResult == null) {
-                return AnalysisResult.error("無法找到配對資料");
-            }
+        // 根據兩個星座編號和性別來查配對分數和評價 (規則檔裡和性別有關的調整也會算進去)
+        PhaseEvent phase = PhaseEvent.start(RequestEvent.MATCH, PhaseEvent.COMPUTE_MATCH);
+        MatchRuleEngine.MatchResult matchResult = matchRuleEngine.computeMatch(tenant, locale,
+                couple.getZodiacIndex1(), couple.getGenderIndex1(), couple.getZodiacIndex2(), couple.getGenderIndex2());
+        phase.finish(matchResult != null ? RequestEvent.OK : ErrorCode.MATCH_NOT_FOUND.name());
+
+        if (matchResult == null) {
+            return AnalysisResult.error(ErrorCode.MATCH_NOT_FOUND);
+        }
+
+        // 如果都成功就回傳成功結果，星座名稱用請求的語言
+        return AnalysisResult.success(couple, locale, Locales.ZODIAC_NAMES[locale][couple.getZodiacIndex1()],
+                Locales.ZODIAC_NAMES[locale][couple.getZodiacIndex2()], matchResult);
+    }
+
+    // 星座加生肖的合併配對分析，檢查方式和 doAnalysis 一樣，只是生日一定要有年份
+    public AnalysisResult doCombinedAnalysis(int tenant, int locale, Couple couple) {
+        // 生肖的錯誤代碼也包含日期本身的錯誤，所以直接檢查生肖編號
+        if (couple.getAnimalIndex1() < 0) {
+            return AnalysisResult.error(ErrorCode.fromDateError(couple.getAnimalIndex1()));
+        }
+        if (couple.getAnimalIndex2() < 0) {
+            return AnalysisResult.error(ErrorCode.fromDateError(couple.getAnimalIndex2()));
+        }
+
+        // 性別可以不填，填了就只接受「男」或「女」
+        if (couple.getGenderIndex1() < 0 || couple.getGenderIndex2() < 0) {
+            return AnalysisResult.error(ErrorCode.BAD_GENDER);
+        }
 
-            return AnalysisResult.success(couple, zodiac1, zodiac2, matchResult); // 如果都成功就回傳成功結果
+        // 星座和生肖編號一起查合併配對表
+        PhaseEvent phase = PhaseEvent.start(RequestEvent.MATCH, PhaseEvent.COMPUTE_MATCH);
+        MatchRuleEngine.MatchResult matchResult = matchRuleEngine.computeCombinedMatch(tenant, locale,
+                couple.getZodiacIndex1(), couple.getAnimalIndex1(), couple.getZodiacIndex2(), couple.getAnimalIndex2());
+        phase.finish(matchResult != null ? RequestEvent.OK : ErrorCode.MATCH_NOT_FOUND.name());
 
-        } catch (Exception e) {
-            return AnalysisResult.error("分析失敗，請稍後再試: " + e.getMessage()); // 如果發生任何例外就回傳錯誤訊息
+        if (matchResult == null) {
+            return AnalysisResult.error(ErrorCode.MATCH_NOT_FOUND);
         }
+
+        return AnalysisResult.combined(couple, locale, matchResult);
     }
 
     // AnalysisResult 內部類用來包裝分析結果
     public static class AnalysisResult {
 
-        private boolean success; // 標記分析是否成功
-        private String error; //失敗的話存錯誤訊息
-        private Couple couple;
-        private String zodiac1;
-        private String zodiac2;
-        private MatchRuleEngine.MatchResult matchResult;
+        // 每種錯誤只需要一個結果物件，事先建立好重複使用
+        private static final AnalysisResult[] ERRORS = new AnalysisResult[ErrorCode.values().length];
+        static {
+            for (ErrorCode errorCode : ErrorCode.values()) {
+                ERRORS[errorCode.ordinal()] = new AnalysisResult(false, errorCode, null, Locales.ZH_TW, null, null, null, false);
+            }
+        }
+
+        private final boolean success; // 標記分析是否成功
+        private final ErrorCode errorCode; //失敗的話存錯誤代碼
+        private final Couple couple;
+        private final int locale; // 結果的語言 (Locales 的語言編號)
+        private final String zodiac1;
+        private final String zodiac2;
+        private final MatchRuleEngine.MatchResult matchResult;
+        private final boolean combined; // 是不是星座加生肖的合併模式
 
         // 私有建構子，只能透過靜態方法建立
-        private AnalysisResult(boolean success, String error, Couple couple,
-                               String zodiac1, String zodiac2, MatchRuleEngine.MatchResult matchResult) {
+        private AnalysisResult(boolean success, ErrorCode errorCode, Couple couple, int locale,
+                               String zodiac1, String zodiac2, MatchRuleEngine.MatchResult matchResult,
+                               boolean combined) {
             this.success = success;
-            this.error = error;
+            this.errorCode = errorCode;
             this.couple = couple;
+            this.locale = locale;
             this.zodiac1 = zodiac1;
             this.zodiac2 = zodiac2;
             this.matchResult = matchResult;
+            this.combined = combined;
         }
 
         // 建立成功結果的靜態方法
-        public static AnalysisResult success(Couple couple, String zodiac1, String zodiac2,
+        public static AnalysisResult success(Couple couple, int locale, String zodiac1, String zodiac2,
                                              MatchRuleEngine.MatchResult matchResult) {
-            return new AnalysisResult(true, null, couple, zodiac1, zodiac2, matchResult);
+            return new AnalysisResult(true, null, couple, locale, zodiac1, zodiac2, matchResult, false);
+        }
+
+        // 建立合併模式成功結果的靜態方法
+        public static AnalysisResult combined(Couple couple, int locale, MatchRuleEngine.MatchResult matchResult) {
+            return new AnalysisResult(true, null, couple, locale,
+                    Locales.ZODIAC_NAMES[locale][couple.getZodiacIndex1()],
+                    Locales.ZODIAC_NAMES[locale][couple.getZodiacIndex2()], matchResult, true);
         }
 
-        // 建立錯誤結果的靜態方法
-        public static AnalysisResult error(String error) {
-            return new AnalysisResult(false, error, null, null, null, null);
+        // 取得錯誤結果的靜態方法 (回傳共用的物件)
+        public static AnalysisResult error(ErrorCode errorCode) {
+            return ERRORS[errorCode.ordinal()];
         }
 
         // success跟error的getter方法
         public boolean isSuccess() { return success; }
-        public String getError() { return error; }
+        public String getError() { return errorCode != null ? errorCode.getMessage() : null; }
+        public ErrorCode getErrorCode() { return errorCode; }
+        public MatchRuleEngine.MatchResult getMatchResult() { return matchResult; }
+        public boolean isCombined() { return combined; }
 
         // 把結果轉成結構化的 Map 格式
         // 這樣方便轉成 JSON 回傳給前端
@@ -84,7 +148,8 @@ public class AnalysisController {
             Map<String, Object> result = new HashMap<>(); //存結果
 
             if (!success) {
-                result.put("error", error);
+                result.put("code", errorCode.name());
+                result.put("error", errorCode.getMessage());
                 return result;
             }
 
@@ -95,9 +160,20 @@ public class AnalysisController {
             result.put("positive", matchResult.getPros());
             result.put("negative", matchResult.getCons());
             result.put("comment", matchResult.getComment());
+            result.put("percentile", matchResult.getPercentile()); // 在所有真實配對中的百分位 (建表時已經算好)
+            result.put("rank", matchResult.getRank());             // 在所有組合中的名次
             result.put("zodiac1", zodiac1);
             result.put("zodiac2", zodiac2);
 
+            // 合併模式另外附上兩個人的生肖
+            if (combined) {
+                result.put("mode", "combined");
+                result.put("animal1", Locales.ANIMAL_NAMES[locale][couple.getAnimalIndex1()]);
+                result.put("animal2", Locales.ANIMAL_NAMES[locale][couple.getAnimalIndex2()]);
+            } else {
+                result.put("mode", "western");
+            }
+
             return result;
         }
     }
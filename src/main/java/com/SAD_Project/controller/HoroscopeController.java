@@ -1,22 +1,52 @@
 package com.SAD_Project.controller;
 
 import com.SAD_Project.model.Couple;
+import com.SAD_Project.monitoring.AuditLog;
+import com.SAD_Project.monitoring.PhaseEvent;
+import com.SAD_Project.monitoring.RequestEvent;
+import com.SAD_Project.service.BirthdayRanges;
+import com.SAD_Project.service.DailyHoroscope;
+import com.SAD_Project.service.MatchRuleEngine;
+import com.SAD_Project.service.PrerenderedPages;
+import com.SAD_Project.service.TraitIndex;
 import com.SAD_Project.service.ZodiacIntroduction;
+import com.SAD_Project.util.ErrorCode;
+import com.SAD_Project.util.JsonBodies;
+import com.SAD_Project.util.Locales;
+import com.SAD_Project.util.PrecompressedBody;
+import com.SAD_Project.util.PrecompressedPrefix;
 import com.SAD_Project.util.ZodiacCalculator;
+import com.SAD_Project.web.TenantFilter;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.TypeMismatchException; // 參數型別轉換失敗 (Spring 回傳 400)
 import org.springframework.beans.factory.annotation.Autowired; // Spring 的自動注入註解，會自動幫我們建立物件
+import org.springframework.http.CacheControl; // Cache-Control 標頭
+import org.springframework.http.HttpHeaders; // HTTP 標頭名稱常數
+import org.springframework.http.HttpStatus; // HTTP 狀態碼
+import org.springframework.http.MediaType; // HTTP 內容類型 (例如 application/json)
 import org.springframework.http.ResponseEntity; // 用來回傳 HTTP 回應的類別
+import org.springframework.http.converter.HttpMessageNotReadableException; // 請求內容讀不懂 (Spring 回傳 400)
 import org.springframework.stereotype.Controller; // 標記這是控制器類別
-import org.springframework.ui.Model; // Model 用來傳資料給前端頁面
 import org.springframework.web.bind.annotation.*; // 引入所有 Spring 的網頁請求相關註解
+import org.springframework.web.server.ResponseStatusException; // 自帶 HTTP 狀態碼的例外
 
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 // 這個類別負責處理所有http的請求
 @Controller
 public class HoroscopeController {
 
+    private static final Logger log = LoggerFactory.getLogger(HoroscopeController.class);
+
     // 自動注入分析控制器，用來做配對分析
     @Autowired
     private AnalysisController analysisController;
@@ -25,6 +55,39 @@ public class HoroscopeController {
     @Autowired
     private ZodiacIntroduction zodiacIntro;
 
+    // 自動注入預先產生好的頁面
+    @Autowired
+    private PrerenderedPages prerenderedPages;
+
+    // 自動注入每日運勢，內容由背景執行緒每天產生好
+    @Autowired
+    private DailyHoroscope dailyHoroscope;
+
+    // 自動注入配對規則引擎，生日範圍反查用它在啟動時建好的反查表
+    @Autowired
+    private MatchRuleEngine matchRuleEngine;
+
+    // 自動注入稽核紀錄，API 查詢都記一筆 (只填進緩衝區，由背景執行緒寫檔)
+    @Autowired
+    private AuditLog auditLog;
+
+    // 預先產生的頁面都是 UTF-8 的 HTML
+    private static final MediaType TEXT_HTML_UTF8 = new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+
+    // 事先壓縮好的 API 回應會依照語言和壓縮方式改變，快取要分開存
+    private static final String VARY_ENCODING_LANGUAGE = HttpHeaders.ACCEPT_ENCODING + ", " + HttpHeaders.ACCEPT_LANGUAGE;
+    // 內容和租戶有關的回應 (租戶的規則、文字) 還要依照 X-Tenant 分開存，
+    // 不然共用的快取 (CDN) 會把一個租戶的內容回給同一個網址的其他租戶 (用 /t/<租戶>/ 選租戶時網址本來就不同)
+    private static final String VARY_TENANT_ENCODING_LANGUAGE = TenantFilter.TENANT_HEADER + ", " + VARY_ENCODING_LANGUAGE;
+    private static final String VARY_TENANT_LANGUAGE = TenantFilter.TENANT_HEADER + ", " + HttpHeaders.ACCEPT_LANGUAGE;
+
+    // 個性分析 JSON 的結尾：,"date":<使用者輸入的日期>}
+    private static final byte[] DATE_FIELD = ",\"date\":".getBytes(StandardCharsets.UTF_8);
+
+    // 特質搜尋預設回傳幾個結果，最多就是所有文件 (12 個星座 × info、male、female)
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    private static final int MAX_SEARCH_LIMIT = 12 * TraitIndex.FIELDS;
+
     // 首頁, 當使用者訪問根路徑時會執行這個方法
     @GetMapping("/")
     public String index() {
@@ -32,79 +95,268 @@ public class HoroscopeController {
     }
 
     // 配對頁面, 當使用者訪問 /match 路徑時會執行這個方法
+    // 頁面已經在建置時產生好，直接回傳記憶體裡的內容
     @GetMapping("/match")
-    public String matchPage() {
-        return "match"; // 回傳 "match" 表示要顯示 match.html 這個頁面
+    @ResponseBody
+    public ResponseEntity<byte[]> matchPage(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return prerenderedPages.getMatchPage().toResponse(acceptEncoding, TEXT_HTML_UTF8);
+    }
+
+    // 兩個星座的配對結果頁面 (例如 /match/牡羊座/獅子座)，結果已經預先放在頁面裡
+    @GetMapping("/match/{zodiac1}/{zodiac2}")
+    @ResponseBody
+    public ResponseEntity<byte[]> matchResultPage(
+            @PathVariable String zodiac1,
+            @PathVariable String zodiac2,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+
+        PrecompressedBody page = prerenderedPages.getMatchPage(zodiac1, zodiac2);
+        if (page == null) {
+            return redirectTo("/match"); // 不認得的星座就回到一般的配對頁面
+        }
+        return page.toResponse(acceptEncoding, TEXT_HTML_UTF8);
     }
 
     // 這個是處理配對請求的 API，用 POST 方法
     // @ResponseBody 表示回傳的是 JSON 資料，不是網頁
+    // 參數都設成非必填，缺少參數時由驗證流程回傳固定的錯誤內容，不用 Spring 丟例外
     @PostMapping("/api/match")
     @ResponseBody
-    public ResponseEntity<Map<String, Object>> doMatch(
+    public ResponseEntity<byte[]> doMatch(
             // 生日性別，從請求參數取得
-            @RequestParam String birthDate1,
-            @RequestParam String gender1,
-            @RequestParam String birthDate2,
-            @RequestParam String gender2) {
-
-        Map<String, Object> response = new HashMap<>(); // 建立一個 Map 來存回傳的資料
+            @RequestParam(required = false) String birthDate1,
+            @RequestParam(required = false) String gender1,
+            @RequestParam(required = false) String birthDate2,
+            @RequestParam(required = false) String gender2,
+            // 配對模式：western (只看星座，預設) 或 combined (星座加生肖)
+            @RequestParam(required = false) String mode,
+            // 租戶編號，由 TenantFilter 根據標頭或路徑決定
+            @RequestAttribute(TenantFilter.TENANT_ATTRIBUTE) int tenant,
+            // 回應的語言，由 Accept-Language 決定 (沒有給就是繁體中文)
+            @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false) String acceptLanguage,
+            // 原始的 HTTP 請求，稽核紀錄要用戶端位址 (JIT 預熱直接呼叫時是 null，不記錄)
+            HttpServletRequest httpRequest) {
+
+        // 記錄整個請求和各階段的耗時 (JFR 事件，沒有錄製時不會有成本)
+        long startNanos = System.nanoTime();
+        RequestEvent request = RequestEvent.start(RequestEvent.MATCH);
+        int locale = Locales.fromAcceptLanguage(acceptLanguage);
+
+        PhaseEvent phase = PhaseEvent.start(RequestEvent.MATCH, PhaseEvent.PARSE);
+        Couple couple = new Couple(birthDate1, gender1, birthDate2, gender2); // 建立一個 Couple 物件來存兩個人的資料，生日在這裡解析
+        phase.finish(RequestEvent.OK);
+
+        // 呼叫AnalysisController來做配對分析，依照模式選擇只看星座或星座加生肖
+        AnalysisController.AnalysisResult analysisResult;
+        if (mode == null || mode.isEmpty() || "western".equals(mode)) {
+            analysisResult = analysisController.doAnalysis(tenant, locale, couple);
+        } else if ("combined".equals(mode)) {
+            analysisResult = analysisController.doCombinedAnalysis(tenant, locale, couple);
+        } else {
+            analysisResult = AnalysisController.AnalysisResult.error(ErrorCode.BAD_MODE);
+        }
 
-        try {
-            Couple couple = new Couple(birthDate1, gender1, birthDate2, gender2); // 建立一個 Couple 物件來存兩個人的資料
+        // 檢查分析是否成功，失敗就直接回傳事先準備好的錯誤內容
+        if (!analysisResult.isSuccess()) {
+            request.finish(analysisResult.getErrorCode().name());
+            auditLog.match(httpRequest, tenant, locale, analysisResult.getErrorCode().name(), startNanos,
+                    birthDate1, gender1, birthDate2, gender2, mode);
+            return errorResponse(analysisResult.getErrorCode(), locale);
+        }
 
-            // 呼叫AnalysisController來做配對分析
-            AnalysisController.AnalysisResult analysisResult =
-                    analysisController.doAnalysis(couple);
+        phase = PhaseEvent.start(RequestEvent.MATCH, PhaseEvent.SERIALIZE);
+        Map<String, Object> response = new HashMap<>(); // 建立一個 Map 來存回傳的資料
+        response.put("success", true);
+        response.putAll(analysisResult.toStructuredResult()); // 如果成功，把結果轉成結構化的格式
+        response.put("couple", couple.toString(locale)); // 把兩個人的資訊放進去
+        byte[] body = JsonBodies.toBytes(response);
+        phase.finish(RequestEvent.OK);
+
+        request.finish(RequestEvent.OK);
+        auditLog.match(httpRequest, tenant, locale, RequestEvent.OK, startNanos,
+                birthDate1, gender1, birthDate2, gender2, mode);
+        return jsonResponse(body); // 回傳 HTTP 200 狀態碼和 response 資料
+    }
 
-            // 檢查分析是否成功
-            if (!analysisResult.isSuccess()) {
-                response.put("success", false);
-                response.put("error", analysisResult.getError());
-            } else {
-                Map<String, Object> structuredResult = analysisResult.toStructuredResult(); // 如果成功，把結果轉成結構化的格式
-                response.put("success", true);
-                response.putAll(structuredResult);
+    // 生日範圍反查 API (例如 /api/match/ranges?date=7/30&minScore=80)
+    // 回傳和這個生日配對的分數 (minScore，0~100) 或等級 (minLevel，例如 小吉 或 Good) 達到門檻的生日落在哪幾段日期，
+    // 相鄰的星座合併成一段，不用對一整年 366 天各呼叫一次 /api/match
+    // gender 是這個人的性別、partnerGender 是對方的性別，都可以不填 (不考慮性別)
+    // 範圍在啟動時就算好 (BirthdayRanges)，這裡只查表和轉成 JSON
+    @GetMapping("/api/match/ranges")
+    @ResponseBody
+    public ResponseEntity<byte[]> getMatchRanges(@RequestParam(required = false) String date,
+                                                 @RequestParam(required = false) String gender,
+                                                 @RequestParam(required = false) String partnerGender,
+                                                 @RequestParam(required = false) String minScore,
+                                                 @RequestParam(required = false) String minLevel,
+                                                 @RequestAttribute(TenantFilter.TENANT_ATTRIBUTE) int tenant,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false)
+                                                 String acceptLanguage,
+                                                 HttpServletRequest httpRequest) {
+
+        long startNanos = System.nanoTime();
+        RequestEvent request = RequestEvent.start(RequestEvent.MATCH_RANGES);
+        int locale = Locales.fromAcceptLanguage(acceptLanguage);
+
+        PhaseEvent phase = PhaseEvent.start(RequestEvent.MATCH_RANGES, PhaseEvent.PARSE);
+        int packedDate = ZodiacCalculator.parseBirthDate(date);
+        int genderIndex = Couple.optionalGenderIndex(gender);
+        int partnerGenderIndex = Couple.optionalGenderIndex(partnerGender);
+        boolean byScore = minScore != null && !minScore.isEmpty();
+        boolean byLevel = minLevel != null && !minLevel.isEmpty();
+        int threshold = byScore ? parseMinScore(minScore) : byLevel ? parseMinLevel(minLevel) : -1;
+
+        ErrorCode error = null;
+        if (packedDate < 0) {
+            error = ErrorCode.fromDateError(packedDate);
+        } else if (genderIndex < 0 || partnerGenderIndex < 0) {
+            error = ErrorCode.BAD_GENDER;
+        } else if (byScore == byLevel || threshold < 0) {
+            error = ErrorCode.BAD_THRESHOLD; // 兩個門檻都沒給、兩個都給，或是看不懂
+        }
+        phase.finish(error == null ? RequestEvent.OK : error.name());
+        if (error != null) {
+            request.finish(error.name());
+            auditLog.ranges(httpRequest, tenant, locale, error.name(), startNanos, date, gender, partnerGender,
+                    minScore, minLevel);
+            return errorResponse(error, locale);
+        }
 
-                response.put("couple", couple.toString()); // 把兩個人的資訊放進去
+        phase = PhaseEvent.start(RequestEvent.MATCH_RANGES, PhaseEvent.COMPUTE_MATCH);
+        int zodiacIndex = ZodiacCalculator.calculateZodiacIndex(packedDate);
+        BirthdayRanges table = matchRuleEngine.getBirthdayRanges(tenant);
+        BirthdayRanges.Range[] ranges = byScore
+                ? table.byScore(zodiacIndex, genderIndex, partnerGenderIndex, threshold)
+                : table.byLevel(zodiacIndex, genderIndex, partnerGenderIndex, threshold);
+        phase.finish(RequestEvent.OK);
+
+        phase = PhaseEvent.start(RequestEvent.MATCH_RANGES, PhaseEvent.SERIALIZE);
+        Object[] items = new Object[ranges.length];
+        int days = 0;
+        for (int i = 0; i < ranges.length; i++) {
+            BirthdayRanges.Range range = ranges[i];
+            String[] zodiacs = new String[range.getZodiacs().length];
+            for (int k = 0; k < zodiacs.length; k++) {
+                zodiacs[k] = Locales.ZODIAC_NAMES[locale][range.getZodiacs()[k]];
             }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("from", range.getFrom());
+            item.put("to", range.getTo());
+            item.put("days", range.getDays());
+            item.put("zodiacs", zodiacs);
+            items[i] = item;
+            days += range.getDays();
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", true);
+        response.put("date", date);
+        response.put("zodiac", Locales.ZODIAC_NAMES[locale][zodiacIndex]);
+        if (byScore) {
+            response.put("minScore", threshold);
+        } else {
+            response.put("minLevel", Locales.LEVEL_LABELS[locale][threshold]);
+        }
+        response.put("days", days);
+        response.put("ranges", items);
+        byte[] body = JsonBodies.toBytes(response);
+        phase.finish(RequestEvent.OK);
+
+        request.finish(RequestEvent.OK);
+        auditLog.ranges(httpRequest, tenant, locale, RequestEvent.OK, startNanos, date, gender, partnerGender,
+                minScore, minLevel);
+        return jsonResponse(body);
+    }
 
-        } catch (Exception e) {
-            response.put("success", false);
-            response.put("error", "分析失敗，請稍後再試: " + e.getMessage());
+    // 最低分數 0~100，不是這個範圍的整數回傳 -1
+    private static int parseMinScore(String minScore) {
+        if (minScore.length() > 3) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < minScore.length(); i++) {
+            char c = minScore.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
         }
+        return value <= 100 ? value : -1;
+    }
 
-        return ResponseEntity.ok(response); // 回傳 HTTP 200 狀態碼和 response 資料
+    // 最低等級，任何一種語言的等級名稱都接受 (英文不分大小寫)，回傳等級編號 (0 是最好的)，不認得回傳 -1
+    private static int parseMinLevel(String minLevel) {
+        for (String[] labels : Locales.LEVEL_LABELS) {
+            for (int level = 0; level < labels.length; level++) {
+                if (labels[level].equalsIgnoreCase(minLevel)) {
+                    return level;
+                }
+            }
+        }
+        return -1;
     }
 
     // 星座介紹頁面
-    // 當使用者訪問 /introduction 路徑時會執行這個方法
+    // 當使用者訪問 /introduction 路徑時會執行這個方法，頁面已經在建置時產生好
     @GetMapping("/introduction")
-    public String introductionPage(Model model) {
-        model.addAttribute("zodiacs", zodiacIntro.getAllZodiacNames()); // 把所有星座名稱放到 model 裡面，這樣前端頁面就可以用
-        return "introduction"; // 回傳 "introduction" 表示要顯示 introduction.html
+    @ResponseBody
+    public ResponseEntity<byte[]> introductionPage(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return prerenderedPages.getIntroductionPage().toResponse(acceptEncoding, TEXT_HTML_UTF8);
     }
 
-    // 這個是API, 用來取得特定星座的介紹資料
-    // {zodiac} 是路徑變數，會從 URL 裡面取得
-    @GetMapping("/api/introduction/{zodiac}")
+    // 單一星座的介紹頁面 (例如 /introduction/牡羊座)，介紹內容已經預先放在頁面裡
+    @GetMapping("/introduction/{zodiac}")
     @ResponseBody
-    public ResponseEntity<Map<String, Object>> getIntroduction(@PathVariable String zodiac) {
+    public ResponseEntity<byte[]> introductionDetailPage(
+            @PathVariable String zodiac,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
 
-        Map<String, Object> response = new HashMap<>();  // 建立回傳用的 Map
+        PrecompressedBody page = prerenderedPages.getIntroductionPage(zodiac);
+        if (page == null) {
+            return redirectTo("/introduction"); // 不認得的星座就回到星座列表
+        }
+        return page.toResponse(acceptEncoding, TEXT_HTML_UTF8);
+    }
 
-        try {
-            String introduction = zodiacIntro.getIntroduction(zodiac);
+    // 轉址到指定的頁面
+    private static ResponseEntity<byte[]> redirectTo(String path) {
+        return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(path)).build();
+    }
 
-            //若成功就設定成功標記和相關資料
-            response.put("success", true);
-            response.put("introduction", introduction);
-        } catch (Exception e) {
-            response.put("success", false);
-            response.put("error", e.getMessage());
+    // 這個是API, 用來取得特定星座的介紹資料
+    // {zodiac} 是路徑變數，會從 URL 裡面取得
+    // fields 可以選擇只要 info、male、female 其中幾個欄位 (例如 ?fields=info,male)，不給就全部回傳
+    @GetMapping("/api/introduction/{zodiac}")
+    @ResponseBody
+    public ResponseEntity<byte[]> getIntroduction(@PathVariable String zodiac,
+                                                  @RequestParam(required = false) String fields,
+                                                  @RequestAttribute(TenantFilter.TENANT_ATTRIBUTE) int tenant,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false)
+                                                  String acceptLanguage,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                                  String acceptEncoding,
+                                                  HttpServletRequest httpRequest) {
+
+        long startNanos = System.nanoTime();
+        RequestEvent request = RequestEvent.start(RequestEvent.INTRODUCTION);
+        int locale = Locales.fromAcceptLanguage(acceptLanguage);
+
+        // 直接拿事先轉好、壓縮好的 JSON，不用再組 Map、序列化和壓縮 (星座名稱用這個語言的別名表找)
+        PhaseEvent phase = PhaseEvent.start(RequestEvent.INTRODUCTION, PhaseEvent.SIGN_LOOKUP);
+        PrecompressedBody body = zodiacIntro.getIntroductionBody(tenant, locale, zodiac, ZodiacIntroduction.parseFields(fields));
+        phase.finish(body != null ? RequestEvent.OK : ErrorCode.UNKNOWN_ZODIAC.name());
+
+        if (body == null) {
+            request.finish(ErrorCode.UNKNOWN_ZODIAC.name());
+            auditLog.introduction(httpRequest, tenant, locale, ErrorCode.UNKNOWN_ZODIAC.name(), startNanos, zodiac, fields);
+            return errorResponse(ErrorCode.UNKNOWN_ZODIAC, locale);
         }
 
-        return ResponseEntity.ok(response);
+        request.finish(RequestEvent.OK);
+        auditLog.introduction(httpRequest, tenant, locale, RequestEvent.OK, startNanos, zodiac, fields);
+        return body.toResponse(acceptEncoding, MediaType.APPLICATION_JSON, VARY_TENANT_ENCODING_LANGUAGE);
     }
 
     // 個性分析頁面
@@ -117,52 +369,210 @@ public class HoroscopeController {
     // 這個 API 用來根據日期和性別取得個性分析
     @PostMapping("/api/personality")
     @ResponseBody
-    public ResponseEntity<Map<String, Object>> getPersonalityByDate(
+    public ResponseEntity<byte[]> getPersonalityByDate(
             // 生日日期，性別從請求參數取得
-            @RequestParam String date,
-            @RequestParam String gender) {
+            @RequestParam(required = false) String date,
+            @RequestParam(required = false) String gender,
+            @RequestAttribute(TenantFilter.TENANT_ATTRIBUTE) int tenant,
+            @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false) String acceptLanguage,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletRequest httpRequest) {
+
+        long startNanos = System.nanoTime();
+        RequestEvent request = RequestEvent.start(RequestEvent.PERSONALITY);
+        int locale = Locales.fromAcceptLanguage(acceptLanguage);
+
+        // 先檢查輸入，有錯誤就回傳固定的錯誤內容
+        PhaseEvent phase = PhaseEvent.start(RequestEvent.PERSONALITY, PhaseEvent.PARSE);
+        int packedDate = ZodiacCalculator.parseBirthDate(date);
+        phase.finish(packedDate >= 0 ? RequestEvent.OK : ErrorCode.fromDateError(packedDate).name());
+
+        ErrorCode error = null;
+        if (packedDate < 0) {
+            error = ErrorCode.fromDateError(packedDate);
+        } else if (Couple.genderIndex(gender) < 0) {
+            error = ErrorCode.BAD_GENDER;
+        }
+        if (error != null) {
+            request.finish(error.name());
+            auditLog.personality(httpRequest, tenant, locale, error.name(), startNanos, date, gender);
+            return errorResponse(error, locale);
+        }
 
-        Map<String, Object> response = new HashMap<>();  // 建立回傳用的 Map
+        phase = PhaseEvent.start(RequestEvent.PERSONALITY, PhaseEvent.SIGN_LOOKUP);
+        int zodiacIndex = ZodiacCalculator.calculateZodiacIndex(packedDate); // 根據日期計算出星座
+        phase.finish(RequestEvent.OK);
 
-        try {
-            String personality = zodiacIntro.getPersonalityByDate(date, gender); // 根據日期和性別取得個性分析文字
-            String zodiac = ZodiacCalculator.calculateZodiacFromBirthDate(date);  // 根據日期計算出星座
+        // 星座、性別、個性分析文字的 JSON 開頭已經事先轉好並壓縮好
+        phase = PhaseEvent.start(RequestEvent.PERSONALITY, PhaseEvent.RENDER);
+        PrecompressedPrefix prefix = zodiacIntro.getPersonalityBody(tenant, locale, zodiacIndex, Couple.genderIndex(gender));
+        phase.finish(RequestEvent.OK);
 
-            //若成功就設定成功標記和相關資料
-            response.put("success", true);
-            response.put("personality", personality);
-            response.put("zodiac", zodiac);
-            response.put("date", date);
-            response.put("gender", gender);
+        // 只有使用者輸入的日期要序列化，接在開頭後面 (壓縮版本放在不壓縮的區塊裡)
+        phase = PhaseEvent.start(RequestEvent.PERSONALITY, PhaseEvent.SERIALIZE);
+        ResponseEntity<byte[]> response = prefix.toResponse(dateTail(date), acceptEncoding,
+                MediaType.APPLICATION_JSON, VARY_TENANT_ENCODING_LANGUAGE);
+        phase.finish(RequestEvent.OK);
+
+        request.finish(RequestEvent.OK);
+        auditLog.personality(httpRequest, tenant, locale, RequestEvent.OK, startNanos, date, gender);
+        return response;
+    }
 
-        } catch (Exception e) {
-            response.put("success", false);
-            response.put("error", e.getMessage());
+    // 個性分析 JSON 的結尾：,"date":"1990/7/4"}
+    private static byte[] dateTail(String date) {
+        byte[] value = JsonBodies.toBytes(date);
+        byte[] tail = new byte[DATE_FIELD.length + value.length + 1];
+        System.arraycopy(DATE_FIELD, 0, tail, 0, DATE_FIELD.length);
+        System.arraycopy(value, 0, tail, DATE_FIELD.length, value.length);
+        tail[tail.length - 1] = '}';
+        return tail;
+    }
+
+    // 每日運勢 API (例如 /api/daily/牡羊座)，當天的 JSON 在前一天午夜前就產生好、壓縮好，這裡只查表
+    // 內容到午夜就會換，所以快取期限設到當天午夜 (Cache-Control 的秒數和 Expires 都是)
+    // 幸運星座和文字都看租戶，所以 Vary 也要有 X-Tenant
+    @GetMapping("/api/daily/{zodiac}")
+    @ResponseBody
+    public ResponseEntity<byte[]> getDaily(@PathVariable String zodiac,
+                                           @RequestAttribute(TenantFilter.TENANT_ATTRIBUTE) int tenant,
+                                           @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false)
+                                           String acceptLanguage,
+                                           @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                           String acceptEncoding,
+                                           HttpServletRequest httpRequest) {
+
+        long startNanos = System.nanoTime();
+        RequestEvent request = RequestEvent.start(RequestEvent.DAILY);
+        int locale = Locales.fromAcceptLanguage(acceptLanguage);
+
+        // 星座名稱用這個語言的別名表找
+        int zodiacIndex = Locales.zodiacIndex(locale, zodiac);
+        if (zodiacIndex < 0) {
+            request.finish(ErrorCode.UNKNOWN_ZODIAC.name());
+            auditLog.daily(httpRequest, tenant, locale, ErrorCode.UNKNOWN_ZODIAC.name(), startNanos, zodiac);
+            return errorResponse(ErrorCode.UNKNOWN_ZODIAC, locale);
         }
 
-        return ResponseEntity.ok(response);
+        long now = System.currentTimeMillis();
+        DailyHoroscope.Day day = dailyHoroscope.today(now);
+        ResponseEntity<byte[]> response = day.getBody(tenant, locale, zodiacIndex).toResponse(acceptEncoding,
+                ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.VARY, VARY_TENANT_ENCODING_LANGUAGE)
+                        .cacheControl(CacheControl.maxAge(day.maxAgeSeconds(now), TimeUnit.SECONDS).cachePublic())
+                        .header(HttpHeaders.EXPIRES, day.getExpires()));
+
+        request.finish(RequestEvent.OK);
+        auditLog.daily(httpRequest, tenant, locale, RequestEvent.OK, startNanos, zodiac);
+        return response;
     }
 
-    // 取得所有星座
-    // 這個 API 用來取得所有星座的名稱列表
-    @GetMapping("/api/zodiacs")
+    // 特質搜尋 API (例如 /api/search?q=固執)，在這個語言的星座介紹和男女個性原文裡找，依照出現次數排名
+    // 每個結果有星座、欄位 (info、male、female)、出現次數、一段摘要，以及摘要裡要標示的位置 [開始, 結束)
+    // 查詢用啟動時建好的 bigram 索引，不用掃過所有文字
+    @GetMapping("/api/search")
     @ResponseBody
-    public ResponseEntity<Map<String, Object>> getAllZodiacs() {
+    public ResponseEntity<byte[]> search(@RequestParam(required = false) String q,
+                                         @RequestParam(required = false) String limit,
+                                         @RequestAttribute(TenantFilter.TENANT_ATTRIBUTE) int tenant,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false)
+                                         String acceptLanguage,
+                                         HttpServletRequest httpRequest) {
+
+        long startNanos = System.nanoTime();
+        RequestEvent request = RequestEvent.start(RequestEvent.SEARCH);
+        int locale = Locales.fromAcceptLanguage(acceptLanguage);
+
+        String query = q != null ? q.trim() : "";
+        if (query.isEmpty() || query.length() > TraitIndex.MAX_QUERY_LENGTH) {
+            request.finish(ErrorCode.BAD_QUERY.name());
+            auditLog.search(httpRequest, tenant, locale, ErrorCode.BAD_QUERY.name(), startNanos, q, limit);
+            return errorResponse(ErrorCode.BAD_QUERY, locale);
+        }
+
+        PhaseEvent phase = PhaseEvent.start(RequestEvent.SEARCH, PhaseEvent.INDEX_LOOKUP);
+        TraitIndex.Result result = zodiacIntro.search(tenant, locale, query, searchLimit(limit));
+        phase.finish(RequestEvent.OK);
+
+        phase = PhaseEvent.start(RequestEvent.SEARCH, PhaseEvent.SERIALIZE);
+        Object[] results = new Object[result.getHits().length];
+        for (int i = 0; i < results.length; i++) {
+            TraitIndex.Hit hit = result.getHits()[i];
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("zodiac", Locales.ZODIAC_NAMES[locale][hit.getZodiacIndex()]);
+            item.put("field", ZodiacIntroduction.FIELD_NAMES[hit.getField()]);
+            item.put("count", hit.getCount());
+            item.put("snippet", hit.getSnippet());
+            item.put("snippetStart", hit.getSnippetStart());
+            item.put("highlights", hit.getHighlights());
+            results[i] = item;
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", true);
+        response.put("query", query);
+        response.put("total", result.getTotal());
+        response.put("results", results);
+        byte[] body = JsonBodies.toBytes(response);
+        phase.finish(RequestEvent.OK);
+
+        request.finish(RequestEvent.OK);
+        auditLog.search(httpRequest, tenant, locale, RequestEvent.OK, startNanos, q, limit);
+        return jsonResponse(body);
+    }
 
-        Map<String, Object> response = new HashMap<>(); // 建立回傳用的 Map
+    // 搜尋結果的數量：沒有給或不是數字就用預設值，超過上限就用上限
+    private static int searchLimit(String limit) {
+        if (limit == null || limit.isEmpty()) {
+            return DEFAULT_SEARCH_LIMIT;
+        }
+        int value = 0;
+        for (int i = 0; i < limit.length(); i++) {
+            char c = limit.charAt(i);
+            if (c < '0' || c > '9') {
+                return DEFAULT_SEARCH_LIMIT;
+            }
+            value = Math.min(value * 10 + (c - '0'), MAX_SEARCH_LIMIT);
+        }
+        return Math.max(1, value);
+    }
 
-        try {
-            String[] zodiacs = zodiacIntro.getAllZodiacNames();
+    // 取得所有星座
+    // 這個 API 用來取得所有星座的名稱列表，內容固定，直接回傳事先轉好的 JSON
+    @GetMapping("/api/zodiacs")
+    @ResponseBody
+    public ResponseEntity<byte[]> getAllZodiacs(
+            @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false) String acceptLanguage,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return zodiacIntro.getAllZodiacNamesBody(Locales.fromAcceptLanguage(acceptLanguage))
+                .toResponse(acceptEncoding, MediaType.APPLICATION_JSON, VARY_ENCODING_LANGUAGE);
+    }
 
-            //若成功就設定成功標記和相關資料
-            response.put("success", true);
-            response.put("zodiacs", zodiacs);
-        } catch (Exception e) {
-            response.put("success", false);
-            response.put("error", e.getMessage());
+    // 沒有預期到的錯誤 (程式錯誤) 才會進到這裡：完整的例外記在日誌裡，回應一樣是固定的錯誤內容，不把例外訊息接到字串裡
+    // Spring 自己的請求錯誤 (缺少標頭、參數型別不對、不支援的 Content-Type...) 原封不動丟回去，
+    // 交給 Spring 預設的處理回傳原本的 4xx 狀態碼，不要變成 500
+    @ExceptionHandler(Exception.class)
+    @ResponseBody
+    public ResponseEntity<byte[]> handleUnexpectedError(Exception e, HttpServletRequest request) throws Exception {
+        if (e instanceof ServletException || e instanceof ResponseStatusException
+                || e instanceof TypeMismatchException || e instanceof HttpMessageNotReadableException) {
+            throw e;
         }
+        log.error("{} {} 發生沒有預期到的錯誤", request.getMethod(), request.getRequestURI(), e);
+        return errorResponse(ErrorCode.INTERNAL_ERROR,
+                Locales.fromAcceptLanguage(request.getHeader(HttpHeaders.ACCEPT_LANGUAGE)));
+    }
 
-        return ResponseEntity.ok(response);
+    // 回傳 JSON 內容 (HTTP 200)
+    // API 的內容會依照 Accept-Language 和租戶改變，所以加上 Vary 讓快取分開存
+    private static ResponseEntity<byte[]> jsonResponse(byte[] body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, VARY_TENANT_LANGUAGE).body(body);
     }
-}
 
+    // 回傳錯誤代碼在某種語言的固定內容
+    private static ResponseEntity<byte[]> errorResponse(ErrorCode errorCode, int locale) {
+        return ResponseEntity.status(errorCode.getStatus()).contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_LANGUAGE).body(errorCode.getBody(locale));
+    }
+}
@@ -0,0 +1,158 @@
+package com.SAD_Project.controller;
+
+import com.SAD_Project.model.Couple;
+import com.SAD_Project.service.TenantRegistry; // 租戶編號
+import com.SAD_Project.util.Locales; // 支援的語言
+import com.SAD_Project.util.WireFormat; // 二進位格式
+
+import org.slf4j.Logger; // 日誌
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired; // Spring 的自動注入註解
+import org.springframework.beans.factory.annotation.Value; // 讀取 application.properties 的設定
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner; // 啟動完成、開始接受流量之前執行
+import org.springframework.stereotype.Component; // 標記這是 Spring 元件
+
+import java.nio.ByteBuffer;
+
+// 這個class負責在啟動時預熱 JIT
+// 剛啟動的 JVM 還在用直譯器執行，前幾千次 /api/match、/api/personality 會慢好幾毫秒
+// 所以在 Spring Boot 把 readiness 設成 ACCEPTING_TRAFFIC 之前，先用代表性的輸入把熱門路徑跑到被編譯
+// 所有 API 都要預熱：JSON 的配對、個性分析、介紹、星座列表、每日運勢、特質搜尋、生日範圍反查，
+// 二進位的配對、批次配對、個性分析、評價文字對照表，以及 WebSocket (/ws/match) 每則訊息走的讀取、查表、寫入
+// 新增 API 時也要加在這裡，否則剛 ready 的機器上那個 API 還是直譯執行
+// Spring Boot 會等所有 ApplicationRunner 執行完才發出 ApplicationReadyEvent，readiness 才會變成可以接受流量
+@Component
+public class JitWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(JitWarmup.class);
+
+    // 每個星座各一個日期，加上年份格式和幾個錯誤輸入，錯誤處理的路徑也一起預熱
+    private static final String[] DATES = {"3/21", "4/25", "5/30", "6/30", "7/30", "8/30",
+            "9/30", "10/30", "11/30", "12/30", "1/30", "2/28", "2024-02-29", "1990/7/4",
+            "1985-01-15", "2000-2-4",
+            "abc", "13/40", ""};
+    private static final String[] GENDERS = {"男", "女"};
+    private static final String[] ZODIACS = {"牡羊座", "金牛座", "雙子座", "巨蟹座", "獅子座", "處女座",
+            "天秤座", "天蠍座", "射手座", "魔羯座", "摩羯座", "水瓶座", "雙魚座", "不存在"};
+    private static final String[] FIELDS = {null, "info", "male,female"};
+    // 各種語言的 Accept-Language，解析標頭的程式也一起預熱
+    private static final String[] LANGUAGES = {null, "zh-TW,zh;q=0.9,en;q=0.8", "zh-CN,zh;q=0.9", "en-US,en;q=0.9"};
+    // 不壓縮、gzip、brotli 三種回應都預熱 (個數和 LANGUAGES 互質，兩者的組合才會輪到)
+    private static final String[] ENCODINGS = {null, "gzip, deflate", "gzip, deflate, br"};
+    private static final String[] QUERIES = {"固執", "浪漫", "自由", "愛", "不存在的特質", ""};
+    // 生日範圍反查的門檻：分數或等級 (MIN_SCORES 是 null 的時候用等級)
+    private static final String[] MIN_SCORES = {"60", "75", "80", "90", null, null};
+    private static final String[] MIN_LEVELS = {null, null, null, null, "小吉", "Good"};
+
+    // 二進位請求 (u16 年、u8 月、u8 日、u8 性別)，每個星座各一個生日，年份有 0 (沒有年份) 也有真的年份
+    private static final int[][] WIRE_PEOPLE = {{0, 3, 21, 0}, {0, 4, 25, 1}, {0, 5, 30, 0}, {1990, 6, 30, 1},
+            {0, 7, 30, 0}, {1985, 8, 30, 1}, {0, 9, 30, 0}, {2000, 10, 30, 1}, {0, 11, 30, 0}, {1977, 12, 30, 1},
+            {2024, 1, 30, 0}, {0, 2, 28, 1}, {0, 13, 40, 0}};
+    private static final int BATCH_SIZE = 8;
+
+    @Autowired
+    private HoroscopeController horoscopeController;
+
+    @Autowired
+    private WireController wireController;
+
+    // 預熱要跑幾輪，0 表示不預熱
+    @Value("${horoscope.warmup.iterations:20000}")
+    private int iterations;
+
+    // 預熱最多花多少毫秒，超過就提早結束，避免啟動時間太長
+    @Value("${horoscope.warmup.max-millis:30000}")
+    private long maxMillis;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (iterations <= 0) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long deadline = start + maxMillis;
+        int done = 0;
+
+        // 二進位的請求事先組好：四種旗標的單一配對、一個批次、兩種旗標的個性分析
+        byte[][] wireMatches = new byte[WIRE_PEOPLE.length * 4][];
+        for (int i = 0; i < wireMatches.length; i++) {
+            ByteBuffer body = ByteBuffer.allocate(1 + WireFormat.COUPLE_BYTES).put((byte) (i & WireFormat.MATCH_FLAGS));
+            putPerson(body, WIRE_PEOPLE[i % WIRE_PEOPLE.length]);
+            putPerson(body, WIRE_PEOPLE[(i * 7 + 3) % WIRE_PEOPLE.length]);
+            wireMatches[i] = body.array();
+        }
+        ByteBuffer batch = ByteBuffer.allocate(3 + BATCH_SIZE * WireFormat.COUPLE_BYTES)
+                .put((byte) WireFormat.FLAG_TEXTS).putShort((short) BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            putPerson(batch, WIRE_PEOPLE[i]);
+            putPerson(batch, WIRE_PEOPLE[(i * 5 + 1) % WIRE_PEOPLE.length]);
+        }
+        byte[] wireBatch = batch.array();
+        byte[][] wirePersonalities = new byte[WIRE_PEOPLE.length * 2][];
+        for (int i = 0; i < wirePersonalities.length; i++) {
+            ByteBuffer body = ByteBuffer.allocate(1 + WireFormat.PERSON_BYTES)
+                    .put((byte) ((i & 1) == 0 ? 0 : WireFormat.FLAG_TEXTS));
+            putPerson(body, WIRE_PEOPLE[i % WIRE_PEOPLE.length]);
+            wirePersonalities[i] = body.array();
+        }
+        // WebSocket 的訊息沒辦法在沒有連線時送，直接預熱每則訊息都會走的讀取、查表和寫入 (回應緩衝區和連線的一樣大)
+        int socketCapacity = 0;
+        for (int locale = 0; locale < Locales.COUNT; locale++) {
+            socketCapacity = Math.max(socketCapacity, wireController.maxMatchResponse(TenantRegistry.DEFAULT_TENANT, locale, true));
+        }
+        ByteBuffer socketOut = ByteBuffer.allocate(socketCapacity);
+
+        // 直接呼叫 controller 的方法，從輸入驗證、查表一直到 JSON 序列化都會跑到
+        // 沒有真的 HTTP 請求 (最後一個參數是 null)，所以不會寫進稽核紀錄
+        for (; done < iterations; done++) {
+            String date1 = DATES[done % DATES.length];
+            String date2 = DATES[(done * 7 + 3) % DATES.length];
+            String gender1 = GENDERS[done & 1];
+            String gender2 = GENDERS[(done >> 1) & 1];
+            String language = LANGUAGES[done % LANGUAGES.length];
+            String encoding = ENCODINGS[done % ENCODINGS.length];
+
+            horoscopeController.doMatch(date1, gender1, date2, gender2, (done & 2) == 0 ? null : "combined",
+                    TenantRegistry.DEFAULT_TENANT, language, null);
+            horoscopeController.getPersonalityByDate(date1, gender1, TenantRegistry.DEFAULT_TENANT, language, encoding, null);
+            horoscopeController.getIntroduction(ZODIACS[done % ZODIACS.length], FIELDS[done % FIELDS.length],
+                    TenantRegistry.DEFAULT_TENANT, language, encoding, null);
+            horoscopeController.getAllZodiacs(language, encoding);
+            horoscopeController.getDaily(ZODIACS[done % ZODIACS.length], TenantRegistry.DEFAULT_TENANT, language, encoding, null);
+            horoscopeController.search(QUERIES[done % QUERIES.length], null, TenantRegistry.DEFAULT_TENANT, language, null);
+            horoscopeController.getMatchRanges(date1, gender1, (done & 4) == 0 ? null : gender2,
+                    MIN_SCORES[done % MIN_SCORES.length], MIN_LEVELS[done % MIN_LEVELS.length],
+                    TenantRegistry.DEFAULT_TENANT, language, null);
+
+            byte[] wireMatch = wireMatches[done % wireMatches.length];
+            wireController.match(wireMatch, TenantRegistry.DEFAULT_TENANT, language, null);
+            wireController.personality(wirePersonalities[done % wirePersonalities.length],
+                    TenantRegistry.DEFAULT_TENANT, language, null);
+            if ((done & 7) == 0) {
+                wireController.batchMatch(wireBatch, TenantRegistry.DEFAULT_TENANT, language, null); // 一次就有 8 組
+                wireController.matchTexts(TenantRegistry.DEFAULT_TENANT, language, encoding);
+            }
+            int locale = done % Locales.COUNT;
+            Couple couple = WireController.readCouple(ByteBuffer.wrap(wireMatch, 1, WireFormat.COUPLE_BYTES));
+            socketOut.clear();
+            WireController.writeMatchResult(socketOut, couple, wireController.analyze(TenantRegistry.DEFAULT_TENANT, locale,
+                            (wireMatch[0] & WireFormat.FLAG_COMBINED) != 0, couple),
+                    (wireMatch[0] & WireFormat.FLAG_TEXTS) != 0
+                            ? wireController.matchTexts(TenantRegistry.DEFAULT_TENANT, locale) : null);
+
+            // 每 256 輪檢查一次時間就好
+            if ((done & 0xFF) == 0 && System.currentTimeMillis() > deadline) {
+                break;
+            }
+        }
+
+        log.info("JIT 預熱完成：{} 輪，花費 {} ms", done, System.currentTimeMillis() - start);
+    }
+
+    // 二進位格式的一個人 (5 bytes)
+    private static void putPerson(ByteBuffer body, int[] person) {
+        body.putShort((short) person[0]).put((byte) person[1]).put((byte) person[2]).put((byte) person[3]);
+    }
+}
@@ -0,0 +1,134 @@
+package com.SAD_Project.controller;
+
+import com.SAD_Project.model.Couple;
+import com.SAD_Project.monitoring.AuditLog;
+import com.SAD_Project.monitoring.RequestEvent;
+import com.SAD_Project.util.ErrorCode;
+import com.SAD_Project.util.WireFormat;
+import com.SAD_Project.web.AdmissionControlFilter;
+
+import org.springframework.stereotype.Component; // 標記這是 Spring 元件
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler; // 只收二進位訊息，文字訊息會直接關閉連線
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+// 這個class處理配對頁面的 WebSocket 連線 (/ws/match)
+// 頁面打開時連一次，之後每次配對只送一則二進位訊息，不用每次都帶 HTTP 標頭和表單編碼
+// 每則訊息的格式和 POST /api/match 的二進位請求一樣 (u8 旗標、人1、人2)，回應一則配對結果 (見 WireFormat)
+// 同一條連線的訊息依照順序一則一則處理、一則一則回應，所以客戶端不用帶編號，照順序對應就好
+// 租戶和語言在建立連線時決定 (WebSocketConfig 的握手攔截器)，之後每則訊息都沿用
+// 連線建立後的訊息不會再經過 AdmissionControlFilter，所以每則訊息都要拿配對的名額，
+// 超過上限就只回一個 OVERLOADED 的狀態代碼 (和 HTTP 的 503 一樣快速拒絕)，連線繼續使用
+@Component
+public class MatchSocketHandler extends BinaryWebSocketHandler {
+
+    // 握手時放進 session attributes 的租戶和語言編號 (Integer)
+    public static final String TENANT_ATTRIBUTE = "horoscope.socket.tenant";
+    public static final String LOCALE_ATTRIBUTE = "horoscope.socket.locale";
+
+    // 連線狀態放在 session attributes 的名稱
+    private static final String CONNECTION_ATTRIBUTE = "horoscope.socket.connection";
+
+    // 一條連線的狀態，建立連線時準備好，之後每則訊息都重複使用
+    private static final class Connection {
+        private final int tenant;
+        private final int locale;
+        private final String client;   // 用戶端位址 (稽核紀錄用)
+        private final byte[][] texts;  // 這個租戶這種語言的評價文字
+        // 回應緩衝區：同一條連線的訊息不會同時處理，送出是同步的 (送完才返回)，所以每則回應都可以重複使用
+        private final ByteBuffer out;
+
+        private Connection(int tenant, int locale, String client, byte[][] texts, int capacity) {
+            this.tenant = tenant;
+            this.locale = locale;
+            this.client = client;
+            this.texts = texts;
+            this.out = ByteBuffer.allocate(capacity);
+        }
+    }
+
+    private final WireController wireController;
+    private final AuditLog auditLog;
+    private final AdmissionControlFilter admissionControl;
+
+    public MatchSocketHandler(WireController wireController, AuditLog auditLog, AdmissionControlFilter admissionControl) {
+        this.wireController = wireController;
+        this.auditLog = auditLog;
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        int tenant = (Integer) session.getAttributes().get(TENANT_ATTRIBUTE);
+        int locale = (Integer) session.getAttributes().get(LOCALE_ATTRIBUTE);
+        InetSocketAddress remote = session.getRemoteAddress();
+        String client = remote != null ? remote.getAddress().getHostAddress() : "-";
+
+        // 緩衝區照最長的回應 (附上評價文字) 準備，每條連線不到 1 KB
+        session.getAttributes().put(CONNECTION_ATTRIBUTE, new Connection(tenant, locale, client,
+                wireController.matchTexts(tenant, locale), wireController.maxMatchResponse(tenant, locale, true)));
+    }
+
+    // 一則訊息就是一筆配對
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws IOException {
+        long startNanos = System.nanoTime();
+        RequestEvent request = RequestEvent.start(RequestEvent.MATCH_SOCKET);
+        Connection connection = (Connection) session.getAttributes().get(CONNECTION_ATTRIBUTE);
+        ByteBuffer in = message.getPayload();
+        ByteBuffer out = connection.out;
+        out.clear();
+
+        // 格式不對只回一個錯誤代碼，連線繼續使用
+        if (in.remaining() != 1 + WireFormat.COUPLE_BYTES || (in.get(in.position()) & ~WireFormat.MATCH_FLAGS) != 0) {
+            out.put(WireFormat.status(ErrorCode.BAD_WIRE_FORMAT));
+            send(session, out);
+            request.finish(ErrorCode.BAD_WIRE_FORMAT.name());
+            return;
+        }
+        if (!admissionControl.tryAcquireMatch()) {
+            out.put(WireFormat.status(ErrorCode.OVERLOADED));
+            send(session, out);
+            request.finish(ErrorCode.OVERLOADED.name());
+            return;
+        }
+        int flags = in.get();
+        boolean combined = (flags & WireFormat.FLAG_COMBINED) != 0;
+        boolean texts = (flags & WireFormat.FLAG_TEXTS) != 0;
+
+        Couple couple;
+        AnalysisController.AnalysisResult result;
+        long workNanos = System.nanoTime();
+        try {
+            couple = WireController.readCouple(in);
+            result = wireController.analyze(connection.tenant, connection.locale, combined, couple);
+            WireController.writeMatchResult(out, couple, result, texts ? connection.texts : null);
+        } finally {
+            // 名額只包住查表和寫回應，送出要等網路，不算在延遲裡 (和 HTTP 一樣，慢的用戶端不會讓上限往下降)
+            admissionControl.releaseMatch(System.nanoTime() - workNanos);
+        }
+        send(session, out);
+
+        String outcome = WireController.outcome(result);
+        request.finish(outcome);
+        auditLog.socketMatch(connection.client, connection.tenant, connection.locale, outcome, startNanos,
+                couple.getBirthDate1(), couple.getGender1(), couple.getBirthDate2(), couple.getGender2(),
+                combined ? "combined" : "western");
+    }
+
+    // 送出緩衝區裡寫好的部分
+    private static void send(WebSocketSession session, ByteBuffer out) throws IOException {
+        out.flip();
+        session.sendMessage(new BinaryMessage(out, true));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        session.getAttributes().remove(CONNECTION_ATTRIBUTE);
+    }
+}
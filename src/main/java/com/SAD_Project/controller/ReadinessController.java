@@ -0,0 +1,39 @@
+package com.SAD_Project.controller;
+
+import com.SAD_Project.util.JsonBodies; // 把資料事先轉成 JSON 位元組的工具
+
+import org.springframework.beans.factory.annotation.Autowired; // Spring 的自動注入註解
+import org.springframework.boot.availability.ApplicationAvailability; // Spring Boot 的應用程式狀態
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus; // HTTP 狀態碼
+import org.springframework.http.MediaType; // HTTP 內容類型
+import org.springframework.http.ResponseEntity; // 用來回傳 HTTP 回應的類別
+import org.springframework.stereotype.Controller; // 標記這是控制器類別
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.Collections;
+
+// 這個class提供給負載平衡器檢查的 readiness API
+// JIT 預熱 (JitWarmup) 完成之前回傳 503，完成之後才回傳 200，新的機器就不會一開始就接到全部流量
+@Controller
+public class ReadinessController {
+
+    // 兩種回應內容都是固定的
+    private static final byte[] READY_BODY = JsonBodies.toBytes(Collections.singletonMap("ready", true));
+    private static final byte[] NOT_READY_BODY = JsonBodies.toBytes(Collections.singletonMap("ready", false));
+
+    // Spring Boot 內建的應用程式狀態，ApplicationReadyEvent 之後才會變成 ACCEPTING_TRAFFIC
+    @Autowired
+    private ApplicationAvailability availability;
+
+    @GetMapping("/api/ready")
+    @ResponseBody
+    public ResponseEntity<byte[]> ready() {
+        boolean ready = availability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC;
+
+        return ResponseEntity.status(ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(ready ? READY_BODY : NOT_READY_BODY);
+    }
+}
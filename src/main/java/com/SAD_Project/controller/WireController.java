@@ -0,0 +1,310 @@
+package com.SAD_Project.controller;
+
+import com.SAD_Project.model.Couple;
+import com.SAD_Project.monitoring.AuditLog;
+import com.SAD_Project.monitoring.RequestEvent;
+import com.SAD_Project.service.MatchRuleCompiler;
+import com.SAD_Project.service.MatchRuleEngine;
+import com.SAD_Project.service.TenantRegistry;
+import com.SAD_Project.service.ZodiacIntroduction;
+import com.SAD_Project.util.ErrorCode;
+import com.SAD_Project.util.JsonBodies;
+import com.SAD_Project.util.Locales;
+import com.SAD_Project.util.PrecompressedBody;
+import com.SAD_Project.util.WireFormat;
+import com.SAD_Project.web.TenantFilter;
+
+import org.springframework.beans.factory.annotation.Autowired; // Spring 的自動注入註解
+import org.springframework.http.HttpHeaders; // HTTP 標頭名稱常數
+import org.springframework.http.MediaType; // HTTP 內容類型
+import org.springframework.http.ResponseEntity; // 用來回傳 HTTP 回應的類別
+import org.springframework.http.converter.HttpMessageNotReadableException; // 讀不到請求內容
+import org.springframework.stereotype.Controller; // 標記這是控制器類別
+import org.springframework.web.bind.annotation.*; // 引入所有 Spring 的網頁請求相關註解
+
+import javax.servlet.http.HttpServletRequest;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 這個類別處理後端服務用的二進位 API (格式見 WireFormat)
+// 和 HoroscopeController 用同樣的路徑，Content-Type 是 application/x-starsync 的請求才會進到這裡
+// 驗證和查表都沿用 AnalysisController，只是輸入直接讀數字、輸出直接寫代碼，不用組 Map 和序列化 JSON
+@Controller
+public class WireController {
+
+    // 二進位的回應依照租戶 (X-Tenant) 和 Accept-Language 改變 (分數、附上的文字)，對照表還會依照壓縮方式改變
+    private static final String VARY_TENANT_LANGUAGE = TenantFilter.TENANT_HEADER + ", " + HttpHeaders.ACCEPT_LANGUAGE;
+    private static final String VARY_TENANT_ENCODING_LANGUAGE =
+            VARY_TENANT_LANGUAGE + ", " + HttpHeaders.ACCEPT_ENCODING;
+
+    // 格式不對時的回應內容
+    private static final byte[] BAD_FORMAT_BODY = {WireFormat.status(ErrorCode.BAD_WIRE_FORMAT)};
+
+    private final AnalysisController analysisController;
+    private final AuditLog auditLog;
+
+    // 每個等級的評價文字 (u16 長度 + UTF-8，優點、缺點、評語)，索引是 [租戶][語言][等級]
+    private final byte[][][][] matchTexts;
+    // 每個租戶每種語言最長的評價文字，決定回應的緩衝區要多大
+    private final int[][] maxMatchText;
+    // 個性分析 (u16 長度 + UTF-8)，索引是 [租戶][語言][星座 * 2 + 性別]
+    private final byte[][][][] personalityTexts;
+    // 評價文字對照表的 JSON，索引是 [租戶][語言]
+    private final PrecompressedBody[][] textTables;
+
+    @Autowired
+    public WireController(AnalysisController analysisController, AuditLog auditLog, TenantRegistry tenants,
+                          MatchRuleEngine matchRuleEngine, ZodiacIntroduction zodiacIntro) {
+        this.analysisController = analysisController;
+        this.auditLog = auditLog;
+
+        int levels = MatchRuleEngine.LEVELS.length;
+        matchTexts = new byte[tenants.size()][Locales.COUNT][levels][];
+        maxMatchText = new int[tenants.size()][Locales.COUNT];
+        personalityTexts = new byte[tenants.size()][Locales.COUNT][12 * 2][];
+        textTables = new PrecompressedBody[tenants.size()][Locales.COUNT];
+
+        for (int tenant = 0; tenant < tenants.size(); tenant++) {
+            for (int locale = 0; locale < Locales.COUNT; locale++) {
+                List<Map<String, Object>> table = new ArrayList<>();
+                for (int level = 0; level < levels; level++) {
+                    String positive = matchRuleEngine.getText(tenant, locale, level, MatchRuleCompiler.TEXT_POSITIVE);
+                    String negative = matchRuleEngine.getText(tenant, locale, level, MatchRuleCompiler.TEXT_NEGATIVE);
+                    String comment = matchRuleEngine.getText(tenant, locale, level, MatchRuleCompiler.TEXT_COMMENT);
+                    matchTexts[tenant][locale][level] = WireFormat.textBlock(positive, negative, comment);
+                    maxMatchText[tenant][locale] = Math.max(maxMatchText[tenant][locale],
+                            matchTexts[tenant][locale][level].length);
+
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("level", level);
+                    entry.put("label", Locales.LEVEL_LABELS[locale][level]);
+                    entry.put("positive", positive);
+                    entry.put("negative", negative);
+                    entry.put("comment", comment);
+                    table.add(entry);
+                }
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("success", true);
+                body.put("levels", table);
+                textTables[tenant][locale] = PrecompressedBody.of(JsonBodies.toBytes(body));
+
+                for (int zodiac = 0; zodiac < 12; zodiac++) {
+                    for (int gender = 0; gender < 2; gender++) {
+                        personalityTexts[tenant][locale][zodiac * 2 + gender] =
+                                WireFormat.textBlock(zodiacIntro.getPersonalityText(tenant, locale, zodiac, gender));
+                    }
+                }
+            }
+        }
+    }
+
+    // 單一配對：u8 旗標、人1、人2
+    @PostMapping(value = "/api/match", consumes = WireFormat.CONTENT_TYPE)
+    @ResponseBody
+    public ResponseEntity<byte[]> match(
+            @RequestBody byte[] body,
+            @RequestAttribute(TenantFilter.TENANT_ATTRIBUTE) int tenant,
+            @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false) String acceptLanguage,
+            HttpServletRequest httpRequest) {
+
+        long startNanos = System.nanoTime();
+        RequestEvent request = RequestEvent.start(RequestEvent.MATCH);
+
+        if (body.length != 1 + WireFormat.COUPLE_BYTES || (body[0] & ~WireFormat.MATCH_FLAGS) != 0) {
+            request.finish(ErrorCode.BAD_WIRE_FORMAT.name());
+            return badFormat();
+        }
+        int locale = Locales.fromAcceptLanguage(acceptLanguage);
+        ByteBuffer in = ByteBuffer.wrap(body);
+        int flags = in.get();
+        boolean combined = (flags & WireFormat.FLAG_COMBINED) != 0;
+
+        Couple couple = readCouple(in);
+        AnalysisController.AnalysisResult result = analyze(tenant, locale, combined, couple);
+
+        boolean texts = (flags & WireFormat.FLAG_TEXTS) != 0;
+        ByteBuffer out = ByteBuffer.allocate(maxMatchResponse(tenant, locale, texts));
+        writeMatchResult(out, couple, result, texts ? matchTexts[tenant][locale] : null);
+
+        String outcome = outcome(result);
+        request.finish(outcome);
+        auditLog.match(httpRequest, tenant, locale, outcome, startNanos, couple.getBirthDate1(), couple.getGender1(),
+                couple.getBirthDate2(), couple.getGender2(), combined ? "combined" : "western");
+        return binaryResponse(out);
+    }
+
+    // 批次配對：u8 旗標、u16 組數、組數 × (人1、人2)，一次呼叫評好幾組，省下每組的 HTTP 往返
+    @PostMapping(value = "/api/match/batch", consumes = WireFormat.CONTENT_TYPE)
+    @ResponseBody
+    public ResponseEntity<byte[]> batchMatch(
+            @RequestBody byte[] body,
+            @RequestAttribute(TenantFilter.TENANT_ATTRIBUTE) int tenant,
+            @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false) String acceptLanguage,
+            HttpServletRequest httpRequest) {
+
+        long startNanos = System.nanoTime();
+        RequestEvent request = RequestEvent.start(RequestEvent.MATCH_BATCH);
+
+        int count = body.length >= 3 ? ((body[1] & 0xFF) << 8) | (body[2] & 0xFF) : -1;
+        if (count < 0 || count > WireFormat.MAX_BATCH || body.length != 3 + count * WireFormat.COUPLE_BYTES
+                || (body[0] & ~WireFormat.MATCH_FLAGS) != 0) {
+            request.finish(ErrorCode.BAD_WIRE_FORMAT.name());
+            return badFormat();
+        }
+        int locale = Locales.fromAcceptLanguage(acceptLanguage);
+        ByteBuffer in = ByteBuffer.wrap(body);
+        int flags = in.get();
+        in.getShort();
+        boolean combined = (flags & WireFormat.FLAG_COMBINED) != 0;
+        boolean texts = (flags & WireFormat.FLAG_TEXTS) != 0;
+
+        ByteBuffer out = ByteBuffer.allocate(2 + count * (1 + WireFormat.MATCH_RESULT_BYTES
+                + (texts ? maxMatchText[tenant][locale] : 0)));
+        out.putShort((short) count);
+        for (int i = 0; i < count; i++) {
+            Couple couple = readCouple(in);
+            AnalysisController.AnalysisResult result = analyze(tenant, locale, combined, couple);
+            writeMatchResult(out, couple, result, texts ? matchTexts[tenant][locale] : null);
+            auditLog.batchMatch(httpRequest, tenant, locale, outcome(result), startNanos, couple.getBirthDate1(),
+                    couple.getGender1(), couple.getBirthDate2(), couple.getGender2(), combined ? "combined" : "western");
+        }
+
+        request.finish(RequestEvent.OK);
+        return binaryResponse(out);
+    }
+
+    // 個性分析：u8 旗標、人
+    @PostMapping(value = "/api/personality", consumes = WireFormat.CONTENT_TYPE)
+    @ResponseBody
+    public ResponseEntity<byte[]> personality(
+            @RequestBody byte[] body,
+            @RequestAttribute(TenantFilter.TENANT_ATTRIBUTE) int tenant,
+            @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false) String acceptLanguage,
+            HttpServletRequest httpRequest) {
+
+        long startNanos = System.nanoTime();
+        RequestEvent request = RequestEvent.start(RequestEvent.PERSONALITY);
+
+        if (body.length != 1 + WireFormat.PERSON_BYTES || (body[0] & ~WireFormat.PERSONALITY_FLAGS) != 0) {
+            request.finish(ErrorCode.BAD_WIRE_FORMAT.name());
+            return badFormat();
+        }
+        int locale = Locales.fromAcceptLanguage(acceptLanguage);
+        ByteBuffer in = ByteBuffer.wrap(body);
+        int flags = in.get();
+
+        // 只有一個人，第二個人沿用同一份資料，生日和性別的檢查和 Couple 的第一個人一樣
+        int year = in.getShort() & 0xFFFF, month = in.get() & 0xFF, day = in.get() & 0xFF, gender = in.get() & 0xFF;
+        Couple person = new Couple(year, month, day, gender, year, month, day, gender);
+
+        ErrorCode error = null;
+        if (person.getPackedDate1() < 0) {
+            error = ErrorCode.fromDateError(person.getPackedDate1());
+        } else if (person.getGenderIndex1() < 0 || person.getGenderIndex1() == MatchRuleCompiler.GENDER_UNSPECIFIED) {
+            error = ErrorCode.BAD_GENDER; // 個性分析的文字分男女，一定要填性別
+        }
+
+        ByteBuffer out;
+        if (error != null) {
+            out = ByteBuffer.allocate(1).put(WireFormat.status(error));
+        } else {
+            byte[] text = (flags & WireFormat.FLAG_TEXTS) != 0
+                    ? personalityTexts[tenant][locale][person.getZodiacIndex1() * 2 + person.getGenderIndex1()] : null;
+            out = ByteBuffer.allocate(3 + (text != null ? text.length : 0));
+            out.put(WireFormat.STATUS_OK).put((byte) person.getZodiacIndex1()).put((byte) person.getGenderIndex1());
+            if (text != null) {
+                out.put(text);
+            }
+        }
+
+        String outcome = error != null ? error.name() : RequestEvent.OK;
+        request.finish(outcome);
+        auditLog.personality(httpRequest, tenant, locale, outcome, startNanos, person.getBirthDate1(), person.getGender1());
+        return binaryResponse(out);
+    }
+
+    // 評價文字對照表 (等級編號 → 等級名稱、優點、缺點、評語)，二進位客戶端取一次之後自己快取
+    @GetMapping("/api/match/texts")
+    @ResponseBody
+    public ResponseEntity<byte[]> matchTexts(
+            @RequestAttribute(TenantFilter.TENANT_ATTRIBUTE) int tenant,
+            @RequestHeader(value = HttpHeaders.ACCEPT_LANGUAGE, required = false) String acceptLanguage,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return textTables[tenant][Locales.fromAcceptLanguage(acceptLanguage)]
+                .toResponse(acceptEncoding, MediaType.APPLICATION_JSON, VARY_TENANT_ENCODING_LANGUAGE);
+    }
+
+    // 單一配對回應最多幾 bytes (texts 是有沒有附上評價文字)
+    int maxMatchResponse(int tenant, int locale, boolean texts) {
+        return 1 + WireFormat.MATCH_RESULT_BYTES + (texts ? maxMatchText[tenant][locale] : 0);
+    }
+
+    // 這個租戶這種語言每個等級的評價文字，索引是等級
+    byte[][] matchTexts(int tenant, int locale) {
+        return matchTexts[tenant][locale];
+    }
+
+    // 以下幾個方法 MatchSocketHandler 也會用 (WebSocket 上的訊息格式和 POST /api/match 一樣)
+
+    // 讀兩個人 (各 5 bytes)，Java 的參數由左到右求值，剛好是欄位的順序
+    static Couple readCouple(ByteBuffer in) {
+        return new Couple(in.getShort() & 0xFFFF, in.get() & 0xFF, in.get() & 0xFF, in.get() & 0xFF,
+                in.getShort() & 0xFFFF, in.get() & 0xFF, in.get() & 0xFF, in.get() & 0xFF);
+    }
+
+    AnalysisController.AnalysisResult analyze(int tenant, int locale, boolean combined, Couple couple) {
+        return combined ? analysisController.doCombinedAnalysis(tenant, locale, couple)
+                : analysisController.doAnalysis(tenant, locale, couple);
+    }
+
+    // 寫一筆配對結果，texts 不是 null 時附上這個等級的評價文字
+    static void writeMatchResult(ByteBuffer out, Couple couple, AnalysisController.AnalysisResult result,
+                                         byte[][] texts) {
+        if (!result.isSuccess()) {
+            out.put(WireFormat.status(result.getErrorCode()));
+            return;
+        }
+        MatchRuleEngine.MatchResult match = result.getMatchResult();
+        out.put(WireFormat.STATUS_OK);
+        out.put((byte) couple.getZodiacIndex1());
+        out.put((byte) couple.getZodiacIndex2());
+        out.put(result.isCombined() ? (byte) couple.getAnimalIndex1() : WireFormat.NO_ANIMAL);
+        out.put(result.isCombined() ? (byte) couple.getAnimalIndex2() : WireFormat.NO_ANIMAL);
+        out.put((byte) match.getScore());
+        out.put((byte) match.getLevelIndex());
+        out.put((byte) match.getStars());
+        out.put((byte) match.getPercentile());
+        out.putShort((short) match.getRank());
+        if (texts != null) {
+            out.put(texts[match.getLevelIndex()]);
+        }
+    }
+
+    static String outcome(AnalysisController.AnalysisResult result) {
+        return result.isSuccess() ? RequestEvent.OK : result.getErrorCode().name();
+    }
+
+    // 回傳緩衝區裡寫好的部分
+    private static ResponseEntity<byte[]> binaryResponse(ByteBuffer out) {
+        return ResponseEntity.ok().contentType(WireFormat.MEDIA_TYPE)
+                .header(HttpHeaders.VARY, VARY_TENANT_LANGUAGE)
+                .body(out.position() == out.capacity() ? out.array() : Arrays.copyOf(out.array(), out.position()));
+    }
+
+    // 沒有內容的請求 (Spring 讀不到 @RequestBody) 也當作格式不對
+    // 內容一定要有：如果設成非必填，空的請求會同時符合 HoroscopeController 的表單版本，Spring 不知道要選哪一個
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    @ResponseBody
+    public ResponseEntity<byte[]> handleUnreadableBody() {
+        return badFormat();
+    }
+
+    private static ResponseEntity<byte[]> badFormat() {
+        return ResponseEntity.status(ErrorCode.BAD_WIRE_FORMAT.getStatus()).contentType(WireFormat.MEDIA_TYPE)
+                .body(BAD_FORMAT_BODY);
+    }
+}
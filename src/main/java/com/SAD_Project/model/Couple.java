@@ -1,110 +1,209 @@
 package com.SAD_Project.model;
 
+import com.SAD_Project.service.MatchRuleCompiler; // 沒有填性別的編號
+import com.SAD_Project.util.ChineseZodiacCalculator; // 引入計算生肖的工具類別
+import com.SAD_Project.util.Locales; // 各語言的星座和性別名稱
 import com.SAD_Project.util.ZodiacCalculator; // 引入計算星座的工具類別
 
 // 這個class用來儲存配對的兩個人基本資料
-public class Couple {
-    private String birthDate1;
-    private String gender1;
-    private String birthDate2;
-    private String gender2;
-
-    // 無參數建構子，建立空的 Couple 物件
-    public Couple() {
-    }
-
-    // 有參數建構子，建立時就設定兩個人的資料
+// 建立之後就不能修改，生日在建構時只解析一次，星座編號和性別編號也一起算好
+// 之後整個分析流程都直接使用這些編號，不用再重複解析日期
+public final class Couple {
+    // toString 用到的文字，索引是 Locales 的語言編號
+    private static final String[] JOINERS = {" 與 ", " 与 ", " & "};
+    private static final String[] UNKNOWN_ZODIAC = {"未知星座", "未知星座", "Unknown sign"};
+    private static final String[] UNKNOWN_DATE = {"未知日期", "未知日期", "Unknown date"};
+
+    private final String birthDate1;
+    private final String gender1;
+    private final String birthDate2;
+    private final String gender2;
+
+    // 解析後的生日 (ZodiacCalculator.parseBirthDate 的結果，負數代表錯誤代碼)
+    private final int packedDate1;
+    private final int packedDate2;
+
+    // 星座編號 (0~11)，生日有錯誤時是負數的錯誤代碼
+    private final int zodiacIndex1;
+    private final int zodiacIndex2;
+
+    // 生肖編號 (0~11)，生日有錯誤、沒有年份或年份超出範圍時是負數的錯誤代碼
+    private final int animalIndex1;
+    private final int animalIndex2;
+
+    // 性別編號 (男 0、女 1、沒有填 MatchRuleCompiler.GENDER_UNSPECIFIED)，不認得是 -1
+    private final int genderIndex1;
+    private final int genderIndex2;
+
+    // 建立時就設定兩個人的資料
     public Couple(String birthDate1, String gender1, String birthDate2, String gender2) {
         // 使用 clearUpData 方法清理資料，去掉空白等
         this.birthDate1 = clearUpData(birthDate1);
         this.gender1 = clearUpData(gender1);
         this.birthDate2 = clearUpData(birthDate2);
         this.gender2 = clearUpData(gender2);
-    }
 
-    //getter 和 setter 方法
+        // 生日只在這裡解析一次
+        this.packedDate1 = ZodiacCalculator.parseBirthDate(this.birthDate1);
+        this.packedDate2 = ZodiacCalculator.parseBirthDate(this.birthDate2);
+        this.zodiacIndex1 = ZodiacCalculator.calculateZodiacIndex(packedDate1);
+        this.zodiacIndex2 = ZodiacCalculator.calculateZodiacIndex(packedDate2);
+        this.animalIndex1 = ChineseZodiacCalculator.animalIndex(packedDate1);
+        this.animalIndex2 = ChineseZodiacCalculator.animalIndex(packedDate2);
+        this.genderIndex1 = optionalGenderIndex(this.gender1);
+        this.genderIndex2 = optionalGenderIndex(this.gender2);
+    }
+
+    // 二進位格式 (WireFormat) 用的建構子：生日已經是年月日數字 (year 是 0 表示沒有年份)，性別是編號
+    // 性別和表單的 optionalGenderIndex 一樣可以不填 (GENDER_UNSPECIFIED)，個性分析要不要接受由呼叫的人決定
+    // 不用解析字串，生日字串 (顯示和稽核紀錄用) 照 API 接受的格式組出來
+    public Couple(int year1, int month1, int day1, int gender1, int year2, int month2, int day2, int gender2) {
+        this.birthDate1 = dateString(year1, month1, day1);
+        this.gender1 = genderString(gender1);
+        this.birthDate2 = dateString(year2, month2, day2);
+        this.gender2 = genderString(gender2);
+
+        this.packedDate1 = ZodiacCalculator.packBirthDate(year1, month1, day1);
+        this.packedDate2 = ZodiacCalculator.packBirthDate(year2, month2, day2);
+        this.zodiacIndex1 = ZodiacCalculator.calculateZodiacIndex(packedDate1);
+        this.zodiacIndex2 = ZodiacCalculator.calculateZodiacIndex(packedDate2);
+        this.animalIndex1 = ChineseZodiacCalculator.animalIndex(packedDate1);
+        this.animalIndex2 = ChineseZodiacCalculator.animalIndex(packedDate2);
+        this.genderIndex1 = wireGenderIndex(gender1);
+        this.genderIndex2 = wireGenderIndex(gender2);
+    }
+
+    //getter 方法
     public String getBirthDate1() {
         return birthDate1;
     }
-    public void setBirthDate1(String birthDate1) {
-        this.birthDate1 = clearUpData(birthDate1);
-    }
     public String getGender1() {
         return gender1;
     }
-    public void setGender1(String gender1) {
-        this.gender1 = clearUpData(gender1);
-    }
     public String getBirthDate2() {
         return birthDate2;
     }
-    public void setBirthDate2(String birthDate2) {
-        this.birthDate2 = clearUpData(birthDate2);
-    }
     public String getGender2() {
         return gender2;
     }
-    public void setGender2(String gender2) {
-        this.gender2 = clearUpData(gender2);
-    }
 
-    // 根據生日計算第一個人的星座, 呼叫私有方法
+    public int getPackedDate1() { return packedDate1; }
+    public int getPackedDate2() { return packedDate2; }
+    public int getZodiacIndex1() { return zodiacIndex1; }
+    public int getZodiacIndex2() { return zodiacIndex2; }
+    public int getAnimalIndex1() { return animalIndex1; }
+    public int getAnimalIndex2() { return animalIndex2; }
+    public int getGenderIndex1() { return genderIndex1; }
+    public int getGenderIndex2() { return genderIndex2; }
+
+    // 第一個人的星座名稱，生日有錯誤時回傳 null
     public String getZodiac1() {
-        return calculateZodiac(birthDate1);
+        return zodiacName(zodiacIndex1);
     }
 
-    // 根據生日計算第二個人的星座, 呼叫私有方法
+    // 第二個人的星座名稱，生日有錯誤時回傳 null
     public String getZodiac2() {
-        return calculateZodiac(birthDate2);
+        return zodiacName(zodiacIndex2);
     }
 
-    // 私有方法，用來計算星座
-    private String calculateZodiac(String birthDate) {
-        if (birthDate == null || birthDate.isEmpty()) {
-            return null;
+    // 第一個人的生肖名稱，沒有辦法判斷生肖時回傳 null
+    public String getAnimal1() {
+        return animalIndex1 >= 0 ? ChineseZodiacCalculator.ANIMAL_NAMES[animalIndex1] : null;
+    }
+
+    // 第二個人的生肖名稱，沒有辦法判斷生肖時回傳 null
+    public String getAnimal2() {
+        return animalIndex2 >= 0 ? ChineseZodiacCalculator.ANIMAL_NAMES[animalIndex2] : null;
+    }
+
+    // 把星座編號轉成名稱 (名稱是共用的常數，不會產生新字串)
+    private static String zodiacName(int zodiacIndex) {
+        return zodiacIndex >= 0 ? ZodiacCalculator.ZODIAC_NAMES[zodiacIndex] : null;
+    }
+
+    // 把性別轉成編號：男是 0，女是 1，其他 (包含 null) 回傳 -1
+    public static int genderIndex(String gender) {
+        if ("男".equals(gender)) {
+            return 0;
+        }
+        if ("女".equals(gender)) {
+            return 1;
+        }
+        return -1;
+    }
+
+    // 可以不填的性別 (配對)：沒有填或空白是 GENDER_UNSPECIFIED，只套用和性別無關的規則，和批次評分工具一樣
+    // 填了但不是「男」或「女」回傳 -1
+    public static int optionalGenderIndex(String gender) {
+        if (gender == null || gender.trim().isEmpty()) {
+            return MatchRuleCompiler.GENDER_UNSPECIFIED;
         }
+        return genderIndex(gender.trim());
+    }
+
+    // 二進位格式的性別編號：男 0、女 1、沒有填 GENDER_UNSPECIFIED，其他不認得是 -1
+    private static int wireGenderIndex(int gender) {
+        return gender == 0 || gender == 1 || gender == MatchRuleCompiler.GENDER_UNSPECIFIED ? gender : -1;
+    }
+
+    // 年月日組成 yyyy-M-d 或 M/d
+    private static String dateString(int year, int month, int day) {
+        return year > 0 ? year + "-" + month + "-" + day : month + "/" + day;
+    }
 
-        return ZodiacCalculator.calculateZodiacFromBirthDate(birthDate); // 使用工具類別來計算星座
+    // 性別編號轉回「男」、「女」，不認得的編號保留數字
+    // 沒有填和表單一樣是 null
+    private static String genderString(int gender) {
+        if (gender == MatchRuleCompiler.GENDER_UNSPECIFIED) {
+            return null;
+        }
+        return gender == 0 ? "男" : gender == 1 ? "女" : String.valueOf(gender);
     }
 
     // 檢查字串value是否為空白
-    private boolean isBlank(String value) {
+    private static boolean isBlank(String value) {
         return value == null || value.isEmpty(); // 如果是 null 或空字串就回傳 true
     }
 
     // 覆寫 toString 方法，用來顯示兩個人的資訊
+    // 直接使用建構時算好的星座，不會再解析一次日期
     @Override
     public String toString() {
-        String zodiac1 = getZodiac1();
-        String zodiac2 = getZodiac2();
+        return toString(Locales.ZH_TW);
+    }
 
+    // 用指定的語言顯示兩個人的資訊 (星座和性別名稱都換成那個語言)
+    public String toString(int locale) {
         // 把資料轉成字串
-        String first = personDataToString(birthDate1, gender1, zodiac1);
-        String second = personDataToString(birthDate2, gender2, zodiac2);
+        String first = personDataToString(locale, birthDate1, gender1, genderIndex1, zodiacIndex1);
+        String second = personDataToString(locale, birthDate2, gender2, genderIndex2, zodiacIndex2);
 
-        return first + " 與 " + second;
+        return first + JOINERS[locale] + second;
     }
 
     // 把單一人的資料轉成可顯示的字串
-    private String personDataToString(String birthDate, String gender, String zodiac) {
+    private static String personDataToString(int locale, String birthDate, String gender, int genderIndex,
+                                             int zodiacIndex) {
         String showGender;
         String showZodiac;
         String showDate;
 
         if(isBlank(gender)){
             showGender = "";
+        } else if (genderIndex >= 0) {
+            showGender = " [" + Locales.GENDER_LABELS[locale][genderIndex] + "]";
         } else {
             showGender = " [" + gender + "]";
         }
 
-        if(zodiac == null){
-            showZodiac = "未知星座";
+        if(zodiacIndex < 0){
+            showZodiac = UNKNOWN_ZODIAC[locale];
         } else {
-            showZodiac = zodiac;
+            showZodiac = Locales.ZODIAC_NAMES[locale][zodiacIndex];
         }
 
         if(birthDate == null){
-            showDate = "未知日期";
+            showDate = UNKNOWN_DATE[locale];
         } else {
             showDate = birthDate;
         }
@@ -113,7 +212,7 @@ public class Couple {
     }
 
     //在這個方法中，具體行為是：如果輸入為 null、空字串或僅包含空白，回傳 null；否則回傳去掉前後空白的字串（trim() 的結果）
-    private String clearUpData(String value) {
+    private static String clearUpData(String value) {
         if(isBlank(value)){
             return null;
         } else {
@@ -0,0 +1,389 @@
+package com.SAD_Project.monitoring;
+
+import com.SAD_Project.service.TenantRegistry; // 租戶名稱
+import com.SAD_Project.util.Locales; // 語言標籤
+
+import org.slf4j.Logger; // 日誌
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean; // 關閉時把緩衝區寫完
+import org.springframework.beans.factory.annotation.Value; // 讀取 application.properties 的設定
+import org.springframework.stereotype.Component; // 標記這是 Spring 元件
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// 這個class負責 API 的存取/稽核紀錄 (每一筆配對、個性分析、星座介紹、每日運勢、特質搜尋的查詢，批次配對和 WebSocket 是每一組一筆)
+// 請求執行緒只把欄位填進無鎖的環狀緩衝區 (AuditRingBuffer)，不碰檔案也不排隊等鎖
+// 背景執行緒一次讀出一批，轉成一行一筆的 JSON 寫進檔案，檔案超過大小就輪替 (audit.log → audit.log.1 → ...)
+// 緩衝區滿了 (寫檔跟不上) 的處理方式可以設定：
+//   drop  : 丟掉這筆並計數，檔案裡會寫一行 {"event":"dropped"} 記錄丟了幾筆，請求不會變慢 (預設)
+//   block : 等到有空位再寫，紀錄不會少，但寫檔跟不上時請求會跟著變慢
+@Component
+public class AuditLog implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+    public static final String FILE_NAME = "audit.log";
+
+    // 各 API 的參數名稱，對應 Record 的 param1 ~ param5
+    private static final String[] MATCH_PARAMS = {"birthDate1", "gender1", "birthDate2", "gender2", "mode"};
+    private static final String[] PERSONALITY_PARAMS = {"date", "gender"};
+    private static final String[] INTRODUCTION_PARAMS = {"zodiac", "fields"};
+    private static final String[] DAILY_PARAMS = {"zodiac"};
+    private static final String[] SEARCH_PARAMS = {"q", "limit"};
+    private static final String[] RANGES_PARAMS = {"date", "gender", "partnerGender", "minScore", "minLevel"};
+
+    // 緩衝區滿了、設定成 block 時，每次等多久再試 (順便叫醒寫入執行緒)
+    private static final long BLOCK_PARK_NANOS = 50_000;
+
+    private final boolean enabled;
+    private final boolean blockWhenFull;
+    private final Path directory;
+    private final int batchSize;        // 寫入執行緒一次最多讀幾筆
+    private final long maxFileBytes;    // 一個檔案最大多少位元組，超過就輪替
+    private final int maxFiles;         // 最多保留幾個檔案 (包含正在寫的)
+    private final long idleNanos;       // 緩衝區空的時候，寫入執行緒睡多久再檢查
+
+    private final TenantRegistry tenants;
+    private final AuditRingBuffer buffer;
+    private final AtomicLong dropped = new AtomicLong(); // 總共丟掉幾筆 (緩衝區滿或寫檔失敗)
+    private final Thread writer;
+    private volatile boolean running;
+
+    // 以下欄位只有寫入執行緒使用
+    private final StringBuilder line = new StringBuilder(512);
+    private FileChannel channel;
+    private long fileBytes;
+    private long reportedDropped;       // 已經寫進檔案的丟棄數
+
+    public AuditLog(
+            TenantRegistry tenants,
+            @Value("${horoscope.audit.enabled:true}") boolean enabled,
+            @Value("${horoscope.audit.directory:logs/audit}") String directory,
+            @Value("${horoscope.audit.capacity:8192}") int capacity,
+            @Value("${horoscope.audit.when-full:drop}") String whenFull,
+            @Value("${horoscope.audit.batch-size:512}") int batchSize,
+            @Value("${horoscope.audit.max-file-bytes:10485760}") long maxFileBytes,
+            @Value("${horoscope.audit.max-files:10}") int maxFiles,
+            @Value("${horoscope.audit.idle-millis:10}") long idleMillis) {
+        if (!"drop".equals(whenFull) && !"block".equals(whenFull)) {
+            throw new IllegalStateException("horoscope.audit.when-full 只能是 drop 或 block：" + whenFull);
+        }
+        this.tenants = tenants;
+        this.enabled = enabled;
+        this.blockWhenFull = "block".equals(whenFull);
+        this.directory = Paths.get(directory);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxFileBytes = Math.max(1024, maxFileBytes);
+        this.maxFiles = Math.max(1, maxFiles);
+        this.idleNanos = Math.max(1, idleMillis) * 1_000_000;
+
+        if (!enabled) {
+            this.buffer = null;
+            this.writer = null;
+            return;
+        }
+        this.buffer = new AuditRingBuffer(capacity);
+        this.running = true;
+        this.writer = new Thread(this::writeLoop, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // 記錄一筆配對查詢
+    // request 是 null 表示不是真的 HTTP 請求 (例如 JIT 預熱直接呼叫 controller)，不記錄
+    public void match(HttpServletRequest request, int tenant, int locale, String outcome, long startNanos,
+                      String birthDate1, String gender1, String birthDate2, String gender2, String mode) {
+        record(clientOf(request), RequestEvent.MATCH, tenant, locale, outcome, startNanos,
+                birthDate1, gender1, birthDate2, gender2, mode);
+    }
+
+    // 記錄批次配對裡的一組
+    public void batchMatch(HttpServletRequest request, int tenant, int locale, String outcome, long startNanos,
+                           String birthDate1, String gender1, String birthDate2, String gender2, String mode) {
+        record(clientOf(request), RequestEvent.MATCH_BATCH, tenant, locale, outcome, startNanos,
+                birthDate1, gender1, birthDate2, gender2, mode);
+    }
+
+    // 記錄一筆個性分析查詢
+    public void personality(HttpServletRequest request, int tenant, int locale, String outcome, long startNanos,
+                            String date, String gender) {
+        record(clientOf(request), RequestEvent.PERSONALITY, tenant, locale, outcome, startNanos, date, gender, null, null, null);
+    }
+
+    // 記錄一筆星座介紹查詢
+    public void introduction(HttpServletRequest request, int tenant, int locale, String outcome, long startNanos,
+                             String zodiac, String fields) {
+        record(clientOf(request), RequestEvent.INTRODUCTION, tenant, locale, outcome, startNanos, zodiac, fields, null, null, null);
+    }
+
+    // 記錄一筆每日運勢查詢
+    public void daily(HttpServletRequest request, int tenant, int locale, String outcome, long startNanos,
+                      String zodiac) {
+        record(clientOf(request), RequestEvent.DAILY, tenant, locale, outcome, startNanos, zodiac, null, null, null, null);
+    }
+
+    // 記錄一筆特質搜尋
+    public void search(HttpServletRequest request, int tenant, int locale, String outcome, long startNanos,
+                       String query, String limit) {
+        record(clientOf(request), RequestEvent.SEARCH, tenant, locale, outcome, startNanos, query, limit, null, null, null);
+    }
+
+    // 記錄一筆生日範圍反查
+    public void ranges(HttpServletRequest request, int tenant, int locale, String outcome, long startNanos,
+                       String date, String gender, String partnerGender, String minScore, String minLevel) {
+        record(clientOf(request), RequestEvent.MATCH_RANGES, tenant, locale, outcome, startNanos,
+                date, gender, partnerGender, minScore, minLevel);
+    }
+
+    // 記錄 WebSocket 連線上的一筆配對，client 是建立連線時的用戶端位址
+    public void socketMatch(String client, int tenant, int locale, String outcome, long startNanos,
+                            String birthDate1, String gender1, String birthDate2, String gender2, String mode) {
+        record(client, RequestEvent.MATCH_SOCKET, tenant, locale, outcome, startNanos,
+                birthDate1, gender1, birthDate2, gender2, mode);
+    }
+
+    // 總共丟掉幾筆紀錄
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // 用戶端位址，不是真的 HTTP 請求就是 null
+    private static String clientOf(HttpServletRequest request) {
+        return request != null ? request.getRemoteAddr() : null;
+    }
+
+    // 在請求執行緒裡執行：搶一格、填欄位、發布，不建立物件
+    // client 是 null 表示不記錄 (見上面 match 的說明)
+    // 時間和用戶端位址在搶到格子之前先準備好，搶到之後只剩填欄位，讀的人不用等太久
+    private void record(String client, String endpoint, int tenant, int locale, String outcome,
+                        long startNanos, String param1, String param2, String param3, String param4, String param5) {
+        if (!enabled || client == null) {
+            return;
+        }
+        long latencyNanos = System.nanoTime() - startNanos;
+        long timeMillis = System.currentTimeMillis();
+
+        long position = buffer.tryClaim();
+        if (position < 0) {
+            if (!blockWhenFull) {
+                dropped.incrementAndGet();
+                return;
+            }
+            while ((position = buffer.tryClaim()) < 0) {
+                if (!running) { // 已經在關閉，寫入執行緒不會再讀，不能一直等
+                    dropped.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+        }
+
+        AuditRingBuffer.Record record = buffer.record(position);
+        record.timeMillis = timeMillis;
+        record.latencyNanos = latencyNanos;
+        record.endpoint = endpoint;
+        record.tenant = tenant;
+        record.locale = locale;
+        record.client = client;
+        record.outcome = outcome;
+        record.param1 = param1;
+        record.param2 = param2;
+        record.param3 = param3;
+        record.param4 = param4;
+        record.param5 = param5;
+        buffer.publish(position);
+    }
+
+    // 寫入執行緒：有資料就一批一批寫，沒有就睡一下；關閉時把剩下的寫完才結束
+    private void writeLoop() {
+        while (true) {
+            boolean stopping = !running; // 先讀旗標再讀緩衝區，關閉前發布的紀錄一定會被讀到
+            int count = writeBatch();
+            if (count == 0) {
+                writeDropped();
+                if (stopping) {
+                    break;
+                }
+                LockSupport.parkNanos(idleNanos);
+            }
+        }
+        closeChannel();
+    }
+
+    // 讀出最多 batchSize 筆，轉成 JSON 一次寫進檔案，回傳讀了幾筆
+    private int writeBatch() {
+        line.setLength(0);
+        int count = 0;
+        AuditRingBuffer.Record record;
+        while (count < batchSize && (record = buffer.peek()) != null) {
+            appendRecord(record);
+            buffer.release();
+            count++;
+        }
+        if (count > 0 && !write(line)) {
+            dropped.addAndGet(count);
+        }
+        return count;
+    }
+
+    // 有新的丟棄就在檔案裡留一行，稽核時看得出哪段時間少了幾筆
+    private void writeDropped() {
+        long total = dropped.get();
+        if (total == reportedDropped) {
+            return;
+        }
+        long count = total - reportedDropped;
+        reportedDropped = total;
+        log.warn("稽核紀錄丟棄了 {} 筆 (緩衝區滿或寫檔失敗)，累計 {} 筆", count, total);
+
+        line.setLength(0);
+        line.append("{\"time\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(System.currentTimeMillis()), line);
+        line.append("\",\"event\":\"dropped\",\"count\":").append(count).append("}\n");
+        write(line);
+    }
+
+    // 一筆紀錄一行 JSON
+    private void appendRecord(AuditRingBuffer.Record record) {
+        line.append("{\"time\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(record.timeMillis), line);
+        line.append("\",\"endpoint\":\"").append(record.endpoint);
+        line.append("\",\"tenant\":");
+        appendString(tenants.getName(record.tenant));
+        line.append(",\"locale\":\"").append(Locales.TAGS[record.locale]);
+        line.append("\",\"client\":");
+        appendString(record.client);
+        line.append(",\"outcome\":\"").append(record.outcome);
+        line.append("\",\"micros\":").append(record.latencyNanos / 1000);
+
+        String[] names = paramNames(record.endpoint);
+        appendParam(names, 0, record.param1);
+        appendParam(names, 1, record.param2);
+        appendParam(names, 2, record.param3);
+        appendParam(names, 3, record.param4);
+        appendParam(names, 4, record.param5);
+        line.append("}\n");
+    }
+
+    private static String[] paramNames(String endpoint) {
+        if (endpoint == RequestEvent.MATCH || endpoint == RequestEvent.MATCH_BATCH
+                || endpoint == RequestEvent.MATCH_SOCKET) return MATCH_PARAMS;
+        if (endpoint == RequestEvent.PERSONALITY) return PERSONALITY_PARAMS;
+        if (endpoint == RequestEvent.DAILY) return DAILY_PARAMS;
+        if (endpoint == RequestEvent.SEARCH) return SEARCH_PARAMS;
+        if (endpoint == RequestEvent.MATCH_RANGES) return RANGES_PARAMS;
+        return INTRODUCTION_PARAMS;
+    }
+
+    private void appendParam(String[] names, int index, String value) {
+        if (index < names.length) {
+            line.append(",\"").append(names[index]).append("\":");
+            appendString(value);
+        }
+    }
+
+    // 參數是使用者輸入的，引號、反斜線和控制字元都要跳脫，一筆紀錄才不會被拆成好幾行
+    private void appendString(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    // 寫進目前的檔案，需要時先輪替；失敗就記錄錯誤、關掉檔案，下一批再重新開
+    private boolean write(StringBuilder text) {
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            if (channel != null && fileBytes > 0 && fileBytes + bytes.length > maxFileBytes) {
+                closeChannel();
+                rotate();
+            }
+            if (channel == null) {
+                openChannel();
+            }
+            ByteBuffer data = ByteBuffer.wrap(bytes);
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            fileBytes += bytes.length;
+            return true;
+        } catch (IOException e) {
+            log.error("無法寫入稽核紀錄：{}", e.toString());
+            closeChannel();
+            return false;
+        }
+    }
+
+    private void openChannel() throws IOException {
+        Files.createDirectories(directory);
+        channel = FileChannel.open(directory.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("無法關閉稽核紀錄檔：{}", e.toString());
+        }
+        channel = null;
+    }
+
+    // audit.log.(n-1) 刪掉，其他的編號往後移一個，audit.log 變成 audit.log.1
+    private void rotate() throws IOException {
+        Files.deleteIfExists(directory.resolve(FILE_NAME + "." + (maxFiles - 1)));
+        for (int i = maxFiles - 2; i >= 1; i--) {
+            Path source = directory.resolve(FILE_NAME + "." + i);
+            if (Files.exists(source)) {
+                Files.move(source, directory.resolve(FILE_NAME + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Path current = directory.resolve(FILE_NAME);
+        if (maxFiles > 1) {
+            Files.move(current, directory.resolve(FILE_NAME + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(current);
+        }
+    }
+
+    // 關閉時停止接受新紀錄，等寫入執行緒把緩衝區寫完
+    @Override
+    public void destroy() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(10_000);
+    }
+}
@@ -0,0 +1,104 @@
+package com.SAD_Project.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 這個class是稽核紀錄用的環狀緩衝區：很多請求執行緒同時寫入，只有一個背景執行緒讀出 (沒有鎖)
+// 每一格是事先建立好的 Record，寫入時只是填欄位，請求執行緒不用建立物件
+// 每一格有自己的序號 (Vyukov 的有界佇列)：
+//   序號 == 寫入位置           → 這格是空的，可以寫
+//   序號 == 寫入位置 + 1       → 這格寫好了，可以讀
+//   讀完後把序號設成 位置 + 容量 → 下一輪的寫入位置才能用
+// 寫入的人用 CAS 搶寫入位置，搶到之後填好欄位，最後才更新序號，讀的人看到序號就一定看得到欄位
+public class AuditRingBuffer {
+
+    // 一筆稽核紀錄，欄位只在「搶到這格、還沒發布」或「讀的人看到已發布、還沒還回去」時讀寫
+    public static final class Record {
+        public long timeMillis;     // 請求結束的時間
+        public long latencyNanos;   // 請求花了多久
+        public String endpoint;     // API 路徑 (RequestEvent 的常數)
+        public int tenant;          // 租戶編號
+        public int locale;          // 語言編號
+        public String client;       // 用戶端位址
+        public String outcome;      // 成功是 RequestEvent.OK，失敗是 ErrorCode 的名稱
+        public String param1;       // 請求參數，意義依 API 而定 (見 AuditLog)
+        public String param2;
+        public String param3;
+        public String param4;
+        public String param5;
+
+        // 讀完之後清掉參照，不要讓請求的字串一直留在緩衝區裡
+        void clear() {
+            endpoint = null;
+            client = null;
+            outcome = null;
+            param1 = param2 = param3 = param4 = param5 = null;
+        }
+    }
+
+    private final Record[] records;
+    private final AtomicLongArray sequences; // 每一格的序號
+    private final int mask;                  // 容量是 2 的次方，位置 & mask 就是格子編號
+
+    private final AtomicLong tail = new AtomicLong(); // 下一個寫入位置 (很多執行緒搶)
+    private long head;                                // 下一個讀取位置 (只有讀的執行緒用)
+
+    public AuditRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1) << 1); // 往上取到 2 的次方
+        this.records = new Record[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            records[i] = new Record();
+            sequences.set(i, i);
+        }
+    }
+
+    public int capacity() {
+        return records.length;
+    }
+
+    // 搶一個空格，緩衝區滿了就回傳 -1 (不等待)
+    // 搶到之後要填好 record(position) 的欄位，再呼叫 publish(position)
+    public long tryClaim() {
+        long position = tail.get();
+        while (true) {
+            long sequence = sequences.get((int) position & mask);
+            long difference = sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get(); // 被別人搶走，重新讀
+            } else if (difference < 0) {
+                return -1; // 這格還沒被讀走，緩衝區滿了
+            } else {
+                position = tail.get(); // 別人已經往前寫了，重新讀
+            }
+        }
+    }
+
+    public Record record(long position) {
+        return records[(int) position & mask];
+    }
+
+    // 寫好欄位之後發布，讀的人才看得到 (lazySet 是 release 寫入，前面的欄位一定先寫好)
+    public void publish(long position) {
+        sequences.lazySet((int) position & mask, position + 1);
+    }
+
+    // 讀出下一筆寫好的紀錄，沒有就回傳 null (只能由同一個讀的執行緒呼叫)
+    // 用完之後要呼叫 release()，那一格才能再寫
+    public Record peek() {
+        int index = (int) head & mask;
+        return sequences.get(index) == head + 1 ? records[index] : null;
+    }
+
+    // 把 peek 拿到的格子還回去
+    public void release() {
+        int index = (int) head & mask;
+        records[index].clear();
+        sequences.lazySet(index, head + records.length);
+        head++;
+    }
+}
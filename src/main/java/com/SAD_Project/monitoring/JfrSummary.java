@@ -0,0 +1,98 @@
+package com.SAD_Project.monitoring;
+
+import jdk.jfr.consumer.RecordedEvent; // 錄製檔裡的一個事件
+import jdk.jfr.consumer.RecordingFile; // 讀取 .jfr 錄製檔
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+// 這個小工具讀取 JFR 錄製檔，把 RequestEvent 和 PhaseEvent 整理成各 API、各階段的延遲分布
+// 只用到 JDK 內建的類別，所以不需要 Spring 的 classpath：
+//   jcmd <pid> JFR.start name=starsync duration=60s filename=recording.jfr
+//   java -cp target/classes com.SAD_Project.monitoring.JfrSummary recording.jfr
+public class JfrSummary {
+
+    private static final String REQUEST_EVENT = "com.SAD_Project.Request";
+    private static final String PHASE_EVENT = "com.SAD_Project.Phase";
+
+    // 每一組 (API、階段) 收集到的耗時 (奈秒)
+    private static class Durations {
+        private long[] values = new long[64];
+        private int count;
+        private final Map<String, Integer> outcomes = new TreeMap<>(); // 各種結果的次數
+
+        void add(long nanos, String outcome) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = nanos;
+            outcomes.merge(outcome == null ? "-" : outcome, 1, Integer::sum);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("用法：JfrSummary <recording.jfr>");
+            System.exit(1);
+        }
+
+        // key 是 "API 階段"，總耗時的階段名稱用 total，TreeMap 讓輸出依名稱排序
+        Map<String, Durations> groups = new TreeMap<>();
+
+        try (RecordingFile recording = new RecordingFile(Paths.get(args[0]))) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                String type = event.getEventType().getName();
+
+                String phase;
+                if (REQUEST_EVENT.equals(type)) {
+                    phase = "total";
+                } else if (PHASE_EVENT.equals(type)) {
+                    phase = event.getString("phase");
+                } else {
+                    continue; // 其他 JVM 內建的事件不處理
+                }
+
+                String key = event.getString("endpoint") + " " + phase;
+                groups.computeIfAbsent(key, k -> new Durations())
+                        .add(event.getDuration().toNanos(), event.getString("outcome"));
+            }
+        }
+
+        if (groups.isEmpty()) {
+            System.out.println("錄製檔裡沒有 StarSync 的請求事件");
+            return;
+        }
+
+        System.out.printf("%-36s %8s %10s %10s %10s %10s %10s  %s%n",
+                "endpoint / phase", "count", "mean(us)", "p50(us)", "p90(us)", "p99(us)", "max(us)", "outcomes");
+        for (Map.Entry<String, Durations> entry : groups.entrySet()) {
+            Durations durations = entry.getValue();
+            long[] sorted = Arrays.copyOf(durations.values, durations.count);
+            Arrays.sort(sorted);
+
+            long sum = 0;
+            for (long value : sorted) {
+                sum += value;
+            }
+
+            System.out.printf("%-36s %8d %10.1f %10.1f %10.1f %10.1f %10.1f  %s%n",
+                    entry.getKey(), sorted.length,
+                    sum / (double) sorted.length / 1000.0,
+                    percentile(sorted, 0.50) / 1000.0,
+                    percentile(sorted, 0.90) / 1000.0,
+                    percentile(sorted, 0.99) / 1000.0,
+                    sorted[sorted.length - 1] / 1000.0,
+                    durations.outcomes);
+        }
+    }
+
+    // 取已排序陣列的百分位數 (nearest-rank)
+    private static long percentile(long[] sorted, double fraction) {
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
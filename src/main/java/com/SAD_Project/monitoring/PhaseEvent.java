@@ -0,0 +1,54 @@
+package com.SAD_Project.monitoring;
+
+import jdk.jfr.Category; // JFR 事件分類
+import jdk.jfr.Description;
+import jdk.jfr.Event; // JFR 自訂事件的父類別
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// 這個class是 Java Flight Recorder 的自訂事件，記錄一個請求裡某個階段花了多少時間
+// 沒有開啟錄製時 shouldCommit() 直接回傳 false，物件也會被 JIT 的逃逸分析消除，幾乎沒有成本
+// 線上延遲變高時可以用 jcmd <pid> JFR.start 直接開始錄製，不用重新啟動
+@Name("com.SAD_Project.Phase")
+@Label("Request Phase")
+@Description("API 請求中單一階段的耗時")
+@Category({"StarSync", "Request"})
+@StackTrace(false)
+public class PhaseEvent extends Event {
+
+    // 階段名稱
+    public static final String PARSE = "parse";                // 解析日期 (配對時包含由日期推算星座)
+    public static final String SIGN_LOOKUP = "signLookup";     // 由日期或名稱找出星座
+    public static final String COMPUTE_MATCH = "computeMatch"; // 查配對結果
+    public static final String RENDER = "render";              // 組合個性分析文字
+    public static final String INDEX_LOOKUP = "indexLookup";   // 查全文索引 (特質搜尋)
+    public static final String SERIALIZE = "serialize";        // 轉成 JSON 位元組
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Outcome")
+    String outcome;
+
+    // 開始計時一個階段
+    public static PhaseEvent start(String endpoint, String phase) {
+        PhaseEvent event = new PhaseEvent();
+        event.endpoint = endpoint;
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    // 結束計時，只有在錄製中而且超過門檻時才真的寫入
+    public void finish(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
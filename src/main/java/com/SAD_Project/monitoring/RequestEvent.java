@@ -0,0 +1,54 @@
+package com.SAD_Project.monitoring;
+
+import jdk.jfr.Category; // JFR 事件分類
+import jdk.jfr.Description;
+import jdk.jfr.Event; // JFR 自訂事件的父類別
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// 這個class是 Java Flight Recorder 的自訂事件，記錄一個 API 請求從頭到尾的總耗時
+// 和 PhaseEvent 一樣，沒有錄製時幾乎沒有成本
+@Name("com.SAD_Project.Request")
+@Label("Request")
+@Description("API 請求的總耗時")
+@Category({"StarSync", "Request"})
+@StackTrace(false)
+public class RequestEvent extends Event {
+
+    // 有記錄的 API 路徑
+    public static final String MATCH = "/api/match";
+    public static final String MATCH_BATCH = "/api/match/batch";
+    public static final String MATCH_RANGES = "/api/match/ranges";
+    public static final String MATCH_SOCKET = "/ws/match";
+    public static final String PERSONALITY = "/api/personality";
+    public static final String INTRODUCTION = "/api/introduction";
+    public static final String DAILY = "/api/daily";
+    public static final String SEARCH = "/api/search";
+
+    // 成功時的結果，失敗時用 ErrorCode 的名稱
+    public static final String OK = "ok";
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Outcome")
+    String outcome;
+
+    // 開始計時一個請求
+    public static RequestEvent start(String endpoint) {
+        RequestEvent event = new RequestEvent();
+        event.endpoint = endpoint;
+        event.begin();
+        return event;
+    }
+
+    // 結束計時，只有在錄製中時才真的寫入
+    public void finish(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
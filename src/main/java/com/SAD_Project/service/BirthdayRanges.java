@@ -0,0 +1,171 @@
+package com.SAD_Project.service;
+
+import com.SAD_Project.util.ZodiacCalculator; // 星座的換日日期
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 這個class是配對的反查表：和某個生日配對分數 (或等級) 達到門檻的生日落在哪幾段日期 (/api/match/ranges)
+// 一個人的星座、性別和對方的性別決定一列 12 個分數，門檻只會決定「哪幾個星座符合」(12 個位元)，
+// 所以啟動時替每一列、每個門檻 (分數 0~100、5 個等級) 先算好符合的星座，同樣的星座組合只轉換一次日期範圍
+// 日期範圍用 ZodiacCalculator 的換星座日期逐日走過一整年 (包含 2/29)，相鄰的符合星座合併成一段
+// 範圍不跨年：魔羯座 (12/22 ~ 1/19) 符合時分成 1/1 ~ 1/19 和 12/22 ~ 12/31 兩段，依照日期排列
+// 查詢只要讀兩次陣列，建立之後不會再修改，可以給多個執行緒同時查詢
+public final class BirthdayRanges {
+
+    private static final int ROWS = 12 * MatchRuleCompiler.GENDER_SLOTS * MatchRuleCompiler.GENDER_SLOTS;
+    private static final int LEVELS = MatchRuleEngine.LEVELS.length;
+
+    // 一段連續的生日，from 和 to 都包含在內
+    public static final class Range {
+        private final String from;      // 開始日期 (M/d)
+        private final String to;        // 結束日期 (M/d)
+        private final int days;         // 有幾天 (2/29 也算一天)
+        private final int[] zodiacs;    // 這段日期包含的星座編號，依照日期排列
+
+        private Range(String from, String to, int days, int[] zodiacs) {
+            this.from = from;
+            this.to = to;
+            this.days = days;
+            this.zodiacs = zodiacs;
+        }
+
+        public String getFrom() { return from; }
+        public String getTo() { return to; }
+        public int getDays() { return days; }
+        public int[] getZodiacs() { return zodiacs; }
+    }
+
+    private final Range[][] lists;    // 不同的範圍列表 (編號 0 是空的)
+    private final short[][] byScore;  // 第一層是列 (星座, 性別, 對方性別)，第二層是最低分數 0~100，內容是 lists 的編號
+    private final short[][] byLevel;  // 第二層是最低等級 (LEVELS 的索引，0 最好)
+
+    private BirthdayRanges(Range[][] lists, short[][] byScore, short[][] byLevel) {
+        this.lists = lists;
+        this.byScore = byScore;
+        this.byLevel = byLevel;
+    }
+
+    // 用編譯好的規則建立反查表 (分數和等級都和 computeMatch 查到的一樣)
+    static BirthdayRanges build(MatchRuleCompiler.CompiledRules rules) {
+        Map<Integer, Integer> listByMask = new HashMap<>();
+        List<Range[]> lists = new ArrayList<>();
+        listByMask.put(0, 0);
+        lists.add(new Range[0]);
+
+        short[][] byScore = new short[ROWS][101];
+        short[][] byLevel = new short[ROWS][LEVELS];
+        for (int zodiac = 0; zodiac < 12; zodiac++) {
+            for (int gender = 0; gender < MatchRuleCompiler.GENDER_SLOTS; gender++) {
+                for (int partnerGender = 0; partnerGender < MatchRuleCompiler.GENDER_SLOTS; partnerGender++) {
+                    int row = row(zodiac, gender, partnerGender);
+                    int[] scores = new int[12];
+                    int[] levels = new int[12];
+                    for (int partner = 0; partner < 12; partner++) {
+                        int index = MatchRuleCompiler.index(zodiac, gender, partner, partnerGender);
+                        scores[partner] = rules.getScore(index);
+                        levels[partner] = rules.getLevel(index);
+                    }
+
+                    for (int minScore = 0; minScore <= 100; minScore++) {
+                        int mask = 0;
+                        for (int partner = 0; partner < 12; partner++) {
+                            if (scores[partner] >= minScore) {
+                                mask |= 1 << partner;
+                            }
+                        }
+                        byScore[row][minScore] = listFor(mask, listByMask, lists);
+                    }
+                    for (int minLevel = 0; minLevel < LEVELS; minLevel++) {
+                        int mask = 0;
+                        for (int partner = 0; partner < 12; partner++) {
+                            if (levels[partner] <= minLevel) {
+                                mask |= 1 << partner;
+                            }
+                        }
+                        byLevel[row][minLevel] = listFor(mask, listByMask, lists);
+                    }
+                }
+            }
+        }
+        return new BirthdayRanges(lists.toArray(new Range[0][]), byScore, byLevel);
+    }
+
+    // 和 (zodiacIndex, genderIndex) 配對、對方性別是 partnerGender 時分數至少 minScore 的生日範圍
+    // 性別編號：男 0、女 1、沒有填 2；回傳的是共用的陣列，呼叫的人不可以修改內容
+    public Range[] byScore(int zodiacIndex, int genderIndex, int partnerGender, int minScore) {
+        return lists[byScore[row(zodiacIndex, genderIndex, partnerGender)][minScore]];
+    }
+
+    // 和 byScore 一樣，只是門檻是等級 (minLevel 以上，0 是最好的大吉)
+    public Range[] byLevel(int zodiacIndex, int genderIndex, int partnerGender, int minLevel) {
+        return lists[byLevel[row(zodiacIndex, genderIndex, partnerGender)][minLevel]];
+    }
+
+    // 有幾種不同的範圍列表 (啟動時記在日誌裡)
+    public int distinctLists() {
+        return lists.length;
+    }
+
+    private static int row(int zodiac, int gender, int partnerGender) {
+        return (zodiac * MatchRuleCompiler.GENDER_SLOTS + gender) * MatchRuleCompiler.GENDER_SLOTS + partnerGender;
+    }
+
+    // 取得這個星座組合的範圍列表編號，第一次遇到才轉換成日期範圍
+    private static short listFor(int mask, Map<Integer, Integer> listByMask, List<Range[]> lists) {
+        Integer index = listByMask.get(mask);
+        if (index == null) {
+            index = lists.size();
+            listByMask.put(mask, index);
+            lists.add(ranges(mask));
+        }
+        return (short) (int) index;
+    }
+
+    // 從 1/1 逐日走到 12/31，把屬於符合星座的連續日期合併成一段 (mask 的位元是星座編號，測試直接呼叫)
+    static Range[] ranges(int mask) {
+        List<Range> ranges = new ArrayList<>();
+        int from = -1;              // 這一段的開始日期 (月份 << 5 | 日期，和 ZodiacCalculator 打包的格式一樣)，-1 表示不在段落裡
+        int last = 0;               // 這一段目前的最後一天
+        int days = 0;
+        int zodiacs = 0;            // 這一段已經包含幾個星座
+        int seen = 0;               // 這一段已經包含的星座 (位元)，全年都符合時魔羯座在頭尾各出現一次，只算一次
+        int[] order = new int[12];  // 這一段包含的星座，依照日期排列
+        for (int month = 1; month <= 12; month++) {
+            for (int day = 1; day <= ZodiacCalculator.daysInMonth(month); day++) {
+                int zodiac = ZodiacCalculator.calculateZodiacIndex(month, day);
+                if ((mask & 1 << zodiac) == 0) {
+                    if (from >= 0) {
+                        ranges.add(range(from, last, days, Arrays.copyOf(order, zodiacs)));
+                        from = -1;
+                    }
+                    continue;
+                }
+                if (from < 0) {
+                    from = month << 5 | day;
+                    days = 0;
+                    zodiacs = 0;
+                    seen = 0;
+                }
+                if ((seen & 1 << zodiac) == 0) {
+                    seen |= 1 << zodiac;
+                    order[zodiacs++] = zodiac;
+                }
+                last = month << 5 | day;
+                days++;
+            }
+        }
+        if (from >= 0) {
+            ranges.add(range(from, last, days, Arrays.copyOf(order, zodiacs)));
+        }
+        return ranges.toArray(new Range[0]);
+    }
+
+    private static Range range(int from, int to, int days, int[] zodiacs) {
+        return new Range(ZodiacCalculator.monthOf(from) + "/" + ZodiacCalculator.dayOf(from),
+                ZodiacCalculator.monthOf(to) + "/" + ZodiacCalculator.dayOf(to), days, zodiacs);
+    }
+}
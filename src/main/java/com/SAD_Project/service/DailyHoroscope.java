@@ -0,0 +1,283 @@
+package com.SAD_Project.service;
+
+import com.SAD_Project.util.JsonBodies;
+import com.SAD_Project.util.Locales; // 支援的語言
+import com.SAD_Project.util.PrecompressedBody; // 原始版 + 壓縮版的回應內容
+import org.slf4j.Logger; // 日誌
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean; // 關閉時停止排程
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value; // 讀取 application.properties 的設定
+import org.springframework.stereotype.Service; // 標記這是服務類別
+
+import java.time.Clock; // 目前時間 (測試時換成可以調整的時鐘)
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// 這個class負責每個星座的每日運勢 (/api/daily/{星座})
+// 內容從星座介紹的個性原文和配對表推出來：今天的幸運星座、配對分數、星級，還有男生、女生各一段今天的提醒
+// 同一天、同一個星座的內容是固定的，所以在前一天午夜前由背景執行緒產生好隔天的 JSON 並壓縮好，
+// 到了午夜換成新的一天；請求只要查陣列，快取期限也設到當天午夜
+// 午夜換日有兩個地方會做：排程在午夜執行一次，請求發現今天的內容已經過期也會自己換 (排程晚一點執行也不會回傳舊內容)
+// 下一天沒有產生好 (產生失敗或系統時鐘跳了好幾天) 時，過了午夜的第一個請求會當場產生今天的內容，同時來的請求等它產生好；
+// 當場產生也失敗才會繼續回傳前一天的內容 (這時快取期限已經是 0，用戶端和 CDN 不會存起來)，一分鐘後再試
+@Service
+public class DailyHoroscope implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(DailyHoroscope.class);
+
+    // 幸運星座從分數最高的幾個星座裡輪流挑
+    private static final int LUCKY_CANDIDATES = 3;
+
+    // 個性原文的段落之間是空一行
+    private static final String PARAGRAPH_SEPARATOR = "\n\n";
+
+    // Expires 標頭的日期格式 (RFC 1123，一定是 GMT)
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    // 某一天的所有內容，建立之後不會再修改
+    public static final class Day {
+        private final LocalDate date;
+        private final long startMillis;              // 這一天開始的時間
+        private final long endMillis;                // 隔天午夜，過了就換下一天
+        private final String expires;                // Expires 標頭 (就是 endMillis)
+        private final PrecompressedBody[][][] bodies; // 第一層租戶、第二層語言、第三層星座編號
+
+        private Day(LocalDate date, long startMillis, long endMillis, PrecompressedBody[][][] bodies) {
+            this.date = date;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.expires = HTTP_DATE.format(Instant.ofEpochMilli(endMillis));
+            this.bodies = bodies;
+        }
+
+        public LocalDate getDate() { return date; }
+        public String getExpires() { return expires; }
+
+        public PrecompressedBody getBody(int tenant, int locale, int zodiacIndex) {
+            return bodies[tenant][locale][zodiacIndex];
+        }
+
+        // 快取還可以存幾秒 (到午夜為止，已經過期就是 0)
+        public long maxAgeSeconds(long nowMillis) {
+            return Math.max(0, (endMillis - nowMillis) / 1000);
+        }
+    }
+
+    private final TenantRegistry tenants;
+    private final ZodiacIntroduction zodiacIntro;
+    private final MatchRuleEngine matchRuleEngine;
+    private final ZoneId zone;          // 用哪個時區的午夜換日
+    private final Clock clock;          // 排程和換日用的時鐘 (這個時區)
+    private final long prepareMillis;   // 午夜前多久開始產生隔天的內容
+
+    // 幸運星座的候選，第一層是租戶、第二層是星座編號，依照配對分數由高到低 (規則在啟動後不會變，算一次就好)
+    private final int[][][] luckyCandidates;
+
+    private final AtomicReference<Day> current = new AtomicReference<>(); // 正在使用的這一天
+    private volatile Day next;                                             // 已經產生好的下一天，還沒到就是 null
+    private long catchUpRetryMillis;                                       // 當場產生失敗後，到這個時間之前不再試 (catchUp 裡讀寫)
+
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public DailyHoroscope(
+            TenantRegistry tenants,
+            ZodiacIntroduction zodiacIntro,
+            MatchRuleEngine matchRuleEngine,
+            @Value("${horoscope.daily.zone:Asia/Taipei}") String zone,
+            @Value("${horoscope.daily.prepare-minutes:5}") long prepareMinutes) {
+        this(tenants, zodiacIntro, matchRuleEngine, Clock.system(ZoneId.of(zone)), prepareMinutes);
+    }
+
+    // 測試用：指定時鐘 (時區就是時鐘的時區)
+    DailyHoroscope(TenantRegistry tenants, ZodiacIntroduction zodiacIntro, MatchRuleEngine matchRuleEngine,
+                   Clock clock, long prepareMinutes) {
+        this.tenants = tenants;
+        this.zodiacIntro = zodiacIntro;
+        this.matchRuleEngine = matchRuleEngine;
+        this.zone = clock.getZone();
+        this.clock = clock;
+        this.prepareMillis = TimeUnit.MINUTES.toMillis(Math.max(0, prepareMinutes));
+        this.luckyCandidates = buildLuckyCandidates();
+
+        // 今天的內容在啟動時就產生好，之後每天由背景執行緒產生
+        Day today = build(LocalDate.now(clock));
+        current.set(today);
+        log.info("每日運勢已產生：{} ({} 個租戶 × {} 種語言 × 12 個星座)", today.date, tenants.size(), Locales.COUNT);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "daily-horoscope");
+            thread.setDaemon(true);
+            return thread;
+        });
+        schedulePrepare(today);
+    }
+
+    // 取得今天的內容 (只讀記憶體)
+    // 已經過了午夜而且下一天已經產生好，就在這裡換過去，用 compareAndSet 讓同時換的請求只換一次
+    public Day today(long nowMillis) {
+        Day day = current.get();
+        if (nowMillis < day.endMillis) {
+            return day;
+        }
+        Day upcoming = next;
+        if (upcoming != null && nowMillis >= upcoming.startMillis && nowMillis < upcoming.endMillis) {
+            current.compareAndSet(day, upcoming);
+            return upcoming;
+        }
+        return catchUp(nowMillis);
+    }
+
+    // 過了午夜下一天卻還沒產生好：當場產生 nowMillis 這一天，同時來的請求排隊，第一個產生好之後其他的直接用
+    // 產生失敗就回傳原本的內容 (已經過期)，一分鐘內不再試，免得每個請求都花時間重新產生
+    private synchronized Day catchUp(long nowMillis) {
+        Day day = current.get();
+        if (nowMillis < day.endMillis || nowMillis < catchUpRetryMillis) {
+            return day;
+        }
+        try {
+            Day built = build(Instant.ofEpochMilli(nowMillis).atZone(zone).toLocalDate());
+            current.set(built);
+            log.warn("每日運勢的下一天沒有準備好，請求時當場產生：{}", built.date);
+            return built;
+        } catch (RuntimeException e) {
+            catchUpRetryMillis = nowMillis + TimeUnit.MINUTES.toMillis(1);
+            log.error("每日運勢當場產生失敗，暫時回傳 {} 的內容", day.date, e);
+            return day;
+        }
+    }
+
+    // 排程在這一天的午夜前產生下一天的內容
+    private void schedulePrepare(Day day) {
+        long delay = day.endMillis - prepareMillis - clock.millis();
+        scheduler.schedule(() -> prepare(day), Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    // 產生下一天的內容，然後排程在午夜換日
+    void prepare(Day day) {
+        try {
+            next = build(day.date.plusDays(1));
+        } catch (RuntimeException e) {
+            log.error("每日運勢產生失敗，午夜換日時再產生一次", e);
+        }
+        scheduleRollOver(day);
+    }
+
+    private void scheduleRollOver(Day day) {
+        long delay = day.endMillis - clock.millis();
+        scheduler.schedule(() -> rollOver(day), Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    // 在 day 的午夜換日：排程的計時和系統時鐘可能差一點，還沒到午夜就等到午夜再換
+    // 請求可能已經先換好了；下一天沒有產生好 (產生失敗或系統時鐘跳了好幾天) 就在這裡補產生今天的內容
+    void rollOver(Day day) {
+        try {
+            if (clock.millis() < day.endMillis) {
+                scheduleRollOver(day);
+                return;
+            }
+
+            LocalDate today = LocalDate.now(clock);
+            Day active = current.get();
+            if (!active.date.equals(today)) {
+                Day upcoming = next;
+                if (upcoming == null || !upcoming.date.equals(today)) {
+                    upcoming = build(today);
+                }
+                current.compareAndSet(active, upcoming);
+            }
+            next = null;
+
+            Day now = current.get();
+            log.info("每日運勢換日：{}", now.date);
+            schedulePrepare(now);
+        } catch (RuntimeException e) {
+            log.error("每日運勢換日失敗，一分鐘後重試", e);
+            scheduler.schedule(() -> rollOver(day), 1, TimeUnit.MINUTES);
+        }
+    }
+
+    // 產生某一天所有租戶、語言、星座的 JSON 並壓縮 (測試會覆寫來模擬產生失敗)
+    Day build(LocalDate date) {
+        PrecompressedBody[][][] bodies = new PrecompressedBody[tenants.size()][Locales.COUNT][12];
+        for (int tenant = 0; tenant < tenants.size(); tenant++) {
+            for (int locale = 0; locale < Locales.COUNT; locale++) {
+                for (int zodiacIndex = 0; zodiacIndex < 12; zodiacIndex++) {
+                    bodies[tenant][locale][zodiacIndex] =
+                            PrecompressedBody.of(JsonBodies.toBytes(entry(date, tenant, locale, zodiacIndex)));
+                }
+            }
+        }
+        long start = date.atStartOfDay(zone).toInstant().toEpochMilli();
+        long end = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        return new Day(date, start, end, bodies);
+    }
+
+    // 一個星座某一天的運勢，用日期和星座編號決定挑哪一個候選和哪一段文字，同一天的結果一定一樣
+    private Map<String, Object> entry(LocalDate date, int tenant, int locale, int zodiacIndex) {
+        long seed = date.toEpochDay() + zodiacIndex; // 每個星座錯開，不會每天都挑到同一個編號
+
+        int lucky = luckyCandidates[tenant][zodiacIndex][(int) Math.floorMod(seed, (long) LUCKY_CANDIDATES)];
+        MatchRuleEngine.MatchResult match = matchRuleEngine.computeMatch(tenant, locale,
+                zodiacIndex, MatchRuleCompiler.GENDER_UNSPECIFIED, lucky, MatchRuleCompiler.GENDER_UNSPECIFIED);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("success", true);
+        body.put("date", date.toString());
+        body.put("zodiac", Locales.ZODIAC_NAMES[locale][zodiacIndex]);
+        body.put("luckyZodiac", Locales.ZODIAC_NAMES[locale][lucky]);
+        body.put("score", match.getScore());
+        body.put("level", match.getLevel());
+        body.put("stars", match.getStars());
+        body.put("male", paragraph(zodiacIntro.getPersonality(tenant, locale, zodiacIndex, 0), seed));
+        body.put("female", paragraph(zodiacIntro.getPersonality(tenant, locale, zodiacIndex, 1), seed));
+        return body;
+    }
+
+    // 從個性原文裡挑一段當今天的提醒
+    private static String paragraph(String personality, long seed) {
+        String[] paragraphs = personality.split(PARAGRAPH_SEPARATOR);
+        return paragraphs[(int) Math.floorMod(seed, (long) paragraphs.length)].trim();
+    }
+
+    // 每個租戶、每個星座配對分數最高的幾個星座 (不分性別，分數一樣時編號小的優先)
+    private int[][][] buildLuckyCandidates() {
+        int[][][] candidates = new int[tenants.size()][12][LUCKY_CANDIDATES];
+        for (int tenant = 0; tenant < tenants.size(); tenant++) {
+            for (int zodiacIndex = 0; zodiacIndex < 12; zodiacIndex++) {
+                boolean[] taken = new boolean[12];
+                for (int k = 0; k < LUCKY_CANDIDATES; k++) {
+                    int best = -1;
+                    int bestScore = -1;
+                    for (int other = 0; other < 12; other++) {
+                        int score = matchRuleEngine.computeMatch(tenant, Locales.ZH_TW, zodiacIndex,
+                                MatchRuleCompiler.GENDER_UNSPECIFIED, other, MatchRuleCompiler.GENDER_UNSPECIFIED).getScore();
+                        if (!taken[other] && score > bestScore) {
+                            best = other;
+                            bestScore = score;
+                        }
+                    }
+                    taken[best] = true;
+                    candidates[tenant][zodiacIndex][k] = best;
+                }
+            }
+        }
+        return candidates;
+    }
+
+    // 關閉時停止排程
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+}
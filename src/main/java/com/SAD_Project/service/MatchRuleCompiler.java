@@ -0,0 +1,389 @@
+package com.SAD_Project.service;
+
+import com.SAD_Project.util.ZodiacCalculator; // 星座名稱與編號
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// 這個class把配對規則檔 (rules/match-rules.txt) 編譯成平面的分數、等級、星級陣列
+// 所有規則只在載入時算一次，之後查詢配對只要讀陣列，不管規則有幾條都一樣快
+// 規則檔的格式寫在檔案開頭的註解裡
+public class MatchRuleCompiler {
+
+    public static final String DEFAULT_RULES = "rules/match-rules.txt"; // classpath 上預設的規則檔
+
+    // 性別的編號：男 0、女 1，沒有填性別用 2 (只套用沒有 gender 條件的規則)
+    public static final int GENDER_SLOTS = 3;
+    public static final int GENDER_UNSPECIFIED = 2;
+
+    // 四大元素和三種模式，星座編號除以 4 和除以 3 的餘數剛好就是它們的編號
+    private static final String[] ELEMENTS = {"火", "土", "風", "水"};
+    private static final String[] MODALITIES = {"本位", "固定", "變動"};
+    private static final String[] GENDERS = {"男", "女"};
+
+    // 每個等級的三段評價文字
+    public static final String[] TEXT_FIELDS = {"positive", "negative", "comment"};
+    public static final int TEXT_POSITIVE = 0;
+    public static final int TEXT_NEGATIVE = 1;
+    public static final int TEXT_COMMENT = 2;
+
+    private static final int ANY = -1; // 條件裡的 * (任何值)
+
+    // 條件的種類
+    private static final int SIGN = 0;
+    private static final int ELEMENT = 1;
+    private static final int MODALITY = 2;
+    private static final int GENDER = 3;
+
+    // 編譯好的規則，陣列索引是 ((星座1 * 3 + 性別1) * 12 + 星座2) * 3 + 性別2
+    // 建立之後不會再修改，可以給所有請求執行緒共用
+    public static final class CompiledRules {
+        private final byte[] scores;          // 配對分數 (0~100)
+        private final byte[] levels;          // 等級編號 (對應 MatchRuleEngine.LEVELS)
+        private final byte[] stars;           // 星級 (1~5)
+        private final int[] starThresholds;   // 5、4、3、2 顆星的分數門檻
+        private final int[] levelThresholds;  // 大吉、小吉、普通、小凶的分數門檻
+        private final String[] texts;         // 評價文字，索引是 等級編號 * 3 + 欄位 (TEXT_FIELDS)
+
+        private CompiledRules(byte[] scores, byte[] levels, byte[] stars,
+                              int[] starThresholds, int[] levelThresholds, String[] texts) {
+            this.scores = scores;
+            this.levels = levels;
+            this.stars = stars;
+            this.starThresholds = starThresholds;
+            this.levelThresholds = levelThresholds;
+            this.texts = texts;
+        }
+
+        public int getScore(int index) { return scores[index]; }
+        public int getLevel(int index) { return levels[index]; }
+        public int getStars(int index) { return stars[index]; }
+        public String getText(int level, int field) { return texts[level * TEXT_FIELDS.length + field]; }
+
+        // 用規則檔的門檻算星級和等級 (給不在表格裡的分數使用，例如星座加生肖的合併模式)
+        public int starsFor(int score) { return MatchRuleCompiler.starsFor(starThresholds, score); }
+        public int levelFor(int score) { return MatchRuleCompiler.levelFor(levelThresholds, score); }
+    }
+
+    // 計算平面陣列的索引
+    public static int index(int zodiac1, int gender1, int zodiac2, int gender2) {
+        return ((zodiac1 * GENDER_SLOTS + gender1) * 12 + zodiac2) * GENDER_SLOTS + gender2;
+    }
+
+    // 讀取 classpath 上的規則檔並編譯，可以傳入多個檔案，後面的檔案會覆蓋前面的設定
+    // (pair、stars、levels、text 以後面的為準，adjust 規則則是接在後面繼續套用)
+    public static CompiledRules compileResources(String... resources) {
+        Parser parser = new Parser();
+        for (String resource : resources) {
+            List<String> lines = readLines(resource);
+            if (lines == null) {
+                throw new IllegalStateException("找不到配對規則檔：" + resource);
+            }
+            parser.parse(resource, lines);
+        }
+        return parser.build(resources[resources.length - 1]);
+    }
+
+    // 編譯規則，name 只用在錯誤訊息裡
+    // 規則寫錯時丟出 IllegalStateException 並指出第幾行，讓應用程式在啟動時就失敗
+    public static CompiledRules compile(String name, List<String> lines) {
+        Parser parser = new Parser();
+        parser.parse(name, lines);
+        return parser.build(name);
+    }
+
+    // classpath 上有沒有這個檔案
+    public static boolean hasResource(String resource) {
+        return MatchRuleCompiler.class.getClassLoader().getResource(resource) != null;
+    }
+
+    // 讀取 classpath 上的文字檔，不存在就回傳 null
+    public static List<String> readLines(String resource) {
+        try (InputStream in = MatchRuleCompiler.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                return null;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            List<String> lines = new ArrayList<>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 把文字裡的 \n 換成真正的換行 (規則檔一行只能寫一條規則)
+    public static String unescape(String text) {
+        return text.replace("\\n", "\n");
+    }
+
+    // 逐行解析規則檔，把結果累積起來，最後一次展開成平面陣列
+    private static final class Parser {
+        private final int[] baseScores = new int[12 * 12];
+        private final int[] baseLevels = new int[12 * 12];
+        private int[] starThresholds = {85, 70, 50, 30};
+        private int[] levelThresholds = {86, 70, 41, 20};
+        private final String[] texts = new String[MatchRuleEngine.LEVELS.length * TEXT_FIELDS.length];
+        private final List<int[]> adjustments = new ArrayList<>(); // 依照檔案順序保存的 adjust 規則
+
+        Parser() {
+            Arrays.fill(baseScores, -1); // -1 代表還沒有設定
+        }
+
+        void parse(String name, List<String> lines) {
+            for (int lineNumber = 1; lineNumber <= lines.size(); lineNumber++) {
+                String line = lines.get(lineNumber - 1).trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue; // 空白行和註解
+                }
+
+                String[] tokens = line.split("\\s+");
+                switch (tokens[0]) {
+                    case "pair":
+                        expect(tokens, 5, name, lineNumber);
+                        int zodiac1 = lookup(ZodiacCalculator.ZODIAC_NAMES, tokens[1], false, name, lineNumber);
+                        int zodiac2 = lookup(ZodiacCalculator.ZODIAC_NAMES, tokens[2], false, name, lineNumber);
+                        int score = number(tokens[3], 0, 100, name, lineNumber);
+                        int level = lookup(MatchRuleEngine.LEVELS, tokens[4], false, name, lineNumber);
+                        // 配對是雙向的，兩個方向都要存
+                        baseScores[zodiac1 * 12 + zodiac2] = baseScores[zodiac2 * 12 + zodiac1] = score;
+                        baseLevels[zodiac1 * 12 + zodiac2] = baseLevels[zodiac2 * 12 + zodiac1] = level;
+                        break;
+
+                    case "stars":
+                        starThresholds = thresholds(tokens, name, lineNumber);
+                        break;
+
+                    case "levels":
+                        levelThresholds = thresholds(tokens, name, lineNumber);
+                        break;
+
+                    case "text":
+                        // 文字可能包含空白，所以取第三個欄位之後的整段
+                        String[] parts = line.split("\\s+", 4);
+                        if (parts.length != 4) {
+                            throw error(name, lineNumber, "text 的格式是 text <等級> <positive|negative|comment> <文字>");
+                        }
+                        int textLevel = lookup(MatchRuleEngine.LEVELS, parts[1], false, name, lineNumber);
+                        int field = lookup(TEXT_FIELDS, parts[2], false, name, lineNumber);
+                        texts[textLevel * TEXT_FIELDS.length + field] = unescape(parts[3]);
+                        break;
+
+                    case "adjust":
+                        adjustments.add(parseAdjustment(tokens, name, lineNumber));
+                        break;
+
+                    default:
+                        throw error(name, lineNumber, "不認得的規則「" + tokens[0] + "」");
+                }
+            }
+        }
+
+        CompiledRules build(String name) {
+            // 每一組星座配對都要有基本分數，每個等級都要有評價文字
+            for (int i = 0; i < baseScores.length; i++) {
+                if (baseScores[i] < 0) {
+                    throw new IllegalStateException(name + " 缺少配對資料：" + ZodiacCalculator.ZODIAC_NAMES[i / 12]
+                            + " " + ZodiacCalculator.ZODIAC_NAMES[i % 12]);
+                }
+            }
+            for (int i = 0; i < texts.length; i++) {
+                if (texts[i] == null) {
+                    throw new IllegalStateException(name + " 缺少評價文字：" + MatchRuleEngine.LEVELS[i / TEXT_FIELDS.length]
+                            + " " + TEXT_FIELDS[i % TEXT_FIELDS.length]);
+                }
+            }
+
+            // 把所有規則展開成平面陣列，每一格都先從基本分數開始，再依序套用 adjust 規則
+            int size = 12 * GENDER_SLOTS * 12 * GENDER_SLOTS;
+            byte[] scores = new byte[size];
+            byte[] levels = new byte[size];
+            byte[] stars = new byte[size];
+            for (int zodiac1 = 0; zodiac1 < 12; zodiac1++) {
+                for (int gender1 = 0; gender1 < GENDER_SLOTS; gender1++) {
+                    for (int zodiac2 = 0; zodiac2 < 12; zodiac2++) {
+                        for (int gender2 = 0; gender2 < GENDER_SLOTS; gender2++) {
+                            int base = baseScores[zodiac1 * 12 + zodiac2];
+                            int score = base;
+                            for (int[] adjustment : adjustments) {
+                                // 兩個人對調之後符合也算，但同一條規則只套用一次
+                                if (matches(adjustment, zodiac1, gender1, zodiac2, gender2)
+                                        || matches(adjustment, zodiac2, gender2, zodiac1, gender1)) {
+                                    score = adjustment[0] == '=' ? adjustment[1] : score + adjustment[1];
+                                }
+                            }
+                            score = Math.max(0, Math.min(100, score));
+
+                            // 分數沒有被改過就沿用規則檔寫的等級，改過才用門檻重新決定
+                            int level = score == base ? baseLevels[zodiac1 * 12 + zodiac2] : levelFor(levelThresholds, score);
+
+                            int index = index(zodiac1, gender1, zodiac2, gender2);
+                            scores[index] = (byte) score;
+                            levels[index] = (byte) level;
+                            stars[index] = (byte) starsFor(starThresholds, score);
+                        }
+                    }
+                }
+            }
+
+            return new CompiledRules(scores, levels, stars, starThresholds, levelThresholds, texts.clone());
+        }
+    }
+
+    // 解析 adjust 規則，結果是 {運算 ('+' 或 '='), 數值, 條件種類, 值1, 值2, 條件種類, 值1, 值2, ...}
+    private static int[] parseAdjustment(String[] tokens, String name, int lineNumber) {
+        if (tokens.length < 6 || !"when".equals(tokens[2])) {
+            throw error(name, lineNumber, "adjust 的格式是 adjust <+n|-n|=n> when <條件> [and <條件> ...]");
+        }
+
+        String amount = tokens[1];
+        int[] rule = new int[2 + tokens.length * 3]; // 一定夠放，最後再截掉多的部分
+        if (amount.startsWith("=")) {
+            rule[0] = '=';
+            rule[1] = number(amount.substring(1), 0, 100, name, lineNumber);
+        } else if (amount.startsWith("+") || amount.startsWith("-")) {
+            rule[0] = '+';
+            rule[1] = number(amount.substring(1), 0, 100, name, lineNumber) * (amount.charAt(0) == '-' ? -1 : 1);
+        } else {
+            throw error(name, lineNumber, "分數調整要用 +n、-n 或 =n 表示");
+        }
+
+        // 每個條件是三個字：種類 值1 值2，條件之間用 and 隔開
+        int position = 3;
+        int count = 0;
+        while (true) {
+            if (position + 3 > tokens.length) {
+                throw error(name, lineNumber, "條件需要兩個值");
+            }
+            int kind;
+            String[] values;
+            switch (tokens[position]) {
+                case "sign": kind = SIGN; values = ZodiacCalculator.ZODIAC_NAMES; break;
+                case "element": kind = ELEMENT; values = ELEMENTS; break;
+                case "modality": kind = MODALITY; values = MODALITIES; break;
+                case "gender": kind = GENDER; values = GENDERS; break;
+                default: throw error(name, lineNumber, "不認得的條件「" + tokens[position] + "」");
+            }
+            rule[2 + count * 3] = kind;
+            rule[3 + count * 3] = lookup(values, tokens[position + 1], true, name, lineNumber);
+            rule[4 + count * 3] = lookup(values, tokens[position + 2], true, name, lineNumber);
+            count++;
+            position += 3;
+
+            if (position == tokens.length) {
+                break;
+            }
+            if (!"and".equals(tokens[position])) {
+                throw error(name, lineNumber, "條件之間要用 and 連接");
+            }
+            position++;
+        }
+
+        return Arrays.copyOf(rule, 2 + count * 3);
+    }
+
+    // 檢查 (第一個人, 第二個人) 是否符合 adjust 規則的所有條件
+    private static boolean matches(int[] rule, int zodiac1, int gender1, int zodiac2, int gender2) {
+        for (int i = 2; i < rule.length; i += 3) {
+            int value1;
+            int value2;
+            switch (rule[i]) {
+                case SIGN: value1 = zodiac1; value2 = zodiac2; break;
+                case ELEMENT: value1 = zodiac1 % 4; value2 = zodiac2 % 4; break;
+                case MODALITY: value1 = zodiac1 % 3; value2 = zodiac2 % 3; break;
+                default:
+                    // 沒有填性別的配對不套用 gender 條件 (就算是 * 也一樣)
+                    if (gender1 == GENDER_UNSPECIFIED || gender2 == GENDER_UNSPECIFIED) {
+                        return false;
+                    }
+                    value1 = gender1;
+                    value2 = gender2;
+                    break;
+            }
+            if ((rule[i + 1] != ANY && rule[i + 1] != value1) || (rule[i + 2] != ANY && rule[i + 2] != value2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 用分數算星級 (1~5 顆星)
+    private static int starsFor(int[] thresholds, int score) {
+        for (int i = 0; i < thresholds.length; i++) {
+            if (score >= thresholds[i]) {
+                return 5 - i;
+            }
+        }
+        return 1;
+    }
+
+    // 用分數算等級編號，都不到門檻就是最後一個等級 (大凶)
+    private static int levelFor(int[] thresholds, int score) {
+        for (int i = 0; i < thresholds.length; i++) {
+            if (score >= thresholds[i]) {
+                return i;
+            }
+        }
+        return thresholds.length;
+    }
+
+    // 解析四個由高到低的門檻
+    private static int[] thresholds(String[] tokens, String name, int lineNumber) {
+        expect(tokens, 5, name, lineNumber);
+        int[] thresholds = new int[4];
+        for (int i = 0; i < 4; i++) {
+            thresholds[i] = number(tokens[i + 1], 0, 100, name, lineNumber);
+            if (i > 0 && thresholds[i] > thresholds[i - 1]) {
+                throw error(name, lineNumber, "門檻必須由高到低排列");
+            }
+        }
+        return thresholds;
+    }
+
+    // 在名稱陣列裡找編號，allowAny 為 true 時 * 代表任何值
+    private static int lookup(String[] names, String token, boolean allowAny, String name, int lineNumber) {
+        if (allowAny && "*".equals(token)) {
+            return ANY;
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(token)) {
+                return i;
+            }
+        }
+        throw error(name, lineNumber, "不認得的值「" + token + "」");
+    }
+
+    // 解析範圍內的整數
+    private static int number(String token, int min, int max, String name, int lineNumber) {
+        int value;
+        try {
+            value = Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw error(name, lineNumber, "「" + token + "」不是數字");
+        }
+        if (value < min || value > max) {
+            throw error(name, lineNumber, "數字必須在 " + min + " 到 " + max + " 之間");
+        }
+        return value;
+    }
+
+    // 檢查規則的欄位數量
+    private static void expect(String[] tokens, int count, String name, int lineNumber) {
+        if (tokens.length != count) {
+            throw error(name, lineNumber, tokens[0] + " 需要 " + (count - 1) + " 個參數");
+        }
+    }
+
+    private static IllegalStateException error(String name, int lineNumber, String message) {
+        return new IllegalStateException(name + " 第 " + lineNumber + " 行：" + message);
+    }
+}
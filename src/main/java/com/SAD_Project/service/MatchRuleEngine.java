@@ -1,50 +1,152 @@
 package com.SAD_Project.service;
 
+import com.SAD_Project.util.Locales; // 支援的語言
 import com.SAD_Project.util.ZodiacCalculator; // 引入計算星座的工具類別
+import org.slf4j.Logger; // 日誌
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired; // Spring 的自動注入註解
 import org.springframework.stereotype.Service; // Spring 的服務註解
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 // 這個class負責所有配對相關的計算
+// 配對分數、等級、星級門檻和評價文字都寫在規則檔 (rules/match-rules.txt)，啟動時由 MatchRuleCompiler 編譯成查詢表
+// 每個租戶 (合作品牌) 可以用 tenants/<名稱>/match-rules.txt 覆蓋部分規則，
+// 和預設規則一樣的表 (或列) 直接共用同一個陣列，所以多一個租戶只會多佔它不一樣的部分
+// 單一星座配對表是一個 short 陣列，用 (星座, 性別, 星座, 性別) 算出索引，查一次就好；性別有方向，也包含同性別的配對
+// 其他語言的評價文字放在 i18n/match-texts_<語言>.txt，疊在規則上面編成另一份查詢表，分數和合併配對表都和繁體中文共用
+// 每個結果也帶著這個分數在所有真實配對中的百分位和名次 (依照每個星座的出生人數加權)，在建表時就算好
+// 反查「哪些生日和這個人的分數達到門檻」用的 BirthdayRanges 也在建表時一起產生
 @Service
 public class MatchRuleEngine {
 
-    // 二層 Map，儲存星座配對資料
-    // 第一層的 key 是第一個星座，第二層的 key 是第二個星座
-    // 例如：matchDataStorage.get("牡羊座").get("獅子座") 可以取得配對結果
-    private final Map<String, Map<String, MatchResult>> matchDataStorage;
+    private static final Logger log = LoggerFactory.getLogger(MatchRuleEngine.class);
 
+    public static final String TENANT_RULES = "match-rules.txt"; // 租戶資料夾裡的規則檔名稱
+    public static final String LOCALE_TEXTS = "match-texts";     // 語言專用的評價文字檔 (i18n/match-texts_en.txt)
+
+    // 配對等級，由好到壞
+    public static final String[] LEVELS = {"大吉", "小吉", "普通", "小凶", "大凶"};
+
+    // 星座 + 生肖合併模式的分數比重 (星座 70%、生肖 30%)
+    private static final double WESTERN_WEIGHT = 0.7;
+
+    // 每列的長度：單一星座配對表是 12 個星座 × 3 種性別，合併配對表是 12 個星座 × 12 個生肖
+    private static final int MATCH_ROW = 12 * MatchRuleCompiler.GENDER_SLOTS;
+    private static final int COMBINED_ROW = 12 * 12;
+
+    // 一個租戶在一種語言的規則，建立之後不會再修改，可以安全地給所有請求執行緒共用
+    private static final class RuleSet {
+        private final MatchRuleCompiler.CompiledRules rules; // 編譯好的規則 (門檻、評價文字)
+        private final int locale;                            // 評價文字和等級名稱的語言
+
+        // 所有配對結果，編號是 分數 * 5 + 等級編號，同樣的結果全部共用同一個物件
+        // 兩種模式的分數分布不一樣 (同一個分數的百分位不同)，所以合併模式另外有一份
+        private final MatchResult[] results = new MatchResult[101 * LEVELS.length];
+        private final MatchResult[] combinedResults = new MatchResult[101 * LEVELS.length];
+
+        // 單一星座配對表，一共 (12 × 3)² = 1296 格，索引和 MatchRuleCompiler.index 一樣：
+        // ((星座1 * 3 + 性別1) * 12 + 星座2) * 3 + 性別2 (性別：男 0、女 1、沒有填 2)，內容是 results 的編號
+        // 性別有方向 (男牡羊配女獅子和女牡羊配男獅子是不同格)，也包含同性別的配對，查詢只要讀一次這個陣列
+        // 在 build 裡設定之後就不會再修改，和預設規則一樣時直接共用預設的陣列
+        private short[] matchTable;
+
+        // 星座 + 生肖的合併配對表，一共 (12 × 12)² = 20736 格
+        // 第一層是 星座1 * 12 + 生肖1，第二層是 星座2 * 12 + 生肖2，內容是 combinedResults 的編號
+        // 分數只有 0~100、等級只有 5 種，不同的結果最多 505 個，所以用 short 存編號就夠了
+        private final short[][] combinedRows = new short[COMBINED_ROW][];
+
+        // 反查表：和某個星座配對達到分數或等級門檻的生日範圍，和 matchTable 一起共用
+        private BirthdayRanges birthdayRanges;
+
+        private RuleSet(MatchRuleCompiler.CompiledRules rules, int locale) {
+            this.rules = rules;
+            this.locale = locale;
+        }
+    }
+
+    // 所有租戶的規則，第一層是 TenantRegistry 的租戶編號，第二層是 Locales 的語言編號
+    private final RuleSet[][] ruleSets;
+
+    // 只有預設規則 (建置時產生頁面使用)
     public MatchRuleEngine() {
-        this.matchDataStorage = allZodiacMatchData(); // 呼叫方法來建立所有星座的配對資料
+        this(new TenantRegistry());
+    }
+
+    @Autowired
+    public MatchRuleEngine(TenantRegistry tenants) {
+        ruleSets = new RuleSet[tenants.size()][Locales.COUNT];
+
+        // 先建立預設規則，其他租戶和語言都和它比對，一樣的部分直接共用
+        RuleSet[] defaults = ruleSets[TenantRegistry.DEFAULT_TENANT];
+        defaults[Locales.ZH_TW] = build(MatchRuleCompiler.compileResources(MatchRuleCompiler.DEFAULT_RULES),
+                Locales.ZH_TW, null);
+        for (int locale = 1; locale < Locales.COUNT; locale++) {
+            defaults[locale] = build(compileLocale(null, locale), locale, defaults[Locales.ZH_TW]);
+        }
+        log.info("生日範圍反查表：{} 種不同的範圍列表", defaults[Locales.ZH_TW].birthdayRanges.distinctLists());
+
+        for (int tenant = 1; tenant < tenants.size(); tenant++) {
+            String name = tenants.getName(tenant);
+            String resource = TenantRegistry.resourcePath(name, TENANT_RULES);
+            for (int locale = 0; locale < Locales.COUNT; locale++) {
+                if (!MatchRuleCompiler.hasResource(resource)
+                        && (locale == Locales.ZH_TW || !MatchRuleCompiler.hasResource(tenantLocaleResource(name, locale)))) {
+                    ruleSets[tenant][locale] = defaults[locale]; // 沒有自己的規則檔，整份共用預設規則
+                    continue;
+                }
+
+                // 租戶的規則檔疊在預設規則上面，只要寫不一樣的部分
+                MatchRuleCompiler.CompiledRules rules = locale == Locales.ZH_TW
+                        ? MatchRuleCompiler.compileResources(MatchRuleCompiler.DEFAULT_RULES, resource)
+                        : compileLocale(name, locale);
+                ruleSets[tenant][locale] = build(rules, locale, defaults[locale]);
+            }
+            log.info("租戶 {} 的配對規則：單一星座配對表{}和預設規則共用，{}/{} 列合併配對表和預設規則共用",
+                    name,
+                    ruleSets[tenant][Locales.ZH_TW].matchTable == defaults[Locales.ZH_TW].matchTable ? "" : "沒有",
+                    countShared(ruleSets[tenant][Locales.ZH_TW].combinedRows, defaults[Locales.ZH_TW].combinedRows),
+                    COMBINED_ROW);
+        }
     }
 
     // 這個內部類別用來儲存配對的結果資料
-    public static class MatchResult {
-        private int score;       // 配對分數
-        private String level;    // 等級（大吉、小吉、普通、小凶、大凶）
-        private int stars;       // 星級
-        private String pros; // 優點
-        private String cons; // 缺點
-        private String comment;  // 評語
-
-        // 建構子，建立時只需要分數和等級
-        public MatchResult(int score, String level) {
+    // 所有欄位都是 final，建立時一次設定好，之後不能修改
+    public static final class MatchResult {
+        private final int score;       // 配對分數
+        private final String level;    // 等級（大吉、小吉、普通、小凶、大凶，英文是 Excellent ~ Bad）
+        private final int levelIndex;  // 等級編號 (LEVELS 的索引)，也是評價文字的編號
+        private final int stars;       // 星級
+        private final String pros; // 優點
+        private final String cons; // 缺點
+        private final String comment;  // 評語
+        private final int percentile;  // 這個分數在所有真實配對中的百分位 (0~100，越高越好)
+        private final int rank;        // 這個分數在所有組合中的名次 (比它高分的組合數 + 1，同分同名次)
+
+        public MatchResult(int score, String level, int levelIndex, int stars, String pros, String cons,
+                           String comment, int percentile, int rank) {
             this.score = score;
             this.level = level;
+            this.levelIndex = levelIndex;
+            this.stars = stars;
+            this.pros = pros;
+            this.cons = cons;
+            this.comment = comment;
+            this.percentile = percentile;
+            this.rank = rank;
         }
 
-        //getter 和 setter 方法
+        //getter 方法
         public int getScore() { return score; }
         public String getLevel() { return level; }
+        public int getLevelIndex() { return levelIndex; }
         public int getStars() { return stars; }
         public String getPros() { return pros; }
         public String getCons() { return cons; }
         public String getComment() { return comment; }
-
-        public void setStars(int stars) { this.stars = stars; }
-        public void setPros(String pros) { this.pros = pros; }
-        public void setCons(String cons) { this.cons = cons; }
-        public void setComment(String comment) { this.comment = comment; }
+        public int getPercentile() { return percentile; }
+        public int getRank() { return rank; }
     }
 
     // 根據日期算星座 (從 AnalysisController 移入)
@@ -57,201 +159,244 @@ public class MatchRuleEngine {
         return ZodiacCalculator.calculateZodiacFromBirthDate(birthDate); // 使用工具類別來計算星座
     }
 
-    // 算配對結果
+    // 用星座名稱算配對結果
     public MatchResult computeMatch(String zodiac1, String zodiac2) {
-        if (zodiac1 == null || zodiac2 == null) {
-            return null;
-        }
+        return computeMatch(ZodiacCalculator.zodiacIndex(zodiac1), ZodiacCalculator.zodiacIndex(zodiac2));
+    }
+
+    // 用星座編號算配對結果 (預設規則、不考慮性別)，只要讀一次陣列
+    // 編號不在 0~11 之間就回傳 null
+    public MatchResult computeMatch(int zodiacIndex1, int zodiacIndex2) {
+        return computeMatch(TenantRegistry.DEFAULT_TENANT, zodiacIndex1, MatchRuleCompiler.GENDER_UNSPECIFIED,
+                zodiacIndex2, MatchRuleCompiler.GENDER_UNSPECIFIED);
+    }
+
+    // 用星座編號和性別編號算配對結果 (繁體中文)
+    public MatchResult computeMatch(int tenant, int zodiacIndex1, int genderIndex1, int zodiacIndex2, int genderIndex2) {
+        return computeMatch(tenant, Locales.ZH_TW, zodiacIndex1, genderIndex1, zodiacIndex2, genderIndex2);
+    }
 
-        // 檢查這兩個星座是否在資料庫裡面
-        if (!matchDataStorage.containsKey(zodiac1) || !matchDataStorage.containsKey(zodiac2)) {
+    // 用星座編號和性別編號 (男 0、女 1、沒有填 2) 算配對結果，規則檔裡和性別有關的調整也會算進去
+    // tenant 是 TenantRegistry 的租戶編號，locale 是 Locales 的語言編號，任何一個編號超出範圍就回傳 null
+    public MatchResult computeMatch(int tenant, int locale, int zodiacIndex1, int genderIndex1,
+                                    int zodiacIndex2, int genderIndex2) {
+        if (tenant < 0 || tenant >= ruleSets.length || locale < 0 || locale >= Locales.COUNT
+                || zodiacIndex1 < 0 || zodiacIndex1 >= 12 || zodiacIndex2 < 0 || zodiacIndex2 >= 12
+                || genderIndex1 < 0 || genderIndex1 >= MatchRuleCompiler.GENDER_SLOTS
+                || genderIndex2 < 0 || genderIndex2 >= MatchRuleCompiler.GENDER_SLOTS) {
             return null;
         }
 
-        // 從資料庫取得配對結果
-        // 因為配對是雙向的，所以 zodiac1 和 zodiac2 的順序可以互換
-        return matchDataStorage.get(zodiac1).get(zodiac2);
+        // 兩個人對調的格子內容一樣 (規則編譯時兩個方向都算過)，所以 zodiac1 和 zodiac2 的順序可以互換
+        RuleSet ruleSet = ruleSets[tenant][locale];
+        return ruleSet.results[ruleSet.matchTable[
+                MatchRuleCompiler.index(zodiacIndex1, genderIndex1, zodiacIndex2, genderIndex2)]];
     }
 
-    // 初始化配對矩陣
-    // 這個方法會建立所有星座之間的配對資料
-    private Map<String, Map<String, MatchResult>> allZodiacMatchData() {
+    // 用星座編號和生肖編號算合併模式的配對結果 (預設規則)
+    public MatchResult computeCombinedMatch(int zodiacIndex1, int animalIndex1, int zodiacIndex2, int animalIndex2) {
+        return computeCombinedMatch(TenantRegistry.DEFAULT_TENANT, zodiacIndex1, animalIndex1, zodiacIndex2, animalIndex2);
+    }
 
-        Map<String, Map<String, MatchResult>> individualMatchDataMap = new HashMap<>();  // 建立二層 Map 來存配對資料
+    // 用星座編號和生肖編號算合併模式的配對結果 (繁體中文)
+    public MatchResult computeCombinedMatch(int tenant, int zodiacIndex1, int animalIndex1,
+                                            int zodiacIndex2, int animalIndex2) {
+        return computeCombinedMatch(tenant, Locales.ZH_TW, zodiacIndex1, animalIndex1, zodiacIndex2, animalIndex2);
+    }
 
-        String[] zodiacs = {"牡羊座", "金牛座", "雙子座", "巨蟹座", "獅子座",
-                "處女座", "天秤座", "天蠍座", "射手座", "魔羯座",
-                "水瓶座", "雙魚座"};
+    // 用星座編號和生肖編號算合併模式的配對結果，和 computeMatch 一樣只要查表
+    // 任何一個編號超出範圍就回傳 null
+    public MatchResult computeCombinedMatch(int tenant, int locale, int zodiacIndex1, int animalIndex1,
+                                            int zodiacIndex2, int animalIndex2) {
+        if (tenant < 0 || tenant >= ruleSets.length || locale < 0 || locale >= Locales.COUNT
+                || zodiacIndex1 < 0 || zodiacIndex1 >= 12 || animalIndex1 < 0 || animalIndex1 >= 12
+                || zodiacIndex2 < 0 || zodiacIndex2 >= 12 || animalIndex2 < 0 || animalIndex2 >= 12) {
+            return null;
+        }
 
-        // 先為每個星座建立一個空的 Map, 把配對資料放進去
-        for (String zodiac : zodiacs) {
-            individualMatchDataMap.put(zodiac, new HashMap<>());
+        RuleSet ruleSet = ruleSets[tenant][locale];
+        return ruleSet.combinedResults[ruleSet.combinedRows[zodiacIndex1 * 12 + animalIndex1][zodiacIndex2 * 12 + animalIndex2]];
+    }
+
+    // 取得某個租戶的生日範圍反查表 (/api/match/ranges)，租戶編號超出範圍就回傳 null
+    // 範圍只和分數、等級有關，和語言無關，所以都用繁體中文那份
+    public BirthdayRanges getBirthdayRanges(int tenant) {
+        if (tenant < 0 || tenant >= ruleSets.length) {
+            return null;
         }
+        return ruleSets[tenant][Locales.ZH_TW].birthdayRanges;
+    }
 
-        // 開始加配對資料
-        addMatch(individualMatchDataMap, "牡羊座", "牡羊座", 75, "小吉");
-        addMatch(individualMatchDataMap, "牡羊座", "金牛座", 63, "普通");
-        addMatch(individualMatchDataMap, "牡羊座", "雙子座", 74, "小吉");
-        addMatch(individualMatchDataMap, "牡羊座", "巨蟹座", 47, "普通");
-        addMatch(individualMatchDataMap, "牡羊座", "獅子座", 90, "大吉");
-        addMatch(individualMatchDataMap, "牡羊座", "處女座", 42, "普通");
-        addMatch(individualMatchDataMap, "牡羊座", "天秤座", 62, "普通");
-        addMatch(individualMatchDataMap, "牡羊座", "天蠍座", 48, "普通");
-        addMatch(individualMatchDataMap, "牡羊座", "射手座", 87, "大吉");
-        addMatch(individualMatchDataMap, "牡羊座", "魔羯座", 38, "小凶");
-        addMatch(individualMatchDataMap, "牡羊座", "水瓶座", 68, "普通");
-        addMatch(individualMatchDataMap, "牡羊座", "雙魚座", 29, "小凶");
-
-        addMatch(individualMatchDataMap, "金牛座", "金牛座", 86, "大吉");
-        addMatch(individualMatchDataMap, "金牛座", "雙子座", 23, "小凶");
-        addMatch(individualMatchDataMap, "金牛座", "巨蟹座", 91, "大吉");
-        addMatch(individualMatchDataMap, "金牛座", "獅子座", 29, "小凶");
-        addMatch(individualMatchDataMap, "金牛座", "處女座", 73, "小吉");
-        addMatch(individualMatchDataMap, "金牛座", "天秤座", 33, "小凶");
-        addMatch(individualMatchDataMap, "金牛座", "天蠍座", 89, "大吉");
-        addMatch(individualMatchDataMap, "金牛座", "射手座", 31, "小凶");
-        addMatch(individualMatchDataMap, "金牛座", "魔羯座", 89, "大吉");
-        addMatch(individualMatchDataMap, "金牛座", "水瓶座", 11, "大凶");
-        addMatch(individualMatchDataMap, "金牛座", "雙魚座", 88, "大吉");
-
-        addMatch(individualMatchDataMap, "雙子座", "雙子座", 83, "小吉");
-        addMatch(individualMatchDataMap, "雙子座", "巨蟹座", 21, "小凶");
-        addMatch(individualMatchDataMap, "雙子座", "獅子座", 82, "小吉");
-        addMatch(individualMatchDataMap, "雙子座", "處女座", 40, "小凶");
-        addMatch(individualMatchDataMap, "雙子座", "天秤座", 78, "小吉");
-        addMatch(individualMatchDataMap, "雙子座", "天蠍座", 15, "大凶");
-        addMatch(individualMatchDataMap, "雙子座", "射手座", 92, "大吉");
-        addMatch(individualMatchDataMap, "雙子座", "魔羯座", 15, "大凶");
-        addMatch(individualMatchDataMap, "雙子座", "水瓶座", 85, "小吉");
-        addMatch(individualMatchDataMap, "雙子座", "雙魚座", 10, "大凶");
-
-        addMatch(individualMatchDataMap, "巨蟹座", "巨蟹座", 85, "小吉");
-        addMatch(individualMatchDataMap, "巨蟹座", "獅子座", 29, "小凶");
-        addMatch(individualMatchDataMap, "巨蟹座", "處女座", 77, "小吉");
-        addMatch(individualMatchDataMap, "巨蟹座", "天秤座", 28, "小凶");
-        addMatch(individualMatchDataMap, "巨蟹座", "天蠍座", 79, "小吉");
-        addMatch(individualMatchDataMap, "巨蟹座", "射手座", 27, "小凶");
-        addMatch(individualMatchDataMap, "巨蟹座", "魔羯座", 84, "小吉");
-        addMatch(individualMatchDataMap, "巨蟹座", "水瓶座", 31, "小凶");
-        addMatch(individualMatchDataMap, "巨蟹座", "雙魚座", 72, "小吉");
-
-        addMatch(individualMatchDataMap, "獅子座", "獅子座", 78, "小吉");
-        addMatch(individualMatchDataMap, "獅子座", "處女座", 35, "小凶");
-        addMatch(individualMatchDataMap, "獅子座", "天秤座", 75, "小吉");
-        addMatch(individualMatchDataMap, "獅子座", "天蠍座", 29, "小凶");
-        addMatch(individualMatchDataMap, "獅子座", "射手座", 75, "小吉");
-        addMatch(individualMatchDataMap, "獅子座", "魔羯座", 27, "小凶");
-        addMatch(individualMatchDataMap, "獅子座", "水瓶座", 89, "大吉");
-        addMatch(individualMatchDataMap, "獅子座", "雙魚座", 14, "大凶");
-
-        addMatch(individualMatchDataMap, "處女座", "處女座", 81, "小吉");
-        addMatch(individualMatchDataMap, "處女座", "天秤座", 65, "普通");
-        addMatch(individualMatchDataMap, "處女座", "天蠍座", 76, "小吉");
-        addMatch(individualMatchDataMap, "處女座", "射手座", 32, "小凶");
-        addMatch(individualMatchDataMap, "處女座", "魔羯座", 77, "小吉");
-        addMatch(individualMatchDataMap, "處女座", "水瓶座", 30, "小凶");
-        addMatch(individualMatchDataMap, "處女座", "雙魚座", 86, "大吉");
-
-        addMatch(individualMatchDataMap, "天秤座", "天秤座", 80, "小吉");
-        addMatch(individualMatchDataMap, "天秤座", "天蠍座", 29, "小凶");
-        addMatch(individualMatchDataMap, "天秤座", "射手座", 71, "小吉");
-        addMatch(individualMatchDataMap, "天秤座", "魔羯座", 34, "小凶");
-        addMatch(individualMatchDataMap, "天秤座", "水瓶座", 68, "普通");
-        addMatch(individualMatchDataMap, "天秤座", "雙魚座", 50, "普通");
-
-        addMatch(individualMatchDataMap, "天蠍座", "天蠍座", 66, "普通");
-        addMatch(individualMatchDataMap, "天蠍座", "射手座", 30, "小凶");
-        addMatch(individualMatchDataMap, "天蠍座", "魔羯座", 64, "普通");
-        addMatch(individualMatchDataMap, "天蠍座", "水瓶座", 30, "小凶");
-        addMatch(individualMatchDataMap, "天蠍座", "雙魚座", 81, "小吉");
-
-        addMatch(individualMatchDataMap, "射手座", "射手座", 74, "小吉");
-        addMatch(individualMatchDataMap, "射手座", "魔羯座", 38, "小凶");
-        addMatch(individualMatchDataMap, "射手座", "水瓶座", 83, "小吉");
-        addMatch(individualMatchDataMap, "射手座", "雙魚座", 50, "普通");
-
-        addMatch(individualMatchDataMap, "魔羯座", "魔羯座", 62, "普通");
-        addMatch(individualMatchDataMap, "魔羯座", "水瓶座", 37, "小凶");
-        addMatch(individualMatchDataMap, "魔羯座", "雙魚座", 76, "小吉");
-
-        addMatch(individualMatchDataMap, "水瓶座", "水瓶座", 74, "小吉");
-        addMatch(individualMatchDataMap, "水瓶座", "雙魚座", 38, "小凶");
-
-        addMatch(individualMatchDataMap, "雙魚座", "雙魚座", 73, "小吉");
-
-        return individualMatchDataMap;
+    // 取得某個租戶某種語言、某個等級的評價文字 (field 是 MatchRuleCompiler.TEXT_POSITIVE、TEXT_NEGATIVE 或 TEXT_COMMENT)
+    // 評價文字只和等級有關，二進位格式的配對結果只帶等級編號，需要文字的客戶端用這個表對照
+    public String getText(int tenant, int locale, int level, int field) {
+        return ruleSets[tenant][locale].rules.getText(level, field);
     }
 
-    // 加配對資料，雙向都要加，並直接計算評價
-    private void addMatch(Map<String, Map<String, MatchResult>> matrix,
-                          String zodiac1, String zodiac2, int score, String level) {
+    // 編譯某個語言的規則：預設規則、租戶規則、語言的評價文字、租戶自己的語言檔依序疊上去
+    // tenantName 是 null 時只有預設規則
+    private static MatchRuleCompiler.CompiledRules compileLocale(String tenantName, int locale) {
+        List<String> resources = new ArrayList<>();
+        resources.add(MatchRuleCompiler.DEFAULT_RULES);
+        if (tenantName != null && MatchRuleCompiler.hasResource(TenantRegistry.resourcePath(tenantName, TENANT_RULES))) {
+            resources.add(TenantRegistry.resourcePath(tenantName, TENANT_RULES));
+        }
+        resources.add(Locales.resourcePath(LOCALE_TEXTS, locale));
+        if (tenantName != null && MatchRuleCompiler.hasResource(tenantLocaleResource(tenantName, locale))) {
+            resources.add(tenantLocaleResource(tenantName, locale));
+        }
+        return MatchRuleCompiler.compileResources(resources.toArray(new String[0]));
+    }
 
-        MatchResult result = new MatchResult(score, level); // 建立配對結果物件
+    // 租戶自己的語言評價文字，例如 tenants/brand-a/match-texts_en.txt
+    private static String tenantLocaleResource(String tenantName, int locale) {
+        return TenantRegistry.resourcePath(tenantName, LOCALE_TEXTS + "_" + Locales.TAGS[locale] + ".txt");
+    }
 
-        Map<String, String> evaluation = getEvaluation(level); // 根據等級取得評價文字（優點、缺點、評語）
-        result.setStars(calculateStars(score)); // 根據分數計算星級
-        result.setPros(evaluation.get("positive"));
-        result.setCons(evaluation.get("negative"));
-        result.setComment(evaluation.get("comment"));
+    // 把編譯好的規則展開成查詢表，啟動時每個租戶的每種語言跑一次
+    // base 不是 null 時，和 base 完全一樣的列、結果物件都直接共用 base 的
+    private static RuleSet build(MatchRuleCompiler.CompiledRules rules, int locale, RuleSet base) {
+        RuleSet ruleSet = new RuleSet(rules, locale);
+
+        // 先算出兩種模式所有組合的分數和權重，得到每個分數的百分位和名次
+        // 單一星座模式用不考慮性別的 12×12 分數，權重是兩個星座的出生比例相乘
+        double[] weights = ZodiacCalculator.BIRTH_WEIGHTS;
+        int[] westernScores = new int[12 * 12];
+        double[] westernWeights = new double[12 * 12];
+        for (int zodiac1 = 0; zodiac1 < 12; zodiac1++) {
+            for (int zodiac2 = 0; zodiac2 < 12; zodiac2++) {
+                westernScores[zodiac1 * 12 + zodiac2] = rules.getScore(MatchRuleCompiler.index(
+                        zodiac1, MatchRuleCompiler.GENDER_UNSPECIFIED, zodiac2, MatchRuleCompiler.GENDER_UNSPECIFIED));
+                westernWeights[zodiac1 * 12 + zodiac2] = weights[zodiac1] * weights[zodiac2];
+            }
+        }
+        int[][] westernRanks = scoreRanks(westernScores, westernWeights, 12);
+
+        // 合併模式的星座部分用不考慮性別的分數，生肖每年輪一次，所以 12 個生肖的權重都一樣
+        int[] combinedScores = new int[COMBINED_ROW * COMBINED_ROW];
+        double[] combinedWeights = new double[COMBINED_ROW * COMBINED_ROW];
+        for (int row = 0; row < COMBINED_ROW; row++) {
+            for (int column = 0; column < COMBINED_ROW; column++) {
+                int western = westernScores[(row / 12) * 12 + column / 12];
+                int chinese = animalScore(row % 12, column % 12);
+                combinedScores[row * COMBINED_ROW + column] =
+                        (int) Math.round(WESTERN_WEIGHT * western + (1 - WESTERN_WEIGHT) * chinese);
+                combinedWeights[row * COMBINED_ROW + column] = westernWeights[(row / 12) * 12 + column / 12] / 144;
+            }
+        }
+        int[][] combinedRanks = scoreRanks(combinedScores, combinedWeights, COMBINED_ROW);
+
+        // 單一星座配對表 (索引就是編譯好的規則陣列的索引)
+        short[] table = new short[MATCH_ROW * MATCH_ROW];
+        for (int index = 0; index < table.length; index++) {
+            int score = rules.getScore(index);
+            int level = rules.getLevel(index);
+            result(ruleSet, ruleSet.results, base != null ? base.results : null,
+                    score, level, rules.getStars(index), westernRanks[0][score], westernRanks[1][score]);
+            table[index] = (short) (score * LEVELS.length + level);
+        }
+        ruleSet.matchTable = base != null && Arrays.equals(table, base.matchTable) ? base.matchTable : table;
+
+        // 生日範圍反查表 (分數和等級都一樣時直接共用)
+        ruleSet.birthdayRanges = base != null && ruleSet.matchTable == base.matchTable
+                ? base.birthdayRanges : BirthdayRanges.build(rules);
+
+        // 星座 + 生肖的合併配對表
+        for (int zodiac1 = 0; zodiac1 < 12; zodiac1++) {
+            for (int animal1 = 0; animal1 < 12; animal1++) {
+                int row = zodiac1 * 12 + animal1;
+                short[] cells = new short[COMBINED_ROW];
+                for (int column = 0; column < COMBINED_ROW; column++) {
+                    int score = combinedScores[row * COMBINED_ROW + column];
+                    int level = rules.levelFor(score);
+
+                    result(ruleSet, ruleSet.combinedResults, base != null ? base.combinedResults : null,
+                            score, level, rules.starsFor(score), combinedRanks[0][score], combinedRanks[1][score]);
+                    cells[column] = (short) (score * LEVELS.length + level);
+                }
+                ruleSet.combinedRows[row] = base != null && Arrays.equals(cells, base.combinedRows[row])
+                        ? base.combinedRows[row] : cells;
+            }
+        }
 
-        // 因為配對是雙向的，所以兩個方向都要存
-        // 例如：牡羊座配獅子座 和 獅子座配牡羊座 結果一樣
-        matrix.get(zodiac1).put(zodiac2, result);
-        matrix.get(zodiac2).put(zodiac1, result);
+        return ruleSet;
+    }
+
+    // 取得共用的結果物件，同樣的分數和等級只建立一次 (results 是 ruleSet 的 results 或 combinedResults)
+    // 預設規則已經有語言、星級、評價文字、百分位和名次都一樣的結果物件時，直接共用
+    private static MatchResult result(RuleSet ruleSet, MatchResult[] results, MatchResult[] baseResults,
+                                      int score, int level, int stars, int percentile, int rank) {
+        int index = score * LEVELS.length + level;
+        if (results[index] == null) {
+            MatchRuleCompiler.CompiledRules rules = ruleSet.rules;
+            String label = Locales.LEVEL_LABELS[ruleSet.locale][level];
+            String pros = rules.getText(level, MatchRuleCompiler.TEXT_POSITIVE);
+            String cons = rules.getText(level, MatchRuleCompiler.TEXT_NEGATIVE);
+            String comment = rules.getText(level, MatchRuleCompiler.TEXT_COMMENT);
+
+            MatchResult shared = baseResults != null ? baseResults[index] : null;
+            if (shared != null && shared.getLevel().equals(label) && shared.getStars() == stars
+                    && shared.getPros().equals(pros) && shared.getCons().equals(cons) && shared.getComment().equals(comment)
+                    && shared.getPercentile() == percentile && shared.getRank() == rank) {
+                results[index] = shared;
+            } else {
+                results[index] = new MatchResult(score, label, level, stars, pros, cons, comment, percentile, rank);
+            }
+        }
+        return results[index];
     }
 
-    // 根據配對分數score來計算星級（1-5 顆星）
-    private int calculateStars(int score) {
-        if (score >= 85) return 5;
-        if (score >= 70) return 4;
-        if (score >= 50) return 3;
-        if (score >= 30) return 2;
-        return 1;
+    // 從所有組合的分數和權重算出每個分數 (0~100) 的百分位和名次，回傳 {百分位表, 名次表}
+    // 百分位 = 分數比它低的權重 + 一半同分的權重 (四捨五入成 0~100 的整數)
+    // 名次只算不分順序的組合 (A 配 B 和 B 配 A 算同一組)，所以只看 side × side 表格的上三角
+    static int[][] scoreRanks(int[] scores, double[] weights, int side) {
+        double[] weightByScore = new double[101];
+        int[] pairsByScore = new int[101];
+        double total = 0;
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int score = scores[row * side + column];
+                weightByScore[score] += weights[row * side + column];
+                total += weights[row * side + column];
+                if (column >= row) {
+                    pairsByScore[score]++;
+                }
+            }
+        }
+
+        int[] percentiles = new int[101];
+        int[] ranks = new int[101];
+        double below = 0;
+        for (int score = 0; score <= 100; score++) {
+            percentiles[score] = (int) Math.round(100 * (below + weightByScore[score] / 2) / total);
+            below += weightByScore[score];
+        }
+        int above = 0;
+        for (int score = 100; score >= 0; score--) {
+            ranks[score] = above + 1;
+            above += pairsByScore[score];
+        }
+        return new int[][]{percentiles, ranks};
     }
 
-    // 根據配對等級level來取得對應的優點、缺點和評語
-    private Map<String, String> getEvaluation(String level) {
-
-        Map<String, String> evaluation = new HashMap<>(); // 建立 Map 來存評價文字
-
-        switch (level) {
-            case "大吉":
-                evaluation.put("positive", "性格相配，價值觀相近\n能夠互相理解和支持\n關係穩定和諧");
-                evaluation.put("negative", "可能缺乏新鮮感\n需要保持熱情");
-                evaluation.put("comment", "你們的星座組合非常相配，在性格和價值觀上有很多共通點，能夠互相理解和支持，是一對很好的組合。建議好好珍惜這段緣分！");
-                break;
-
-            case "小吉":
-                evaluation.put("positive", "組合相當不錯\n可以互補不足\n關係穩定");
-                evaluation.put("negative", "有些差異需要磨合\n需要更多溝通");
-                evaluation.put("comment", "你們的星座組合相當不錯，雖然有些差異，但可以互補，只要多溝通和理解，關係會很穩定。建議多了解對方的想法和需求。");
-                break;
-
-            case "普通":
-                evaluation.put("positive", "有發展潛力\n可以互相學習");
-                evaluation.put("negative", "需要更多努力\n需要增進理解");
-                evaluation.put("comment", "你們的星座組合需要更多的努力來維持關係，建議多了解對方的想法和需求，增進彼此的理解。雖然配對分數普通，但真愛可以克服一切困難。");
-                break;
-
-            case "小凶":
-                evaluation.put("positive", "仍有發展空間\n可以建立穩定關係");
-                evaluation.put("negative", "需要更多耐心和包容\n可能遇到挑戰");
-                evaluation.put("comment", "你們的星座組合需要更多的耐心和包容，在相處過程中可能會遇到一些挑戰，但透過互相理解和尊重，仍然可以建立穩定的關係。建議多溝通，避免誤會。");
-                break;
-
-            case "大凶":
-                evaluation.put("positive", "真愛可以克服困難\n可以互相學習成長");
-                evaluation.put("negative", "性格差異較大\n需要更多努力和包容");
-                evaluation.put("comment", "你們的星座組合在性格上可能有較大的差異，需要更多的努力和包容來維持關係。但請記住，星座只是參考，真愛和互相理解才是關係的關鍵。如果真心相愛，任何困難都可以克服。");
-                break;
-
-            default:
-                evaluation.put("positive", "需要進一步了解");
-                evaluation.put("negative", "需要更多溝通");
-                evaluation.put("comment", "建議多溝通，增進彼此的理解。");
+    // 計算有幾列是直接共用預設規則的陣列
+    private static int countShared(Object[] rows, Object[] baseRows) {
+        int shared = 0;
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i] == baseRows[i]) {
+                shared++;
+            }
         }
+        return shared;
+    }
 
-        return evaluation;
+    // 兩個生肖的相合分數，依照傳統的六合、三合、六沖、六害來給分
+    static int animalScore(int animal1, int animal2) {
+        if ((animal1 + animal2) % 12 == 1) return 90;                 // 六合 (例如鼠牛、虎豬)
+        if (animal1 != animal2 && animal1 % 4 == animal2 % 4) return 85; // 三合 (例如鼠龍猴)
+        if (animal1 == animal2) return 70;                             // 同生肖
+        if (Math.abs(animal1 - animal2) == 6) return 20;               // 六沖 (例如鼠馬)
+        if ((animal1 + animal2) % 12 == 7) return 35;                  // 六害 (例如鼠羊)
+        return 60;                                                     // 其他組合
     }
 }
-
@@ -0,0 +1,150 @@
+package com.SAD_Project.service;
+
+import com.SAD_Project.util.PrecompressedBody; // 負責 gzip 壓縮
+import com.SAD_Project.util.ZodiacCalculator; // 星座名稱與編號
+import org.springframework.boot.logging.LogLevel; // 日誌等級
+import org.springframework.boot.logging.LoggingSystem; // Spring Boot 的日誌設定介面
+import org.springframework.web.util.HtmlUtils; // HTML 跳脫字元
+import org.thymeleaf.context.Context; // Thymeleaf 的模板變數
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.linkbuilder.StandardLinkBuilder;
+import org.thymeleaf.spring5.SpringTemplateEngine; // 不需要 Spring 容器也能使用的模板引擎
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// 這個class負責把星座介紹頁和配對結果頁事先產生成 HTML
+// 12 個星座和 78 種配對組合的內容都是固定的，所以在建置時 (mvn process-classes) 就全部產生好
+// 產生的檔案會放在 classes/prerendered/，啟動時由 PrerenderedPages 載入記憶體
+public class PageRenderer {
+
+    public static final String OUTPUT_DIRECTORY = "prerendered"; // classpath 上的輸出資料夾
+
+    private final ZodiacIntroduction zodiacIntro;
+    private final MatchRuleEngine matchRuleEngine;
+    private final SpringTemplateEngine templateEngine;
+
+    public PageRenderer(ZodiacIntroduction zodiacIntro, MatchRuleEngine matchRuleEngine) {
+        this.zodiacIntro = zodiacIntro;
+        this.matchRuleEngine = matchRuleEngine;
+        this.templateEngine = createTemplateEngine();
+    }
+
+    // 建置步驟的進入點，參數是輸出資料夾
+    public static void main(String[] args) throws IOException {
+        // 建置時沒有 Spring Boot 的日誌設定，把 Thymeleaf 的除錯訊息關掉
+        LoggingSystem.get(PageRenderer.class.getClassLoader()).setLogLevel(null, LogLevel.WARN);
+
+        Path outputDir = Paths.get(args.length > 0 ? args[0] : OUTPUT_DIRECTORY);
+        Files.createDirectories(outputDir);
+
+        PageRenderer renderer = new PageRenderer(new ZodiacIntroduction(), new MatchRuleEngine());
+        Map<String, byte[]> pages = renderer.renderAll();
+
+        // 每個頁面都寫一份原始檔和一份 .gz 壓縮檔
+        for (Map.Entry<String, byte[]> page : pages.entrySet()) {
+            Files.write(outputDir.resolve(page.getKey()), page.getValue());
+            Files.write(outputDir.resolve(page.getKey() + ".gz"), PrecompressedBody.gzip(page.getValue()));
+        }
+    }
+
+    // 星座介紹頁的檔名，index 是星座編號
+    public static String introductionPageName(int index) {
+        return "introduction-" + index + ".html";
+    }
+
+    // 配對結果頁的檔名，配對是雙向的，所以編號小的放前面
+    public static String matchPageName(int index1, int index2) {
+        return "match-" + Math.min(index1, index2) + "-" + Math.max(index1, index2) + ".html";
+    }
+
+    // 產生全部頁面，key 是檔名，value 是 UTF-8 的 HTML
+    public Map<String, byte[]> renderAll() {
+        Map<String, byte[]> pages = new LinkedHashMap<>();
+
+        // 沒有選星座的頁面也一起產生
+        pages.put("introduction.html", renderIntroduction(null));
+        pages.put("match.html", renderMatch(-1, -1));
+
+        // 每個星座的介紹頁
+        for (String zodiac : zodiacIntro.getAllZodiacNames()) {
+            pages.put(introductionPageName(ZodiacCalculator.zodiacIndex(zodiac)), renderIntroduction(zodiac));
+        }
+
+        // 每種配對組合的結果頁 (包含同星座)
+        int count = ZodiacCalculator.ZODIAC_NAMES.length;
+        for (int i = 0; i < count; i++) {
+            for (int j = i; j < count; j++) {
+                pages.put(matchPageName(i, j), renderMatch(i, j));
+            }
+        }
+
+        return pages;
+    }
+
+    // 產生星座介紹頁，zodiac 為 null 時就是沒有選星座的頁面
+    private byte[] renderIntroduction(String zodiac) {
+        Context context = new Context(Locale.TAIWAN);
+        context.setVariable("zodiacs", zodiacIntro.getAllZodiacNames());
+
+        if (zodiac != null) {
+            context.setVariable("selected", zodiac);
+            context.setVariable("info", zodiacIntro.getZodiacInfo(zodiac));
+            context.setVariable("male", zodiacIntro.getGenderPersonality(zodiac, "男"));
+            context.setVariable("female", zodiacIntro.getGenderPersonality(zodiac, "女"));
+        }
+
+        return templateEngine.process("introduction", context).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // 產生配對結果頁，編號是 -1 時就是還沒有結果的配對頁面
+    private byte[] renderMatch(int index1, int index2) {
+        Context context = new Context(Locale.TAIWAN);
+
+        if (index1 >= 0 && index2 >= 0) {
+            MatchRuleEngine.MatchResult result = matchRuleEngine.computeMatch(
+                    ZodiacCalculator.ZODIAC_NAMES[index1], ZodiacCalculator.ZODIAC_NAMES[index2]);
+            context.setVariable("result", result);
+            context.setVariable("positive", toHtml(result.getPros()));
+            context.setVariable("negative", toHtml(result.getCons()));
+            context.setVariable("comment", toHtml(result.getComment()));
+        }
+
+        return templateEngine.process("match", context).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // 跳脫 HTML 特殊字元，並把換行改成 <br> (和 match.js 的顯示方式一樣)
+    private static String toHtml(String text) {
+        return HtmlUtils.htmlEscape(text).replace("\n", "<br>");
+    }
+
+    // 建立不依賴網頁請求的模板引擎，直接從 classpath 的 templates/ 讀取模板
+    private static SpringTemplateEngine createTemplateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+
+        // 沒有網頁請求就沒有 context path，@{/...} 的連結直接以根目錄為準
+        engine.setLinkBuilder(new StandardLinkBuilder() {
+            @Override
+            protected String computeContextPath(IExpressionContext context, String base,
+                                                Map<String, Object> parameters) {
+                return "";
+            }
+        });
+        return engine;
+    }
+}
@@ -0,0 +1,101 @@
+package com.SAD_Project.service;
+
+import com.SAD_Project.util.PrecompressedBody; // 原始版 + gzip 版的回應內容
+import com.SAD_Project.util.ZodiacCalculator; // 星座名稱與編號
+import org.springframework.beans.factory.annotation.Autowired; // Spring 的自動注入註解
+import org.springframework.stereotype.Service; // 標記這是服務類別
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// 這個class負責把建置時產生好的 HTML 頁面載入記憶體
+// 頁面請求只要查表回傳 byte[]，不用再跑 Thymeleaf 模板，也不用前端再呼叫 API
+@Service
+public class PrerenderedPages {
+
+    private final Map<String, PrecompressedBody> pages; // key 是檔名，value 是原始版和 gzip 版
+
+    @Autowired
+    public PrerenderedPages(ZodiacIntroduction zodiacIntro, MatchRuleEngine matchRuleEngine) {
+        Map<String, PrecompressedBody> loaded = loadFromClasspath();
+
+        // 沒有經過 Maven 建置 (例如直接在 IDE 執行) 就找不到檔案，這時在啟動時產生一次
+        if (loaded == null) {
+            loaded = new HashMap<>();
+            for (Map.Entry<String, byte[]> page : new PageRenderer(zodiacIntro, matchRuleEngine).renderAll().entrySet()) {
+                loaded.put(page.getKey(), new PrecompressedBody(page.getValue(), PrecompressedBody.gzip(page.getValue())));
+            }
+        }
+
+        this.pages = loaded;
+    }
+
+    // 取得沒有選星座的介紹頁
+    public PrecompressedBody getIntroductionPage() {
+        return pages.get("introduction.html");
+    }
+
+    // 取得某個星座的介紹頁，不認得的星座回傳 null
+    public PrecompressedBody getIntroductionPage(String zodiac) {
+        int index = ZodiacCalculator.zodiacIndex(zodiac);
+        if (index < 0) {
+            return null;
+        }
+        return pages.get(PageRenderer.introductionPageName(index));
+    }
+
+    // 取得還沒有結果的配對頁
+    public PrecompressedBody getMatchPage() {
+        return pages.get("match.html");
+    }
+
+    // 取得兩個星座的配對結果頁，不認得的星座回傳 null
+    public PrecompressedBody getMatchPage(String zodiac1, String zodiac2) {
+        int index1 = ZodiacCalculator.zodiacIndex(zodiac1);
+        int index2 = ZodiacCalculator.zodiacIndex(zodiac2);
+        if (index1 < 0 || index2 < 0) {
+            return null;
+        }
+        return pages.get(PageRenderer.matchPageName(index1, index2));
+    }
+
+    // 從 classpath 讀取所有頁面，只要缺一個就回傳 null
+    private static Map<String, PrecompressedBody> loadFromClasspath() {
+        Map<String, PrecompressedBody> loaded = new HashMap<>();
+
+        loaded.put("introduction.html", load("introduction.html"));
+        loaded.put("match.html", load("match.html"));
+
+        int count = ZodiacCalculator.ZODIAC_NAMES.length;
+        for (int i = 0; i < count; i++) {
+            loaded.put(PageRenderer.introductionPageName(i), load(PageRenderer.introductionPageName(i)));
+            for (int j = i; j < count; j++) {
+                loaded.put(PageRenderer.matchPageName(i, j), load(PageRenderer.matchPageName(i, j)));
+            }
+        }
+
+        return loaded.containsValue(null) ? null : loaded;
+    }
+
+    // 讀取一個頁面的原始檔和 .gz 檔
+    private static PrecompressedBody load(String name) {
+        byte[] identity = readResource(PageRenderer.OUTPUT_DIRECTORY + "/" + name);
+        byte[] gzip = readResource(PageRenderer.OUTPUT_DIRECTORY + "/" + name + ".gz");
+        if (identity == null || gzip == null) {
+            return null;
+        }
+        return new PrecompressedBody(identity, gzip);
+    }
+
+    // 讀取 classpath 上的檔案，不存在就回傳 null
+    private static byte[] readResource(String path) {
+        try (InputStream in = PrerenderedPages.class.getClassLoader().getResourceAsStream(path)) {
+            return in != null ? in.readAllBytes() : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
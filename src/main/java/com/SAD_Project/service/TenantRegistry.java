@@ -0,0 +1,65 @@
+package com.SAD_Project.service;
+
+import org.springframework.beans.factory.annotation.Autowired; // Spring 的自動注入註解
+import org.springframework.beans.factory.annotation.Value; // 讀取 application.properties 的設定
+import org.springframework.stereotype.Service; // 標記這是服務類別
+
+import java.util.HashMap;
+import java.util.Map;
+
+// 這個class記錄有哪些合作品牌 (租戶)，每個租戶可以有自己的配對規則和星座介紹文字
+// 租戶在啟動時就編好號碼：0 是預設的 StarSync，其他依照 horoscope.tenants 設定的順序從 1 開始
+// 之後每個請求只用編號去查陣列，不用再比對名稱
+// 租戶自己的資料放在 classpath 的 tenants/<名稱>/ 底下，只要寫和預設不同的部分
+@Service
+public class TenantRegistry {
+
+    public static final int DEFAULT_TENANT = 0; // 預設租戶的編號
+    public static final String DEFAULT_NAME = "default";
+
+    private final String[] names;                  // 編號 → 名稱
+    private final Map<String, Integer> idsByName;  // 名稱 → 編號
+
+    // 只有預設租戶 (建置時產生頁面或在 Spring 以外使用時)
+    public TenantRegistry() {
+        this(new String[0]);
+    }
+
+    @Autowired
+    public TenantRegistry(@Value("${horoscope.tenants:}") String[] tenants) {
+        names = new String[tenants.length + 1];
+        idsByName = new HashMap<>();
+        names[DEFAULT_TENANT] = DEFAULT_NAME;
+        idsByName.put(DEFAULT_NAME, DEFAULT_TENANT);
+
+        for (int i = 0; i < tenants.length; i++) {
+            String name = tenants[i].trim();
+            if (name.isEmpty() || idsByName.containsKey(name)) {
+                throw new IllegalStateException("租戶名稱重複或空白：" + tenants[i]);
+            }
+            names[i + 1] = name;
+            idsByName.put(name, i + 1);
+        }
+    }
+
+    // 租戶數量 (包含預設租戶)
+    public int size() {
+        return names.length;
+    }
+
+    // 取得租戶名稱
+    public String getName(int tenant) {
+        return names[tenant];
+    }
+
+    // 用名稱找租戶編號，找不到回傳 -1
+    public int indexOf(String name) {
+        Integer id = idsByName.get(name);
+        return id != null ? id : -1;
+    }
+
+    // 租戶資料在 classpath 上的路徑，例如 tenants/brand-a/match-rules.txt
+    public static String resourcePath(String tenantName, String fileName) {
+        return "tenants/" + tenantName + "/" + fileName;
+    }
+}
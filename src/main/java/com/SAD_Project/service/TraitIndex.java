@@ -0,0 +1,292 @@
+package com.SAD_Project.service;
+
+import java.util.Arrays;
+
+// 這個class是星座介紹和個性原文的全文索引 (/api/search 搜尋「固執」、「浪漫」這類特質用)
+// 中文沒有空格可以分詞，所以用相鄰的兩個字 (bigram) 當索引的詞：每個位置記一筆 (這個字, 下一個字) → (文件, 位置)
+// 查詢時挑查詢字串裡出現次數最少的 bigram，只檢查它出現的那幾個位置，再比對整個查詢字串確認，不用掃過所有文字
+// 英文一樣處理 (先轉小寫)，所以也可以搜尋單字的一部分
+// 文件編號 = 星座編號 * 3 + 欄位 (0 info、1 male、2 female，和 ZodiacIntroduction.FIELD_NAMES 的順序一樣)
+// 建立之後不會再修改，可以給多個執行緒同時查詢
+public final class TraitIndex {
+
+    public static final int FIELDS = 3;              // 每個星座有幾個文件 (info、male、female)
+    public static final int MAX_QUERY_LENGTH = 32;   // 查詢字串最多幾個字 (ErrorCode.BAD_QUERY 的訊息也寫了這個數字)
+
+    private static final int SNIPPET_CONTEXT = 24;   // 摘要在第一個符合的位置前後各取幾個字
+    private static final int POSITION_BITS = 20;     // 位置資料的低 20 位元是文件裡的位置，高位元是文件編號
+    private static final int POSITION_MASK = (1 << POSITION_BITS) - 1;
+
+    // 一個符合的文件
+    public static final class Hit {
+        private final int zodiacIndex;
+        private final int field;          // 0 info、1 male、2 female
+        private final int count;          // 出現幾次 (排名用)
+        private final String snippet;     // 第一個符合位置前後的一段原文
+        private final int snippetStart;   // 摘要在原文裡的開始位置
+        private final int[][] highlights; // 摘要裡每個符合的位置 [開始, 結束)，相對於摘要
+
+        private Hit(int zodiacIndex, int field, int count, String snippet, int snippetStart, int[][] highlights) {
+            this.zodiacIndex = zodiacIndex;
+            this.field = field;
+            this.count = count;
+            this.snippet = snippet;
+            this.snippetStart = snippetStart;
+            this.highlights = highlights;
+        }
+
+        public int getZodiacIndex() { return zodiacIndex; }
+        public int getField() { return field; }
+        public int getCount() { return count; }
+        public String getSnippet() { return snippet; }
+        public int getSnippetStart() { return snippetStart; }
+        public int[][] getHighlights() { return highlights; }
+    }
+
+    // 一次查詢的結果：總共幾個文件符合，和排名前面的幾個
+    public static final class Result {
+        private final int total;
+        private final Hit[] hits;
+
+        private Result(int total, Hit[] hits) {
+            this.total = total;
+            this.hits = hits;
+        }
+
+        public int getTotal() { return total; }
+        public Hit[] getHits() { return hits; }
+    }
+
+    private static final Result EMPTY = new Result(0, new Hit[0]);
+
+    private final String[] texts;    // 原文，索引是文件編號
+    private final char[][] folded;   // 轉成小寫的文字 (長度和原文一樣，位置可以直接對應)
+    private final int[] keys;        // 排序好的 bigram：前一個字 << 16 | 下一個字 (最後一個字的下一個字是 0)
+    private final int[][] postings;  // 每個 bigram 出現的位置 (文件編號 << POSITION_BITS | 位置)，依照文件、位置排序
+
+    private TraitIndex(String[] texts, char[][] folded, int[] keys, int[][] postings) {
+        this.texts = texts;
+        this.folded = folded;
+        this.keys = keys;
+        this.postings = postings;
+    }
+
+    // 用 12 個星座的基本介紹和男女個性原文建立索引
+    public static TraitIndex build(String[] info, String[][] personalities) {
+        String[] texts = new String[12 * FIELDS];
+        char[][] folded = new char[texts.length][];
+        int total = 0;
+        for (int zodiacIndex = 0; zodiacIndex < 12; zodiacIndex++) {
+            texts[zodiacIndex * FIELDS] = info[zodiacIndex];
+            texts[zodiacIndex * FIELDS + 1] = personalities[zodiacIndex][0];
+            texts[zodiacIndex * FIELDS + 2] = personalities[zodiacIndex][1];
+        }
+        for (int doc = 0; doc < texts.length; doc++) {
+            if (texts[doc] == null) {
+                texts[doc] = "";
+            }
+            if (texts[doc].length() > POSITION_MASK) {
+                throw new IllegalStateException("文件太長，無法建立索引：" + texts[doc].length() + " 個字");
+            }
+            folded[doc] = fold(texts[doc]);
+            total += folded[doc].length;
+        }
+
+        // 每個位置一筆 (bigram << 32 | 位置資料)，排序後同一個 bigram 的位置就排在一起，而且依照文件、位置排序
+        long[] entries = new long[total];
+        int n = 0;
+        for (int doc = 0; doc < folded.length; doc++) {
+            char[] text = folded[doc];
+            for (int pos = 0; pos < text.length; pos++) {
+                long key = bigram(text[pos], pos + 1 < text.length ? text[pos + 1] : 0);
+                entries[n++] = key << 32 | (doc << POSITION_BITS | pos);
+            }
+        }
+        Arrays.sort(entries);
+
+        int distinct = 0;
+        for (int i = 0; i < entries.length; i++) {
+            if (i == 0 || (entries[i] >>> 32) != (entries[i - 1] >>> 32)) {
+                distinct++;
+            }
+        }
+        int[] keys = new int[distinct];
+        int[][] postings = new int[distinct][];
+        for (int i = 0, k = 0; i < entries.length; k++) {
+            int end = i;
+            while (end < entries.length && (entries[end] >>> 32) == (entries[i] >>> 32)) {
+                end++;
+            }
+            keys[k] = (int) (entries[i] >>> 32);
+            postings[k] = new int[end - i];
+            for (int j = i; j < end; j++) {
+                postings[k][j - i] = (int) entries[j];
+            }
+            i = end;
+        }
+        return new TraitIndex(texts, folded, keys, postings);
+    }
+
+    // 搜尋 query (不分大小寫)，依照出現次數由多到少排名，次數一樣時星座編號、欄位小的在前面，最多回傳 limit 個
+    public Result search(String query, int limit) {
+        char[] q = fold(query);
+        if (q.length == 0 || limit <= 0) {
+            return EMPTY;
+        }
+
+        int[] matches = q.length == 1 ? singleCharMatches(q[0]) : phraseMatches(q);
+        if (matches.length == 0) {
+            return EMPTY;
+        }
+
+        // 計算每個文件出現幾次，重疊的出現 (例如在「哈哈哈」裡找「哈哈」) 只算第一個
+        int[] counts = new int[texts.length];
+        int[] firsts = new int[texts.length];
+        int kept = 0;
+        int lastDoc = -1;
+        int lastEnd = 0;
+        for (int match : matches) {
+            int doc = match >>> POSITION_BITS;
+            int pos = match & POSITION_MASK;
+            if (doc == lastDoc && pos < lastEnd) {
+                continue;
+            }
+            if (doc != lastDoc) {
+                firsts[doc] = pos;
+            }
+            counts[doc]++;
+            matches[kept++] = match;
+            lastDoc = doc;
+            lastEnd = pos + q.length;
+        }
+
+        Integer[] docs = new Integer[texts.length];
+        int total = 0;
+        for (int doc = 0; doc < texts.length; doc++) {
+            if (counts[doc] > 0) {
+                docs[total++] = doc;
+            }
+        }
+        Arrays.sort(docs, 0, total, (a, b) -> counts[a] != counts[b] ? counts[b] - counts[a] : a - b);
+
+        Hit[] hits = new Hit[Math.min(limit, total)];
+        for (int i = 0; i < hits.length; i++) {
+            int doc = docs[i];
+            hits[i] = hit(doc, counts[doc], firsts[doc], q.length, matches, kept);
+        }
+        return new Result(total, hits);
+    }
+
+    // 一個字的查詢：所有以這個字開頭的 bigram 都符合 (排序好的 keys 裡是連續的一段)
+    private int[] singleCharMatches(char c) {
+        int from = firstAbove(bigram(c, (char) 0) - 1L);
+        int to = firstAbove(bigram(c, Character.MAX_VALUE));
+        int size = 0;
+        for (int k = from; k < to; k++) {
+            size += postings[k].length;
+        }
+        int[] matches = new int[size];
+        int n = 0;
+        for (int k = from; k < to; k++) {
+            System.arraycopy(postings[k], 0, matches, n, postings[k].length);
+            n += postings[k].length;
+        }
+        Arrays.sort(matches); // 依照文件、位置排序
+        return matches;
+    }
+
+    // 兩個字以上的查詢：只檢查最少見的 bigram 出現的位置，再比對整個查詢字串
+    private int[] phraseMatches(char[] q) {
+        int rarest = -1;
+        int offset = 0;
+        for (int k = 0; k + 1 < q.length; k++) {
+            int index = Arrays.binarySearch(keys, bigram(q[k], q[k + 1]));
+            if (index < 0) {
+                return new int[0]; // 有一個 bigram 完全沒出現過，一定找不到
+            }
+            if (rarest < 0 || postings[index].length < postings[rarest].length) {
+                rarest = index;
+                offset = k;
+            }
+        }
+
+        int[] candidates = postings[rarest];
+        int[] matches = new int[candidates.length];
+        int n = 0;
+        for (int candidate : candidates) {
+            int doc = candidate >>> POSITION_BITS;
+            int start = (candidate & POSITION_MASK) - offset;
+            if (start >= 0 && regionMatches(folded[doc], start, q)) {
+                matches[n++] = doc << POSITION_BITS | start;
+            }
+        }
+        return Arrays.copyOf(matches, n);
+    }
+
+    // 組成一個結果：摘要是第一個符合位置前後 SNIPPET_CONTEXT 個字，摘要裡的每個符合位置都標出來
+    private Hit hit(int doc, int count, int first, int length, int[] matches, int matchCount) {
+        String text = texts[doc];
+        int start = Math.max(0, first - SNIPPET_CONTEXT);
+        int end = Math.min(text.length(), first + length + SNIPPET_CONTEXT);
+        if (start > 0 && Character.isLowSurrogate(text.charAt(start))) {
+            start++; // 不要從一個字的中間切開
+        }
+        if (end < text.length() && Character.isLowSurrogate(text.charAt(end))) {
+            end++;
+        }
+
+        int from = Arrays.binarySearch(matches, 0, matchCount, doc << POSITION_BITS | first);
+        int highlightCount = 0;
+        for (int i = from; i < matchCount && matches[i] >>> POSITION_BITS == doc
+                && (matches[i] & POSITION_MASK) + length <= end; i++) {
+            highlightCount++;
+        }
+        int[][] highlights = new int[highlightCount][];
+        for (int i = 0; i < highlightCount; i++) {
+            int pos = (matches[from + i] & POSITION_MASK) - start;
+            highlights[i] = new int[]{pos, pos + length};
+        }
+        return new Hit(doc / FIELDS, doc % FIELDS, count, text.substring(start, end), start, highlights);
+    }
+
+    // 第一個 > key 的 bigram 在 keys 裡的位置 (keys 是用 int 的大小排序，中文字的 bigram 是負數)
+    private int firstAbove(long key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static boolean regionMatches(char[] text, int start, char[] q) {
+        if (start + q.length > text.length) {
+            return false;
+        }
+        for (int i = 0; i < q.length; i++) {
+            if (text[start + i] != q[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 兩個字組成的索引詞 (字元是 16 位元，剛好放進一個 int)
+    private static int bigram(char first, char second) {
+        return first << 16 | second;
+    }
+
+    // 轉成小寫，每個字分開轉，長度不變 (位置可以直接對應回原文)
+    private static char[] fold(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return chars;
+    }
+}
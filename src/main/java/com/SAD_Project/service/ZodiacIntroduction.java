@@ -1,24 +1,104 @@
 package com.SAD_Project.service;
 
+import org.slf4j.Logger; // 日誌
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired; // Spring 的自動注入註解
 import org.springframework.stereotype.Service; // Spring 的服務註解
 
+import com.SAD_Project.util.ErrorCode; // API 的錯誤代碼
+import com.SAD_Project.util.JsonBodies; // 把資料事先轉成 JSON 位元組的工具
+import com.SAD_Project.util.Locales; // 支援的語言和每種語言的星座別名
+import com.SAD_Project.util.PrecompressedBody; // 事先壓縮好的回應內容
+import com.SAD_Project.util.PrecompressedPrefix; // 事先壓縮好的回應開頭 (結尾每次請求再接上)
+import com.SAD_Project.util.ZodiacCalculator; // 計算星座的工具類別
+
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 // 這個class負責儲存和提供星座介紹、個性分析等資料(1214.org)
+// 每個租戶 (合作品牌) 可以用 tenants/<名稱>/introduction.txt 改寫部分星座的文字，
+// 沒有改寫的星座直接共用預設的字串和事先轉好的 JSON
+// 簡體中文和英文的內容放在 i18n/introduction_<語言>.txt，格式和租戶的介紹檔一樣，
+// 啟動時每個租戶、每種語言的介紹 JSON 和個性分析文字都先產生好，請求時只要用星座編號查陣列
+// JSON 也在啟動時壓縮成 gzip 和 brotli，請求時不用再壓縮幾 KB 的分析文字
+// 每份內容也建好全文索引 (TraitIndex)，內容重新產生時索引跟著重建，沒有改寫的租戶共用預設內容的索引
 @Service
 public class ZodiacIntroduction {
-    
+
+    private static final Logger log = LoggerFactory.getLogger(ZodiacIntroduction.class);
+
+    public static final String TENANT_INTRODUCTION = "introduction.txt"; // 租戶資料夾裡的介紹檔名稱
+    public static final String LOCALE_INTRODUCTION = "introduction";     // 語言專用的介紹檔 (i18n/introduction_en.txt)
 
     private Map<String, String> zodiacInfo; // 存每個星座的基本介紹資料, key 是星座名稱 value 是介紹文字
     private Map<String, Map<String, String>> genderPersonalityData; // 性別個性資料, 第一層 key 是星座名稱,第二層 key 是性別 value 是個性分析文字
+
+    // /api/zodiacs 列出星座的順序 (星座編號)，和 getAllZodiacNames 一樣
+    private int[] listOrder;
+
+    // 一個租戶在一種語言的介紹內容，建立之後不會再修改，所有陣列的索引都是星座編號
+    private static final class Content {
+        private final int locale;                    // 內容的語言
+        private final String[] info;                 // 基本介紹 (日期範圍、配對星座)
+        private final String[][] personalities;      // 個性原文，第二層是性別 (男 0、女 1)
+        private final String[][] personalityTexts;   // 加上標題的完整個性分析，第二層是性別
+        private final PrecompressedBody[][] introductionBodies;  // 事先轉好、壓縮好的介紹 JSON，第二層是欄位遮罩
+        private final PrecompressedPrefix[][] personalityBodies; // 個性分析 JSON 固定的開頭 (不含日期)，第二層是性別
+        private TraitIndex searchIndex;              // 基本介紹和個性原文的全文索引，內容都準備好之後才建立
+
+        private Content(int locale, String[] info, String[][] personalities, String[][] personalityTexts,
+                        PrecompressedBody[][] introductionBodies, PrecompressedPrefix[][] personalityBodies) {
+            this.locale = locale;
+            this.info = info;
+            this.personalities = personalities;
+            this.personalityTexts = personalityTexts;
+            this.introductionBodies = introductionBodies;
+            this.personalityBodies = personalityBodies;
+        }
+    }
+
+    // 所有租戶的介紹內容，第一層是 TenantRegistry 的租戶編號，第二層是 Locales 的語言編號
+    private Content[][] contents;
+
+    // 每種語言事先轉好的星座名稱列表 JSON
+    private PrecompressedBody[] allZodiacNamesBodies;
+
+    // 個性分析的標題和錯誤訊息，索引是語言編號
+    private static final String[] PERSONALITY_TITLES = {"生個性分析", "生个性分析", " personality"};
+    private static final String[] SOURCE_LABELS = {"資料來源：", "资料来源：", "Source: "};
+    private static final String[] ERROR_PREFIXES = {"錯誤：", "错误：", "Error: "};
+    private static final String[] GENDER_ERRORS = {
+            "錯誤：性別必須是「男」或「女」。\n",
+            "错误：性别必须是「男」或「女」。\n",
+            "Error: gender must be 男 (male) or 女 (female).\n"
+    };
+    private static final String[] NOT_FOUND_PREFIXES = {"抱歉，找不到「", "抱歉，找不到「", "Sorry, no personality data for \""};
+    private static final String[] NOT_FOUND_SUFFIXES = {"」的個性資料。\n", "」的个性资料。\n", "\".\n"};
+
+    // 介紹 API 可以選擇的欄位, 第 i 個欄位對應遮罩的第 i 個位元
+    public static final String[] FIELD_NAMES = {"info", "male", "female"};
+    public static final int FIELD_INFO = 1;
+    public static final int FIELD_MALE = 2;
+    public static final int FIELD_FEMALE = 4;
+    public static final int ALL_FIELDS = FIELD_INFO | FIELD_MALE | FIELD_FEMALE;
     
-    // 建構子，建立物件時會初始化所有資料
+    // 只有預設內容 (建置時產生頁面使用)
     public ZodiacIntroduction() {
+        this(new TenantRegistry());
+    }
+
+    // 建構子，建立物件時會初始化所有資料
+    @Autowired
+    public ZodiacIntroduction(TenantRegistry tenants) {
         initializeZodiacInfo();
         setGenderPersonality();
+        precomputeContents(tenants);
     }
 
+
     // 建立所有星座的基本介紹資料
     private void initializeZodiacInfo() {
         zodiacInfo = new HashMap<>();
@@ -407,100 +487,383 @@ public class ZodiacIntroduction {
 
     // 根據日期性別算出星座, 取得個性分析
     public String getPersonalityByDate(String dateStr, String gender) {
-        String zodiac = com.SAD_Project.util.ZodiacCalculator.calculateZodiacFromBirthDate(dateStr);
+        return getPersonalityByDate(TenantRegistry.DEFAULT_TENANT, Locales.ZH_TW, dateStr, gender);
+    }
+
+    // 根據日期性別算出星座, 取得某個租戶某種語言的個性分析
+    public String getPersonalityByDate(int tenant, int locale, String dateStr, String gender) {
+        int zodiacIndex = ZodiacCalculator.calculateZodiacIndex(ZodiacCalculator.parseBirthDate(dateStr));
 
-        if (zodiac == null || zodiac.equals("未知")) {
-            return "錯誤：無法解析日期「" + dateStr + "」，請確認日期格式正確（例如：3/21 或 2024-03-21）。\n";
+        if (zodiacIndex < 0) {
+            return ERROR_PREFIXES[locale] + ErrorCode.fromDateError(zodiacIndex).getMessage(locale) + "\n";
         }
 
-        return getPersonalityByZodiac(zodiac, gender);
+        return getPersonalityByZodiac(tenant, locale, Locales.ZODIAC_NAMES[locale][zodiacIndex], gender);
     }
     
 
     // 取得完整的個性分析文字
     public String getPersonalityByZodiac(String zodiac, String gender) {
+        return getPersonalityByZodiac(TenantRegistry.DEFAULT_TENANT, Locales.ZH_TW, zodiac, gender);
+    }
 
+    // 取得某個租戶某種語言的完整個性分析文字 (啟動時已經組好，這裡只查表)
+    // 星座名稱用這個語言的別名表找 (例如 白羊座、摩羯、Aries 都可以)
+    public String getPersonalityByZodiac(int tenant, int locale, String zodiac, String gender) {
         if (gender == null) {
-            return "錯誤：性別必須是「男」或「女」。\n";
+            return GENDER_ERRORS[locale];
         }
 
-        String standardizedZodiac = standardizeZodiacName(zodiac);
-
-        Map<String, String> zodiacPersonality = genderPersonalityData.get(standardizedZodiac); // 從資料庫取得這個星座的個性資料
-        if (zodiacPersonality == null) {
-            return "抱歉，找不到「" + zodiac + "」的個性資料。\n";
+        int zodiacIndex = Locales.zodiacIndex(locale, zodiac);
+        if (zodiacIndex < 0) {
+            return NOT_FOUND_PREFIXES[locale] + zodiac + NOT_FOUND_SUFFIXES[locale];
         }
 
-        String personality = zodiacPersonality.get(gender); //取得對應性別的個性分析
-        if (personality == null) {
-            return "抱歉，找不到「" + standardizedZodiac + "」「" + gender + "」的個性資料。\n";
+        int genderIndex = genderIndex(gender);
+        if (genderIndex < 0) {
+            return NOT_FOUND_PREFIXES[locale] + Locales.ZODIAC_NAMES[locale][zodiacIndex] + "」「" + gender
+                    + NOT_FOUND_SUFFIXES[locale];
         }
 
-        // 取得星座的基本介紹
-        String basicInfo = zodiacInfo.get(standardizedZodiac);
-        // 如果找不到基本資料，就用星座名稱代替
-        if (basicInfo == null) {
-            basicInfo = standardizedZodiac;
-        }
+        return contents[tenant][locale].personalityTexts[zodiacIndex][genderIndex];
+    }
 
+    // 把單一個性分析組成完整的輸出文字 (標題、資料來源、基本介紹、個性原文)
+    private static String personalityText(int locale, int zodiacIndex, int genderIndex, String info, String personality) {
         // 使用 StringBuilder 來組合最終的輸出文字
         StringBuilder output = new StringBuilder();
         output.append("=".repeat(50)).append("\n");
-        output.append(standardizedZodiac).append(" ").append(gender).append("生個性分析\n");
-        output.append("資料來源：https://1214.org/\n");
+        output.append(Locales.ZODIAC_NAMES[locale][zodiacIndex])
+                .append(locale == Locales.EN ? " - " : " ")
+                .append(Locales.GENDER_LABELS[locale][genderIndex])
+                .append(PERSONALITY_TITLES[locale]).append("\n");
+        output.append(SOURCE_LABELS[locale]).append("https://1214.org/\n");
         output.append("=".repeat(50)).append("\n");
-        output.append(basicInfo).append("\n\n");
+        output.append(info).append("\n\n");
         output.append(personality).append("\n");
         output.append("=".repeat(50)).append("\n");
 
         return output.toString();
     }
-    
-    // 統一星座名稱
-    private String standardizeZodiacName(String zodiac) {
-        if (zodiac == null) return null;
-        String z = zodiac.trim();
-        if (z.contains("摩羯") || z.contains("魔羯")) {
-            return "魔羯座";
+
+    // 性別編號：男 0、女 1，其他回傳 -1
+    private static int genderIndex(String gender) {
+        if ("男".equals(gender)) {
+            return 0;
         }
-        if (z.contains("牡羊") || z.contains("白羊")) {
-            return "牡羊座";
+        if ("女".equals(gender)) {
+            return 1;
         }
-        if (!z.endsWith("座")) {
-            z = z + "座";
+        return -1;
+    }
+
+    // 把欄位選擇字串 (例如 "info,male") 轉成位元遮罩
+    // 沒有指定或全部都不認得時就回傳全部欄位
+    public static int parseFields(String fields) {
+        if (fields == null || fields.isEmpty()) {
+            return ALL_FIELDS;
         }
 
-        return z;
+        int mask = 0;
+        int start = 0;
+        // 逐段比對逗號之間的名稱，不用 split 以免多建立陣列
+        while (start <= fields.length()) {
+            int end = fields.indexOf(',', start);
+            if (end < 0) {
+                end = fields.length();
+            }
+            mask |= fieldBit(fields, start, end);
+            start = end + 1;
+        }
+
+        return mask == 0 ? ALL_FIELDS : mask;
     }
 
-    // 取得星座的完整介紹
-    public String getIntroduction(String zodiac) {
-        String info = zodiacInfo.get(zodiac);
+    // 判斷 fields[start, end) 這一段是哪個欄位
+    private static int fieldBit(String fields, int start, int end) {
+        for (int i = 0; i < FIELD_NAMES.length; i++) {
+            String name = FIELD_NAMES[i];
+            if (end - start == name.length() && fields.regionMatches(start, name, 0, name.length())) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
 
-        Map<String, String> personalities = genderPersonalityData.get(zodiac);
+    // 取得星座介紹的 JSON (已經事先轉好、壓縮好), 找不到星座就回傳 null
+    // fields 是 parseFields 算出來的遮罩，決定要包含 info、male、female 哪幾個欄位
+    public PrecompressedBody getIntroductionBody(String zodiac, int fields) {
+        return getIntroductionBody(TenantRegistry.DEFAULT_TENANT, Locales.ZH_TW, zodiac, fields);
+    }
 
-        String male;
-        if(personalities != null) {
-            male = personalities.get("男");
+    // 取得某個租戶某種語言的星座介紹 JSON，查一次別名表和兩次陣列
+    public PrecompressedBody getIntroductionBody(int tenant, int locale, String zodiac, int fields) {
+        int zodiacIndex = Locales.zodiacIndex(locale, zodiac);
+        if (zodiacIndex < 0) {
+            return null;
         }
-        else {
-            male = "";
+        return contents[tenant][locale].introductionBodies[zodiacIndex][fields & ALL_FIELDS];
+    }
+
+    // 取得某個租戶某種語言的個性分析 JSON 開頭 (success、zodiac、gender、personality)
+    // 最後的 date 是使用者輸入的字串，由 controller 每次接在後面
+    public PrecompressedPrefix getPersonalityBody(int tenant, int locale, int zodiacIndex, int genderIndex) {
+        return contents[tenant][locale].personalityBodies[zodiacIndex][genderIndex];
+    }
+
+    // 取得某個租戶某種語言的個性原文 (不含標題)，每日運勢從裡面挑一段
+    public String getPersonality(int tenant, int locale, int zodiacIndex, int genderIndex) {
+        return contents[tenant][locale].personalities[zodiacIndex][genderIndex];
+    }
+
+    // 取得某個租戶某種語言的完整個性分析文字 (和 /api/personality 的 personality 欄位一樣)
+    public String getPersonalityText(int tenant, int locale, int zodiacIndex, int genderIndex) {
+        return contents[tenant][locale].personalityTexts[zodiacIndex][genderIndex];
+    }
+
+    // 在某個租戶某種語言的基本介紹和個性原文裡搜尋 (不分大小寫)，依照出現次數排名，最多回傳 limit 個
+    public TraitIndex.Result search(int tenant, int locale, String query, int limit) {
+        return contents[tenant][locale].searchIndex.search(query, limit);
+    }
+
+    // 在啟動時把每個租戶、每種語言的內容都先準備好
+    // 繁體中文的預設內容來自上面的資料，其他語言疊上 i18n/ 的介紹檔，租戶再疊上自己的介紹檔
+    private void precomputeContents(TenantRegistry tenants) {
+        // /api/zodiacs 的順序沿用 zodiacInfo 的順序
+        String[] names = getAllZodiacNames();
+        listOrder = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            listOrder[i] = Locales.zodiacIndex(Locales.ZH_TW, names[i]);
         }
 
-        String female;
-        if(personalities != null) {
-            female = personalities.get("女");
+        contents = new Content[tenants.size()][Locales.COUNT];
+        Content[] defaults = contents[TenantRegistry.DEFAULT_TENANT];
+        defaults[Locales.ZH_TW] = defaultContent();
+        allZodiacNamesBodies = new PrecompressedBody[Locales.COUNT];
+        for (int locale = 0; locale < Locales.COUNT; locale++) {
+            if (locale != Locales.ZH_TW) {
+                String resource = Locales.resourcePath(LOCALE_INTRODUCTION, locale);
+                defaults[locale] = overlay(defaults[Locales.ZH_TW], locale, resource, requireLines(resource));
+            }
+            allZodiacNamesBodies[locale] = PrecompressedBody.of(zodiacNamesBody(locale));
+            logCompressedSizes(defaults[locale], locale);
         }
-        else {
-            female = "";
+
+        for (int tenant = 1; tenant < tenants.size(); tenant++) {
+            for (int locale = 0; locale < Locales.COUNT; locale++) {
+                // 繁體中文用 introduction.txt，其他語言用 introduction_<語言>.txt
+                String fileName = locale == Locales.ZH_TW ? TENANT_INTRODUCTION
+                        : LOCALE_INTRODUCTION + "_" + Locales.TAGS[locale] + ".txt";
+                String resource = TenantRegistry.resourcePath(tenants.getName(tenant), fileName);
+                List<String> lines = MatchRuleCompiler.readLines(resource);
+                if (lines == null) {
+                    contents[tenant][locale] = defaults[locale]; // 沒有自己的介紹檔，整份共用預設內容
+                    continue;
+                }
+                contents[tenant][locale] = overlay(defaults[locale], locale, resource, lines);
+            }
         }
+    }
+
+    // 用上面的繁體中文資料建立預設內容
+    private Content defaultContent() {
+        String[] info = new String[12];
+        String[][] personalities = new String[12][];
+        for (int zodiacIndex = 0; zodiacIndex < 12; zodiacIndex++) {
+            info[zodiacIndex] = zodiacInfo.get(infoKey(zodiacIndex));
+            Map<String, String> genders = genderPersonalityData.get(infoKey(zodiacIndex));
+            personalities[zodiacIndex] = new String[]{genders.get("男"), genders.get("女")};
+        }
+
+        Content content = new Content(Locales.ZH_TW, info, personalities, new String[12][],
+                new PrecompressedBody[12][], new PrecompressedPrefix[12][]);
+        for (int zodiacIndex = 0; zodiacIndex < 12; zodiacIndex++) {
+            rebuild(content, Locales.ZH_TW, zodiacIndex);
+        }
+        content.searchIndex = TraitIndex.build(content.info, content.personalities);
+        return content;
+    }
+
+    // 讀取介紹檔，格式是一行一筆：<星座> <info|male|female> <文字>，文字裡的 \n 代表換行
+    // 外層陣列複製一份 (只複製參照)，被改寫的星座才換成新的內容，其他星座和 base 共用同一份
+    private Content overlay(Content base, int locale, String resource, List<String> lines) {
+        Content content = new Content(locale, base.info.clone(), base.personalities.clone(),
+                base.personalityTexts.clone(), base.introductionBodies.clone(), base.personalityBodies.clone());
+        boolean[] changed = new boolean[12];
+        int changedCount = 0;
+
+        for (int lineNumber = 1; lineNumber <= lines.size(); lineNumber++) {
+            String line = lines.get(lineNumber - 1).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue; // 空白行和註解
+            }
+
+            String[] parts = line.split("\\s+", 3);
+            int index = parts.length == 3 ? Locales.zodiacIndex(locale, parts[0]) : -1;
+            if (index < 0) {
+                throw new IllegalStateException(resource + " 第 " + lineNumber + " 行：格式是 <星座> <info|male|female> <文字>");
+            }
+            String text = MatchRuleCompiler.unescape(parts[2]);
+
+            switch (parts[1]) {
+                case "info":
+                    content.info[index] = text;
+                    break;
+                case "male":
+                case "female":
+                    // 第一次改寫這個星座的個性時才複製，不會改到 base 的陣列
+                    if (content.personalities[index] == base.personalities[index]) {
+                        content.personalities[index] = base.personalities[index].clone();
+                    }
+                    content.personalities[index]["male".equals(parts[1]) ? 0 : 1] = text;
+                    break;
+                default:
+                    throw new IllegalStateException(resource + " 第 " + lineNumber + " 行：不認得的欄位「" + parts[1] + "」");
+            }
+            if (!changed[index]) {
+                changed[index] = true;
+                changedCount++;
+            }
+        }
+
+        // 只重新產生被改寫的星座的文字和 JSON
+        // 語言和 base 不同時 (例如英文疊在繁體中文上)，標題和星座名稱都不一樣，所以全部重新產生
+        for (int zodiacIndex = 0; zodiacIndex < 12; zodiacIndex++) {
+            if (changed[zodiacIndex] || base.locale != locale) {
+                rebuild(content, locale, zodiacIndex);
+            }
+        }
+        content.searchIndex = TraitIndex.build(content.info, content.personalities);
+
+        log.info("{}：改寫了 {} 個星座，其餘 {} 個沿用原本的內容", resource, changedCount, 12 - changedCount);
+        return content;
+    }
+
+    // 重新產生一個星座的個性分析文字和介紹 JSON
+    private void rebuild(Content content, int locale, int zodiacIndex) {
+        String info = content.info[zodiacIndex];
+        String[] personalities = content.personalities[zodiacIndex];
+        content.personalityTexts[zodiacIndex] = new String[]{
+                personalityText(locale, zodiacIndex, 0, info, personalities[0]),
+                personalityText(locale, zodiacIndex, 1, info, personalities[1])
+        };
+        content.introductionBodies[zodiacIndex] = buildBodies(introductionName(locale, zodiacIndex), info, personalities);
+        content.personalityBodies[zodiacIndex] = new PrecompressedPrefix[]{
+                personalityPrefix(locale, zodiacIndex, 0, content.personalityTexts[zodiacIndex][0]),
+                personalityPrefix(locale, zodiacIndex, 1, content.personalityTexts[zodiacIndex][1])
+        };
+    }
+
+    // 個性分析 JSON 的固定開頭，把完整的 JSON 去掉最後的「}」，請求時再接上 ,"date":...}
+    private static PrecompressedPrefix personalityPrefix(int locale, int zodiacIndex, int genderIndex, String personality) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("success", true);
+        body.put("zodiac", Locales.ZODIAC_NAMES[locale][zodiacIndex]);
+        body.put("gender", genderIndex == 0 ? "男" : "女"); // 和請求的參數一樣，不翻譯
+        body.put("personality", personality);
+        byte[] json = JsonBodies.toBytes(body);
+        return PrecompressedPrefix.of(Arrays.copyOf(json, json.length - 1));
+    }
+
+    // 介紹 JSON 裡的星座名稱：繁體中文沿用介紹資料的 key (摩羯座)，其他語言用 Locales 的名稱
+    private String introductionName(int locale, int zodiacIndex) {
+        return locale == Locales.ZH_TW ? infoKey(zodiacIndex) : Locales.ZODIAC_NAMES[locale][zodiacIndex];
+    }
+
+    // 把一個星座每種欄位組合的介紹轉成 JSON 並壓縮，陣列索引就是欄位遮罩 (1~7)，索引 0 不會用到
+    private static PrecompressedBody[] buildBodies(String zodiac, String info, String[] personalities) {
+        // 三個欄位的內容，順序和 FIELD_NAMES 一樣
+        String[] values = {info, personalities[0], personalities[1]};
 
-        if (info == null) {
-            info = "抱歉，找不到 " + zodiac + " 的介紹資訊。";
+        PrecompressedBody[] bodies = new PrecompressedBody[ALL_FIELDS + 1];
+        for (int mask = 1; mask <= ALL_FIELDS; mask++) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("success", true);
+            body.put("zodiac", zodiac);
+            for (int i = 0; i < FIELD_NAMES.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    body.put(FIELD_NAMES[i], values[i]);
+                }
+            }
+            bodies[mask] = PrecompressedBody.of(JsonBodies.toBytes(body));
         }
-        // 用 "===DELIM===" 這個分隔符號來連接三個部分
-        // 這樣前端可以方便地分開顯示
-        return String.join("===DELIM===", info, male, female);
+        return bodies;
+    }
+
+    // 某種語言的星座名稱列表 JSON
+    private byte[] zodiacNamesBody(int locale) {
+        String[] localized = new String[listOrder.length];
+        for (int i = 0; i < listOrder.length; i++) {
+            localized[i] = introductionName(locale, listOrder[i]);
+        }
+
+        Map<String, Object> names = new LinkedHashMap<>();
+        names.put("success", true);
+        names.put("zodiacs", localized);
+        return JsonBodies.toBytes(names);
+    }
+
+    // 記錄一種語言的預設內容壓縮前後的大小 (所有欄位組合加上兩種性別的個性分析)
+    private static void logCompressedSizes(Content content, int locale) {
+        long identity = 0;
+        long gzip = 0;
+        long brotli = 0;
+        for (int zodiacIndex = 0; zodiacIndex < 12; zodiacIndex++) {
+            for (int mask = 1; mask <= ALL_FIELDS; mask++) {
+                PrecompressedBody body = content.introductionBodies[zodiacIndex][mask];
+                identity += body.getIdentity().length;
+                gzip += body.getGzip() != null ? body.getGzip().length : body.getIdentity().length;
+                brotli += body.getBrotli() != null ? body.getBrotli().length : body.getIdentity().length;
+            }
+            for (PrecompressedPrefix prefix : content.personalityBodies[zodiacIndex]) {
+                identity += prefix.getIdentityLength();
+                gzip += prefix.getGzipLength();
+                brotli += prefix.getBrotliLength() >= 0 ? prefix.getBrotliLength() : prefix.getIdentityLength();
+            }
+        }
+        log.info("{} 的介紹和個性分析 JSON：原始 {} KB，gzip {} KB，brotli {} KB",
+                Locales.TAGS[locale], identity / 1024, gzip / 1024, brotli / 1024);
+    }
+
+    // 讀取一定要存在的資料檔
+    private static List<String> requireLines(String resource) {
+        List<String> lines = MatchRuleCompiler.readLines(resource);
+        if (lines == null) {
+            throw new IllegalStateException("找不到 " + resource);
+        }
+        return lines;
+    }
+
+    // 介紹資料用的星座名稱 (介紹資料的 key 是「摩羯座」)
+    private String infoKey(int zodiacIndex) {
+        for (String zodiac : zodiacInfo.keySet()) {
+            if (Locales.zodiacIndex(Locales.ZH_TW, zodiac) == zodiacIndex) {
+                return zodiac;
+            }
+        }
+        return ZodiacCalculator.ZODIAC_NAMES[zodiacIndex];
+    }
+
+    // 取得星座的基本介紹文字 (日期範圍、配對星座)，找不到就回傳 null
+    public String getZodiacInfo(String zodiac) {
+        int zodiacIndex = Locales.zodiacIndex(Locales.ZH_TW, zodiac);
+        return zodiacIndex >= 0 ? contents[TenantRegistry.DEFAULT_TENANT][Locales.ZH_TW].info[zodiacIndex] : null;
+    }
+
+    // 取得某個星座某個性別的個性原文 (不含標題)，找不到就回傳 null
+    public String getGenderPersonality(String zodiac, String gender) {
+        Map<String, String> personalities = genderPersonalityData.get(zodiac);
+        return personalities != null ? personalities.get(gender) : null;
+    }
+
+    // 取得所有星座名稱的 JSON (事先轉好，/api/zodiacs 直接回傳)
+    public PrecompressedBody getAllZodiacNamesBody() {
+        return getAllZodiacNamesBody(Locales.ZH_TW);
+    }
+
+    // 取得某種語言的星座名稱 JSON
+    public PrecompressedBody getAllZodiacNamesBody(int locale) {
+        return allZodiacNamesBodies[locale];
     }
 
     // 回傳所有星座名稱的陣列
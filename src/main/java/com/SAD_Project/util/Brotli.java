@@ -0,0 +1,102 @@
+package com.SAD_Project.util;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader; // 載入 brotli 原生函式庫
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+import org.slf4j.Logger; // 日誌
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+// 這個class包裝 brotli 壓縮 (brotli4j)，只在啟動時用來預先壓縮回應內容
+// brotli 需要原生函式庫，如果這個平台載入不了，isAvailable 會是 false，呼叫的人就只提供 gzip
+public final class Brotli {
+
+    private static final Logger log = LoggerFactory.getLogger(Brotli.class);
+
+    private static final boolean AVAILABLE = load();
+
+    // 最高壓縮等級，內容是文字 (JSON)；只壓縮一次，可以多花一點時間換更小的回應
+    private static final int QUALITY = 11;
+
+    private Brotli() {
+    }
+
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    // 壓縮成完整的 brotli 資料，brotli 不能用時回傳 null
+    public static byte[] compress(byte[] data) {
+        if (!AVAILABLE) {
+            return null;
+        }
+        try {
+            return Encoder.compress(data, parameters());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 壓縮成「還沒結束」的 brotli 資料：內容都已經輸出並對齊到位元組，但沒有最後的結束區塊
+    // 之後可以用 appendUncompressedTail 在後面接上每次請求不一樣的內容，brotli 不能用時回傳 null
+    public static byte[] compressOpen(byte[] data) {
+        if (!AVAILABLE) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try {
+            BrotliOutputStream brotliOut = new BrotliOutputStream(out, parameters());
+            brotliOut.write(data);
+            brotliOut.flush(); // flush 會結束目前的區塊並補齊到位元組邊界，但不會寫出結束標記
+            return out.toByteArray(); // 故意不 close，close 會寫出結束區塊
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 在 compressOpen 的結果後面接上一段不壓縮的內容，再寫出結束區塊 (RFC 7932 第 9.2 節)
+    // 不壓縮的區塊標頭是：ISLAST=0、MNIBBLES=4 (2 位元的 0)、MLEN-1 (16 位元)、ISUNCOMPRESSED=1，補齊到 3 個位元組
+    // 結束區塊是 ISLAST=1、ISLASTEMPTY=1，也就是一個位元組 0x03
+    // 不壓縮的區塊至少要有 1 個位元組，沒有結尾時只接上結束區塊；結尾最長 65536 個位元組
+    // 這依賴 brotli4j 的 flush() 結束目前的區塊、補齊位元組而且不寫結束標記 (PrecompressedPrefixTest 用 Decoder 驗證)
+    public static byte[] appendUncompressedTail(byte[] open, byte[] tail) {
+        if (tail.length > 0x10000) {
+            throw new IllegalArgumentException("不壓縮的區塊長度不能超過 65536：" + tail.length);
+        }
+        if (tail.length == 0) {
+            byte[] out = Arrays.copyOf(open, open.length + 1);
+            out[open.length] = 0x03;
+            return out;
+        }
+        int header = ((tail.length - 1) << 3) | (1 << 19);
+
+        byte[] out = new byte[open.length + 3 + tail.length + 1];
+        System.arraycopy(open, 0, out, 0, open.length);
+        int position = open.length;
+        out[position++] = (byte) header;
+        out[position++] = (byte) (header >>> 8);
+        out[position++] = (byte) (header >>> 16);
+        System.arraycopy(tail, 0, out, position, tail.length);
+        out[out.length - 1] = 0x03;
+        return out;
+    }
+
+    private static Encoder.Parameters parameters() {
+        return new Encoder.Parameters().setQuality(QUALITY).setMode(Encoder.Mode.TEXT);
+    }
+
+    private static boolean load() {
+        try {
+            Brotli4jLoader.ensureAvailability();
+            return true;
+        } catch (Throwable e) {
+            log.warn("無法載入 brotli 原生函式庫，API 只提供 gzip 壓縮：{}", e.toString());
+            return false;
+        }
+    }
+}
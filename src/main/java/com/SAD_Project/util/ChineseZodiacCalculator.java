@@ -0,0 +1,73 @@
+package com.SAD_Project.util;
+
+// 這個class根據出生年份 (和月日) 算出生肖
+// 生肖是以農曆新年為界，所以一、二月出生的人要先看有沒有過農曆年
+// 每年農曆新年的日期事先整理成表，查詢只要讀一次陣列，不用做任何曆法計算
+public class ChineseZodiacCalculator {
+
+    // 十二生肖的固定順序 (從鼠開始)，陣列索引就是生肖編號
+    public static final String[] ANIMAL_NAMES = {"鼠", "牛", "虎", "兔", "龍", "蛇",
+            "馬", "羊", "猴", "雞", "狗", "豬"};
+
+    // 表格涵蓋的年份範圍
+    public static final int FIRST_YEAR = 1900;
+    public static final int LAST_YEAR = 2100;
+
+    // animalIndex 的錯誤代碼 (接在 ZodiacCalculator 的錯誤代碼後面)
+    public static final int ERROR_YEAR_REQUIRED = -4;     // 生日沒有年份
+    public static final int ERROR_YEAR_OUT_OF_RANGE = -5; // 年份不在表格範圍內
+
+    // 每年農曆新年 (正月初一，UTC+8) 是那一年的第幾天
+    // 一月就是日期，二月是 31 + 日期，例如 2024 年是 2/10，存成 41
+    private static final byte[] LUNAR_NEW_YEAR_DAY = {
+            31, 50, 39, 29, 47, 35, 25, 44, 33, 22, // 1900-1909
+            41, 30, 49, 37, 26, 45, 34, 23, 42, 32, // 1910-1919
+            51, 39, 28, 47, 36, 24, 44, 33, 23, 41, // 1920-1929
+            30, 48, 37, 26, 45, 35, 24, 42, 31, 50, // 1930-1939
+            39, 27, 46, 36, 25, 44, 33, 22, 41, 29, // 1940-1949
+            48, 37, 27, 45, 35, 24, 43, 31, 49, 39, // 1950-1959
+            28, 46, 36, 25, 44, 33, 21, 40, 30, 48, // 1960-1969
+            37, 27, 46, 34, 23, 42, 31, 49, 38, 28, // 1970-1979
+            47, 36, 25, 44, 33, 51, 40, 29, 48, 37, // 1980-1989
+            27, 46, 35, 23, 41, 31, 50, 38, 28, 47, // 1990-1999
+            36, 24, 43, 32, 22, 40, 29, 49, 38, 26, // 2000-2009
+            45, 34, 23, 41, 31, 50, 39, 28, 47, 36, // 2010-2019
+            25, 43, 32, 22, 41, 29, 48, 38, 26, 44, // 2020-2029
+            33, 23, 42, 31, 50, 39, 28, 46, 35, 24, // 2030-2039
+            43, 32, 22, 41, 30, 48, 37, 26, 45, 33, // 2040-2049
+            23, 42, 32, 50, 39, 28, 46, 35, 24, 43, // 2050-2059
+            33, 21, 40, 29, 48, 36, 26, 45, 34, 23, // 2060-2069
+            42, 31, 50, 38, 27, 46, 36, 24, 43, 33, // 2070-2079
+            22, 40, 29, 48, 37, 26, 45, 34, 24, 41, // 2080-2089
+            30, 49, 38, 27, 46, 36, 25, 43, 32, 21, // 2090-2099
+            40  // 2100
+    };
+
+    // 根據 ZodiacCalculator.parseBirthDate 的結果算出生肖編號 (0~11)
+    // 日期有錯誤時直接回傳原本的錯誤代碼，沒有年份或年份超出範圍時回傳對應的錯誤代碼
+    public static int animalIndex(int packedDate) {
+        if (packedDate < 0) {
+            return packedDate;
+        }
+
+        int year = ZodiacCalculator.yearOf(packedDate);
+        if (year == 0) {
+            return ERROR_YEAR_REQUIRED;
+        }
+        if (year < FIRST_YEAR || year > LAST_YEAR) {
+            return ERROR_YEAR_OUT_OF_RANGE;
+        }
+
+        // 農曆新年一定在一、二月，三月以後不用查表
+        int month = ZodiacCalculator.monthOf(packedDate);
+        if (month <= 2) {
+            int dayOfYear = month == 1 ? ZodiacCalculator.dayOf(packedDate) : 31 + ZodiacCalculator.dayOf(packedDate);
+            if (dayOfYear < LUNAR_NEW_YEAR_DAY[year - FIRST_YEAR]) {
+                year--; // 還沒過農曆年，屬於前一年的生肖
+            }
+        }
+
+        // 1900 年是鼠年，每 12 年循環一次 (1899 年算出來是 11，也就是豬)
+        return (year - 4) % 12;
+    }
+}
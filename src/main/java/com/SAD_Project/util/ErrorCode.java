@@ -0,0 +1,94 @@
+package com.SAD_Project.util;
+
+import org.springframework.http.HttpStatus; // HTTP 狀態碼
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 這個enum列出 API 所有可預期的錯誤
+// 每個錯誤的回應內容在啟動時就轉成 JSON，遇到亂輸入的請求直接回傳同一份 byte[]
+// 不用丟例外、不用組字串，也不會產生新的物件
+// 錯誤訊息有繁體中文、簡體中文和英文三種，每種語言各轉好一份 (順序和 Locales 的語言編號一樣)
+// 二進位格式 (WireFormat) 用順序當錯誤代碼，新的錯誤只能加在最後面
+public enum ErrorCode {
+
+    MISSING_DATE(HttpStatus.OK, "請輸入生日日期", "请输入生日日期", "Please enter a birth date"),
+    BAD_DATE_FORMAT(HttpStatus.OK,
+            "日期格式不正確，請使用 M/d 或 yyyy-MM-dd（例如：3/21 或 2024-03-21）",
+            "日期格式不正确，请使用 M/d 或 yyyy-MM-dd（例如：3/21 或 2024-03-21）",
+            "Invalid date format, please use M/d or yyyy-MM-dd (e.g. 3/21 or 2024-03-21)"),
+    DATE_OUT_OF_RANGE(HttpStatus.OK, "日期不存在，請確認月份和日期", "日期不存在，请确认月份和日期",
+            "This date does not exist, please check the month and day"),
+    YEAR_REQUIRED(HttpStatus.OK,
+            "星座加生肖的配對需要完整的出生年月日（例如：1990-03-21）",
+            "星座加生肖的配对需要完整的出生年月日（例如：1990-03-21）",
+            "The combined zodiac match needs a full birth date (e.g. 1990-03-21)"),
+    YEAR_OUT_OF_RANGE(HttpStatus.OK,
+            "出生年份必須在 " + ChineseZodiacCalculator.FIRST_YEAR + " 到 " + ChineseZodiacCalculator.LAST_YEAR + " 年之間",
+            "出生年份必须在 " + ChineseZodiacCalculator.FIRST_YEAR + " 到 " + ChineseZodiacCalculator.LAST_YEAR + " 年之间",
+            "Birth year must be between " + ChineseZodiacCalculator.FIRST_YEAR + " and " + ChineseZodiacCalculator.LAST_YEAR),
+    BAD_GENDER(HttpStatus.OK, "性別必須是「男」或「女」", "性别必须是「男」或「女」", "Gender must be 男 (male) or 女 (female)"),
+    UNKNOWN_ZODIAC(HttpStatus.OK, "找不到這個星座的資料", "找不到这个星座的资料", "No data found for this zodiac sign"),
+    BAD_MODE(HttpStatus.OK, "配對模式只能是 western 或 combined", "配对模式只能是 western 或 combined",
+            "Match mode must be western or combined"),
+    MATCH_NOT_FOUND(HttpStatus.OK, "無法找到配對資料", "无法找到配对资料", "No match data found"),
+    UNKNOWN_TENANT(HttpStatus.NOT_FOUND, "找不到這個品牌的設定", "找不到这个品牌的设置", "Unknown brand"),
+    INTERNAL_ERROR(HttpStatus.INTERNAL_SERVER_ERROR, "分析失敗，請稍後再試", "分析失败，请稍后再试",
+            "Analysis failed, please try again later"),
+    OVERLOADED(HttpStatus.SERVICE_UNAVAILABLE, "目前使用人數過多，請稍後再試", "目前使用人数过多，请稍后再试",
+            "Too many requests right now, please try again later"),
+    BAD_WIRE_FORMAT(HttpStatus.BAD_REQUEST, "二進位請求的格式不正確", "二进制请求的格式不正确",
+            "Malformed binary request"),
+    BAD_QUERY(HttpStatus.OK, "請輸入要搜尋的特質（最多 32 個字）", "请输入要搜索的特质（最多 32 个字）",
+            "Please enter a trait to search for (up to 32 characters)"),
+    BAD_THRESHOLD(HttpStatus.OK,
+            "請輸入最低分數 minScore (0~100) 或最低等級 minLevel (例如：小吉)，兩個只能選一個",
+            "请输入最低分数 minScore (0~100) 或最低等级 minLevel (例如：小吉)，两个只能选一个",
+            "Please give either minScore (0-100) or minLevel (e.g. Good), not both");
+
+    private final String[] messages; // 給使用者看的錯誤訊息，索引是 Locales 的語言編號
+    private final HttpStatus status; // 回應的 HTTP 狀態碼 (輸入錯誤維持 200，和原本的前端相容)
+    private final byte[][] bodies;   // 每種語言事先轉好的 JSON 回應內容
+
+    ErrorCode(HttpStatus status, String... messages) {
+        if (messages.length != Locales.COUNT) {
+            throw new IllegalStateException(name() + " 的錯誤訊息數量和語言數量不一樣");
+        }
+        this.messages = messages;
+        this.status = status;
+        this.bodies = new byte[Locales.COUNT][];
+
+        for (int locale = 0; locale < Locales.COUNT; locale++) {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("success", false);
+            response.put("code", name());
+            response.put("error", messages[locale]);
+            bodies[locale] = JsonBodies.toBytes(response);
+        }
+    }
+
+    // 繁體中文的錯誤訊息
+    public String getMessage() { return messages[Locales.ZH_TW]; }
+    public String getMessage(int locale) { return messages[locale]; }
+    public HttpStatus getStatus() { return status; }
+
+    // 注意：回傳的是共用的陣列，呼叫的人不可以修改內容
+    public byte[] getBody() { return bodies[Locales.ZH_TW]; }
+    public byte[] getBody(int locale) { return bodies[locale]; }
+
+    // 把 ZodiacCalculator.parseBirthDate 和 ChineseZodiacCalculator.animalIndex 的錯誤代碼轉成對應的錯誤
+    public static ErrorCode fromDateError(int parseResult) {
+        switch (parseResult) {
+            case ZodiacCalculator.ERROR_MISSING:
+                return MISSING_DATE;
+            case ZodiacCalculator.ERROR_OUT_OF_RANGE:
+                return DATE_OUT_OF_RANGE;
+            case ChineseZodiacCalculator.ERROR_YEAR_REQUIRED:
+                return YEAR_REQUIRED;
+            case ChineseZodiacCalculator.ERROR_YEAR_OUT_OF_RANGE:
+                return YEAR_OUT_OF_RANGE;
+            default:
+                return BAD_DATE_FORMAT;
+        }
+    }
+}
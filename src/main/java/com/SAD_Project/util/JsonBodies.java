@@ -0,0 +1,26 @@
+package com.SAD_Project.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException; // Jackson 序列化失敗時丟出的例外
+import com.fasterxml.jackson.databind.ObjectMapper; // Jackson 的 JSON 轉換器 (Spring Boot Web 內建)
+
+// 這個class負責把回應資料事先轉成 JSON 位元組
+// 內容固定的回應只要在啟動時轉一次，之後每次請求都直接回傳同一份 byte[]
+public class JsonBodies {
+
+    // ObjectMapper 設定好之後是執行緒安全的，所以全部共用一個
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // 不需要建立物件，全部都是靜態方法
+    private JsonBodies() {
+    }
+
+    // 把物件 (通常是 Map) 轉成 UTF-8 的 JSON 位元組
+    public static byte[] toBytes(Object value) {
+        try {
+            return MAPPER.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            // 只有資料本身有問題才會發生，屬於程式錯誤
+            throw new IllegalStateException("無法轉換成 JSON", e);
+        }
+    }
+}
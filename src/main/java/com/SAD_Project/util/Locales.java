@@ -0,0 +1,214 @@
+package com.SAD_Project.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// 這個class列出系統支援的語言，以及每種語言的星座、生肖、等級、性別名稱
+// 語言用編號表示 (繁體中文 0、簡體中文 1、英文 2)，各服務事先為每種語言產生好回應內容，請求時只要用編號查陣列
+// 每種語言也有自己的星座別名表 (例如 白羊座、Aries、capricorn)，在啟動時就建好，查詢只要一次 Map
+public class Locales {
+
+    public static final int ZH_TW = 0; // 繁體中文 (預設)
+    public static final int ZH_CN = 1; // 簡體中文
+    public static final int EN = 2;    // 英文
+    public static final int COUNT = 3;
+
+    // 語言標籤，也是 i18n/ 底下檔案名稱的後綴
+    public static final String[] TAGS = {"zh-TW", "zh-CN", "en"};
+
+    // 每種語言的星座名稱，順序和 ZodiacCalculator.ZODIAC_NAMES 一樣
+    public static final String[][] ZODIAC_NAMES = {
+            ZodiacCalculator.ZODIAC_NAMES,
+            {"白羊座", "金牛座", "双子座", "巨蟹座", "狮子座", "处女座",
+                    "天秤座", "天蝎座", "射手座", "摩羯座", "水瓶座", "双鱼座"},
+            {"Aries", "Taurus", "Gemini", "Cancer", "Leo", "Virgo",
+                    "Libra", "Scorpio", "Sagittarius", "Capricorn", "Aquarius", "Pisces"}
+    };
+
+    // 每種語言的生肖名稱，順序和 ChineseZodiacCalculator.ANIMAL_NAMES 一樣
+    public static final String[][] ANIMAL_NAMES = {
+            ChineseZodiacCalculator.ANIMAL_NAMES,
+            {"鼠", "牛", "虎", "兔", "龙", "蛇", "马", "羊", "猴", "鸡", "狗", "猪"},
+            {"Rat", "Ox", "Tiger", "Rabbit", "Dragon", "Snake",
+                    "Horse", "Goat", "Monkey", "Rooster", "Dog", "Pig"}
+    };
+
+    // 每種語言的配對等級名稱，順序和 MatchRuleEngine.LEVELS 一樣
+    public static final String[][] LEVEL_LABELS = {
+            {"大吉", "小吉", "普通", "小凶", "大凶"},
+            {"大吉", "小吉", "普通", "小凶", "大凶"},
+            {"Excellent", "Good", "Fair", "Poor", "Bad"}
+    };
+
+    // 每種語言的性別名稱 (男 0、女 1)
+    public static final String[][] GENDER_LABELS = {
+            {"男", "女"},
+            {"男", "女"},
+            {"Male", "Female"}
+    };
+
+    // 額外的星座別名 (名稱本身和去掉「座」的簡稱會自動加入)
+    private static final String[][][] EXTRA_ALIASES = {
+            {{"白羊座", "白羊"}, {}, {}, {}, {}, {}, {"天平座", "天平"}, {}, {"人馬座", "人馬"},
+                    {"摩羯座", "摩羯", "山羊座"}, {"寶瓶座", "寶瓶"}, {}},
+            {{"牡羊座", "牡羊"}, {}, {}, {}, {}, {}, {"天平座", "天平"}, {}, {"人马座", "人马"},
+                    {"魔羯座", "魔羯", "山羊座"}, {"宝瓶座", "宝瓶"}, {}},
+            {{}, {}, {}, {}, {}, {}, {}, {}, {}, {}, {}, {}}
+    };
+
+    // 每種語言的別名表，key 是別名 (英文一律小寫)，value 是星座編號
+    private static final Map<String, Integer>[] ALIASES = buildAliases();
+
+    // 從 Accept-Language 標頭選出最適合的語言，沒有支援的語言就用繁體中文
+    // 只掃描一次字串，不用 split，也不建立 Locale 物件
+    public static int fromAcceptLanguage(String header) {
+        if (header == null || header.isEmpty()) {
+            return ZH_TW;
+        }
+
+        int best = ZH_TW;
+        int bestQuality = -1; // 權重乘以 1000 之後的整數
+        int length = header.length();
+        int start = 0;
+        while (start < length) {
+            int end = header.indexOf(',', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            // 一段的格式是 tag;q=0.8，沒有 q 的話權重就是 1
+            int semicolon = header.indexOf(';', start);
+            int tagEnd = semicolon >= 0 && semicolon < end ? semicolon : end;
+            int locale = matchTag(header, skipSpaces(header, start, tagEnd), trimEnd(header, start, tagEnd));
+            if (locale >= 0) {
+                int quality = tagEnd < end ? parseQuality(header, tagEnd + 1, end) : 1000;
+                // q=0 表示使用者明確不要這個語言 (例如 en;q=0)，不能選它，全部都是 q=0 就用預設的繁體中文
+                if (quality > 0 && quality > bestQuality) {
+                    best = locale;
+                    bestQuality = quality;
+                }
+            }
+
+            start = end + 1;
+        }
+        return best;
+    }
+
+    // 用某個語言的別名表找星座編號，找不到回傳 -1
+    public static int zodiacIndex(int locale, String name) {
+        if (name == null) {
+            return -1;
+        }
+        Integer index = ALIASES[locale].get(name);
+        if (index == null && locale == EN) {
+            index = ALIASES[locale].get(name.trim().toLowerCase()); // 英文不分大小寫，只有第一次查不到才轉小寫
+        }
+        return index != null ? index : -1;
+    }
+
+    // 語言專用資料檔在 classpath 上的路徑，例如 i18n/introduction_en.txt
+    public static String resourcePath(String baseName, int locale) {
+        return "i18n/" + baseName + "_" + TAGS[locale] + ".txt";
+    }
+
+    // 判斷 header[start, end) 這段語言標籤是哪種語言，不支援就回傳 -1
+    private static int matchTag(String header, int start, int end) {
+        int length = end - start;
+        if (length <= 0) {
+            return -1;
+        }
+        if (length == 1 && header.charAt(start) == '*') {
+            return ZH_TW;
+        }
+        if (header.regionMatches(true, start, "en", 0, 2) && (length == 2 || header.charAt(start + 2) == '-')) {
+            return EN;
+        }
+        if (header.regionMatches(true, start, "zh", 0, 2) && (length == 2 || header.charAt(start + 2) == '-')) {
+            // 簡體中文：zh-CN、zh-SG、zh-Hans (包含 zh-Hans-CN 這類寫法)
+            if (length >= 5 && (header.regionMatches(true, start + 3, "CN", 0, 2)
+                    || header.regionMatches(true, start + 3, "SG", 0, 2)
+                    || header.regionMatches(true, start + 3, "Hans", 0, 4))) {
+                return ZH_CN;
+            }
+            return ZH_TW; // zh、zh-TW、zh-HK、zh-Hant 都用繁體中文
+        }
+        return -1;
+    }
+
+    // 解析 q=0.8 這種權重，回傳乘以 1000 的整數，格式不對就當成 0
+    private static int parseQuality(String header, int start, int end) {
+        start = skipSpaces(header, start, end);
+        if (end - start < 3 || header.charAt(start) != 'q' || header.charAt(start + 1) != '=') {
+            return 0;
+        }
+        int quality = 0;
+        int digits = 0;
+        boolean fraction = false;
+        for (int i = start + 2; i < end; i++) {
+            char c = header.charAt(i);
+            if (c == '.') {
+                fraction = true;
+            } else if (c >= '0' && c <= '9') {
+                if (!fraction) {
+                    quality = (c - '0') * 1000;
+                } else if (digits < 3) {
+                    quality += (c - '0') * (digits == 0 ? 100 : digits == 1 ? 10 : 1);
+                    digits++;
+                }
+            } else if (c != ' ') {
+                return 0;
+            }
+        }
+        return Math.min(quality, 1000);
+    }
+
+    private static int skipSpaces(String text, int start, int end) {
+        while (start < end && text.charAt(start) == ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String text, int start, int end) {
+        while (end > start && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    // 建立每種語言的別名表
+    // 每種語言都接受自己的名稱、簡稱和額外別名，也都接受繁體中文的名稱 (網頁上的連結和表單都用繁體中文)
+    @SuppressWarnings("unchecked")
+    private static Map<String, Integer>[] buildAliases() {
+        Map<String, Integer>[] tables = new Map[COUNT];
+        for (int locale = 0; locale < COUNT; locale++) {
+            Map<String, Integer> table = new HashMap<>();
+            addAliases(table, ZH_TW);
+            if (locale != ZH_TW) {
+                addAliases(table, locale);
+            }
+            tables[locale] = table;
+        }
+        return tables;
+    }
+
+    // 把某種語言的名稱、簡稱和額外別名加進別名表
+    private static void addAliases(Map<String, Integer> table, int locale) {
+        for (int index = 0; index < 12; index++) {
+            String name = ZODIAC_NAMES[locale][index];
+            put(table, name, index);
+            if (name.endsWith("座")) {
+                put(table, name.substring(0, name.length() - 1), index); // 去掉「座」的簡稱
+            }
+            for (String alias : EXTRA_ALIASES[locale][index]) {
+                put(table, alias, index);
+            }
+        }
+    }
+
+    // 英文的別名也存一份小寫的
+    private static void put(Map<String, Integer> table, String alias, int index) {
+        table.put(alias, index);
+        table.put(alias.toLowerCase(), index);
+    }
+}
@@ -0,0 +1,155 @@
+package com.SAD_Project.util;
+
+import org.springframework.http.HttpHeaders; // HTTP 標頭名稱常數
+import org.springframework.http.MediaType; // HTTP 內容類型
+import org.springframework.http.ResponseEntity; // 用來回傳 HTTP 回應的類別
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// 這個class存放一份回應內容的原始版本和事先壓縮好的 gzip、brotli 版本
+// 內容固定不變，所以只要壓縮一次，之後每次請求都直接回傳
+public class PrecompressedBody {
+
+    // 選擇的編碼
+    public static final int IDENTITY = 0;
+    public static final int GZIP = 1;
+    public static final int BROTLI = 2;
+
+    private final byte[] identity; // 沒有壓縮的原始內容
+    private final byte[] gzip;     // gzip 壓縮後的內容，null 表示不提供
+    private final byte[] brotli;   // brotli 壓縮後的內容，null 表示不提供
+
+    public PrecompressedBody(byte[] identity, byte[] gzip) {
+        this(identity, gzip, null);
+    }
+
+    public PrecompressedBody(byte[] identity, byte[] gzip, byte[] brotli) {
+        this.identity = identity;
+        this.gzip = gzip;
+        this.brotli = brotli;
+    }
+
+    // 只有原始內容時，當場壓縮成 gzip 和 brotli (只在啟動時呼叫)
+    // 很短的內容壓縮後反而比較大，這種就不提供壓縮版
+    public static PrecompressedBody of(byte[] identity) {
+        byte[] gzip = gzip(identity);
+        byte[] brotli = Brotli.compress(identity);
+        return new PrecompressedBody(identity,
+                gzip.length < identity.length ? gzip : null,
+                brotli != null && brotli.length < identity.length ? brotli : null);
+    }
+
+    public byte[] getIdentity() { return identity; }
+    public byte[] getGzip() { return gzip; }
+    public byte[] getBrotli() { return brotli; }
+
+    // 根據瀏覽器的 Accept-Encoding 選擇要回傳哪一個版本
+    // 兩個版本都要加 Vary 標頭，避免快取伺服器把壓縮版給不支援的客戶端
+    public ResponseEntity<byte[]> toResponse(String acceptEncoding, MediaType contentType) {
+        return toResponse(acceptEncoding, contentType, HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    // vary 是完整的 Vary 標頭內容 (例如 API 還會依照 Accept-Language 改變)
+    public ResponseEntity<byte[]> toResponse(String acceptEncoding, MediaType contentType, String vary) {
+        return toResponse(acceptEncoding, ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.VARY, vary));
+    }
+
+    // 呼叫的人自己準備好其他標頭 (例如快取期限)，這裡只選版本、加上 Content-Encoding
+    public ResponseEntity<byte[]> toResponse(String acceptEncoding, ResponseEntity.BodyBuilder builder) {
+        int encoding = acceptedEncodings(acceptEncoding);
+        if (brotli != null && (encoding & (1 << BROTLI)) != 0) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "br").body(brotli);
+        }
+        if (gzip != null && (encoding & (1 << GZIP)) != 0) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip);
+        }
+        return builder.body(identity);
+    }
+
+    // 解析 Accept-Encoding，回傳客戶端接受的編碼 (第 GZIP、BROTLI 個位元)
+    // 只掃描一次字串，q=0 代表客戶端明確拒絕這個編碼
+    public static int acceptedEncodings(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return 0;
+        }
+
+        int accepted = 0;
+        int length = acceptEncoding.length();
+        int start = 0;
+        while (start < length) {
+            int end = acceptEncoding.indexOf(',', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            // 一段的格式是 coding;q=0.5
+            int semicolon = acceptEncoding.indexOf(';', start);
+            int nameEnd = semicolon >= 0 && semicolon < end ? semicolon : end;
+            if (nameEnd == end || !isZeroQuality(acceptEncoding, nameEnd + 1, end)) {
+                accepted |= encodingBit(acceptEncoding, start, nameEnd);
+            }
+
+            start = end + 1;
+        }
+        return accepted;
+    }
+
+    // acceptEncoding[start, end) 這個編碼名稱對應的位元
+    private static int encodingBit(String text, int start, int end) {
+        while (start < end && text.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+        int length = end - start;
+        if (length == 4 && text.regionMatches(true, start, "gzip", 0, 4)) {
+            return 1 << GZIP;
+        }
+        if (length == 2 && text.regionMatches(true, start, "br", 0, 2)) {
+            return 1 << BROTLI;
+        }
+        if (length == 1 && text.charAt(start) == '*') {
+            return (1 << GZIP) | (1 << BROTLI);
+        }
+        return 0;
+    }
+
+    // q=0、q=0.0、q=0.000 都代表拒絕
+    private static boolean isZeroQuality(String text, int start, int end) {
+        while (start < end && text.charAt(start) == ' ') {
+            start++;
+        }
+        if (end - start < 3 || text.charAt(start) != 'q' || text.charAt(start + 1) != '=') {
+            return false;
+        }
+        for (int i = start + 2; i < end; i++) {
+            char c = text.charAt(i);
+            if (c != '0' && c != '.' && c != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 用最高壓縮等級做 gzip，反正只做一次，可以多花一點時間換更小的檔案
+    public static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzipOut.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
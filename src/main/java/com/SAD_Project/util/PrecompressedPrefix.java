@@ -0,0 +1,139 @@
+package com.SAD_Project.util;
+
+import org.springframework.http.HttpHeaders; // HTTP 標頭名稱常數
+import org.springframework.http.MediaType; // HTTP 內容類型
+import org.springframework.http.ResponseEntity; // 用來回傳 HTTP 回應的類別
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// 這個class存放一份「開頭固定、結尾每次不一樣」的回應內容
+// 例如個性分析的 JSON，幾 KB 的分析文字是固定的，只有最後回傳的日期是使用者輸入的
+// 固定的開頭在啟動時就壓縮好，而且壓縮資料停在位元組邊界、沒有結束標記；
+// 每次請求只要在後面接上一個「不壓縮」的區塊放結尾，再補上結束標記，就是合法的 gzip / brotli 資料
+// 這樣不用每次壓縮幾 KB 的文字，只多花複製陣列和算幾十個位元組 CRC 的時間
+public class PrecompressedPrefix {
+
+    // gzip 標頭：魔術數字、deflate、沒有旗標、沒有時間、沒有額外旗標、OS 未知 (RFC 1952)
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    // CRC-32 查詢表，用來從開頭的 CRC 接著算結尾的部分 (java.util.zip.CRC32 不能指定起始值)
+    private static final int[] CRC_TABLE = new int[256];
+    static {
+        for (int n = 0; n < 256; n++) {
+            int c = n;
+            for (int k = 0; k < 8; k++) {
+                c = (c & 1) != 0 ? 0xedb88320 ^ (c >>> 1) : c >>> 1;
+            }
+            CRC_TABLE[n] = c;
+        }
+    }
+
+    private final byte[] identity; // 沒有壓縮的開頭
+    private final byte[] gzip;     // gzip 標頭 + 開頭的 deflate 資料 (結束在 SYNC_FLUSH，不是最後一個區塊)
+    private final int crc;         // 開頭的 CRC-32
+    private final byte[] brotli;   // 開頭的 brotli 資料 (沒有結束區塊)，brotli 不能用時是 null
+
+    private PrecompressedPrefix(byte[] identity, byte[] gzip, int crc, byte[] brotli) {
+        this.identity = identity;
+        this.gzip = gzip;
+        this.crc = crc;
+        this.brotli = brotli;
+    }
+
+    // 壓縮固定的開頭 (只在啟動時呼叫)
+    public static PrecompressedPrefix of(byte[] identity) {
+        CRC32 crc = new CRC32();
+        crc.update(identity);
+        return new PrecompressedPrefix(identity, deflateOpen(identity), (int) crc.getValue(), Brotli.compressOpen(identity));
+    }
+
+    public int getIdentityLength() { return identity.length; }
+    public int getGzipLength() { return gzip.length; }
+    public int getBrotliLength() { return brotli != null ? brotli.length : -1; }
+
+    // 接上結尾，依照 Accept-Encoding 回傳 brotli、gzip 或原始內容
+    // 結尾最長 65535 個位元組 (一個不壓縮的 deflate 區塊的上限)，更長的結尾不壓縮，直接回傳原始內容
+    // 結尾可以是空的：gzip 接一個長度 0 的不壓縮區塊，brotli 只接結束區塊
+    public ResponseEntity<byte[]> toResponse(byte[] tail, String acceptEncoding, MediaType contentType, String vary) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.VARY, vary);
+
+        int encoding = PrecompressedBody.acceptedEncodings(acceptEncoding);
+        if (tail.length < 0x10000) {
+            if (brotli != null && (encoding & (1 << PrecompressedBody.BROTLI)) != 0) {
+                return builder.header(HttpHeaders.CONTENT_ENCODING, "br").body(brotli(tail));
+            }
+            if ((encoding & (1 << PrecompressedBody.GZIP)) != 0) {
+                return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip(tail));
+            }
+        }
+        return builder.body(identity(tail));
+    }
+
+    // 原始內容：開頭 + 結尾
+    public byte[] identity(byte[] tail) {
+        byte[] out = new byte[identity.length + tail.length];
+        System.arraycopy(identity, 0, out, 0, identity.length);
+        System.arraycopy(tail, 0, out, identity.length, tail.length);
+        return out;
+    }
+
+    // gzip：壓縮好的開頭 + 最後一個不壓縮的區塊 (BFINAL=1、BTYPE=00、LEN、NLEN、資料) + CRC-32 + 原始長度
+    public byte[] gzip(byte[] tail) {
+        byte[] out = new byte[gzip.length + 5 + tail.length + 8];
+        System.arraycopy(gzip, 0, out, 0, gzip.length);
+        int position = gzip.length;
+        out[position++] = 1;
+        out[position++] = (byte) tail.length;
+        out[position++] = (byte) (tail.length >>> 8);
+        out[position++] = (byte) ~tail.length;
+        out[position++] = (byte) (~tail.length >>> 8);
+        System.arraycopy(tail, 0, out, position, tail.length);
+        position += tail.length;
+        position = writeIntLE(out, position, updateCrc(crc, tail));
+        writeIntLE(out, position, identity.length + tail.length);
+        return out;
+    }
+
+    // brotli：壓縮好的開頭 + 不壓縮的區塊 + 結束區塊
+    public byte[] brotli(byte[] tail) {
+        return Brotli.appendUncompressedTail(brotli, tail);
+    }
+
+    // 把開頭壓縮成還沒結束的 deflate 資料，SYNC_FLUSH 會補一個空的區塊讓資料停在位元組邊界
+    private static byte[] deflateOpen(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true); // true：不要 zlib 標頭，gzip 自己寫
+        deflater.setInput(data);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+        byte[] buffer = new byte[8192];
+        int length;
+        do {
+            length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            out.write(buffer, 0, length);
+        } while (length == buffer.length);
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    // 從已經算好的 CRC-32 接著算後面的資料
+    private static int updateCrc(int crc, byte[] data) {
+        int c = ~crc;
+        for (byte b : data) {
+            c = CRC_TABLE[(c ^ b) & 0xff] ^ (c >>> 8);
+        }
+        return ~c;
+    }
+
+    private static int writeIntLE(byte[] out, int position, int value) {
+        out[position] = (byte) value;
+        out[position + 1] = (byte) (value >>> 8);
+        out[position + 2] = (byte) (value >>> 16);
+        out[position + 3] = (byte) (value >>> 24);
+        return position + 4;
+    }
+}
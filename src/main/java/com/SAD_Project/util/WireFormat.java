@@ -0,0 +1,78 @@
+package com.SAD_Project.util;
+
+import org.springframework.http.MediaType; // HTTP 內容類型
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// 這個class定義給後端服務互相呼叫用的二進位格式 (Content-Type: application/x-starsync)
+// 欄位的位置和長度都固定，整數是 big-endian，不用 URL 編碼、不用解析 JSON，星座、等級、星級都是小整數代碼
+// 很長的評價文字和個性分析預設不傳，只傳編號；需要的時候設旗標附上，或是先取一次對照表自己快取
+//
+// 一個人 (5 bytes)：u16 年 (0 = 沒有年份)、u8 月、u8 日、u8 性別 (0 男、1 女、2 沒有填)
+//   配對可以不填性別 (MatchRuleCompiler.GENDER_UNSPECIFIED)，和表單沒有填一樣只套用和性別無關的規則；個性分析一定要 0 或 1
+//
+// POST /api/match        請求：u8 旗標、人1、人2                    回應：一筆配對結果
+// POST /api/match/batch  請求：u8 旗標、u16 組數、組數 × (人1、人2)  回應：u16 組數、每組一筆配對結果
+//   旗標 bit0 = 合併模式 (星座加生肖)，bit1 = 附上評價文字
+//   配對結果：u8 狀態 (0 成功，其他是錯誤代碼)，成功時接著
+//     u8 星座1、u8 星座2、u8 生肖1、u8 生肖2 (單一星座模式是 255)、u8 分數、u8 等級、u8 星級、u8 百分位、u16 名次
+//     有 bit1 時再接 3 段文字 (u16 長度 + UTF-8)：優點、缺點、評語
+//   評價文字只和等級有關，等級就是文字編號，對照表在 GET /api/match/texts (JSON)
+//
+// POST /api/personality  請求：u8 旗標、人                          回應：u8 狀態，成功時接著 u8 星座、u8 性別
+//   旗標 bit1 = 附上個性分析 (u16 長度 + UTF-8)，文字編號就是 (星座, 性別)
+//
+// 星座、生肖、等級的代碼是 ZodiacCalculator.ZODIAC_NAMES、ChineseZodiacCalculator.ANIMAL_NAMES、MatchRuleEngine.LEVELS 的索引
+// 錯誤代碼是 ErrorCode 的順序 + 1；整個請求的格式不對時回傳 HTTP 400，內容只有 BAD_WIRE_FORMAT 的代碼
+public final class WireFormat {
+
+    public static final String CONTENT_TYPE = "application/x-starsync";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(CONTENT_TYPE);
+
+    // 旗標
+    public static final int FLAG_COMBINED = 1;
+    public static final int FLAG_TEXTS = 2;
+
+    // 每一種請求可以用的旗標，有其他位元就當作格式不對 (以後加新旗標時舊版伺服器才不會默默忽略)
+    public static final int MATCH_FLAGS = FLAG_COMBINED | FLAG_TEXTS;
+    public static final int PERSONALITY_FLAGS = FLAG_TEXTS;
+
+    public static final int PERSON_BYTES = 5;
+    public static final int COUPLE_BYTES = 2 * PERSON_BYTES;
+    public static final int MATCH_RESULT_BYTES = 11; // 成功的配對結果 (不含文字)
+
+    public static final byte STATUS_OK = 0;
+    public static final byte NO_ANIMAL = (byte) 255;
+
+    // 一次批次最多幾組
+    public static final int MAX_BATCH = 1000;
+
+    private WireFormat() {
+    }
+
+    // 錯誤的狀態代碼
+    public static byte status(ErrorCode errorCode) {
+        return (byte) (errorCode.ordinal() + 1);
+    }
+
+    // 把幾段文字事先轉成 (u16 長度 + UTF-8) 接在一起 (只在啟動時呼叫)
+    public static byte[] textBlock(String... texts) {
+        byte[][] encoded = new byte[texts.length][];
+        int length = 0;
+        for (int i = 0; i < texts.length; i++) {
+            encoded[i] = texts[i].getBytes(StandardCharsets.UTF_8);
+            if (encoded[i].length > 0xFFFF) {
+                throw new IllegalStateException("文字超過二進位格式的長度上限 (65535 bytes)：" + encoded[i].length);
+            }
+            length += 2 + encoded[i].length;
+        }
+
+        ByteBuffer block = ByteBuffer.allocate(length);
+        for (byte[] text : encoded) {
+            block.putShort((short) text.length);
+            block.put(text);
+        }
+        return block.array();
+    }
+}
@@ -3,66 +3,183 @@ package com.SAD_Project.util;
 // 這個class計算星座
 public class ZodiacCalculator {
 
-    // 從字串算星座，包含解析日期與判斷星座的所有邏輯
-    // 這個是靜態方法，可以直接用類別名稱呼叫，不需要建立物件
-    public static String calculateZodiacFromBirthDate(String birthDate) {
-        int month;
-        int day;
-
-        try { 
-            // 嘗試手動分割解析 (處理如 3/21 這種簡單格式)
-            // 用 "/" 或 "-" 來分割字串
-            String[] parts = birthDate.split("[/-]");
-            // 如果分割後有兩個部分，就表示格式正確
-            if (parts.length == 2) {
-                month = Integer.parseInt(parts[0].trim()); // 第一個部分是月份,轉成整數
-                day = Integer.parseInt(parts[1].trim()); // 第二個部分是日期,轉成整數
-            } else {
-                return null; //格式不對就回傳 null
-            }
+    // 十二星座的固定順序 (從牡羊座開始)，陣列索引就是星座編號
+    public static final String[] ZODIAC_NAMES = {"牡羊座", "金牛座", "雙子座", "巨蟹座", "獅子座",
+            "處女座", "天秤座", "天蠍座", "射手座", "魔羯座",
+            "水瓶座", "雙魚座"};
 
-            if ((month == 3 && day >= 21) || (month == 4 && day <= 19)) {
-                return "牡羊座";
-            }
-            else if ((month == 4 && day >= 20) || (month == 5 && day <= 20)) {
-                return "金牛座";
-            }
-            else if ((month == 5 && day >= 21) || (month == 6 && day <= 21)) {
-                return "雙子座";
-            }
-            else if ((month == 6 && day >= 22) || (month == 7 && day <= 22)) {
-                return "巨蟹座";
-            }
-            else if ((month == 7 && day >= 23) || (month == 8 && day <= 22)) {
-                return "獅子座";
-            }
-            else if ((month == 8 && day >= 23) || (month == 9 && day <= 22)) {
-                return "處女座";
-            }
-            else if ((month == 9 && day >= 23) || (month == 10 && day <= 22)) {
-                return "天秤座";
-            }
-            else if ((month == 10 && day >= 23) || (month == 11 && day <= 21)) {
-                return "天蠍座";
-            }
-            else if ((month == 11 && day >= 22) || (month == 12 && day <= 21)) {
-                return "射手座";
-            }
-            else if ((month == 12 && day >= 22) || (month == 1 && day <= 19)) {
-                return "魔羯座";
+    // 把星座名稱轉成編號 (0~11)，不認得就回傳 -1
+    // 「摩羯座」是「魔羯座」的另一種寫法，兩個都接受
+    public static int zodiacIndex(String zodiac) {
+        if (zodiac == null) {
+            return -1;
+        }
+        for (int i = 0; i < ZODIAC_NAMES.length; i++) {
+            if (ZODIAC_NAMES[i].equals(zodiac)) {
+                return i;
             }
-            else if ((month == 1 && day >= 20) || (month == 2 && day <= 18)) {
-                return "水瓶座";
+        }
+        if (zodiac.equals("摩羯座")) {
+            return 9;
+        }
+        return -1;
+    }
+
+    // 每個月份開始換星座的日期 (索引是月份，0 不使用)
+    // 例如 3 月 21 日以後是牡羊座，之前是雙魚座
+    static final int[] SIGN_START_DAY = {0, 20, 19, 21, 20, 21, 22, 23, 23, 23, 23, 22, 22};
+
+    // 每個月份的最多天數 (2 月允許 29 日，沒有年份時不檢查閏年)
+    static final int[] DAYS_IN_MONTH = {0, 31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    // 每個星座的出生人數比例 (加起來是 1)，用每個星座涵蓋的天數估計，2/29 四年才一次所以算 0.25 天
+    // MatchRuleEngine 用它替 12×12 的配對加權，算出每個分數在所有真實配對中的百分位
+    public static final double[] BIRTH_WEIGHTS = birthWeights();
+
+    // parseBirthDate 的錯誤代碼 (都是負數，正常的結果一定大於 0)
+    public static final int ERROR_MISSING = -1;      // 沒有輸入
+    public static final int ERROR_FORMAT = -2;       // 格式不對
+    public static final int ERROR_OUT_OF_RANGE = -3; // 月份或日期不存在
+
+    // 解析生日字串，支援 M/d、M-d、yyyy-MM-dd、yyyy/M/d
+    // 空白只能出現在開頭、結尾或分隔符號旁邊 (例如 " 12 / 21 ")，數字中間有空白 ("1 2/21") 是格式錯誤
+    // 成功時回傳打包好的整數 (年份 << 9 | 月份 << 5 | 日期，沒有年份時年份是 0)
+    // 失敗時回傳負數的錯誤代碼，不會丟例外也不會建立任何物件，亂輸入的請求也很便宜
+    public static int parseBirthDate(String birthDate) {
+        if (birthDate == null) {
+            return ERROR_MISSING;
+        }
+        return parse(birthDate, null, 0, birthDate.length());
+    }
+
+    // 和 parseBirthDate(String) 一樣，只是直接解析 bytes[start, end) 這段 ASCII 位元組
+    // 批次評分工具 (BatchScorer) 用這個版本，讀檔時不用替每一筆資料建立 String
+    public static int parseBirthDate(byte[] bytes, int start, int end) {
+        return parse(null, bytes, start, end);
+    }
+
+    // 兩個 parseBirthDate 共用的解析：text 不是 null 就解析 text[start, end)，否則解析 bytes[start, end)
+    // 只有一份規則，字串和位元組的結果一定一樣 (非 ASCII 的位元組會變成大於 127 的字元，一樣是格式錯誤)
+    private static int parse(String text, byte[] bytes, int start, int end) {
+        int first = 0, second = 0, third = 0; // 最多三個數字
+        int parts = 0;       // 目前已經完成幾個數字
+        int digits = 0;      // 目前這個數字有幾位
+        boolean gap = false; // 目前這個數字後面已經有空白，再出現數字就是數字中間有空白
+        boolean seenAny = false;
+
+        for (int i = start; i < end; i++) {
+            char c = text != null ? text.charAt(i) : (char) (bytes[i] & 0xFF);
+
+            if (c >= '0' && c <= '9') {
+                if (digits == 4 || gap) {
+                    return ERROR_FORMAT; // 超過四位數不可能是合理的日期，或是數字被空白隔開
+                }
+                int value = c - '0';
+                if (parts == 0) first = first * 10 + value;
+                else if (parts == 1) second = second * 10 + value;
+                else third = third * 10 + value;
+                digits++;
+                seenAny = true;
+            } else if (c == '/' || c == '-') {
+                if (digits == 0 || parts == 2) {
+                    return ERROR_FORMAT; // 分隔符號前面沒有數字，或是分隔太多段
+                }
+                parts++;
+                digits = 0;
+                gap = false;
+            } else if (c == ' ') {
+                gap = digits > 0;
+            } else {
+                return ERROR_FORMAT; // 只接受數字、分隔符號和空白
             }
-            else if ((month == 2 && day >= 19) || (month == 3 && day <= 20)) {
-                return "雙魚座";
+        }
+
+        if (!seenAny) {
+            return ERROR_MISSING; // 空字串或只有空白
+        }
+        if (digits == 0 || parts == 0) {
+            return ERROR_FORMAT; // 最後一段是空的，或是只有一個數字
+        }
+        return pack(first, second, third, parts);
+    }
+
+    // 年月日已經是數字時 (二進位格式 WireFormat) 直接檢查並打包，結果和 parseBirthDate 一樣，year 是 0 表示沒有年份
+    public static int packBirthDate(int year, int month, int day) {
+        return year == 0 ? pack(month, day, 0, 1) : pack(year, month, day, 2);
+    }
+
+    // 檢查解析出來的數字是不是存在的日期，再打包成整數 (parts 是分隔符號的數量)
+    private static int pack(int first, int second, int third, int parts) {
+        // 兩段是 月/日，三段是 年/月/日
+        int year = parts == 2 ? first : 0;
+        int month = parts == 2 ? second : first;
+        int day = parts == 2 ? third : second;
+
+        if (month < 1 || month > 12 || day < 1 || day > DAYS_IN_MONTH[month]) {
+            return ERROR_OUT_OF_RANGE;
+        }
+        if (parts == 2 && (year < 1 || (month == 2 && day == 29 && !isLeapYear(year)))) {
+            return ERROR_OUT_OF_RANGE;
+        }
+
+        return (year << 9) | (month << 5) | day;
+    }
+
+    // 某個月份最多幾天 (2 月是 29 天)，反查生日範圍時逐日走過一整年用
+    public static int daysInMonth(int month) {
+        return DAYS_IN_MONTH[month];
+    }
+
+    // 從 parseBirthDate 的結果取出年份 (沒有年份時是 0)、月份、日期
+    public static int yearOf(int packedDate) { return packedDate >>> 9; }
+    public static int monthOf(int packedDate) { return (packedDate >>> 5) & 0xF; }
+    public static int dayOf(int packedDate) { return packedDate & 0x1F; }
+
+    // 逐日累加每個星座涵蓋的天數，再換算成比例
+    private static double[] birthWeights() {
+        double[] weights = new double[12];
+        double total = 0;
+        for (int month = 1; month <= 12; month++) {
+            for (int day = 1; day <= DAYS_IN_MONTH[month]; day++) {
+                double days = month == 2 && day == 29 ? 0.25 : 1;
+                weights[calculateZodiacIndex(month, day)] += days;
+                total += days;
             }
+        }
+        for (int i = 0; i < 12; i++) {
+            weights[i] /= total;
+        }
+        return weights;
+    }
 
-            return "未知";
+    // 判斷是否為閏年
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
 
-        } catch (Exception e) {
-            return null;
+    // 根據月份和日期算出星座編號 (0~11)
+    // 每個月份前段屬於上一個星座，後段 (換星座日期以後) 屬於這個月份開始的星座
+    public static int calculateZodiacIndex(int month, int day) {
+        int index = (month + 9) % 12; // 這個月份開始的星座，例如 3 月開始的是牡羊座 (0)
+        if (day < SIGN_START_DAY[month]) {
+            index = (index + 11) % 12; // 還沒到換星座的日期，屬於上一個星座
         }
+        return index;
     }
-}
 
+    // 根據 parseBirthDate 的結果算出星座編號，日期有錯誤時直接回傳錯誤代碼
+    public static int calculateZodiacIndex(int packedDate) {
+        if (packedDate < 0) {
+            return packedDate;
+        }
+        return calculateZodiacIndex(monthOf(packedDate), dayOf(packedDate));
+    }
+
+    // 從字串算星座，包含解析日期與判斷星座的所有邏輯
+    // 這個是靜態方法，可以直接用類別名稱呼叫，不需要建立物件
+    // 日期不正確時回傳 null
+    public static String calculateZodiacFromBirthDate(String birthDate) {
+        int index = calculateZodiacIndex(parseBirthDate(birthDate));
+        return index >= 0 ? ZODIAC_NAMES[index] : null;
+    }
+}
@@ -0,0 +1,97 @@
+package com.SAD_Project.web;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 這個class是會自己調整上限的並行數限制器 (gradient 演算法)
+// 最近的延遲接近長期的延遲時，上限慢慢往上加；延遲明顯變長 (表示在排隊) 時，上限就往下降
+// 取得與釋放只用 CAS，統計資料的更新用 tryLock，搶不到鎖就略過這一次取樣，不會讓請求互相等待
+public class AdaptiveLimiter {
+
+    private final String name;       // 名稱 (只用在日誌和除錯)
+    private final int minLimit;      // 上限最少降到多少
+    private final int maxLimit;      // 上限最多升到多少 (每個 API 的預算)
+
+    private final AtomicInteger inFlight = new AtomicInteger(); // 目前正在處理的請求數
+    private volatile int limit;      // 目前的上限
+
+    // 以下欄位只在持有 statsLock 時讀寫
+    private final ReentrantLock statsLock = new ReentrantLock();
+    private double estimatedLimit;  // 計算用的上限 (小數)
+    private double shortRttNanos;   // 最近的延遲 (反應快的移動平均)
+    private double longRttNanos;    // 長期的延遲 (反應慢的移動平均)，當作「沒有排隊」時的基準
+
+    private static final double TOLERANCE = 1.5;  // 最近延遲超過長期延遲幾倍才開始降低上限
+    private static final double SMOOTHING = 0.2;  // 上限變化的平滑係數
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+        this.estimatedLimit = this.limit;
+    }
+
+    // 嘗試取得一個名額，目前處理中的請求已經達到上限就回傳 false
+    public boolean tryAcquire() {
+        return tryAcquire(limit);
+    }
+
+    // 只能使用上限的一部分 (例如重的 API 只能用全域上限的 80%)，剩下的名額留給便宜的 API
+    public boolean tryAcquire(double share) {
+        return tryAcquire(Math.max(1, (int) (limit * share)));
+    }
+
+    private boolean tryAcquire(int allowed) {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // 釋放名額並回報這次請求花了多久，rttNanos 小於 0 表示這次不取樣 (例如被其他限制器拒絕)
+    public void release(long rttNanos) {
+        int current = inFlight.getAndDecrement(); // 釋放前的請求數
+        if (rttNanos >= 0 && statsLock.tryLock()) {
+            try {
+                update(rttNanos, current);
+            } finally {
+                statsLock.unlock();
+            }
+        }
+    }
+
+    // 根據這次的延遲調整上限
+    private void update(long rttNanos, int inFlightAtCompletion) {
+        shortRttNanos = shortRttNanos == 0 ? rttNanos : shortRttNanos * 0.9 + rttNanos * 0.1;
+        longRttNanos = longRttNanos == 0 ? rttNanos : longRttNanos * 0.99 + rttNanos * 0.01;
+
+        // 過載結束後長期延遲會偏高，讓它比較快回到最近的水準
+        if (longRttNanos > shortRttNanos * 2) {
+            longRttNanos *= 0.95;
+        }
+
+        // 請求數沒有接近上限時，延遲不能反映上限夠不夠，不調整
+        if (inFlightAtCompletion * 2 < limit) {
+            return;
+        }
+
+        // gradient = 容許倍數 * 長期延遲 / 最近延遲，沒有排隊時是 1，排隊越嚴重越小 (最少 0.5)
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRttNanos));
+        double queueAllowance = Math.sqrt(estimatedLimit); // 允許少量排隊，上限才有機會往上長
+        double target = estimatedLimit * gradient + queueAllowance;
+
+        estimatedLimit = estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    public String getName() { return name; }
+    public int getLimit() { return limit; }
+    public int getInFlight() { return inFlight.get(); }
+}
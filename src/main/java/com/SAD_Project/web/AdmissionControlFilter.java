@@ -0,0 +1,158 @@
+package com.SAD_Project.web;
+
+import com.SAD_Project.util.ErrorCode; // API 的錯誤代碼與固定的回應內容
+import com.SAD_Project.util.Locales; // 依照 Accept-Language 選擇錯誤訊息的語言
+import com.SAD_Project.util.WireFormat; // 二進位格式的請求回傳一個位元組的狀態碼
+
+import org.springframework.beans.factory.annotation.Value; // 讀取 application.properties 的設定
+import org.springframework.http.HttpHeaders; // HTTP 標頭名稱常數
+import org.springframework.http.MediaType; // HTTP 內容類型
+import org.springframework.stereotype.Component; // 標記這是 Spring 元件
+import org.springframework.web.filter.OncePerRequestFilter; // 每個請求只執行一次的過濾器
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// 這個class在 API 前面做流量管制 (admission control)
+// 流量暴增時與其讓 Tomcat 的佇列無限變長、每個請求都變慢，不如直接用固定的 503 快速拒絕一部分請求
+// 每個 API 有自己的並行上限 (預算)，上限會依照觀察到的延遲自動調整
+// 所有 API 還共用一個全域上限，重的 API (配對、個性分析) 只能用其中一部分，剩下的留給有快取的便宜 API
+@Component
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final double heavyShare; // 重的 API 最多能用全域上限的比例
+
+    private final AdaptiveLimiter global;
+    private final AdaptiveLimiter match;
+    private final AdaptiveLimiter personality;
+    private final AdaptiveLimiter introduction;
+    private final AdaptiveLimiter zodiacs;
+    private final AdaptiveLimiter other;
+
+    private static final int MIN_LIMIT = 4; // 上限最少保留幾個
+
+    public AdmissionControlFilter(
+            @Value("${horoscope.admission.enabled:true}") boolean enabled,
+            @Value("${horoscope.admission.heavy-share:0.8}") double heavyShare,
+            @Value("${horoscope.admission.global-limit:128}") int globalLimit,
+            @Value("${horoscope.admission.match-limit:64}") int matchLimit,
+            @Value("${horoscope.admission.personality-limit:64}") int personalityLimit,
+            @Value("${horoscope.admission.introduction-limit:128}") int introductionLimit,
+            @Value("${horoscope.admission.zodiacs-limit:128}") int zodiacsLimit,
+            @Value("${horoscope.admission.other-limit:32}") int otherLimit) {
+        this.enabled = enabled;
+        this.heavyShare = heavyShare;
+        this.global = createLimiter("global", globalLimit);
+        this.match = createLimiter("match", matchLimit);
+        this.personality = createLimiter("personality", personalityLimit);
+        this.introduction = createLimiter("introduction", introductionLimit);
+        this.zodiacs = createLimiter("zodiacs", zodiacsLimit);
+        this.other = createLimiter("other", otherLimit);
+    }
+
+    // 一開始用預算的一半當上限，之後依延遲自動調整
+    private static AdaptiveLimiter createLimiter(String name, int maxLimit) {
+        return new AdaptiveLimiter(name, Math.max(MIN_LIMIT, maxLimit / 2), MIN_LIMIT, Math.max(MIN_LIMIT, maxLimit));
+    }
+
+    // 只管制 /api/ 底下的請求，頁面、靜態檔案和 readiness 檢查都不管制
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return !enabled || !uri.startsWith("/api/") || uri.equals("/api/ready");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        AdaptiveLimiter endpoint = limiterFor(request.getRequestURI());
+        boolean heavy = endpoint == match || endpoint == personality || endpoint == other;
+
+        // 先拿這個 API 自己的名額，再拿全域名額
+        if (!endpoint.tryAcquire()) {
+            reject(request, response);
+            return;
+        }
+        if (!(heavy ? global.tryAcquire(heavyShare) : global.tryAcquire())) {
+            endpoint.release(-1); // 沒有真的執行，不取樣
+            reject(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            global.release(elapsed);
+            endpoint.release(elapsed);
+        }
+    }
+
+    // WebSocket (/ws/match) 的每則訊息不經過過濾器，由 MatchSocketHandler 自己拿名額：
+    // 和 /api/match 一樣先拿配對的名額，再拿全域名額的 heavy-share；回傳 false 表示要拒絕
+    // 回傳 true 時處理完一定要呼叫 releaseMatch；沒有開啟流量管制時一律回傳 true
+    public boolean tryAcquireMatch() {
+        if (!enabled) {
+            return true;
+        }
+        if (!match.tryAcquire()) {
+            return false;
+        }
+        if (!global.tryAcquire(heavyShare)) {
+            match.release(-1); // 沒有真的執行，不取樣
+            return false;
+        }
+        return true;
+    }
+
+    // 釋放 tryAcquireMatch 拿到的名額，elapsedNanos 是這則訊息處理了多久
+    public void releaseMatch(long elapsedNanos) {
+        if (enabled) {
+            global.release(elapsedNanos);
+            match.release(elapsedNanos);
+        }
+    }
+
+    // 根據路徑找出對應的限制器
+    private AdaptiveLimiter limiterFor(String uri) {
+        if (uri.equals("/api/match/ranges")) return introduction; // 反查也只是查表
+        if (uri.equals("/api/match/texts")) return zodiacs; // 評價文字對照表和星座列表一樣是事先產生好的固定內容
+        if (uri.startsWith("/api/match")) return match;
+        if (uri.startsWith("/api/personality")) return personality;
+        if (uri.startsWith("/api/introduction/") || uri.startsWith("/api/daily/")) return introduction; // 都只是查表
+        if (uri.equals("/api/zodiacs")) return zodiacs;
+        return other;
+    }
+
+    private static final byte[] WIRE_OVERLOADED_BODY = {WireFormat.status(ErrorCode.OVERLOADED)};
+
+    // 回傳事先準備好的 503 內容，不經過 Spring MVC
+    // 二進位格式的請求 (Content-Type 是 application/x-starsync) 回傳一個位元組的狀態碼，用戶端才解析得了；其他的回傳 JSON
+    private static void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        byte[] body;
+        if (isWire(request.getContentType())) {
+            body = WIRE_OVERLOADED_BODY;
+            response.setContentType(WireFormat.CONTENT_TYPE);
+        } else {
+            body = ErrorCode.OVERLOADED.getBody(Locales.fromAcceptLanguage(request.getHeader(HttpHeaders.ACCEPT_LANGUAGE)));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_LANGUAGE);
+        }
+        response.setStatus(ErrorCode.OVERLOADED.getStatus().value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    // Content-Type 是不是二進位格式 (不分大小寫，後面可以接 ; 參數)
+    static boolean isWire(String contentType) {
+        int length = WireFormat.CONTENT_TYPE.length();
+        return contentType != null && contentType.regionMatches(true, 0, WireFormat.CONTENT_TYPE, 0, length)
+                && (contentType.length() == length || contentType.charAt(length) == ';' || contentType.charAt(length) == ' ');
+    }
+}
@@ -0,0 +1,33 @@
+package com.SAD_Project.web;
+
+import org.springframework.beans.factory.annotation.Value; // 讀取 application.properties 的設定
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication; // 有網頁伺服器才啟用
+import org.springframework.boot.web.server.Http2;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.server.ConfigurableServletWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// 這個class設定 h2c (不加密的 HTTP/2)，給在內網大量呼叫 API 的後端服務用
+// HTTP/1.1 一條連線同時只能處理一個請求，呼叫端要開一大堆連線，前面的請求慢了後面的就要排隊
+// HTTP/2 把很多個請求 (stream) 放在同一條連線上同時進行，重複的標頭 (Host、Accept-Encoding...) 用 HPACK 壓縮，第二次以後只要送一個索引
+// 開啟後同一個連接埠兩種都能用：HTTP/1.1 的請求照舊，用戶端可以用 Upgrade: h2c 升級，或一開始就直接送 HTTP/2 (prior knowledge)
+// 三種內嵌伺服器都是由 Spring Boot 依照 Http2 的設定處理 (Tomcat 是 Http2Protocol、Jetty 是 HTTP2CServerConnectionFactory、
+// Undertow 是 ENABLE_HTTP2)，這裡只負責用 horoscope.h2c.enabled 開關
+// 瀏覽器只會用加密的 HTTP/2，所以 h2c 只適合內網的服務呼叫；對外的流量還是經過反向代理
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class H2cConfig {
+
+    @Bean
+    public WebServerFactoryCustomizer<ConfigurableServletWebServerFactory> h2cCustomizer(
+            @Value("${horoscope.h2c.enabled:false}") boolean enabled) {
+        return factory -> {
+            if (enabled) {
+                Http2 http2 = new Http2();
+                http2.setEnabled(true);
+                factory.setHttp2(http2);
+            }
+        };
+    }
+}
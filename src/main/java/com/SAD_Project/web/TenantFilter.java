@@ -0,0 +1,120 @@
+package com.SAD_Project.web;
+
+import com.SAD_Project.service.TenantRegistry; // 租戶名稱與編號
+import com.SAD_Project.util.ErrorCode; // API 的錯誤代碼與固定的回應內容
+import com.SAD_Project.util.Locales; // 依照 Accept-Language 選擇錯誤訊息的語言
+
+import org.springframework.core.Ordered; // 過濾器的執行順序
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders; // HTTP 標頭名稱常數
+import org.springframework.http.MediaType; // HTTP 內容類型
+import org.springframework.stereotype.Component; // 標記這是 Spring 元件
+import org.springframework.web.filter.OncePerRequestFilter; // 每個請求只執行一次的過濾器
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// 這個class決定每個請求屬於哪個租戶 (合作品牌)
+// 可以用 X-Tenant 標頭指定，也可以把 API 放在 /t/<租戶>/ 底下 (例如 /t/brand-a/api/match、/t/brand-a/ws/match)
+// 找到的租戶編號放進 request attribute，controller 用編號直接查各服務裡的陣列
+// 這個過濾器排在最前面，後面的流量管制和 Spring MVC 看到的都是去掉 /t/<租戶> 之後的路徑
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class TenantFilter extends OncePerRequestFilter {
+
+    public static final String TENANT_HEADER = "X-Tenant";
+    public static final String TENANT_ATTRIBUTE = "horoscope.tenant"; // request attribute 的名稱 (值是 Integer)
+
+    private static final String PATH_PREFIX = "/t/";
+
+    // 租戶編號都很小，事先準備好 Integer 物件，設定 attribute 時不用再裝箱
+    private final Integer[] tenantIds;
+
+    private final TenantRegistry tenants;
+
+    public TenantFilter(TenantRegistry tenants) {
+        this.tenants = tenants;
+        this.tenantIds = new Integer[tenants.size()];
+        for (int i = 0; i < tenantIds.length; i++) {
+            tenantIds[i] = i;
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+
+        // 路徑指定的租戶：/t/<租戶>/api/... 或 /t/<租戶>/ws/... (瀏覽器的 WebSocket 不能設定標頭)
+        String name = null;
+        String strippedUri = null;
+        if (uri.startsWith(PATH_PREFIX, contextPath.length())) {
+            int start = contextPath.length() + PATH_PREFIX.length();
+            int end = uri.indexOf('/', start);
+            if (end > start && (uri.startsWith("/api/", end) || uri.startsWith("/ws/", end))) {
+                name = uri.substring(start, end);
+                strippedUri = contextPath + uri.substring(end);
+            }
+        }
+
+        // 沒有用路徑指定就看標頭
+        if (name == null) {
+            name = request.getHeader(TENANT_HEADER);
+        }
+
+        int tenant = TenantRegistry.DEFAULT_TENANT;
+        if (name != null && !name.isEmpty()) {
+            tenant = tenants.indexOf(name); // 只查一次 Map
+            if (tenant < 0) {
+                reject(request, response);
+                return;
+            }
+        }
+
+        request.setAttribute(TENANT_ATTRIBUTE, tenantIds[tenant]);
+        chain.doFilter(strippedUri != null ? new StrippedRequest(request, strippedUri) : request, response);
+    }
+
+    // 不認得的租戶直接回傳固定的錯誤內容，不經過 Spring MVC
+    private static void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        byte[] body = ErrorCode.UNKNOWN_TENANT.getBody(Locales.fromAcceptLanguage(request.getHeader(HttpHeaders.ACCEPT_LANGUAGE)));
+        response.setStatus(ErrorCode.UNKNOWN_TENANT.getStatus().value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_LANGUAGE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    // 把 /t/<租戶> 從路徑拿掉的請求，之後的處理就和一般的 /api/... 請求一樣
+    private static final class StrippedRequest extends HttpServletRequestWrapper {
+        private final String uri;
+
+        StrippedRequest(HttpServletRequest request, String uri) {
+            super(request);
+            this.uri = uri;
+        }
+
+        @Override
+        public String getRequestURI() {
+            return uri;
+        }
+
+        @Override
+        public StringBuffer getRequestURL() {
+            StringBuffer url = new StringBuffer();
+            url.append(getScheme()).append("://").append(getServerName()).append(':').append(getServerPort()).append(uri);
+            return url;
+        }
+
+        @Override
+        public String getServletPath() {
+            // DispatcherServlet 對應到 "/"，servlet path 就是去掉 context path 的整個路徑
+            return uri.substring(getContextPath().length());
+        }
+    }
+}
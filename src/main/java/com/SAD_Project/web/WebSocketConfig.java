@@ -0,0 +1,91 @@
+package com.SAD_Project.web;
+
+import com.SAD_Project.controller.MatchSocketHandler;
+import com.SAD_Project.util.Locales; // 支援的語言
+
+import org.springframework.beans.factory.annotation.Value; // 讀取 application.properties 的設定
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication; // 有網頁伺服器才啟用
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders; // HTTP 標頭名稱常數
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Map;
+
+// 這個class設定 WebSocket：註冊 /ws/match，並限制每條連線的記憶體
+// 握手請求和一般請求一樣會先經過 TenantFilter，所以可以用 X-Tenant 標頭或 /t/<租戶>/ws/match 選擇租戶
+// 瀏覽器的 WebSocket 不能自己設定標頭，語言用 ?lang=zh-TW 指定，沒有給就看 Accept-Language
+// 不啟動網頁伺服器的工具和測試 (例如 WireBenchmark、src/test 的 TestContext) 沒有 Servlet 容器，就不載入這個設定
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    public static final String MATCH_PATH = "/ws/match";
+
+    // Tomcat 替每條連線準備兩個送出用的緩衝區，大小由這個系統屬性決定 (預設各 8 KB)
+    // 配對回應最多幾百 bytes，改成 1 KB 後每條閒置連線從大約 52 KB 降到 31 KB
+    private static final String SEND_BUFFER_PROPERTY = "org.apache.tomcat.websocket.DEFAULT_BUFFER_SIZE";
+    private static final String SEND_BUFFER_BYTES = "1024";
+
+    private final MatchSocketHandler matchSocketHandler;
+
+    public WebSocketConfig(MatchSocketHandler matchSocketHandler) {
+        this.matchSocketHandler = matchSocketHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(matchSocketHandler, MATCH_PATH).addInterceptors(new TenantLocaleInterceptor());
+    }
+
+    // Tomcat 在載入 WebSocket 類別時就讀取系統屬性，所以要在啟動 Spring 之前呼叫
+    // 啟動時已經用 -D 指定就不覆蓋
+    public static void limitSendBuffers() {
+        if (System.getProperty(SEND_BUFFER_PROPERTY) == null) {
+            System.setProperty(SEND_BUFFER_PROPERTY, SEND_BUFFER_BYTES);
+        }
+    }
+
+    // 容器 (Tomcat) 替每條連線準備的接收緩衝區大小和閒置多久就關閉
+    // 配對請求只有 11 bytes，緩衝區不用預設的 8 KB，幾萬條閒置的連線才不會佔掉好幾百 MB
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer(
+            @Value("${horoscope.websocket.max-message-bytes:256}") int maxMessageBytes,
+            @Value("${horoscope.websocket.idle-timeout-millis:600000}") long idleTimeoutMillis) {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxBinaryMessageBufferSize(maxMessageBytes);
+        container.setMaxTextMessageBufferSize(maxMessageBytes);
+        container.setMaxSessionIdleTimeout(idleTimeoutMillis);
+        return container;
+    }
+
+    // 握手時把 TenantFilter 決定的租戶和請求的語言記到 session 裡，之後每則訊息都不用再解析
+    private static final class TenantLocaleInterceptor implements HandshakeInterceptor {
+
+        @Override
+        public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler handler, Map<String, Object> attributes) {
+            HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+            String lang = servletRequest.getParameter("lang");
+            attributes.put(MatchSocketHandler.TENANT_ATTRIBUTE, servletRequest.getAttribute(TenantFilter.TENANT_ATTRIBUTE));
+            attributes.put(MatchSocketHandler.LOCALE_ATTRIBUTE, Locales.fromAcceptLanguage(
+                    lang != null ? lang : servletRequest.getHeader(HttpHeaders.ACCEPT_LANGUAGE)));
+            return true;
+        }
+
+        @Override
+        public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler handler, Exception exception) {
+        }
+    }
+}
@@ -2,9 +2,12 @@ const resultPanel = document.getElementById('result');
 const zodiacCards = document.querySelectorAll('.zodiac-card');
 
 zodiacCards.forEach(card => {
-    card.addEventListener('click', () => {
+    card.addEventListener('click', (event) => {
+        // 卡片本身連到預先產生的星座頁面，在這個頁面內點擊時改用 API 載入，網址同步更新
+        event.preventDefault();
         const zodiac = card.dataset.zodiac;
         setActiveCard(card);
+        history.pushState(null, '', card.href);
         loadIntroduction(zodiac);
     });
 });
@@ -25,7 +28,7 @@ function showLoading() {
     `;
 }
 
-function renderIntroduction(zodiac, content) {
+function renderIntroduction(zodiac, data) {
     resultPanel.removeAttribute('data-empty');
     resultPanel.innerHTML = '';
 
@@ -40,10 +43,9 @@ function renderIntroduction(zodiac, content) {
     meta.className = 'detail-meta';
     meta.innerHTML = '<span>資料來源：1214.org</span>';
 
-    const sections = content.split('===DELIM===');
-    const description = sections[0] || '';
-    const male = sections[1] || '';
-    const female = sections[2] || '';
+    const description = data.info || '';
+    const male = data.male || '';
+    const female = data.female || '';
 
     const descriptionBlock = document.createElement('div');
     descriptionBlock.className = 'detail-section';
@@ -75,11 +77,14 @@ function renderIntroduction(zodiac, content) {
 async function loadIntroduction(zodiac) {
     try {
         showLoading();
-        const response = await fetch('/api/introduction/' + encodeURIComponent(zodiac));
+        // 頁面是繁體中文，API 也用頁面的語言回覆，不跟著瀏覽器的語言設定
+        const response = await fetch('/api/introduction/' + encodeURIComponent(zodiac) + '?fields=info,male,female', {
+            headers: { 'Accept-Language': document.documentElement.lang }
+        });
         const data = await response.json();
 
         if (data.success) {
-            renderIntroduction(zodiac, data.introduction);
+            renderIntroduction(zodiac, data);
         } else {
             alert('錯誤：' + data.error);
             resultPanel.setAttribute('data-empty', '');
@@ -17,11 +17,6 @@ document.getElementById('matchForm').addEventListener('submit', async function(e
         return;
     }
 
-    if (yourGender === theirGender) {
-        alert("目前僅支援一男一女分析，請選擇不同性別！");
-        return;
-    }
-
     // 時間驗證邏輯
     if (!isValidDate(yourMonth, yourDay)) {
         alert(`你的生日日期不正確：${yourMonth}月${yourDay}日`);
@@ -37,30 +32,16 @@ document.getElementById('matchForm').addEventListener('submit', async function(e
     const theirDate = `${theirMonth}/${theirDay}`;
 
     try {
-        const formData = new URLSearchParams();
-        formData.append('birthDate1', yourDate);
-        formData.append('gender1', yourGender);
-        formData.append('birthDate2', theirDate);
-        formData.append('gender2', theirGender);
-
-        const response = await fetch('/api/match', {
-            method: 'POST',
-            headers: {
-                'Content-Type': 'application/x-www-form-urlencoded',
-            },
-            body: formData
-        });
-
-        if (!response.ok) {
-            throw new Error(`伺服器回應錯誤: ${response.status}`);
-        }
-
-        const data = await response.json();
+        // 先用 WebSocket 查詢，還沒連上、斷線或查詢有錯誤時改用 POST /api/match (錯誤訊息由 API 提供)
+        const data = await matchBySocket(yourMonth, yourDay, yourGender, theirMonth, theirDay, theirGender)
+            || await matchByPost(yourDate, yourGender, theirDate, theirGender);
         const resultDiv = document.getElementById('result');
 
         if (data.success) {
             resultDiv.style.display = 'block';
             resultDiv.innerHTML = generateResultHTML(data);
+            // 網址換成預先產生的結果頁面，重新整理或分享時就不用再呼叫 API
+            history.replaceState(null, '', '/match/' + encodeURIComponent(data.zodiac1) + '/' + encodeURIComponent(data.zodiac2));
             resultDiv.scrollIntoView({ behavior: 'smooth' });
         } else {
             alert('錯誤：' + data.error);
@@ -70,6 +51,118 @@ document.getElementById('matchForm').addEventListener('submit', async function(e
     }
 });
 
+// 用一般的 HTTP POST 查詢
+async function matchByPost(yourDate, yourGender, theirDate, theirGender) {
+    const formData = new URLSearchParams();
+    formData.append('birthDate1', yourDate);
+    formData.append('gender1', yourGender);
+    formData.append('birthDate2', theirDate);
+    formData.append('gender2', theirGender);
+
+    const response = await fetch('/api/match', {
+        method: 'POST',
+        headers: {
+            'Content-Type': 'application/x-www-form-urlencoded',
+            // 頁面是繁體中文，API 也用頁面的語言回覆，不跟著瀏覽器的語言設定
+            'Accept-Language': document.documentElement.lang,
+        },
+        body: formData
+    });
+
+    if (!response.ok) {
+        throw new Error(`伺服器回應錯誤: ${response.status}`);
+    }
+    return response.json();
+}
+
+// ===== WebSocket 配對 =====
+// 頁面打開時連一次 /ws/match，之後每次配對只送 11 bytes 的二進位訊息，回應也是固定欄位 (格式見 util/WireFormat.java)
+// 評價文字只和等級有關，連線時先取一次對照表 (/api/match/texts)，回應就不用附上文字
+// 同一條連線的回應照順序回來，所以用一個佇列對應每個查詢
+
+// 星座編號對應的名稱 (和 ZodiacCalculator.ZODIAC_NAMES 一樣)
+const ZODIAC_NAMES = ['牡羊座', '金牛座', '雙子座', '巨蟹座', '獅子座', '處女座',
+    '天秤座', '天蠍座', '射手座', '魔羯座', '水瓶座', '雙魚座'];
+
+const matchSocket = { socket: null, open: false, pending: [], texts: null };
+
+function openMatchSocket() {
+    if (!('WebSocket' in window) || matchSocket.socket) return;
+
+    const protocol = location.protocol === 'https:' ? 'wss:' : 'ws:';
+    const socket = new WebSocket(`${protocol}//${location.host}/ws/match?lang=${encodeURIComponent(document.documentElement.lang)}`);
+    socket.binaryType = 'arraybuffer';
+    matchSocket.socket = socket;
+
+    socket.onopen = () => { matchSocket.open = true; };
+    socket.onmessage = (event) => {
+        const resolve = matchSocket.pending.shift();
+        if (resolve) resolve(event.data);
+    };
+    // 斷線時還在等的查詢都改用 POST，下次查詢前再重新連線
+    socket.onclose = () => {
+        matchSocket.socket = null;
+        matchSocket.open = false;
+        matchSocket.pending.splice(0).forEach(resolve => resolve(null));
+    };
+
+    if (!matchSocket.texts) {
+        fetch('/api/match/texts', { headers: { 'Accept-Language': document.documentElement.lang } })
+            .then(response => response.ok ? response.json() : null)
+            .then(table => { if (table) matchSocket.texts = table.levels; })
+            .catch(() => {});
+    }
+}
+
+// 用 WebSocket 查詢，不能用或查詢有錯誤就回傳 null
+async function matchBySocket(yourMonth, yourDay, yourGender, theirMonth, theirDay, theirGender) {
+    const socket = matchSocket.socket;
+    if (!socket || !matchSocket.open || !matchSocket.texts) {
+        openMatchSocket();
+        return null;
+    }
+
+    // 請求：u8 旗標 (0 = 只看星座、不附文字)、人1、人2
+    const request = new DataView(new ArrayBuffer(11));
+    request.setUint8(0, 0);
+    writePerson(request, 1, yourMonth, yourDay, yourGender);
+    writePerson(request, 6, theirMonth, theirDay, theirGender);
+
+    const reply = await new Promise(resolve => {
+        matchSocket.pending.push(resolve);
+        socket.send(request.buffer);
+    });
+    if (!reply) return null;
+
+    // 回應：u8 狀態、u8 星座1、u8 星座2、u8 生肖1、u8 生肖2、u8 分數、u8 等級、u8 星級、u8 百分位、u16 名次
+    const view = new DataView(reply);
+    if (view.getUint8(0) !== 0) return null;
+    const texts = matchSocket.texts[view.getUint8(6)];
+    return {
+        success: true,
+        zodiac1: ZODIAC_NAMES[view.getUint8(1)],
+        zodiac2: ZODIAC_NAMES[view.getUint8(2)],
+        score: view.getUint8(5),
+        level: texts.label,
+        stars: view.getUint8(7),
+        percentile: view.getUint8(8),
+        rank: view.getUint16(9),
+        positive: texts.positive,
+        negative: texts.negative,
+        comment: texts.comment,
+    };
+}
+
+// 一個人 (5 bytes)：u16 年 (0 = 沒有年份)、u8 月、u8 日、u8 性別 (0 男、1 女、2 沒有填)
+function writePerson(view, offset, month, day, gender) {
+    view.setUint16(offset, 0);
+    view.setUint8(offset + 2, parseInt(month, 10));
+    view.setUint8(offset + 3, parseInt(day, 10));
+    view.setUint8(offset + 4, gender === '男' ? 0 : gender === '女' ? 1 : 2);
+}
+
+openMatchSocket();
+
 // 驗證日期是否合法
 function isValidDate(monthStr, dayStr) {
     const month = parseInt(monthStr, 10);
@@ -98,6 +191,7 @@ function generateResultHTML(data) {
     const positive = data.positive || '';
     const negative = data.negative || '';
     const comment = data.comment || '';
+    const percentile = data.percentile;
 
     // 生成星級顯示
     let starsHTML = '';
@@ -114,6 +208,7 @@ function generateResultHTML(data) {
             <div class="result-header">
                 <div class="percentage-bar">
                     <span class="percentage-label">Percentage 適配度: ${score}%</span>
+                    ${percentile !== undefined ? `<span class="percentage-label">Percentile 勝過 ${percentile}% 的配對</span>` : ''}
                     <div class="stars-rating">${starsHTML}</div>
                 </div>
             </div>
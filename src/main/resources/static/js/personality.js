@@ -19,6 +19,8 @@ document.getElementById('personalityForm').addEventListener('submit', async func
             method: 'POST',
             headers: {
                 'Content-Type': 'application/x-www-form-urlencoded',
+                // 頁面是繁體中文，API 也用頁面的語言回覆，不跟著瀏覽器的語言設定
+                'Accept-Language': document.documentElement.lang,
             },
             body: formData
         });
@@ -0,0 +1,31 @@
+package com.SAD_Project;
+
+import org.springframework.boot.WebApplicationType; // 不啟動網頁伺服器
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// 測試共用的 Spring context：不啟動網頁伺服器、不預熱、不寫稽核紀錄，controller 直接呼叫 (httpRequest 傳 null)
+// 同一次 mvn test 的所有測試類別共用一個，只啟動一次；JVM 結束時由 Spring 的 shutdown hook 關閉
+// horoscope.tenants 多載入範例租戶 (tenants/example)，租戶規則的路徑也一起測到
+public final class TestContext {
+
+    private static ConfigurableApplicationContext context;
+
+    private TestContext() {
+    }
+
+    public static synchronized ConfigurableApplicationContext get() {
+        if (context == null) {
+            // 用命令列參數給設定：builder 的 properties() 只是預設值，會被 application.properties 蓋掉
+            context = new SpringApplicationBuilder(HoroscopeApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run("--horoscope.warmup.iterations=0", "--horoscope.audit.enabled=false",
+                            "--horoscope.tenants=example", "--spring.main.banner-mode=off", "--logging.level.root=WARN");
+        }
+        return context;
+    }
+
+    public static <T> T bean(Class<T> type) {
+        return get().getBean(type);
+    }
+}
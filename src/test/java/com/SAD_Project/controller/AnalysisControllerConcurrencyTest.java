@@ -0,0 +1,168 @@
+package com.SAD_Project.controller;
+
+import com.SAD_Project.TestContext;
+import com.SAD_Project.model.Couple;
+import com.SAD_Project.service.MatchRuleCompiler;
+import com.SAD_Project.service.MatchRuleEngine;
+import com.SAD_Project.service.TenantRegistry;
+import com.SAD_Project.util.Locales;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 配對結果 (MatchResult)、分析結果的錯誤物件和 Couple 都是很多請求執行緒共用的物件
+// 這個測試先用單一執行緒記下每個組合的預期結果，再讓很多執行緒同時用亂數順序呼叫 computeMatch 和 doAnalysis，
+// 每一次的結果都要是同一個物件、而且內容和預期的一模一樣 (共用的物件被任何一個執行緒改到都會被抓到)
+class AnalysisControllerConcurrencyTest {
+
+    private static final int THREADS = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+    private static final int CALLS_PER_THREAD = 200_000;
+
+    // 每個星座中間的一天 (索引是星座編號)，性別 男、女、沒有填
+    private static final String[] DATES = {"4/5", "5/5", "6/5", "7/5", "8/5", "9/5",
+            "10/5", "11/5", "12/5", "1/5", "2/5", "3/5"};
+    private static final String[] GENDERS = {"男", "女", null};
+
+    private static MatchRuleEngine engine;
+    private static AnalysisController analysis;
+    private static int tenants;
+
+    // computeMatch 的預期結果和內容，索引是 (租戶 * 語言數 + 語言) * 1296 + MatchRuleCompiler.index
+    private static MatchRuleEngine.MatchResult[] expected;
+    private static String[] expectedFields;
+
+    // 每一種 (星座, 性別, 星座, 性別) 一個共用的 Couple，還有它在單一執行緒時的內容
+    private static Couple[] couples;
+    private static String[] expectedCouples;
+
+    @BeforeAll
+    static void recordExpected() {
+        engine = TestContext.bean(MatchRuleEngine.class);
+        analysis = TestContext.bean(AnalysisController.class);
+        tenants = TestContext.bean(TenantRegistry.class).size();
+
+        int cells = 12 * MatchRuleCompiler.GENDER_SLOTS * 12 * MatchRuleCompiler.GENDER_SLOTS;
+        expected = new MatchRuleEngine.MatchResult[tenants * Locales.COUNT * cells];
+        expectedFields = new String[expected.length];
+        for (int tenant = 0; tenant < tenants; tenant++) {
+            for (int locale = 0; locale < Locales.COUNT; locale++) {
+                for (int index = 0; index < cells; index++) {
+                    int[] key = decode(index);
+                    MatchRuleEngine.MatchResult result = engine.computeMatch(tenant, locale, key[0], key[1], key[2], key[3]);
+                    assertNotNull(result);
+                    int slot = (tenant * Locales.COUNT + locale) * cells + index;
+                    expected[slot] = result;
+                    expectedFields[slot] = fields(result);
+                }
+            }
+        }
+
+        couples = new Couple[cells];
+        expectedCouples = new String[cells];
+        for (int index = 0; index < cells; index++) {
+            int[] key = decode(index);
+            couples[index] = new Couple(DATES[key[0]], GENDERS[key[1]], DATES[key[2]], GENDERS[key[3]]);
+            expectedCouples[index] = couple(couples[index]);
+        }
+    }
+
+    @Test
+    void sharedResultsStayIntactUnderConcurrentCalls() throws Exception {
+        int cells = couples.length;
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int call = 0; call < CALLS_PER_THREAD && failures.size() < 10; call++) {
+                        int tenant = random.nextInt(tenants);
+                        int locale = random.nextInt(Locales.COUNT);
+                        int index = random.nextInt(cells);
+                        int slot = (tenant * Locales.COUNT + locale) * cells + index;
+                        int[] key = decode(index);
+
+                        MatchRuleEngine.MatchResult result = (call & 1) == 0
+                                ? engine.computeMatch(tenant, locale, key[0], key[1], key[2], key[3])
+                                : analysis.doAnalysis(tenant, locale, couples[index]).getMatchResult();
+                        if (result != expected[slot] || !fields(result).equals(expectedFields[slot])) {
+                            failures.add("tenant " + tenant + " locale " + locale + " index " + index + "：" + fields(result));
+                        }
+                        if ((call & 1) != 0 && !couple(couples[index]).equals(expectedCouples[index])) {
+                            failures.add("Couple " + index + " 被改變：" + couple(couples[index]));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(failures.isEmpty(), () -> "共用的結果被改變：" + failures);
+
+        // 跑完之後，每個共用的結果內容還是和一開始記下的一樣
+        for (int slot = 0; slot < expected.length; slot++) {
+            assertEquals(expectedFields[slot], fields(expected[slot]));
+        }
+    }
+
+    @Test
+    void structuredResultMatchesTableForEveryCouple() {
+        for (int tenant = 0; tenant < tenants; tenant++) {
+            for (int locale = 0; locale < Locales.COUNT; locale++) {
+                for (int index = 0; index < couples.length; index++) {
+                    AnalysisController.AnalysisResult result = analysis.doAnalysis(tenant, locale, couples[index]);
+                    assertTrue(result.isSuccess());
+                    MatchRuleEngine.MatchResult match = expected[(tenant * Locales.COUNT + locale) * couples.length + index];
+                    Map<String, Object> structured = result.toStructuredResult();
+                    assertEquals(match.getScore(), structured.get("score"));
+                    assertEquals(match.getLevel(), structured.get("level"));
+                    assertEquals(match.getComment(), structured.get("comment"));
+                    assertEquals(Locales.ZODIAC_NAMES[locale][decode(index)[0]], structured.get("zodiac1"));
+                }
+            }
+        }
+    }
+
+    // MatchRuleCompiler.index 的反運算：{星座1, 性別1, 星座2, 性別2}
+    private static int[] decode(int index) {
+        int slots = MatchRuleCompiler.GENDER_SLOTS;
+        return new int[]{index / (slots * 12 * slots), index / (12 * slots) % slots, index / slots % 12, index % slots};
+    }
+
+    private static String fields(MatchRuleEngine.MatchResult result) {
+        if (result == null) {
+            return "null";
+        }
+        return result.getScore() + "|" + result.getLevel() + "|" + result.getLevelIndex() + "|" + result.getStars() + "|"
+                + result.getPros() + "|" + result.getCons() + "|" + result.getComment() + "|"
+                + result.getPercentile() + "|" + result.getRank();
+    }
+
+    private static String couple(Couple couple) {
+        return couple.getBirthDate1() + "|" + couple.getGender1() + "|" + couple.getBirthDate2() + "|" + couple.getGender2()
+                + "|" + couple.getPackedDate1() + "|" + couple.getPackedDate2() + "|" + couple.getZodiacIndex1() + "|"
+                + couple.getZodiacIndex2() + "|" + couple.getGenderIndex1() + "|" + couple.getGenderIndex2() + "|" + couple;
+    }
+}
@@ -0,0 +1,82 @@
+package com.SAD_Project.controller;
+
+import com.SAD_Project.TestContext;
+import com.SAD_Project.service.TenantRegistry;
+import com.SAD_Project.web.TenantFilter;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 可以被共用快取 (CDN) 存起來的 GET 回應：內容和租戶有關的一定要 Vary: X-Tenant，
+// 不然用 X-Tenant 標頭選租戶時，同一個網址會拿到別的租戶的內容；和租戶無關的 (星座列表) 不用
+class CacheHeadersTest {
+
+    private static final int TENANT = TenantRegistry.DEFAULT_TENANT;
+
+    private static HoroscopeController horoscope;
+    private static WireController wire;
+
+    @BeforeAll
+    static void setUp() {
+        horoscope = TestContext.bean(HoroscopeController.class);
+        wire = TestContext.bean(WireController.class);
+    }
+
+    @Test
+    void dailyVariesByTenantAndIsCachedUntilMidnight() {
+        for (String encoding : new String[]{null, "gzip", "br"}) {
+            ResponseEntity<byte[]> response = horoscope.getDaily("牡羊座", TENANT, null, encoding, null);
+            assertEquals(200, response.getStatusCodeValue());
+            assertVaries(response, TenantFilter.TENANT_HEADER, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ACCEPT_LANGUAGE);
+            String cacheControl = response.getHeaders().getCacheControl();
+            assertNotNull(cacheControl);
+            assertTrue(cacheControl.contains("public") && cacheControl.contains("max-age="), cacheControl);
+            assertNotNull(response.getHeaders().getFirst(HttpHeaders.EXPIRES));
+        }
+    }
+
+    @Test
+    void tenantDependentBodiesVaryByTenant() {
+        assertVaries(horoscope.getIntroduction("牡羊座", null, TENANT, null, "gzip", null),
+                TenantFilter.TENANT_HEADER, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ACCEPT_LANGUAGE);
+        assertVaries(horoscope.getPersonalityByDate("3/25", "男", TENANT, null, "gzip", null),
+                TenantFilter.TENANT_HEADER, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ACCEPT_LANGUAGE);
+        assertVaries(horoscope.search("固執", null, TENANT, null, null),
+                TenantFilter.TENANT_HEADER, HttpHeaders.ACCEPT_LANGUAGE);
+        assertVaries(wire.matchTexts(TENANT, null, "gzip"),
+                TenantFilter.TENANT_HEADER, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ACCEPT_LANGUAGE);
+    }
+
+    @Test
+    void zodiacListDoesNotVaryByTenant() {
+        List<String> vary = vary(horoscope.getAllZodiacs(null, "gzip"));
+        assertTrue(vary.contains(HttpHeaders.ACCEPT_ENCODING) && vary.contains(HttpHeaders.ACCEPT_LANGUAGE), vary.toString());
+        assertFalse(vary.contains(TenantFilter.TENANT_HEADER), vary.toString());
+    }
+
+    private static void assertVaries(ResponseEntity<byte[]> response, String... headers) {
+        List<String> vary = vary(response);
+        for (String header : headers) {
+            assertTrue(vary.contains(header), () -> "Vary " + vary + " 少了 " + header);
+        }
+    }
+
+    // 所有 Vary 標頭的值拆成一個一個的標頭名稱
+    private static List<String> vary(ResponseEntity<byte[]> response) {
+        List<String> values = response.getHeaders().get(HttpHeaders.VARY);
+        assertNotNull(values, "沒有 Vary 標頭");
+        return values.stream().flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::trim).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,102 @@
+package com.SAD_Project.controller;
+
+import com.SAD_Project.TestContext;
+import com.SAD_Project.monitoring.AuditLog;
+import com.SAD_Project.service.TenantRegistry;
+import com.SAD_Project.util.ErrorCode;
+import com.SAD_Project.util.Locales;
+import com.SAD_Project.util.WireFormat;
+import com.SAD_Project.web.AdmissionControlFilter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// WebSocket 的每則訊息都要拿配對的名額：名額用完時只回 OVERLOADED 的代碼，連線繼續使用，名額還回去之後又能正常配對
+// 用真的 WireController，連線 (WebSocketSession) 用一個只記錄送出訊息的假物件代替
+class MatchSocketHandlerTest {
+
+    // 配對的上限 8，一開始用一半 (4)；全域上限 128 的 heavy-share 有 51，不會先用完
+    private static AdmissionControlFilter admission(boolean enabled) {
+        return new AdmissionControlFilter(enabled, 0.8, 128, 8, 64, 128, 128, 32);
+    }
+
+    @Test
+    void framesOverTheMatchLimitAreRejected() throws Exception {
+        AdmissionControlFilter admission = admission(true);
+        List<byte[]> sent = new ArrayList<>();
+        MatchSocketHandler handler = new MatchSocketHandler(TestContext.bean(WireController.class),
+                TestContext.bean(AuditLog.class), admission);
+        WebSocketSession session = session(sent);
+        handler.afterConnectionEstablished(session);
+
+        // 先把配對的名額拿光，訊息只拿到 OVERLOADED
+        int held = 0;
+        while (admission.tryAcquireMatch()) {
+            held++;
+        }
+        assertEquals(4, held);
+        handler.handleBinaryMessage(session, frame());
+        assertEquals(1, sent.get(0).length);
+        assertEquals(WireFormat.status(ErrorCode.OVERLOADED), sent.get(0)[0]);
+
+        // 還一個名額，同一條連線的下一則訊息就能配對，處理完也會把名額還回去
+        admission.releaseMatch(-1);
+        handler.handleBinaryMessage(session, frame());
+        assertEquals(WireFormat.STATUS_OK, sent.get(1)[0]);
+        assertTrue(sent.get(1).length > 1);
+        assertTrue(admission.tryAcquireMatch());
+        assertFalse(admission.tryAcquireMatch());
+    }
+
+    @Test
+    void disabledAdmissionNeverRejects() {
+        AdmissionControlFilter admission = admission(false);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(admission.tryAcquireMatch());
+        }
+    }
+
+    // 牡羊座配獅子座，不附文字
+    private static BinaryMessage frame() {
+        ByteBuffer body = ByteBuffer.allocate(1 + WireFormat.COUPLE_BYTES).put((byte) 0)
+                .putShort((short) 1990).put((byte) 3).put((byte) 25).put((byte) 0)
+                .putShort((short) 1991).put((byte) 8).put((byte) 1).put((byte) 1);
+        body.flip();
+        return new BinaryMessage(body);
+    }
+
+    // 假的連線：握手時放進去的屬性，送出的訊息複製一份存進 sent
+    private static WebSocketSession session(List<byte[]> sent) {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(MatchSocketHandler.TENANT_ATTRIBUTE, TenantRegistry.DEFAULT_TENANT);
+        attributes.put(MatchSocketHandler.LOCALE_ATTRIBUTE, Locales.ZH_TW);
+        return (WebSocketSession) Proxy.newProxyInstance(MatchSocketHandlerTest.class.getClassLoader(),
+                new Class<?>[]{WebSocketSession.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getAttributes":
+                            return attributes;
+                        case "sendMessage":
+                            ByteBuffer payload = (ByteBuffer) ((WebSocketMessage<?>) args[0]).getPayload();
+                            byte[] bytes = new byte[payload.remaining()];
+                            payload.get(bytes);
+                            sent.add(bytes);
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
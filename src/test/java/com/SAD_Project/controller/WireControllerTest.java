@@ -0,0 +1,295 @@
+package com.SAD_Project.controller;
+
+import com.SAD_Project.TestContext;
+import com.SAD_Project.model.Couple;
+import com.SAD_Project.service.MatchRuleCompiler;
+import com.SAD_Project.service.MatchRuleEngine;
+import com.SAD_Project.service.TenantRegistry;
+import com.SAD_Project.service.ZodiacIntroduction;
+import com.SAD_Project.util.ErrorCode;
+import com.SAD_Project.util.Locales;
+import com.SAD_Project.util.WireFormat;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 二進位 API (WireFormat) 的來回測試：組好請求位元組交給 WireController，再照格式讀回應，
+// 每個欄位都要和 AnalysisController 直接算的結果一樣，而且回應剛好讀完、沒有多餘的位元組
+// 格式不對的請求 (多餘的旗標、長度不對、批次超過 MAX_BATCH) 一律是 HTTP 400，內容只有 BAD_WIRE_FORMAT 的代碼
+class WireControllerTest {
+
+    private static final byte[] BAD_FORMAT = {WireFormat.status(ErrorCode.BAD_WIRE_FORMAT)};
+
+    // {年, 月, 日, 性別}：各種星座，有年份也有沒有年份，不存在的日期和不合法的性別，最後一個沒有填性別 (2)
+    private static final int[][] PEOPLE = {{1990, 3, 21, 0}, {1985, 7, 30, 1}, {0, 12, 25, 0}, {2000, 2, 29, 1},
+            {1977, 10, 5, 0}, {0, 6, 1, 1}, {0, 13, 40, 0}, {1990, 1, 1, 7}, {1988, 11, 30, 2}};
+
+    private static WireController wire;
+    private static AnalysisController analysis;
+    private static MatchRuleEngine engine;
+    private static ZodiacIntroduction introduction;
+    private static int tenants;
+
+    @BeforeAll
+    static void setUp() {
+        wire = TestContext.bean(WireController.class);
+        analysis = TestContext.bean(AnalysisController.class);
+        engine = TestContext.bean(MatchRuleEngine.class);
+        introduction = TestContext.bean(ZodiacIntroduction.class);
+        tenants = TestContext.bean(TenantRegistry.class).size();
+    }
+
+    @Test
+    void matchRoundTripsEveryFlagCombination() {
+        for (int tenant = 0; tenant < tenants; tenant++) {
+            for (int locale = 0; locale < Locales.COUNT; locale++) {
+                for (int flags = 0; flags <= WireFormat.MATCH_FLAGS; flags++) {
+                    for (int[] person1 : PEOPLE) {
+                        for (int[] person2 : PEOPLE) {
+                            ByteBuffer body = ByteBuffer.allocate(1 + WireFormat.COUPLE_BYTES).put((byte) flags);
+                            put(body, person1);
+                            put(body, person2);
+                            ResponseEntity<byte[]> response = wire.match(body.array(), tenant, Locales.TAGS[locale], null);
+                            assertEquals(HttpStatus.OK, response.getStatusCode());
+
+                            ByteBuffer in = ByteBuffer.wrap(response.getBody());
+                            checkResult(in, tenant, locale, flags, person1, person2);
+                            assertFalse(in.hasRemaining(), "回應後面有多餘的位元組");
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void batchRoundTripsWithAndWithoutTexts() {
+        for (int flags = 0; flags <= WireFormat.MATCH_FLAGS; flags++) {
+            int count = PEOPLE.length * PEOPLE.length;
+            ByteBuffer body = ByteBuffer.allocate(3 + count * WireFormat.COUPLE_BYTES).put((byte) flags).putShort((short) count);
+            for (int[] person1 : PEOPLE) {
+                for (int[] person2 : PEOPLE) {
+                    put(body, person1);
+                    put(body, person2);
+                }
+            }
+            ResponseEntity<byte[]> response = wire.batchMatch(body.array(), TenantRegistry.DEFAULT_TENANT, "en", null);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+
+            ByteBuffer in = ByteBuffer.wrap(response.getBody());
+            assertEquals(count, in.getShort() & 0xFFFF);
+            for (int[] person1 : PEOPLE) {
+                for (int[] person2 : PEOPLE) {
+                    checkResult(in, TenantRegistry.DEFAULT_TENANT, Locales.EN, flags, person1, person2);
+                }
+            }
+            assertFalse(in.hasRemaining(), "回應後面有多餘的位元組");
+        }
+    }
+
+    @Test
+    void batchAcceptsMaxBatchAndRejectsMore() {
+        ResponseEntity<byte[]> full = wire.batchMatch(batch(WireFormat.MAX_BATCH), TenantRegistry.DEFAULT_TENANT, null, null);
+        assertEquals(HttpStatus.OK, full.getStatusCode());
+        assertEquals(WireFormat.MAX_BATCH, ByteBuffer.wrap(full.getBody()).getShort() & 0xFFFF);
+
+        // 組數超過上限，就算長度和組數對得上也不處理
+        assertBadFormat(wire.batchMatch(batch(WireFormat.MAX_BATCH + 1), TenantRegistry.DEFAULT_TENANT, null, null));
+
+        ResponseEntity<byte[]> empty = wire.batchMatch(batch(0), TenantRegistry.DEFAULT_TENANT, null, null);
+        assertEquals(HttpStatus.OK, empty.getStatusCode());
+        assertArrayEquals(new byte[]{0, 0}, empty.getBody());
+    }
+
+    @Test
+    void rejectsUnknownFlags() {
+        for (int flags = WireFormat.MATCH_FLAGS + 1; flags < 256; flags++) {
+            byte[] match = new byte[1 + WireFormat.COUPLE_BYTES];
+            match[0] = (byte) flags;
+            assertBadFormat(wire.match(match, TenantRegistry.DEFAULT_TENANT, null, null));
+
+            byte[] batch = batch(1);
+            batch[0] = (byte) flags;
+            assertBadFormat(wire.batchMatch(batch, TenantRegistry.DEFAULT_TENANT, null, null));
+        }
+        // 個性分析沒有合併模式
+        for (int flags = 0; flags < 256; flags++) {
+            if ((flags & ~WireFormat.PERSONALITY_FLAGS) != 0) {
+                byte[] personality = new byte[1 + WireFormat.PERSON_BYTES];
+                personality[0] = (byte) flags;
+                assertBadFormat(wire.personality(personality, TenantRegistry.DEFAULT_TENANT, null, null));
+            }
+        }
+    }
+
+    @Test
+    void rejectsWrongLengths() {
+        for (int length = 0; length <= 2 * WireFormat.COUPLE_BYTES; length++) {
+            if (length != 1 + WireFormat.COUPLE_BYTES) {
+                assertBadFormat(wire.match(new byte[length], TenantRegistry.DEFAULT_TENANT, null, null));
+            }
+            if (length != 1 + WireFormat.PERSON_BYTES) {
+                assertBadFormat(wire.personality(new byte[length], TenantRegistry.DEFAULT_TENANT, null, null));
+            }
+        }
+        // 批次：標頭不完整、組數和內容長度對不上 (少一組、多一組、多一個位元組)
+        assertBadFormat(wire.batchMatch(new byte[0], TenantRegistry.DEFAULT_TENANT, null, null));
+        assertBadFormat(wire.batchMatch(new byte[2], TenantRegistry.DEFAULT_TENANT, null, null));
+        byte[] two = batch(2);
+        assertBadFormat(wire.batchMatch(Arrays.copyOf(two, two.length - WireFormat.COUPLE_BYTES),
+                TenantRegistry.DEFAULT_TENANT, null, null));
+        assertBadFormat(wire.batchMatch(Arrays.copyOf(two, two.length + WireFormat.COUPLE_BYTES),
+                TenantRegistry.DEFAULT_TENANT, null, null));
+        assertBadFormat(wire.batchMatch(Arrays.copyOf(two, two.length + 1), TenantRegistry.DEFAULT_TENANT, null, null));
+    }
+
+    @Test
+    void personalityRoundTripsWithAndWithoutTexts() {
+        for (int tenant = 0; tenant < tenants; tenant++) {
+            for (int locale = 0; locale < Locales.COUNT; locale++) {
+                for (int flags = 0; flags <= WireFormat.PERSONALITY_FLAGS; flags += WireFormat.FLAG_TEXTS) {
+                    for (int[] person : PEOPLE) {
+                        ByteBuffer body = ByteBuffer.allocate(1 + WireFormat.PERSON_BYTES).put((byte) flags);
+                        put(body, person);
+                        ResponseEntity<byte[]> response = wire.personality(body.array(), tenant, Locales.TAGS[locale], null);
+                        assertEquals(HttpStatus.OK, response.getStatusCode());
+
+                        Couple expected = new Couple(person[0], person[1], person[2], person[3],
+                                person[0], person[1], person[2], person[3]);
+                        ByteBuffer in = ByteBuffer.wrap(response.getBody());
+                        byte status = in.get();
+                        if (expected.getPackedDate1() < 0) {
+                            assertEquals(WireFormat.status(ErrorCode.fromDateError(expected.getPackedDate1())), status);
+                        } else if (expected.getGenderIndex1() < 0
+                                || expected.getGenderIndex1() == MatchRuleCompiler.GENDER_UNSPECIFIED) {
+                            assertEquals(WireFormat.status(ErrorCode.BAD_GENDER), status);
+                        } else {
+                            assertEquals(WireFormat.STATUS_OK, status);
+                            assertEquals(expected.getZodiacIndex1(), in.get());
+                            assertEquals(expected.getGenderIndex1(), in.get());
+                            if ((flags & WireFormat.FLAG_TEXTS) != 0) {
+                                assertEquals(introduction.getPersonalityText(tenant, locale,
+                                        expected.getZodiacIndex1(), expected.getGenderIndex1()), text(in));
+                            }
+                        }
+                        assertFalse(in.hasRemaining(), "回應後面有多餘的位元組");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void unspecifiedGenderMatchesTheFormWithoutGender() {
+        int unspecified = MatchRuleCompiler.GENDER_UNSPECIFIED;
+        for (int tenant = 0; tenant < tenants; tenant++) {
+            for (int flags = 0; flags <= WireFormat.MATCH_FLAGS; flags++) {
+                int[] person1 = {1990, 3, 25, unspecified};
+                int[] person2 = {1991, 8, 1, unspecified};
+                ByteBuffer body = ByteBuffer.allocate(1 + WireFormat.COUPLE_BYTES).put((byte) flags);
+                put(body, person1);
+                put(body, person2);
+                ByteBuffer in = ByteBuffer.wrap(wire.match(body.array(), tenant, null, null).getBody());
+
+                // 和表單沒有填性別算出來的一樣 (沒有套用任何和性別有關的規則)
+                Couple form = new Couple("1990-3-25", null, "1991-8-1", "");
+                assertEquals(unspecified, form.getGenderIndex1());
+                AnalysisController.AnalysisResult expected = (flags & WireFormat.FLAG_COMBINED) != 0
+                        ? analysis.doCombinedAnalysis(tenant, Locales.ZH_TW, form)
+                        : analysis.doAnalysis(tenant, Locales.ZH_TW, form);
+                assertTrue(expected.isSuccess());
+                assertEquals(WireFormat.STATUS_OK, in.get());
+                in.position(5);
+                assertEquals(expected.getMatchResult().getScore(), in.get() & 0xFF);
+                assertEquals(expected.getMatchResult().getLevelIndex(), in.get() & 0xFF);
+            }
+        }
+
+        // 一個人有填、一個人沒填也可以；3 以上還是不認得的性別
+        ByteBuffer mixed = ByteBuffer.allocate(1 + WireFormat.COUPLE_BYTES).put((byte) 0);
+        put(mixed, new int[]{0, 3, 25, 0});
+        put(mixed, new int[]{0, 8, 1, unspecified});
+        assertEquals(WireFormat.STATUS_OK, wire.match(mixed.array(), TenantRegistry.DEFAULT_TENANT, null, null).getBody()[0]);
+        ByteBuffer bad = ByteBuffer.allocate(1 + WireFormat.COUPLE_BYTES).put((byte) 0);
+        put(bad, new int[]{0, 3, 25, 0});
+        put(bad, new int[]{0, 8, 1, unspecified + 1});
+        assertArrayEquals(new byte[]{WireFormat.status(ErrorCode.BAD_GENDER)},
+                wire.match(bad.array(), TenantRegistry.DEFAULT_TENANT, null, null).getBody());
+
+        // 個性分析的文字分男女，一定要填
+        ByteBuffer personality = ByteBuffer.allocate(1 + WireFormat.PERSON_BYTES).put((byte) 0);
+        put(personality, new int[]{1990, 3, 25, unspecified});
+        assertArrayEquals(new byte[]{WireFormat.status(ErrorCode.BAD_GENDER)},
+                wire.personality(personality.array(), TenantRegistry.DEFAULT_TENANT, null, null).getBody());
+    }
+
+    // 讀一筆配對結果，和 AnalysisController 直接算的比較
+    private static void checkResult(ByteBuffer in, int tenant, int locale, int flags, int[] person1, int[] person2) {
+        boolean combined = (flags & WireFormat.FLAG_COMBINED) != 0;
+        Couple couple = new Couple(person1[0], person1[1], person1[2], person1[3],
+                person2[0], person2[1], person2[2], person2[3]);
+        AnalysisController.AnalysisResult expected = combined
+                ? analysis.doCombinedAnalysis(tenant, locale, couple) : analysis.doAnalysis(tenant, locale, couple);
+
+        byte status = in.get();
+        if (!expected.isSuccess()) {
+            assertEquals(WireFormat.status(expected.getErrorCode()), status);
+            return; // 錯誤只有狀態，沒有其他欄位也沒有文字
+        }
+        MatchRuleEngine.MatchResult match = expected.getMatchResult();
+        assertEquals(WireFormat.STATUS_OK, status);
+        assertEquals(couple.getZodiacIndex1(), in.get());
+        assertEquals(couple.getZodiacIndex2(), in.get());
+        assertEquals(combined ? (byte) couple.getAnimalIndex1() : WireFormat.NO_ANIMAL, in.get());
+        assertEquals(combined ? (byte) couple.getAnimalIndex2() : WireFormat.NO_ANIMAL, in.get());
+        assertEquals(match.getScore(), in.get() & 0xFF);
+        assertEquals(match.getLevelIndex(), in.get() & 0xFF);
+        assertEquals(match.getStars(), in.get() & 0xFF);
+        assertEquals(match.getPercentile(), in.get() & 0xFF);
+        assertEquals(match.getRank(), in.getShort() & 0xFFFF);
+        if ((flags & WireFormat.FLAG_TEXTS) != 0) {
+            int level = match.getLevelIndex();
+            assertEquals(engine.getText(tenant, locale, level, MatchRuleCompiler.TEXT_POSITIVE), text(in));
+            assertEquals(engine.getText(tenant, locale, level, MatchRuleCompiler.TEXT_NEGATIVE), text(in));
+            assertEquals(engine.getText(tenant, locale, level, MatchRuleCompiler.TEXT_COMMENT), text(in));
+        }
+    }
+
+    // 一個合法的批次請求，count 組都是同一對
+    private static byte[] batch(int count) {
+        ByteBuffer body = ByteBuffer.allocate(3 + count * WireFormat.COUPLE_BYTES).put((byte) 0).putShort((short) count);
+        for (int i = 0; i < count; i++) {
+            put(body, PEOPLE[0]);
+            put(body, PEOPLE[1]);
+        }
+        return body.array();
+    }
+
+    private static void put(ByteBuffer body, int[] person) {
+        body.putShort((short) person[0]).put((byte) person[1]).put((byte) person[2]).put((byte) person[3]);
+    }
+
+    // u16 長度 + UTF-8
+    private static String text(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void assertBadFormat(ResponseEntity<byte[]> response) {
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertArrayEquals(BAD_FORMAT, response.getBody());
+        assertTrue(response.getHeaders().getContentType().isCompatibleWith(WireFormat.MEDIA_TYPE));
+    }
+}
@@ -0,0 +1,179 @@
+package com.SAD_Project.monitoring;
+
+import com.SAD_Project.TestContext;
+import com.SAD_Project.controller.AnalysisController;
+import com.SAD_Project.controller.HoroscopeController;
+import com.SAD_Project.model.Couple;
+import com.SAD_Project.service.MatchRuleEngine;
+import com.SAD_Project.service.TenantRegistry;
+import com.SAD_Project.service.ZodiacIntroduction;
+import com.SAD_Project.util.Locales;
+import com.SAD_Project.util.ZodiacCalculator;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// 熱門路徑每次呼叫配置多少 bytes，超過預算就失敗 (每個路徑一個測試，預算就寫在測試裡)
+// 用執行緒的配置計數器 (com.sun.management.ThreadMXBean)，只算測試執行緒自己配置的，其他執行緒不影響
+// 先跑一段讓 JIT 編譯好 (逃逸分析會把暫時物件消掉)，再量一段取平均；量三次取最小值，避開量測中途 JIT 重新編譯的干擾
+// 預算大約是目前量到的數字再加 25%，0 的路徑要一直保持不配置記憶體；JVM 不支援配置計數器時略過
+class AllocationBudgetTest {
+
+    private static final int WARMUP_ITERATIONS = 50_000;
+    private static final int MEASURE_ITERATIONS = 100_000;
+    private static final int ROUNDS = 3;
+
+    // 各種輸入輪流用，避免 JIT 把固定的輸入整個算好
+    private static final String[] DATES = {"3/21", "4/25", "5/30", "6/30", "7/30", "8/30",
+            "9/30", "10/30", "11/30", "12/30", "1/30", "2/28", "2024-02-29", "1990/7/4"};
+    private static final String[] DATED = {"2024-02-29", "1990/7/4", "1985-01-15", "2000-2-4", "1977-11-30"}; // 合併模式要有年份
+    private static final String[] GENDERS = {"男", "女"};
+    private static final String[] LANGUAGES = {null, "zh-CN,zh;q=0.9", "en-US,en;q=0.9"};
+    private static final String[] ENCODINGS = {null, "gzip, deflate", "gzip, deflate, br"};
+    private static final String[] QUERIES = {"固執", "浪漫", "自由", "愛", "不存在的特質"};
+    private static final String[] MIN_SCORES = {"60", "75", "80", "90", null};
+    private static final String[] MIN_LEVELS = {null, null, null, null, "小吉"}; // MIN_SCORES 是 null 的時候用等級
+
+    private static final int TENANT = TenantRegistry.DEFAULT_TENANT;
+
+    // 把結果混進這裡，JIT 才不會把沒用到的呼叫整個拿掉
+    private static volatile int sink;
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static MatchRuleEngine matchRuleEngine;
+    private static AnalysisController analysisController;
+    private static ZodiacIntroduction zodiacIntro;
+    private static HoroscopeController controller;
+    // doAnalysis 的輸入是已經解析好的 Couple，解析的成本算在 api.match 裡
+    private static Couple[] couples;
+
+    @BeforeAll
+    static void setUp() {
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "這個 JVM 不支援執行緒配置計數器");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        matchRuleEngine = TestContext.bean(MatchRuleEngine.class);
+        analysisController = TestContext.bean(AnalysisController.class);
+        zodiacIntro = TestContext.bean(ZodiacIntroduction.class);
+        controller = TestContext.bean(HoroscopeController.class);
+
+        couples = new Couple[DATES.length];
+        for (int i = 0; i < couples.length; i++) {
+            couples[i] = new Couple(DATES[i], GENDERS[i & 1], DATES[(i * 7 + 3) % DATES.length], GENDERS[(i >> 1) & 1]);
+        }
+    }
+
+    @Test
+    void calculateZodiac() {
+        assertBudget("calculateZodiac", 0, i ->
+                sink += ZodiacCalculator.calculateZodiacFromBirthDate(DATES[i % DATES.length]).length());
+    }
+
+    @Test
+    void computeMatch() {
+        assertBudget("computeMatch", 0, i ->
+                sink += matchRuleEngine.computeMatch(TENANT, i % Locales.COUNT, i % 12, i % 3, (i >> 2) % 12, (i >> 4) % 3)
+                        .getScore());
+    }
+
+    @Test
+    void doAnalysis() {
+        assertBudget("doAnalysis", 128, i ->
+                sink += analysisController.doAnalysis(TENANT, i % Locales.COUNT, couples[i % couples.length])
+                        .getMatchResult().getScore());
+    }
+
+    @Test
+    void personalityByZodiac() {
+        assertBudget("personalityByZodiac", 0, i ->
+                sink += zodiacIntro.getPersonalityByZodiac(ZodiacCalculator.ZODIAC_NAMES[i % 12], GENDERS[i & 1]).length());
+    }
+
+    @Test
+    void apiMatch() {
+        assertBudget("api.match", 4608, i ->
+                sink += controller.doMatch(DATES[i % DATES.length], GENDERS[i & 1], DATES[(i * 7 + 3) % DATES.length],
+                        GENDERS[(i >> 1) & 1], null, TENANT, LANGUAGES[i % LANGUAGES.length], null).getBody().length);
+    }
+
+    @Test
+    void apiMatchCombined() {
+        assertBudget("api.match.combined", 5120, i ->
+                sink += controller.doMatch(DATED[i % DATED.length], GENDERS[i & 1], DATED[(i * 3 + 1) % DATED.length],
+                        GENDERS[(i >> 1) & 1], "combined", TENANT, LANGUAGES[i % LANGUAGES.length], null).getBody().length);
+    }
+
+    @Test
+    void apiPersonality() {
+        assertBudget("api.personality", 3840, i ->
+                sink += controller.getPersonalityByDate(DATES[i % DATES.length], GENDERS[i & 1], TENANT,
+                        LANGUAGES[i % LANGUAGES.length], ENCODINGS[i % ENCODINGS.length], null).getBody().length);
+    }
+
+    @Test
+    void apiIntroduction() {
+        assertBudget("api.introduction", 1280, i ->
+                sink += controller.getIntroduction(ZodiacCalculator.ZODIAC_NAMES[i % 12], null, TENANT,
+                        null, ENCODINGS[i % ENCODINGS.length], null).getBody().length);
+    }
+
+    @Test
+    void apiZodiacs() {
+        assertBudget("api.zodiacs", 1280, i ->
+                sink += controller.getAllZodiacs(LANGUAGES[i % LANGUAGES.length], ENCODINGS[i % ENCODINGS.length])
+                        .getBody().length);
+    }
+
+    @Test
+    void apiDaily() {
+        assertBudget("api.daily", 2048, i ->
+                sink += controller.getDaily(ZodiacCalculator.ZODIAC_NAMES[i % 12], TENANT, null,
+                        ENCODINGS[i % ENCODINGS.length], null).getBody().length);
+    }
+
+    @Test
+    void apiSearch() {
+        assertBudget("api.search", 12288, i ->
+                sink += controller.search(QUERIES[i % QUERIES.length], null, TENANT, null, null).getBody().length);
+    }
+
+    @Test
+    void apiMatchRanges() {
+        assertBudget("api.match.ranges", 4864, i ->
+                sink += controller.getMatchRanges(DATES[i % DATES.length], GENDERS[i & 1], null,
+                        MIN_SCORES[i % MIN_SCORES.length], MIN_LEVELS[i % MIN_LEVELS.length], TENANT,
+                        LANGUAGES[i % LANGUAGES.length], null).getBody().length);
+    }
+
+    // 量測 path 每次呼叫配置的 bytes，超過 budget 就失敗 (參數是第幾次呼叫，用來輪流選輸入)
+    private static void assertBudget(String name, long budget, IntConsumer path) {
+        double bytes = bytesPerCall(path);
+        assertTrue(bytes <= budget, () -> String.format("%s 每次呼叫配置 %.1f bytes，超過預算 %d", name, bytes, budget));
+    }
+
+    // 先預熱，再量 ROUNDS 次取最小的平均值
+    private static double bytesPerCall(IntConsumer path) {
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            path.accept(i);
+        }
+
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+                path.accept(i);
+            }
+            long after = threads.getThreadAllocatedBytes(threadId);
+            best = Math.min(best, (after - before) / (double) MEASURE_ITERATIONS);
+        }
+        return best;
+    }
+}
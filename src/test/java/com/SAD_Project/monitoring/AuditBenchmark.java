@@ -0,0 +1,196 @@
+package com.SAD_Project.monitoring;
+
+import com.SAD_Project.service.TenantRegistry; // AuditLog 需要租戶名稱
+import com.SAD_Project.util.Locales;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+// 這個小工具量測稽核紀錄 (AuditLog) 對延遲的影響，分兩部分：
+//   程式內：直接建立 AuditLog，多個執行緒同時呼叫記錄的方法，比較關閉、drop、block 三種設定每次呼叫的 p50/p99/p99.9
+//   端對端 (有指定 --jar 才跑)：用 ServerBenchmark 的用戶端和請求組合，同一個 jar 分別關閉和開啟稽核紀錄，比較 HTTP 的 p99
+// 1 顆 CPU 的機器上用戶端、伺服器和寫入執行緒搶同一顆 CPU，端對端的差別會被雜訊蓋過，程式內的數字比較準
+// AuditLog 需要 Spring 和 servlet 的類別，用測試的 classpath 執行 (端對端的部分還要先打包 jar)：
+//   mvn package -DskipTests
+//   mvn -q exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.SAD_Project.monitoring.AuditBenchmark [-Dexec.args="--jar target/sad-project-1.0.0.jar"]
+// 選項：--threads 4 --calls 2000000 --capacity 8192 --rounds 3
+//   端對端：--connections 8 --warmup-seconds 40 --seconds 30 --port 18080 --jvm "-Xms256m -Xmx256m"
+public class AuditBenchmark {
+
+    private static final String[] MODES = {"關閉", "drop", "block"};
+
+    // 端對端的三種設定 (紀錄寫在暫存目錄)
+    private static final String[] APPS = {"--horoscope.audit.enabled=false",
+            "--horoscope.audit.enabled=true --horoscope.audit.when-full=drop",
+            "--horoscope.audit.enabled=true --horoscope.audit.when-full=block"};
+
+    // 每個量測的欄位 (程式內的單位是 ns，端對端是 us)
+    private static final String[] COLUMNS = {"p50", "p99", "p99.9", "丟棄/錯誤"};
+    private static final String[] HTTP_COLUMNS = {"req/s", "p50", "p99", "p99.9", "錯誤"};
+
+    public static void main(String[] args) throws Exception {
+        int threads = 4;
+        int calls = 2_000_000;
+        int capacity = 8192;
+        int rounds = 3;
+        String jar = null;
+        int connections = 8;
+        int warmupSeconds = 40;
+        int seconds = 30;
+        int port = 18080;
+        String jvm = "-Xms256m -Xmx256m";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--calls": calls = Integer.parseInt(args[++i]); break;
+                case "--capacity": capacity = Integer.parseInt(args[++i]); break;
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                case "--jar": jar = args[++i]; break;
+                case "--connections": connections = Integer.parseInt(args[++i]); break;
+                case "--warmup-seconds": warmupSeconds = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--jvm": jvm = args[++i]; break;
+                default:
+                    System.err.println("用法：AuditBenchmark [--threads N] [--calls N] [--capacity N] [--rounds N] "
+                            + "[--jar <jar> [--connections N] [--warmup-seconds N] [--seconds N] [--port N] [--jvm \"JVM 參數\"]]");
+                    System.exit(1);
+            }
+        }
+
+        TenantRegistry tenants = new TenantRegistry();
+        long[][][] results = new long[MODES.length][rounds][];
+        for (int round = 0; round < rounds; round++) {
+            for (int mode = 0; mode < MODES.length; mode++) {
+                results[mode][round] = inProcess(tenants, mode, threads, calls, capacity);
+                System.out.println(row("第 " + (round + 1) + " 輪 " + MODES[mode], results[mode][round]));
+            }
+        }
+        System.out.printf("%n程式內：%d 個執行緒共呼叫 %d 次，緩衝區 %d 格，%d 輪取中位數 (單位 ns)%n",
+                threads, calls, capacity, rounds);
+        print(COLUMNS, results);
+
+        if (jar == null) {
+            return;
+        }
+        byte[][] requests = ServerBenchmark.buildRequests(port);
+        long[][][] httpResults = new long[MODES.length][rounds][];
+        for (int round = 0; round < rounds; round++) {
+            for (int mode = 0; mode < MODES.length; mode++) {
+                httpResults[mode][round] = http(jar, jvm, APPS[mode], port, requests, connections, warmupSeconds, seconds);
+                System.out.println(row("第 " + (round + 1) + " 輪 " + MODES[mode], httpResults[mode][round]));
+            }
+        }
+        System.out.printf("%n端對端：%s，連線數 %d，預熱 %d 秒，量測 %d 秒，%d 輪取中位數 (單位 us)%n",
+                Paths.get(jar).getFileName(), connections, warmupSeconds, seconds, rounds);
+        print(HTTP_COLUMNS, httpResults);
+    }
+
+    // 程式內量測一種設定：先用同樣的呼叫數預熱一次，再量每次呼叫的時間，回傳 COLUMNS
+    private static long[] inProcess(TenantRegistry tenants, int mode, int threads, int calls, int capacity) throws Exception {
+        Path directory = Files.createTempDirectory("audit-benchmark");
+        AuditLog audit = new AuditLog(tenants, mode != 0, directory.toString(), capacity, mode == 2 ? "block" : "drop",
+                512, 10 << 20, 10, 10);
+        try {
+            record(audit, threads, calls);
+            long droppedBefore = audit.getDropped();
+            long[] latencies = record(audit, threads, calls);
+            Arrays.sort(latencies);
+            return new long[]{ServerBenchmark.percentile(latencies, 0.50), ServerBenchmark.percentile(latencies, 0.99),
+                    ServerBenchmark.percentile(latencies, 0.999), audit.getDropped() - droppedBefore};
+        } finally {
+            audit.destroy();
+            deleteRecursively(directory);
+        }
+    }
+
+    // threads 個執行緒同時呼叫 calls 次 (和 WebSocket 的配對紀錄一樣的欄位)，回傳每次呼叫的時間 (ns)
+    private static long[] record(AuditLog audit, int threads, int calls) throws InterruptedException {
+        int perThread = calls / threads;
+        long[] latencies = new long[perThread * threads];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = t * perThread;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    long begin = System.nanoTime();
+                    audit.socketMatch("127.0.0.1", TenantRegistry.DEFAULT_TENANT, i % Locales.COUNT, "ok", begin,
+                            "3/21", "男", "7/30", (i & 1) == 0 ? "女" : null, null);
+                    latencies[offset + i] = System.nanoTime() - begin;
+                }
+            }, "audit-benchmark-" + t);
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return latencies;
+    }
+
+    // 端對端量測一種設定，回傳 HTTP_COLUMNS
+    private static long[] http(String jar, String jvm, String app, int port, byte[][] requests, int connections,
+                               int warmupSeconds, int seconds) throws Exception {
+        Path directory = Files.createTempDirectory("audit-benchmark");
+        Process server = ServerBenchmark.startServer(jar, jvm, app + " --horoscope.audit.directory=" + directory, port,
+                Paths.get(jar + ".audit.log"));
+        try {
+            ServerBenchmark.waitUntilReady(server, port);
+            ServerBenchmark.load(port, requests, connections, warmupSeconds);
+            ServerBenchmark.Result result = ServerBenchmark.load(port, requests, connections, seconds);
+            long[] latencies = result.latencies;
+            Arrays.sort(latencies);
+            return new long[]{latencies.length / seconds, ServerBenchmark.percentile(latencies, 0.50),
+                    ServerBenchmark.percentile(latencies, 0.99), ServerBenchmark.percentile(latencies, 0.999), result.errors};
+        } finally {
+            ServerBenchmark.stopServer(server);
+            deleteRecursively(directory);
+        }
+    }
+
+    private static void print(String[] columns, long[][][] results) {
+        StringBuilder header = new StringBuilder(String.format("%-16s", "設定"));
+        for (String column : columns) {
+            header.append(String.format(" %10s", column));
+        }
+        System.out.println(header);
+        for (int mode = 0; mode < results.length; mode++) {
+            long[] medians = new long[columns.length];
+            for (int column = 0; column < columns.length; column++) {
+                long[] values = new long[results[mode].length];
+                for (int round = 0; round < values.length; round++) {
+                    values[round] = results[mode][round][column];
+                }
+                Arrays.sort(values);
+                medians[column] = values[values.length / 2];
+            }
+            System.out.println(row(MODES[mode], medians));
+        }
+    }
+
+    private static String row(String name, long[] values) {
+        StringBuilder row = new StringBuilder(String.format("%-16s", name));
+        for (long value : values) {
+            row.append(String.format(" %10d", value));
+        }
+        return row.toString();
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.SAD_Project.monitoring;
+
+import com.SAD_Project.util.ErrorCode;
+import com.SAD_Project.util.WireFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// 這個小工具量測 /ws/match 能撐住多少條 WebSocket 連線，還有大部分連線閒置時，少數活躍連線的延遲
+// 啟動 jar → 等 /api/ready → 依序：
+//   建立連線：一條一條握手直到 --connections 條 (或連續失敗太多次)，記錄成功、失敗、伺服器的 RSS 和執行緒數
+//   活躍：前 --active 條連線各一個執行緒，一直送配對訊息 --seconds 秒 (其他連線閒置)，記錄 req/s 和延遲
+//   閒置的連線：每條連線再送一則訊息，確認閒置了一段時間的連線都還能用
+// 回應的第一個位元組是狀態代碼：OVERLOADED 是流量管制拒絕的 (等於 HTTP 的 503)，分開計算，不算成功也不算錯誤
+// 用戶端是原始的 socket (自己握手、自己組 WebSocket 訊框)，每條連線只有一個 Socket，幾萬條連線也不用很多記憶體
+// 一條連線就是一個檔案，用戶端和伺服器都要把檔案數上限 (ulimit -n) 調到比 --connections 多一點：
+//   --fd-limit N 用 prlimit 設定伺服器的上限 (不能超過 hard limit)，用戶端的上限啟動前自己用 ulimit -n 調整
+//   --max-connections 是 Tomcat 的 server.tomcat.max-connections，超過的連線 Tomcat 不會接受
+//   mvn package -DskipTests
+//   mvn -q exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.SAD_Project.monitoring.ConnectionBenchmark -Dexec.args="target/sad-project-1.0.0.jar"
+// 選項 (放在 jar 前面)：--connections 18000 --active 16 --seconds 20 --max-connections 20000 --fd-limit 20000
+//   --port 18080 --jvm "-Xms1g -Xmx1g" --app "其他應用程式參數"
+public class ConnectionBenchmark {
+
+    private static final int MAX_CONSECUTIVE_FAILURES = 20; // 連續失敗這麼多次就不再建立連線 (多半是碰到上限)
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    // 伺服器碰到上限時不會拒絕連線，核心還是會接受 (排在 backlog 裡)，只是一直等不到握手的回應
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 2000;
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+
+    private static final byte OK = WireFormat.STATUS_OK;
+    private static final byte OVERLOADED = WireFormat.status(ErrorCode.OVERLOADED);
+
+    public static void main(String[] args) throws Exception {
+        int connections = 18000;
+        int active = 16;
+        int seconds = 20;
+        int maxConnections = 20000;
+        int fdLimit = 0;
+        int port = 18080;
+        String jvm = "-Xms1g -Xmx1g";
+        String app = "";
+        String jar = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--connections": connections = Integer.parseInt(args[++i]); break;
+                case "--active": active = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--max-connections": maxConnections = Integer.parseInt(args[++i]); break;
+                case "--fd-limit": fdLimit = Integer.parseInt(args[++i]); break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--jvm": jvm = args[++i]; break;
+                case "--app": app = args[++i]; break;
+                default: jar = args[i];
+            }
+        }
+        if (jar == null || active > connections) {
+            System.err.println("用法：ConnectionBenchmark [--connections N] [--active N (不超過 connections)] [--seconds N] "
+                    + "[--max-connections N] [--fd-limit N] [--port N] [--jvm \"JVM 參數\"] [--app \"應用程式參數\"] <jar>");
+            System.exit(1);
+        }
+        long clientLimit = clientFdLimit();
+        if (clientLimit > 0 && clientLimit < connections + 100L) {
+            System.err.printf("用戶端的檔案數上限只有 %d，開不了 %d 條連線，先用 ulimit -n 調高%n", clientLimit, connections);
+            System.exit(1);
+        }
+
+        List<String> prefix = fdLimit > 0
+                ? Arrays.asList("prlimit", "--nofile=" + fdLimit + ":" + fdLimit, "--")
+                : Collections.emptyList();
+        String serverApp = "--horoscope.audit.enabled=false --server.tomcat.max-connections=" + maxConnections + " " + app;
+        Path log = Files.createTempFile("connection-benchmark", ".log");
+        System.out.printf("伺服器：--max-connections %d，檔案數上限 %s；用戶端檔案數上限 %d；輸出在 %s%n",
+                maxConnections, fdLimit > 0 ? Integer.toString(fdLimit) : "(沿用)", clientLimit, log);
+
+        Process server = ServerBenchmark.startServer(prefix, jar, jvm, serverApp, port, log);
+        List<Session> sessions = new ArrayList<>(connections);
+        try {
+            ServerBenchmark.waitUntilReady(server, port);
+            long pid = server.pid();
+            long rssBefore = ServerBenchmark.procStatus(pid, "VmRSS");
+
+            // 建立連線
+            long start = System.nanoTime();
+            int failures = 0;
+            int consecutive = 0;
+            String firstError = null;
+            while (sessions.size() < connections && consecutive < MAX_CONSECUTIVE_FAILURES) {
+                try {
+                    sessions.add(new Session(port));
+                    consecutive = 0;
+                } catch (IOException e) {
+                    failures++;
+                    consecutive++;
+                    if (firstError == null) {
+                        firstError = e.toString();
+                    }
+                }
+            }
+            double connectSeconds = (System.nanoTime() - start) / 1e9;
+            long rss = ServerBenchmark.procStatus(pid, "VmRSS");
+            System.out.printf("%n建立連線：成功 %d，失敗 %d%s，花了 %.1f 秒%n", sessions.size(), failures,
+                    firstError != null ? " (第一個錯誤：" + firstError + ")" : "", connectSeconds);
+            System.out.printf("伺服器：RSS %d MB → %d MB (每條連線大約 %d KB)，執行緒 %d%n", rssBefore, rss,
+                    sessions.isEmpty() ? 0 : (rss - rssBefore) * 1024 / sessions.size(), ServerBenchmark.threadCount(pid));
+            if (sessions.size() < active) {
+                throw new IllegalStateException("連線數不到 --active 的 " + active + " 條");
+            }
+
+            // 少數活躍、其他閒置
+            Counts counts = new Counts();
+            long[] latencies = activeLoad(sessions.subList(0, active), seconds, counts);
+            Arrays.sort(latencies);
+            System.out.printf("%n活躍 %d 條、閒置 %d 條，%d 秒：成功 %.0f/s，OVERLOADED %d，錯誤 %d%n",
+                    active, sessions.size() - active, seconds, counts.ok / (double) seconds, counts.overloaded, counts.errors);
+            System.out.printf("成功的延遲：p50 %d us，p99 %d us，p99.9 %d us，最慢 %d us%n",
+                    ServerBenchmark.percentile(latencies, 0.50), ServerBenchmark.percentile(latencies, 0.99),
+                    ServerBenchmark.percentile(latencies, 0.999), latencies.length > 0 ? latencies[latencies.length - 1] : 0);
+            System.out.printf("伺服器：RSS %d MB (最高 %d MB)，執行緒 %d%n", ServerBenchmark.procStatus(pid, "VmRSS"),
+                    ServerBenchmark.procStatus(pid, "VmHWM"), ServerBenchmark.threadCount(pid));
+
+            // 閒置的連線都還能用嗎
+            Counts idle = new Counts();
+            long slowest = 0;
+            start = System.nanoTime();
+            for (int i = active; i < sessions.size(); i++) {
+                long micros = sessions.get(i).match(i, idle);
+                slowest = Math.max(slowest, micros);
+            }
+            System.out.printf("%n閒置的 %d 條連線各送一則：成功 %d，OVERLOADED %d，錯誤 %d，共 %.2f 秒，最慢 %d us%n",
+                    sessions.size() - active, idle.ok, idle.overloaded, idle.errors,
+                    (System.nanoTime() - start) / 1e9, slowest);
+        } finally {
+            for (Session session : sessions) {
+                session.close();
+            }
+            ServerBenchmark.stopServer(server);
+        }
+    }
+
+    // 每條活躍連線一個執行緒，一直送到時間到，回傳所有成功回應的延遲 (微秒)
+    private static long[] activeLoad(List<Session> active, int seconds, Counts total) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        Counts[] counts = new Counts[active.size()];
+        long[][] latencies = new long[active.size()][];
+        Thread[] threads = new Thread[active.size()];
+        for (int t = 0; t < threads.length; t++) {
+            int index = t;
+            counts[t] = new Counts();
+            threads[t] = new Thread(() -> {
+                Session session = active.get(index);
+                long[] own = new long[1 << 16];
+                int n = 0;
+                for (int i = index; running.get(); i += threads.length) {
+                    long ok = counts[index].ok;
+                    long micros = session.match(i, counts[index]);
+                    if (counts[index].ok != ok) {
+                        if (n == own.length) {
+                            own = Arrays.copyOf(own, n * 2);
+                        }
+                        own[n++] = micros;
+                    } else if (session.closed) {
+                        break;
+                    }
+                }
+                latencies[index] = Arrays.copyOf(own, n);
+            }, "connection-benchmark-" + t);
+            threads[t].start();
+        }
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+
+        int size = 0;
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+            total.add(counts[t]);
+            size += latencies[t].length;
+        }
+        long[] all = new long[size];
+        int n = 0;
+        for (long[] own : latencies) {
+            System.arraycopy(own, 0, all, n, own.length);
+            n += own.length;
+        }
+        return all;
+    }
+
+    // 用戶端 JVM 的檔案數上限，拿不到就回傳 -1
+    private static long clientFdLimit() {
+        Object os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof com.sun.management.UnixOperatingSystemMXBean
+                ? ((com.sun.management.UnixOperatingSystemMXBean) os).getMaxFileDescriptorCount() : -1;
+    }
+
+    // 各種回應的數量
+    private static final class Counts {
+        private long ok;
+        private long overloaded;
+        private long errors; // 其他狀態代碼和連線錯誤
+
+        private void add(Counts other) {
+            ok += other.ok;
+            overloaded += other.overloaded;
+            errors += other.errors;
+        }
+    }
+
+    // 一條 WebSocket 連線：握手完只留 Socket，訊息一則送出、一則讀回
+    private static final class Session {
+        // 固定的 Sec-WebSocket-Key，伺服器只檢查格式
+        private static final String HANDSHAKE = "GET /ws/match HTTP/1.1\r\nHost: localhost\r\n"
+                + "Upgrade: websocket\r\nConnection: Upgrade\r\nSec-WebSocket-Version: 13\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n\r\n";
+
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private final byte[] frame = new byte[2 + 4 + 1 + WireFormat.COUPLE_BYTES]; // 標頭、遮罩、請求
+        private final byte[] payload = new byte[1024];
+        private boolean closed;
+
+        private Session(int port) throws IOException {
+            socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress("localhost", port), CONNECT_TIMEOUT_MILLIS);
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                in = socket.getInputStream();
+                out = socket.getOutputStream();
+                out.write(HANDSHAKE.getBytes(StandardCharsets.US_ASCII));
+                String status = readHeaders();
+                if (!status.startsWith("HTTP/1.1 101")) {
+                    throw new IOException("握手失敗：" + status);
+                }
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            // 用戶端送的訊框一定要有遮罩，遮罩用 0 (內容不變)
+            frame[0] = (byte) 0x82; // FIN + 二進位
+            frame[1] = (byte) (0x80 | (1 + WireFormat.COUPLE_BYTES));
+        }
+
+        // 讀完回應標頭，回傳狀態列 (一次讀一個位元組，握手只有一次)
+        private String readHeaders() throws IOException {
+            StringBuilder headers = new StringBuilder();
+            while (headers.length() < 4 || headers.lastIndexOf("\r\n\r\n") != headers.length() - 4) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new IOException("握手時連線被關閉");
+                }
+                headers.append((char) b);
+            }
+            return headers.substring(0, headers.indexOf("\r\n"));
+        }
+
+        // 送一筆配對 (i 決定生日)，讀回應的狀態代碼記到 counts，回傳延遲 (微秒)
+        private long match(int i, Counts counts) {
+            if (closed) {
+                counts.errors++;
+                return 0;
+            }
+            ByteBuffer body = ByteBuffer.wrap(frame, 6, 1 + WireFormat.COUPLE_BYTES);
+            body.put((byte) 0)
+                    .putShort((short) 0).put((byte) (1 + i % 12)).put((byte) (1 + i % 28)).put((byte) (i & 1))
+                    .putShort((short) 0).put((byte) (1 + (i / 12) % 12)).put((byte) (1 + (i / 7) % 28)).put((byte) ((i >> 1) & 1));
+            long start = System.nanoTime();
+            try {
+                out.write(frame);
+                byte status = readMessage();
+                long micros = (System.nanoTime() - start) / 1000;
+                if (status == OK) {
+                    counts.ok++;
+                } else if (status == OVERLOADED) {
+                    counts.overloaded++;
+                } else {
+                    counts.errors++;
+                }
+                return micros;
+            } catch (IOException e) {
+                counts.errors++;
+                close();
+                return (System.nanoTime() - start) / 1000;
+            }
+        }
+
+        // 讀一則伺服器送來的二進位訊息 (伺服器不加遮罩，回應不會超過 64 KB)，回傳第一個位元組
+        private byte readMessage() throws IOException {
+            readFully(payload, 2);
+            if ((payload[0] & 0x0F) != 0x02) {
+                throw new IOException("不是二進位訊息：opcode " + (payload[0] & 0x0F));
+            }
+            int length = payload[1] & 0x7F;
+            if (length == 126) {
+                readFully(payload, 2);
+                length = ((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF);
+            }
+            if (length == 0 || length > payload.length) {
+                throw new IOException("回應長度不對：" + length);
+            }
+            readFully(payload, length);
+            return payload[0];
+        }
+
+        private void readFully(byte[] buffer, int length) throws IOException {
+            for (int n = 0; n < length; ) {
+                int read = in.read(buffer, n, length - n);
+                if (read < 0) {
+                    throw new IOException("連線被關閉");
+                }
+                n += read;
+            }
+        }
+
+        private void close() {
+            closed = true;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // 已經關閉
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.SAD_Project.monitoring;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 這個小工具比較同一個伺服器用 HTTP/1.1 keep-alive 和 h2c (不加密的 HTTP/2) 呼叫 API 的差別：連線數、吞吐量、延遲和傳輸量
+// 伺服器用 --horoscope.h2c.enabled=true 啟動，兩種協定打同一個行程 (JIT 的狀態一樣)，每一輪兩種各量一次，最後每一欄取中位數
+// 用戶端都是 JDK 的 HttpClient，concurrency 個執行緒同時送請求 (每個執行緒送完一個才送下一個)：
+//   HTTP/1.1 一條連線同時只能有一個請求，連線池會開到 concurrency 條連線
+//   HTTP/2 先送一個請求升級 (Upgrade: h2c)，之後所有請求都是同一條連線上的 stream
+// 請求組合和 ServerBenchmark 一樣 (固定的亂數種子)
+//   mvn package -DskipTests
+//   mvn -q exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.SAD_Project.monitoring.H2cBenchmark -Dexec.args="target/sad-project-1.0.0.jar"
+// 選項 (放在 jar 前面)：--concurrency 64 --warmup-seconds 40 --seconds 30 --rounds 3 --port 18080 --jvm "-Xms256m -Xmx256m"
+//   --app "..." 會加在每個 jar 的啟動參數後面；可以一次給好幾個 jar (例如 -Pjetty、-Pundertow 打包的)
+// 連線數是量測期間伺服器連接埠上同時建立的 TCP 連線最多幾條 (每 100 ms 讀一次 /proc/net/tcp、tcp6)
+// 傳輸量是每個請求在 loopback 上傳了多少 bytes (兩個方向加起來，包含 TCP/IP 標頭，讀 /proc/net/dev)，可以看出標頭壓縮省了多少
+// 只有 Linux 才有這些 /proc 檔案；機器上有其他 loopback 流量時傳輸量會偏大
+public class H2cBenchmark {
+
+    private static final String[] PROTOCOLS = {"HTTP/1.1", "h2c"};
+
+    // 每次量測記錄的欄位 (表格的欄位順序)，讀不到的值是 -1
+    // 503 是流量管制 (AdmissionControlFilter) 拒絕的請求，和連線錯誤分開算
+    private static final String[] COLUMNS = {"連線數", "req/s", "p50(us)", "p99(us)", "p99.9(us)", "503", "錯誤",
+            "CPU(us)/次", "bytes/次"};
+
+    private static final long SAMPLE_MILLIS = 100;          // 多久讀一次連線數
+    private static final long IDLE_TIMEOUT_MILLIS = 30_000; // 最多等多久讓上一次量測的連線關閉
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = 64;
+        int warmupSeconds = 40;
+        int seconds = 30;
+        int rounds = 3;
+        int port = 18080;
+        String jvm = "-Xms256m -Xmx256m";
+        String app = "";
+        List<String> jars = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--concurrency": concurrency = Integer.parseInt(args[++i]); break;
+                case "--warmup-seconds": warmupSeconds = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--jvm": jvm = args[++i]; break;
+                case "--app": app = args[++i]; break;
+                default: jars.add(args[i]);
+            }
+        }
+        if (jars.isEmpty()) {
+            System.err.println("用法：H2cBenchmark [--concurrency N] [--warmup-seconds N] [--seconds N] [--rounds N] [--port N] "
+                    + "[--jvm \"JVM 參數\"] [--app \"應用程式參數\"] <jar>...");
+            System.exit(1);
+        }
+
+        HttpRequest[] requests = buildRequests(port);
+        List<String> summary = new ArrayList<>();
+        for (String jar : jars) {
+            long[][][] results = run(jar, jvm, app, port, requests, concurrency, warmupSeconds, seconds, rounds);
+            for (int protocol = 0; protocol < PROTOCOLS.length; protocol++) {
+                long[] medians = new long[COLUMNS.length];
+                for (int column = 0; column < COLUMNS.length; column++) {
+                    long[] values = new long[rounds];
+                    for (int round = 0; round < rounds; round++) {
+                        values[round] = results[protocol][round][column];
+                    }
+                    Arrays.sort(values);
+                    medians[column] = values[rounds / 2];
+                }
+                summary.add(row(Paths.get(jar).getFileName() + " " + PROTOCOLS[protocol], medians));
+            }
+        }
+
+        System.out.printf("%n同時 %d 個請求，每種協定預熱 %d 秒，量測 %d 秒，%d 輪取中位數，JVM 參數：%s，應用程式參數：%s%n",
+                concurrency, warmupSeconds, seconds, rounds, jvm, app);
+        StringBuilder header = new StringBuilder(String.format("%-40s", "jar 協定"));
+        for (String column : COLUMNS) {
+            header.append(String.format(" %10s", column));
+        }
+        System.out.println(header);
+        summary.forEach(System.out::println);
+    }
+
+    private static String row(String name, long[] values) {
+        StringBuilder row = new StringBuilder(String.format("%-40s", name));
+        for (long value : values) {
+            row.append(String.format(" %10s", value >= 0 ? Long.toString(value) : "-"));
+        }
+        return row.toString();
+    }
+
+    // 啟動一個 jar，預熱後輪流量兩種協定，回傳 [協定][第幾輪][COLUMNS 的欄位]
+    private static long[][][] run(String jar, String jvm, String app, int port, HttpRequest[] requests, int concurrency,
+                                  int warmupSeconds, int seconds, int rounds) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(jvm.trim().split("\\s+")));
+        command.addAll(Arrays.asList("-jar", jar, "--server.port=" + port, "--horoscope.audit.enabled=false",
+                "--horoscope.h2c.enabled=true"));
+        if (!app.trim().isEmpty()) {
+            command.addAll(Arrays.asList(app.trim().split("\\s+")));
+        }
+
+        Path log = Paths.get(jar + ".h2c-benchmark.log");
+        Process server = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            long startMillis = System.currentTimeMillis();
+            ServerBenchmark.waitUntilReady(server, port);
+            System.out.printf("%s：%d ms 後 ready，每種協定預熱 %d 秒%n", jar, System.currentTimeMillis() - startMillis, warmupSeconds);
+            for (int protocol = 0; protocol < PROTOCOLS.length; protocol++) {
+                load(server.pid(), port, protocol, requests, concurrency, warmupSeconds); // 兩種協定走的程式碼不一樣，各自預熱
+            }
+
+            long[][][] results = new long[PROTOCOLS.length][rounds][];
+            for (int round = 0; round < rounds; round++) {
+                for (int protocol = 0; protocol < PROTOCOLS.length; protocol++) {
+                    results[protocol][round] = load(server.pid(), port, protocol, requests, concurrency, seconds);
+                    System.out.println(row("第 " + (round + 1) + " 輪 " + Paths.get(jar).getFileName() + " "
+                            + PROTOCOLS[protocol], results[protocol][round]));
+                }
+            }
+            return results;
+        } finally {
+            server.destroy();
+            if (!server.waitFor(30, TimeUnit.SECONDS)) {
+                server.destroyForcibly();
+            }
+        }
+    }
+
+    // 用一個新的 HttpClient (新的連線) 送 seconds 秒，回傳 COLUMNS 的各個欄位
+    private static long[] load(long pid, int port, int protocol, HttpRequest[] requests, int concurrency, int seconds)
+            throws Exception {
+        waitForIdle(port);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        HttpClient client = HttpClient.newBuilder()
+                .version(protocol == 0 ? HttpClient.Version.HTTP_1_1 : HttpClient.Version.HTTP_2)
+                .executor(executor)
+                .build();
+        try {
+            // 先送一個請求：HTTP/2 在這裡升級好，之後的請求都用這一條連線 (同時送的話每個請求都會各自開連線嘗試升級)
+            HttpResponse<Void> first = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/ready")).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            if (protocol == 1 && first.version() != HttpClient.Version.HTTP_2) {
+                throw new IllegalStateException("伺服器沒有升級到 HTTP/2，確認 horoscope.h2c.enabled 有開啟");
+            }
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicLong maxConnections = new AtomicLong();
+            Thread sampler = new Thread(() -> {
+                while (running.get()) {
+                    maxConnections.accumulateAndGet(establishedConnections(port), Math::max);
+                    try {
+                        Thread.sleep(SAMPLE_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "benchmark-connections");
+
+            Worker[] workers = new Worker[concurrency];
+            Thread[] threads = new Thread[concurrency];
+            long bytesBefore = loopbackBytes();
+            long cpuBefore = ServerBenchmark.cpuTicks(pid);
+            for (int i = 0; i < concurrency; i++) {
+                workers[i] = new Worker(client, requests, i * (requests.length / concurrency + 1), running);
+                threads[i] = new Thread(workers[i], "benchmark-client-" + i);
+                threads[i].start();
+            }
+            sampler.start();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+            running.set(false);
+
+            int total = 0;
+            long rejected = 0;
+            long errors = 0;
+            for (int i = 0; i < concurrency; i++) {
+                threads[i].join();
+                total += workers[i].count;
+                rejected += workers[i].rejected;
+                errors += workers[i].errors;
+            }
+            sampler.join();
+            long cpuAfter = ServerBenchmark.cpuTicks(pid);
+            long bytesAfter = loopbackBytes();
+
+            long[] latencies = new long[total];
+            int n = 0;
+            for (Worker worker : workers) {
+                System.arraycopy(worker.latencies, 0, latencies, n, worker.count);
+                n += worker.count;
+            }
+            Arrays.sort(latencies);
+            return new long[]{maxConnections.get(), total / seconds,
+                    ServerBenchmark.percentile(latencies, 0.50), ServerBenchmark.percentile(latencies, 0.99),
+                    ServerBenchmark.percentile(latencies, 0.999), rejected, errors,
+                    cpuBefore >= 0 && total > 0 ? (cpuAfter - cpuBefore) * ServerBenchmark.CLOCK_TICK_MICROS / total : -1,
+                    bytesBefore >= 0 && total > 0 ? (bytesAfter - bytesBefore) / total : -1};
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // 一個用戶端執行緒，從 offset 開始依序送事先組好的請求，送完一個才送下一個
+    private static final class Worker implements Runnable {
+        private final HttpClient client;
+        private final HttpRequest[] requests;
+        private final AtomicBoolean running;
+        private int next;
+        private long[] latencies = new long[1 << 16];
+        private int count;
+        private long rejected;    // 503 的回應
+        private long errors;      // 其他不是 200 的回應和連線錯誤
+
+        private Worker(HttpClient client, HttpRequest[] requests, int offset, AtomicBoolean running) {
+            this.client = client;
+            this.requests = requests;
+            this.next = offset;
+            this.running = running;
+        }
+
+        @Override
+        public void run() {
+            while (running.get()) {
+                HttpRequest request = requests[next++ % requests.length];
+                long start = System.nanoTime();
+                try {
+                    int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    if (status == 503) {
+                        rejected++;
+                    } else if (status != 200) {
+                        errors++;
+                    }
+                } catch (IOException e) {
+                    errors++;
+                    continue;
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = (System.nanoTime() - start) / 1000;
+            }
+        }
+    }
+
+    // 把 ServerBenchmark 的請求組合轉成 HttpClient 的請求 (Host 由 HttpClient 自己加)
+    private static HttpRequest[] buildRequests(int port) {
+        ServerBenchmark.RequestSpec[] specs = ServerBenchmark.requestMix();
+        HttpRequest[] requests = new HttpRequest[specs.length];
+        for (int i = 0; i < specs.length; i++) {
+            ServerBenchmark.RequestSpec spec = specs[i];
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + port + spec.path));
+            if (spec.form != null) {
+                builder.header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(spec.form, StandardCharsets.US_ASCII));
+            }
+            if (spec.language != null) {
+                builder.header("Accept-Language", spec.language);
+            }
+            if (spec.encoding != null) {
+                builder.header("Accept-Encoding", spec.encoding);
+            }
+            requests[i] = builder.build();
+        }
+        return requests;
+    }
+
+    // 等上一次量測的連線都關閉，連線數才不會算到別的 HttpClient 的連線
+    // JDK 17 的 HttpClient 沒有 close()，要等它被回收才會關閉連線，所以一邊等一邊呼叫 System.gc()
+    private static void waitForIdle(int port) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + IDLE_TIMEOUT_MILLIS;
+        while (establishedConnections(port) > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                System.out.println("上一次量測的連線還沒關閉，連線數會偏多");
+                return;
+            }
+            System.gc();
+            Thread.sleep(SAMPLE_MILLIS * 5);
+        }
+    }
+
+    // 伺服器連接埠上已建立的 TCP 連線有幾條 (本機位址的連接埠是 port、狀態 01 = ESTABLISHED)
+    private static long establishedConnections(int port) {
+        String localPort = String.format(":%04X", port);
+        long count = 0;
+        for (String file : new String[]{"tcp", "tcp6"}) {
+            try {
+                for (String line : Files.readAllLines(Paths.get("/proc/net", file))) {
+                    String[] fields = line.trim().split("\\s+");
+                    if (fields.length > 3 && fields[1].endsWith(localPort) && fields[3].equals("01")) {
+                        count++;
+                    }
+                }
+            } catch (IOException e) {
+                // 不是 Linux 或沒有 IPv6
+            }
+        }
+        return count;
+    }
+
+    // loopback 介面到目前為止收到的 bytes (本機的每個封包在 lo 上送一次、收一次，只算收的就是兩個方向的總和)
+    private static long loopbackBytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/net/dev"))) {
+                String trimmed = line.trim();
+                if (trimmed.startsWith("lo:")) {
+                    return Long.parseLong(trimmed.substring(3).trim().split("\\s+")[0]);
+                }
+            }
+        } catch (IOException e) {
+            // 不是 Linux
+        }
+        return -1;
+    }
+}
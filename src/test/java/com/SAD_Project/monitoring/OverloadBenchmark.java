@@ -0,0 +1,126 @@
+package com.SAD_Project.monitoring;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// 這個小工具量測過載時有沒有「負載卸除」(AdmissionControlFilter 回 503) 的差別：成功請求的 p99 延遲和吞吐量
+// 同一個 jar 啟動兩次，用 ServerBenchmark 一樣的用戶端和請求組合送超過伺服器負荷的連線數：
+//   不卸除：--horoscope.admission.enabled=false，所有請求都進到 Tomcat 的執行緒排隊
+//   卸除：把 horoscope.admission.*-limit 調低 (預設的上限在 1 顆 CPU 的機器上用戶端先飽和，看不出差別)，超過的請求馬上回 503
+// 每輪兩種設定各量一次，最後每一欄取中位數；成功 (200) 和全部回應的延遲分開算，503 是很快就回來的拒絕，不能混進成功的延遲
+//   mvn package -DskipTests
+//   mvn -q exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.SAD_Project.monitoring.OverloadBenchmark -Dexec.args="target/sad-project-1.0.0.jar"
+// 選項 (放在 jar 前面)：--connections 256 --warmup-seconds 40 --seconds 30 --rounds 3 --port 18080 --jvm "-Xms256m -Xmx256m"
+//   --limits "--horoscope.admission.global-limit=16 ..." 是卸除那一次的應用程式參數 (預設就是下面的 LIMITS)
+public class OverloadBenchmark {
+
+    // 卸除那一次用的上限：大約是 1 顆 CPU 不排隊時能同時處理的請求數
+    private static final String LIMITS = "--horoscope.admission.global-limit=16 --horoscope.admission.match-limit=8"
+            + " --horoscope.admission.personality-limit=8 --horoscope.admission.introduction-limit=16"
+            + " --horoscope.admission.zodiacs-limit=16 --horoscope.admission.other-limit=8";
+
+    private static final String[] MODES = {"不卸除", "卸除"};
+
+    // 每次量測記錄的欄位 (表格的欄位順序)
+    private static final String[] COLUMNS = {"200/s", "503/s", "p50 200", "p99 200", "p99.9 200", "p99 全部", "其他錯誤"};
+
+    public static void main(String[] args) throws Exception {
+        int connections = 256;
+        int warmupSeconds = 40;
+        int seconds = 30;
+        int rounds = 3;
+        int port = 18080;
+        String jvm = "-Xms256m -Xmx256m";
+        String limits = LIMITS;
+        String jar = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--connections": connections = Integer.parseInt(args[++i]); break;
+                case "--warmup-seconds": warmupSeconds = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--jvm": jvm = args[++i]; break;
+                case "--limits": limits = args[++i]; break;
+                default: jar = args[i];
+            }
+        }
+        if (jar == null) {
+            System.err.println("用法：OverloadBenchmark [--connections N] [--warmup-seconds N] [--seconds N] [--rounds N] [--port N] "
+                    + "[--jvm \"JVM 參數\"] [--limits \"卸除時的應用程式參數\"] <jar>");
+            System.exit(1);
+        }
+
+        String[] apps = {"--horoscope.audit.enabled=false --horoscope.admission.enabled=false",
+                "--horoscope.audit.enabled=false --horoscope.admission.enabled=true " + limits};
+        byte[][] requests = ServerBenchmark.buildRequests(port);
+        long[][][] results = new long[MODES.length][rounds][];
+        for (int round = 0; round < rounds; round++) {
+            for (int mode = 0; mode < MODES.length; mode++) {
+                results[mode][round] = run(jar, jvm, apps[mode], port, requests, connections, warmupSeconds, seconds);
+                System.out.println(row("第 " + (round + 1) + " 輪 " + MODES[mode], results[mode][round]));
+            }
+        }
+
+        System.out.printf("%n%s，連線數 %d，預熱 %d 秒，量測 %d 秒，%d 輪取中位數，JVM 參數：%s%n卸除的設定：%s%n",
+                Paths.get(jar).getFileName(), connections, warmupSeconds, seconds, rounds, jvm, limits);
+        StringBuilder header = new StringBuilder(String.format("%-16s", "延遲單位 us"));
+        for (String column : COLUMNS) {
+            header.append(String.format(" %10s", column));
+        }
+        System.out.println(header);
+        for (int mode = 0; mode < MODES.length; mode++) {
+            long[] medians = new long[COLUMNS.length];
+            for (int column = 0; column < COLUMNS.length; column++) {
+                long[] values = new long[rounds];
+                for (int round = 0; round < rounds; round++) {
+                    values[round] = results[mode][round][column];
+                }
+                Arrays.sort(values);
+                medians[column] = values[rounds / 2];
+            }
+            System.out.println(row(MODES[mode], medians));
+        }
+    }
+
+    private static String row(String name, long[] values) {
+        StringBuilder row = new StringBuilder(String.format("%-16s", name));
+        for (long value : values) {
+            row.append(String.format(" %10d", value));
+        }
+        return row.toString();
+    }
+
+    // 用一種設定量測一次，回傳 COLUMNS 的各個欄位
+    private static long[] run(String jar, String jvm, String app, int port, byte[][] requests, int connections,
+                              int warmupSeconds, int seconds) throws Exception {
+        Process server = ServerBenchmark.startServer(jar, jvm, app, port, Paths.get(jar + ".overload.log"));
+        try {
+            ServerBenchmark.waitUntilReady(server, port);
+            ServerBenchmark.load(port, requests, connections, warmupSeconds);
+            ServerBenchmark.Result result = ServerBenchmark.load(port, requests, connections, seconds);
+
+            // 成功的延遲另外挑出來，503 的個數另外算
+            long[] ok = new long[result.latencies.length];
+            int okCount = 0;
+            long rejected = 0;
+            for (int i = 0; i < result.latencies.length; i++) {
+                if (result.statuses[i] == 200) {
+                    ok[okCount++] = result.latencies[i];
+                } else if (result.statuses[i] == 503) {
+                    rejected++;
+                }
+            }
+            ok = Arrays.copyOf(ok, okCount);
+            Arrays.sort(ok);
+            long[] all = result.latencies;
+            Arrays.sort(all);
+            return new long[]{okCount / seconds, rejected / seconds,
+                    ServerBenchmark.percentile(ok, 0.50), ServerBenchmark.percentile(ok, 0.99),
+                    ServerBenchmark.percentile(ok, 0.999), ServerBenchmark.percentile(all, 0.99),
+                    result.errors - rejected};
+        } finally {
+            ServerBenchmark.stopServer(server);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.SAD_Project.monitoring;
+
+import com.SAD_Project.util.ZodiacCalculator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// 這個小工具比較生日解析在「大部分都是亂輸入」時的成本：
+//   新版：ZodiacCalculator.parseBirthDate 逐字解析，錯誤回傳負數代碼，不丟例外也不建立物件
+//   舊版：原本的 split("[/-]") + Integer.parseInt，錯誤靠 NumberFormatException 接住 (複製在下面的 baselineZodiac)
+// 輸入是固定亂數種子產生的組合，預設 80% 是錯的 (文字、空白、太多段、數字中間有空白、超過四位數...)，其餘是正確的 M/d
+// 兩個版本在同一個 JVM 裡輪流量，每輪先各跑一次預熱，最後取每個版本 ns/次 的中位數
+//   mvn test-compile
+//   mvn -q exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.SAD_Project.monitoring.ParseBenchmark [-Dexec.args="--garbage 0.8"]
+// 選項：--garbage 0.8 --inputs 4096 --seconds 2 --rounds 5
+public class ParseBenchmark {
+
+    private static final long SEED = 20240321L;
+
+    // 常見的錯誤輸入 (也會再隨機產生一些)
+    private static final String[] GARBAGE = {"", "   ", "abc", "3/", "/21", "3//21", "3/21/1990/1", "1 2/2 1",
+            "３/２１", "3.21", "March 21", "12345/1", "-", "3/21x", "99999999999", "0x3/21", "null", "3-21-"};
+
+    public static void main(String[] args) {
+        double garbage = 0.8;
+        int inputs = 4096;
+        double seconds = 2;
+        int rounds = 5;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--garbage": garbage = Double.parseDouble(args[++i]); break;
+                case "--inputs": inputs = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Double.parseDouble(args[++i]); break;
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("用法：ParseBenchmark [--garbage 0~1] [--inputs N] [--seconds N] [--rounds N]");
+                    System.exit(1);
+            }
+        }
+
+        String[] mix = buildMix(inputs, garbage);
+        long[] parseNanos = new long[rounds];
+        long[] baselineNanos = new long[rounds];
+        long nanos = (long) (seconds * 1e9);
+        for (int round = 0; round < rounds; round++) {
+            parseNanos[round] = measure(mix, false, nanos);
+            baselineNanos[round] = measure(mix, true, nanos);
+            System.out.printf("第 %d 輪：新版 %.1f ns/次，舊版 %.1f ns/次%n", round + 1,
+                    parseNanos[round] / 1000.0, baselineNanos[round] / 1000.0);
+        }
+        Arrays.sort(parseNanos);
+        Arrays.sort(baselineNanos);
+        System.out.printf("%n%d 個輸入 (%.0f%% 錯誤)，%d 輪取中位數：新版 %.1f ns/次，舊版 %.1f ns/次%n",
+                inputs, garbage * 100, rounds, parseNanos[rounds / 2] / 1000.0, baselineNanos[rounds / 2] / 1000.0);
+    }
+
+    // 預熱一次再量 nanos 這麼久，回傳每次解析的平均時間 (單位是 1/1000 ns，方便取中位數)
+    private static long measure(String[] mix, boolean baseline, long nanos) {
+        run(mix, baseline, nanos / 2);
+        long start = System.nanoTime();
+        long calls = run(mix, baseline, nanos);
+        return (System.nanoTime() - start) * 1000 / calls;
+    }
+
+    // 一直輪流解析整個組合，直到超過 nanos；結果加總印出來，避免 JIT 把解析整個省略
+    private static long run(String[] mix, boolean baseline, long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        long calls = 0;
+        int sink = 0;
+        do {
+            for (String input : mix) {
+                if (baseline) {
+                    String zodiac = baselineZodiac(input);
+                    sink += zodiac != null ? zodiac.length() : -1;
+                } else {
+                    sink += ZodiacCalculator.calculateZodiacIndex(ZodiacCalculator.parseBirthDate(input));
+                }
+            }
+            calls += mix.length;
+        } while (System.nanoTime() < deadline);
+        if (sink == 42) {
+            System.out.println(sink);
+        }
+        return calls;
+    }
+
+    // 固定亂數種子產生輸入組合
+    static String[] buildMix(int inputs, double garbage) {
+        Random random = new Random(SEED);
+        List<String> mix = new ArrayList<>(inputs);
+        for (int i = 0; i < inputs; i++) {
+            if (random.nextDouble() >= garbage) {
+                mix.add((1 + random.nextInt(12)) + "/" + (1 + random.nextInt(28)));
+            } else if (random.nextBoolean()) {
+                mix.add(GARBAGE[random.nextInt(GARBAGE.length)]);
+            } else {
+                // 隨機的可見 ASCII 字元，有時候剛好是數字和分隔符號
+                char[] chars = new char[1 + random.nextInt(12)];
+                for (int k = 0; k < chars.length; k++) {
+                    chars[k] = (char) (' ' + random.nextInt(95));
+                }
+                mix.add(new String(chars));
+            }
+        }
+        return mix.toArray(new String[0]);
+    }
+
+    // 原本的解析方式 (baseline 的 ZodiacCalculator.calculateZodiacFromBirthDate)，只用來比較
+    // 後面一長串 if 判斷星座的部分換成現在的 calculateZodiacIndex，兩邊只差在解析和錯誤處理
+    private static String baselineZodiac(String birthDate) {
+        int month;
+        int day;
+        try {
+            String[] parts = birthDate.split("[/-]");
+            if (parts.length == 2) {
+                month = Integer.parseInt(parts[0].trim());
+                day = Integer.parseInt(parts[1].trim());
+            } else {
+                return null;
+            }
+            if (month < 1 || month > 12 || day < 1 || day > 31) {
+                return "未知";
+            }
+            return ZodiacCalculator.ZODIAC_NAMES[ZodiacCalculator.calculateZodiacIndex(month, day)];
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
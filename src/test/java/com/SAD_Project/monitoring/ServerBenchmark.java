@@ -0,0 +1,456 @@
+package com.SAD_Project.monitoring;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// 這個小工具比較不同內嵌伺服器 (Tomcat、Jetty、Undertow) 打包出來的 jar：吞吐量、p99 延遲和記憶體 (RSS)
+// 每個 jar 依序：用一樣的 JVM 參數啟動 → 等 /api/ready 回傳 200 → 預熱 → 量測 → 讀 RSS → 關閉
+// CPU 少的機器上同一個設定每次量的結果差很多，所以預設量 3 輪 (每輪每個 jar 各量一次，輪流進行)，最後每一欄取中位數
+// 另外記錄伺服器處理每個請求用了多少 CPU 時間，比吞吐量更不受用戶端搶 CPU 的影響
+// 請求組合用固定的亂數種子產生 (配對、個性分析、星座介紹、星座列表、每日運勢、特質搜尋)，每個伺服器送的請求完全一樣
+// 用戶端是每條連線一個執行緒、一直重複使用的 HTTP/1.1 連線 (keep-alive)，送事先組好的請求位元組，成本很低
+// 量測工具放在 src/test (不會打包進 jar)，先打包要比較的 jar，再用測試的 classpath 執行：
+//   mvn package -DskipTests && mvn -Pjetty package -DskipTests && mvn -Pundertow package -DskipTests
+//   mvn -q exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.SAD_Project.monitoring.ServerBenchmark \
+//       -Dexec.args="target/sad-project-1.0.0.jar target/sad-project-1.0.0-jetty.jar target/sad-project-1.0.0-undertow.jar"
+// 選項 (放在 jar 前面)：--connections 32 --warmup-seconds 40 --seconds 30 --rounds 3 --port 18080 --jvm "-Xms256m -Xmx256m"
+//   --app "--server.jetty.threads.max=32" 會加在每個 jar 的啟動參數後面 (調整設定時用)
+// RSS 和執行緒數量從 /proc 讀，只有 Linux 才有；用戶端和伺服器在同一台機器上，CPU 少的機器數字會互相影響
+public class ServerBenchmark {
+
+    private static final long SEED = 20240321L;      // 請求組合的亂數種子
+    private static final int REQUEST_COUNT = 1000;   // 事先組好幾個請求，輪流送
+    static final long READY_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(3);
+
+    private static final String[] GENDERS = {"男", "女"};
+    private static final String[] ZODIACS = {"牡羊座", "金牛座", "雙子座", "巨蟹座", "獅子座", "處女座",
+            "天秤座", "天蠍座", "射手座", "摩羯座", "水瓶座", "雙魚座"};
+    private static final String[] TRAITS = {"固執", "浪漫", "自由", "溫柔", "愛", "獨立"};
+    private static final String[] LANGUAGES = {null, null, null, "zh-CN,zh;q=0.9", "en-US,en;q=0.9"};
+    private static final String[] ENCODINGS = {null, "gzip, deflate", "gzip, deflate, br"};
+
+    // 每次量測記錄的欄位 (表格的欄位順序)，讀不到的值是 -1
+    private static final String[] COLUMNS = {"req/s", "p50(us)", "p99(us)", "p99.9(us)", "錯誤",
+            "CPU(us)/次", "RSS(MB)", "峰值(MB)", "執行緒"};
+
+    // /proc/<pid>/stat 的 CPU 時間單位 (Linux 幾乎都是 100 Hz)
+    static final long CLOCK_TICK_MICROS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        int connections = 32;
+        int warmupSeconds = 40; // 1 顆 CPU 時 JIT 要 30 秒以上才會編譯完，預熱太短每個請求的 CPU 時間會多好幾倍
+        int seconds = 30;
+        int rounds = 3;
+        int port = 18080;
+        String jvm = "-Xms256m -Xmx256m";
+        String app = "";
+        List<String> jars = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--connections": connections = Integer.parseInt(args[++i]); break;
+                case "--warmup-seconds": warmupSeconds = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--jvm": jvm = args[++i]; break;
+                case "--app": app = args[++i]; break;
+                default: jars.add(args[i]);
+            }
+        }
+        if (jars.isEmpty()) {
+            System.err.println("用法：ServerBenchmark [--connections N] [--warmup-seconds N] [--seconds N] [--rounds N] [--port N] "
+                    + "[--jvm \"JVM 參數\"] [--app \"應用程式參數\"] <jar>...");
+            System.exit(1);
+        }
+
+        byte[][] requests = buildRequests(port);
+        long[][][] results = new long[jars.size()][rounds][];
+        for (int round = 0; round < rounds; round++) {
+            for (int j = 0; j < jars.size(); j++) {
+                results[j][round] = run(jars.get(j), jvm, app, port, requests, connections, warmupSeconds, seconds);
+                System.out.println(row("第 " + (round + 1) + " 輪 " + Paths.get(jars.get(j)).getFileName(), results[j][round]));
+            }
+        }
+
+        System.out.printf("%n連線數 %d，預熱 %d 秒，量測 %d 秒，%d 輪取中位數，JVM 參數：%s，應用程式參數：%s%n",
+                connections, warmupSeconds, seconds, rounds, jvm, app);
+        StringBuilder header = new StringBuilder(String.format("%-40s", "jar"));
+        for (String column : COLUMNS) {
+            header.append(String.format(" %10s", column));
+        }
+        System.out.println(header);
+        for (int j = 0; j < jars.size(); j++) {
+            long[] medians = new long[COLUMNS.length];
+            for (int column = 0; column < COLUMNS.length; column++) {
+                long[] values = new long[rounds];
+                for (int round = 0; round < rounds; round++) {
+                    values[round] = results[j][round][column];
+                }
+                Arrays.sort(values);
+                medians[column] = values[rounds / 2];
+            }
+            System.out.println(row(Paths.get(jars.get(j)).getFileName().toString(), medians));
+        }
+    }
+
+    private static String row(String name, long[] values) {
+        StringBuilder row = new StringBuilder(String.format("%-40s", name));
+        for (long value : values) {
+            row.append(String.format(" %10s", value >= 0 ? Long.toString(value) : "-"));
+        }
+        return row.toString();
+    }
+
+    // 量測一個 jar，回傳 COLUMNS 的各個欄位
+    private static long[] run(String jar, String jvm, String app, int port, byte[][] requests, int connections,
+                              int warmupSeconds, int seconds) throws Exception {
+        Process server = startServer(jar, jvm, "--horoscope.audit.enabled=false " + app, port, Paths.get(jar + ".benchmark.log"));
+        try {
+            long startMillis = System.currentTimeMillis();
+            waitUntilReady(server, port);
+            System.out.printf("%s：%d ms 後 ready，預熱 %d 秒%n", jar, System.currentTimeMillis() - startMillis, warmupSeconds);
+            load(port, requests, connections, warmupSeconds);
+
+            long cpuBefore = cpuTicks(server.pid());
+            Result result = load(port, requests, connections, seconds);
+            long cpuAfter = cpuTicks(server.pid());
+            long[] latencies = result.latencies;
+            Arrays.sort(latencies);
+            return new long[]{latencies.length / seconds,
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                    result.errors,
+                    cpuBefore >= 0 && latencies.length > 0 ? (cpuAfter - cpuBefore) * CLOCK_TICK_MICROS / latencies.length : -1,
+                    procStatus(server.pid(), "VmRSS"), procStatus(server.pid(), "VmHWM"),
+                    threadCount(server.pid())};
+        } finally {
+            stopServer(server);
+        }
+    }
+
+    // 用一樣的 JVM 參數啟動 jar，app 是額外的應用程式參數 (例如 --horoscope.audit.enabled=false)，輸出寫到 log
+    static Process startServer(String jar, String jvm, String app, int port, Path log) throws IOException {
+        return startServer(Collections.emptyList(), jar, jvm, app, port, log);
+    }
+
+    // prefix 放在 java 指令前面，例如用 prlimit 限制伺服器的檔案數上限 (ConnectionBenchmark 的 --fd-limit)
+    static Process startServer(List<String> prefix, String jar, String jvm, String app, int port, Path log) throws IOException {
+        List<String> command = new ArrayList<>(prefix);
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(jvm.trim().split("\\s+")));
+        command.addAll(Arrays.asList("-jar", jar, "--server.port=" + port));
+        if (!app.trim().isEmpty()) {
+            command.addAll(Arrays.asList(app.trim().split("\\s+")));
+        }
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+    }
+
+    static void stopServer(Process server) throws InterruptedException {
+        server.destroy();
+        if (!server.waitFor(30, TimeUnit.SECONDS)) {
+            server.destroyForcibly();
+        }
+    }
+
+    // 輪詢 /api/ready，JIT 預熱完成後才會回傳 200
+    static void waitUntilReady(Process server, int port) throws Exception {
+        long deadline = System.currentTimeMillis() + READY_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (!server.isAlive()) {
+                throw new IllegalStateException("伺服器啟動失敗，結束代碼 " + server.exitValue());
+            }
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/api/ready").openConnection();
+                if (connection.getResponseCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // 還沒開始接受連線
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("等了 " + READY_TIMEOUT_MILLIS / 1000 + " 秒伺服器還沒 ready");
+    }
+
+    // 一次量測的結果
+    static final class Result {
+        final long[] latencies; // 每個請求的延遲 (微秒)
+        final int[] statuses;   // 每個請求的狀態碼 (和 latencies 同一個索引)
+        final long errors;      // 不是 200 的回應和連線錯誤
+
+        private Result(long[] latencies, int[] statuses, long errors) {
+            this.latencies = latencies;
+            this.statuses = statuses;
+            this.errors = errors;
+        }
+    }
+
+    // 開 connections 條連線，每條連線一個執行緒，一直送請求直到時間到
+    static Result load(int port, byte[][] requests, int connections, int seconds) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        Client[] clients = new Client[connections];
+        Thread[] threads = new Thread[connections];
+        for (int i = 0; i < connections; i++) {
+            clients[i] = new Client(port, requests, i * (REQUEST_COUNT / connections + 1), running);
+            threads[i] = new Thread(clients[i], "benchmark-client-" + i);
+            threads[i].start();
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running.set(false);
+
+        int total = 0;
+        long errors = 0;
+        for (int i = 0; i < connections; i++) {
+            threads[i].join();
+            total += clients[i].count;
+            errors += clients[i].errors;
+        }
+        long[] latencies = new long[total];
+        int[] statuses = new int[total];
+        int n = 0;
+        for (Client client : clients) {
+            System.arraycopy(client.latencies, 0, latencies, n, client.count);
+            System.arraycopy(client.statuses, 0, statuses, n, client.count);
+            n += client.count;
+        }
+        return new Result(latencies, statuses, errors);
+    }
+
+    // 一條 keep-alive 連線，從 offset 開始依序送事先組好的請求
+    private static final class Client implements Runnable {
+        private final int port;
+        private final byte[][] requests;
+        private final AtomicBoolean running;
+        private int next;
+        private long[] latencies = new long[1 << 16];
+        private int[] statuses = new int[1 << 16];
+        private int count;
+        private long errors;      // 不是 200 的回應和連線錯誤
+
+        private Client(int port, byte[][] requests, int offset, AtomicBoolean running) {
+            this.port = port;
+            this.requests = requests;
+            this.next = offset;
+            this.running = running;
+        }
+
+        @Override
+        public void run() {
+            while (running.get()) {
+                try (Socket socket = new Socket()) {
+                    socket.setTcpNoDelay(true);
+                    socket.connect(new InetSocketAddress("localhost", port));
+                    OutputStream out = socket.getOutputStream();
+                    InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+                    while (running.get()) {
+                        byte[] request = requests[next++ % requests.length];
+                        long start = System.nanoTime();
+                        out.write(request);
+                        int response = readResponse(in);
+                        long micros = (System.nanoTime() - start) / 1000;
+                        if (Math.abs(response) != 200) {
+                            errors++;
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                            statuses = Arrays.copyOf(statuses, count * 2);
+                        }
+                        statuses[count] = Math.abs(response);
+                        latencies[count++] = micros;
+                        if (response < 0) {
+                            break; // 伺服器要關閉連線 (例如 keep-alive 的請求數到上限)，重新連線
+                        }
+                    }
+                } catch (IOException e) {
+                    errors++;
+                }
+            }
+        }
+    }
+
+    // 讀完一個回應 (狀態列、標頭、Content-Length 或 chunked 的內容)，回傳狀態碼；伺服器要關閉連線時回傳負數
+    private static int readResponse(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        long contentLength = -1;
+        boolean chunked = false;
+        boolean close = false;
+        for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+            int colon = line.indexOf(':');
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                contentLength = Long.parseLong(value);
+            } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                chunked = value.equalsIgnoreCase("chunked");
+            } else if (name.equalsIgnoreCase("Connection")) {
+                close = value.equalsIgnoreCase("close");
+            }
+        }
+        if (chunked) {
+            for (long size = Long.parseLong(readLine(in).trim(), 16); size > 0; size = Long.parseLong(readLine(in).trim(), 16)) {
+                skip(in, size);
+                readLine(in);
+            }
+            readLine(in);
+        } else if (contentLength > 0) {
+            skip(in, contentLength);
+        }
+        return close ? -status : status;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0) {
+                throw new IOException("連線被關閉");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void skip(InputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("連線被關閉");
+                }
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    // 一個請求：方法、路徑、表單內容 (GET 是 null)、Accept-Language 和 Accept-Encoding (沒有就是 null)
+    // H2cBenchmark 用同一組請求，只是改用 JDK 的 HttpClient 送
+    static final class RequestSpec {
+        final String method;
+        final String path;
+        final String form;
+        final String language;
+        final String encoding;
+
+        private RequestSpec(String method, String path, String form, String language, String encoding) {
+            this.method = method;
+            this.path = path;
+            this.form = form;
+            this.language = language;
+            this.encoding = encoding;
+        }
+    }
+
+    // 用固定的種子組出請求組合：配對 40% (其中 1/8 是星座加生肖)、個性分析 20%、星座介紹 15%、
+    // 每日運勢 10%、特質搜尋 10%、星座列表 5%
+    static RequestSpec[] requestMix() {
+        Random random = new Random(SEED);
+        RequestSpec[] specs = new RequestSpec[REQUEST_COUNT];
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            String language = LANGUAGES[random.nextInt(LANGUAGES.length)];
+            String encoding = ENCODINGS[random.nextInt(ENCODINGS.length)];
+            int kind = random.nextInt(100);
+            if (kind < 40) {
+                boolean combined = kind < 5;
+                specs[i] = new RequestSpec("POST", "/api/match", "birthDate1=" + date(random, combined)
+                        + "&gender1=" + encode(GENDERS[random.nextInt(2)])
+                        + "&birthDate2=" + date(random, combined)
+                        + "&gender2=" + encode(GENDERS[random.nextInt(2)])
+                        + (combined ? "&mode=combined" : ""), language, encoding);
+            } else if (kind < 60) {
+                specs[i] = new RequestSpec("POST", "/api/personality", "date=" + date(random, false)
+                        + "&gender=" + encode(GENDERS[random.nextInt(2)]), language, encoding);
+            } else if (kind < 75) {
+                specs[i] = new RequestSpec("GET", "/api/introduction/" + encode(ZODIACS[random.nextInt(12)]), null, language, encoding);
+            } else if (kind < 85) {
+                specs[i] = new RequestSpec("GET", "/api/daily/" + encode(ZODIACS[random.nextInt(12)]), null, language, encoding);
+            } else if (kind < 95) {
+                specs[i] = new RequestSpec("GET", "/api/search?q=" + encode(TRAITS[random.nextInt(TRAITS.length)]), null, null, encoding);
+            } else {
+                specs[i] = new RequestSpec("GET", "/api/zodiacs", null, language, encoding);
+            }
+        }
+        return specs;
+    }
+
+    // 生日，combined 要有年份
+    private static String date(Random random, boolean withYear) {
+        int month = 1 + random.nextInt(12);
+        int day = 1 + random.nextInt(28);
+        return withYear ? (1950 + random.nextInt(60)) + "-" + month + "-" + day : month + "/" + day;
+    }
+
+    // 把請求組合轉成 HTTP/1.1 的請求位元組
+    static byte[][] buildRequests(int port) {
+        RequestSpec[] specs = requestMix();
+        byte[][] requests = new byte[specs.length][];
+        for (int i = 0; i < specs.length; i++) {
+            RequestSpec spec = specs[i];
+            String head = spec.method + " " + spec.path + " HTTP/1.1\r\nHost: localhost:" + port + "\r\n"
+                    + (spec.language != null ? "Accept-Language: " + spec.language + "\r\n" : "")
+                    + (spec.encoding != null ? "Accept-Encoding: " + spec.encoding + "\r\n" : "");
+            requests[i] = (spec.form == null ? head + "\r\n"
+                    : head + "Content-Type: application/x-www-form-urlencoded\r\n"
+                    + "Content-Length: " + spec.form.length() + "\r\n\r\n" + spec.form).getBytes(StandardCharsets.US_ASCII);
+        }
+        return requests;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    static long percentile(long[] sorted, double fraction) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+
+    // /proc/<pid>/status 裡的記憶體欄位 (MB)，不是 Linux 就回傳 -1
+    static long procStatus(long pid, String field) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith(field + ":")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024;
+                }
+            }
+        } catch (IOException e) {
+            // 不是 Linux
+        }
+        return -1;
+    }
+
+    // 伺服器用掉的 CPU 時間 (使用者 + 系統，單位是 clock tick)，不是 Linux 就回傳 -1
+    static long cpuTicks(long pid) {
+        try {
+            String stat = new String(Files.readAllBytes(Paths.get("/proc", Long.toString(pid), "stat")), StandardCharsets.US_ASCII);
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" "); // 程式名稱可能有空白，從 ) 後面開始算
+            return Long.parseLong(fields[11]) + Long.parseLong(fields[12]);         // utime、stime 是第 14、15 個欄位
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // 伺服器目前的執行緒數，不是 Linux 就回傳 -1
+    static long threadCount(long pid) {
+        String[] tasks = Paths.get("/proc", Long.toString(pid), "task").toFile().list();
+        return tasks != null ? tasks.length : -1;
+    }
+}
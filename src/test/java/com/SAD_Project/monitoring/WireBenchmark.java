@@ -0,0 +1,222 @@
+package com.SAD_Project.monitoring;
+
+import com.SAD_Project.HoroscopeApplication;
+import com.SAD_Project.controller.HoroscopeController;
+import com.SAD_Project.controller.WireController;
+import com.SAD_Project.service.TenantRegistry;
+import com.SAD_Project.util.WireFormat;
+
+import com.fasterxml.jackson.databind.JsonNode; // 模擬用戶端解析 JSON 回應
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.WebApplicationType; // 不啟動網頁伺服器
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+// 這個小工具比較同一筆 /api/match 用二進位格式 (WireFormat) 和表單 + JSON 的成本：
+//   大小：請求和回應各幾個位元組 (不含 HTTP 標頭，JSON 不壓縮)
+//   伺服器：表單解碼 + HoroscopeController.doMatch (查表、組 JSON) 對比 WireController.match
+//   用戶端：URL 編碼組表單 + Jackson 解析回應 對比 ByteBuffer 寫請求 + 讀固定欄位
+// 用真的 Spring bean (不啟動網頁伺服器、不預熱、不寫稽核紀錄)，請求是固定亂數種子產生的配對，每一輪各量一次取中位數
+//   mvn test-compile
+//   mvn -q exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.SAD_Project.monitoring.WireBenchmark
+// 選項：--pairs 1024 --seconds 2 --rounds 5
+public class WireBenchmark {
+
+    private static final long SEED = 20240321L;
+    private static final String[] GENDERS = {"男", "女"};
+    private static final String[] CASES = {"伺服器 JSON", "伺服器 二進位", "伺服器 二進位+文字",
+            "用戶端 JSON", "用戶端 二進位"};
+
+    private static HoroscopeController horoscope;
+    private static WireController wire;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // 固定的配對組合，每一組都有表單和二進位兩種請求，還有兩種回應 (給用戶端解析)
+    private static String[][] people; // {生日1, 性別1, 生日2, 性別2}
+    private static String[] forms;
+    private static byte[][] bodies;
+    private static byte[][] jsonResponses;
+    private static byte[][] wireResponses;
+
+    public static void main(String[] args) throws Exception {
+        int pairs = 1024;
+        double seconds = 2;
+        int rounds = 5;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--pairs": pairs = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Double.parseDouble(args[++i]); break;
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("用法：WireBenchmark [--pairs N] [--seconds N] [--rounds N]");
+                    System.exit(1);
+            }
+        }
+
+        // 設定用命令列參數傳：properties() 只是預設值，會被 application.properties 的設定蓋掉
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(HoroscopeApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--horoscope.warmup.iterations=0", "--horoscope.audit.enabled=false",
+                        "--spring.main.banner-mode=off", "--logging.level.root=WARN");
+        try {
+            horoscope = context.getBean(HoroscopeController.class);
+            wire = context.getBean(WireController.class);
+            buildPairs(pairs);
+            printSizes();
+
+            long nanos = (long) (seconds * 1e9);
+            long[][] results = new long[CASES.length][rounds];
+            for (int round = 0; round < rounds; round++) {
+                StringBuilder line = new StringBuilder("第 " + (round + 1) + " 輪：");
+                for (int c = 0; c < CASES.length; c++) {
+                    results[c][round] = measure(c, nanos);
+                    line.append(String.format(" %s %.0f ns", CASES[c], results[c][round] / 1000.0));
+                }
+                System.out.println(line);
+            }
+            System.out.printf("%n%d 組配對，%d 輪取中位數 (每次的時間)：%n", pairs, rounds);
+            for (int c = 0; c < CASES.length; c++) {
+                Arrays.sort(results[c]);
+                System.out.printf("  %-16s %8.0f ns%n", CASES[c], results[c][rounds / 2] / 1000.0);
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    // 用固定的種子產生配對，順便把兩種回應各存一份
+    private static void buildPairs(int pairs) {
+        Random random = new Random(SEED);
+        people = new String[pairs][];
+        forms = new String[pairs];
+        bodies = new byte[pairs][];
+        jsonResponses = new byte[pairs][];
+        wireResponses = new byte[pairs][];
+        for (int i = 0; i < pairs; i++) {
+            int month1 = 1 + random.nextInt(12), day1 = 1 + random.nextInt(28), gender1 = random.nextInt(2);
+            int month2 = 1 + random.nextInt(12), day2 = 1 + random.nextInt(28), gender2 = random.nextInt(2);
+            people[i] = new String[]{month1 + "/" + day1, GENDERS[gender1], month2 + "/" + day2, GENDERS[gender2]};
+            forms[i] = encodeForm(people[i]);
+            bodies[i] = ByteBuffer.allocate(1 + WireFormat.COUPLE_BYTES).put((byte) 0)
+                    .putShort((short) 0).put((byte) month1).put((byte) day1).put((byte) gender1)
+                    .putShort((short) 0).put((byte) month2).put((byte) day2).put((byte) gender2).array();
+            jsonResponses[i] = serverJson(forms[i]);
+            wireResponses[i] = wire.match(bodies[i], TenantRegistry.DEFAULT_TENANT, null, null).getBody();
+        }
+    }
+
+    // 平均每筆的請求和回應大小
+    private static void printSizes() {
+        long form = 0, json = 0, binary = 0, binaryTexts = 0;
+        for (int i = 0; i < forms.length; i++) {
+            form += forms[i].getBytes(StandardCharsets.US_ASCII).length;
+            json += jsonResponses[i].length;
+            binary += wireResponses[i].length;
+            byte[] withTexts = bodies[i].clone();
+            withTexts[0] = WireFormat.FLAG_TEXTS;
+            binaryTexts += wire.match(withTexts, TenantRegistry.DEFAULT_TENANT, null, null).getBody().length;
+        }
+        int n = forms.length;
+        System.out.printf("請求：表單 %d B，二進位 %d B%n", form / n, 1 + WireFormat.COUPLE_BYTES);
+        System.out.printf("回應：JSON %d B，二進位 %d B，二進位 + 文字 %d B%n%n", json / n, binary / n, binaryTexts / n);
+    }
+
+    // 預熱一次再量 nanos 這麼久，回傳每次的平均時間 (單位是 1/1000 ns，方便取中位數)
+    private static long measure(int c, long nanos) throws Exception {
+        run(c, nanos / 2);
+        long start = System.nanoTime();
+        long calls = run(c, nanos);
+        return (System.nanoTime() - start) * 1000 / calls;
+    }
+
+    // 一直輪流跑整個組合直到超過 nanos；結果加總印出來，避免 JIT 把呼叫整個省略
+    private static long run(int c, long nanos) throws Exception {
+        long deadline = System.nanoTime() + nanos;
+        long calls = 0;
+        long sink = 0;
+        byte[] texts = null;
+        do {
+            for (int i = 0; i < forms.length; i++) {
+                switch (c) {
+                    case 0:
+                        sink += serverJson(forms[i]).length;
+                        break;
+                    case 1:
+                        sink += wire.match(bodies[i], TenantRegistry.DEFAULT_TENANT, null, null).getBody().length;
+                        break;
+                    case 2:
+                        if (texts == null) {
+                            texts = bodies[i].clone();
+                        }
+                        System.arraycopy(bodies[i], 0, texts, 0, texts.length);
+                        texts[0] = WireFormat.FLAG_TEXTS;
+                        sink += wire.match(texts, TenantRegistry.DEFAULT_TENANT, null, null).getBody().length;
+                        break;
+                    case 3:
+                        sink += encodeForm(people[i]).length();
+                        JsonNode result = MAPPER.readTree(jsonResponses[i]);
+                        sink += result.path("score").asInt() + result.path("level").asText().length()
+                                + result.path("comment").asText().length();
+                        break;
+                    default:
+                        sink += clientBinary(people[i], wireResponses[i]);
+                }
+            }
+            calls += forms.length;
+        } while (System.nanoTime() < deadline);
+        if (sink == 42) {
+            System.out.println(sink);
+        }
+        return calls;
+    }
+
+    // 伺服器收到表單：解碼參數再呼叫 doMatch (Tomcat 解析表單的工作用 URLDecoder 代替)
+    private static byte[] serverJson(String form) {
+        String[] values = new String[4];
+        int start = 0;
+        for (int k = 0; k < 4; k++) {
+            int end = form.indexOf('&', start);
+            end = end < 0 ? form.length() : end;
+            values[k] = URLDecoder.decode(form.substring(form.indexOf('=', start) + 1, end), StandardCharsets.UTF_8);
+            start = end + 1;
+        }
+        return horoscope.doMatch(values[0], values[1], values[2], values[3], null,
+                TenantRegistry.DEFAULT_TENANT, null, null).getBody();
+    }
+
+    private static String encodeForm(String[] pair) {
+        return "birthDate1=" + URLEncoder.encode(pair[0], StandardCharsets.UTF_8)
+                + "&gender1=" + URLEncoder.encode(pair[1], StandardCharsets.UTF_8)
+                + "&birthDate2=" + URLEncoder.encode(pair[2], StandardCharsets.UTF_8)
+                + "&gender2=" + URLEncoder.encode(pair[3], StandardCharsets.UTF_8);
+    }
+
+    // 用戶端的二進位：從字串組出請求 (和 JSON 一樣從字串開始)，再讀回應的固定欄位
+    private static int clientBinary(String[] pair, byte[] response) {
+        ByteBuffer out = ByteBuffer.allocate(1 + WireFormat.COUPLE_BYTES).put((byte) 0);
+        for (int p = 0; p < 2; p++) {
+            String date = pair[p * 2];
+            int slash = date.indexOf('/');
+            out.putShort((short) 0).put((byte) Integer.parseInt(date, 0, slash, 10))
+                    .put((byte) Integer.parseInt(date, slash + 1, date.length(), 10))
+                    .put((byte) (pair[p * 2 + 1].equals("男") ? 0 : 1));
+        }
+        ByteBuffer in = ByteBuffer.wrap(response);
+        int status = in.get();
+        if (status != WireFormat.STATUS_OK) {
+            return status + out.position();
+        }
+        int zodiac1 = in.get(), zodiac2 = in.get();
+        in.getShort(); // 生肖
+        int score = in.get() & 0xFF, level = in.get() & 0xFF, stars = in.get() & 0xFF, percentile = in.get() & 0xFF;
+        int rank = in.getShort() & 0xFFFF;
+        return zodiac1 + zodiac2 + score + level + stars + percentile + rank + out.position();
+    }
+}
@@ -0,0 +1,101 @@
+package com.SAD_Project.service;
+
+import com.SAD_Project.TestContext;
+import com.SAD_Project.model.Couple;
+import com.SAD_Project.util.Locales;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 生日範圍的反查表：
+//   日期範圍不跨年，魔羯座分成年初和年底兩段；全年都符合時是一整段 366 天 (包含 2/29)，魔羯座只算一次
+//   查表的結果要和 computeMatch 一致：用範例租戶有方向的規則 (男牡羊配女獅子) 那一列，每個分數和等級門檻都比對
+class BirthdayRangesTest {
+
+    private static final int ARIES = 0;
+    private static final int CAPRICORN = 9;
+    private static final int PISCES = 11;
+    private static final int MALE = Couple.genderIndex("男");
+    private static final int FEMALE = Couple.genderIndex("女");
+
+    @Test
+    void capricornSplitsAtTheYearBoundary() {
+        BirthdayRanges.Range[] ranges = BirthdayRanges.ranges(1 << CAPRICORN);
+        assertEquals(2, ranges.length);
+        assertRange(ranges[0], "1/1", "1/19", 19, CAPRICORN);
+        assertRange(ranges[1], "12/22", "12/31", 10, CAPRICORN);
+    }
+
+    @Test
+    void fullYearIsOneRangeWithCapricornOnce() {
+        BirthdayRanges.Range[] ranges = BirthdayRanges.ranges((1 << 12) - 1);
+        assertEquals(1, ranges.length);
+        assertEquals("1/1", ranges[0].getFrom());
+        assertEquals("12/31", ranges[0].getTo());
+        assertEquals(366, ranges[0].getDays());
+        // 依照日期排列：魔羯座、水瓶座、雙魚座、牡羊座……射手座，魔羯座在年底不再出現
+        assertArrayEquals(new int[]{9, 10, 11, 0, 1, 2, 3, 4, 5, 6, 7, 8}, ranges[0].getZodiacs());
+    }
+
+    @Test
+    void leapDayIsIncluded() {
+        BirthdayRanges.Range[] ranges = BirthdayRanges.ranges(1 << PISCES);
+        assertEquals(1, ranges.length);
+        assertRange(ranges[0], "2/19", "3/20", 31, PISCES); // 2/19 ~ 2/29 是 11 天
+    }
+
+    @Test
+    void tablesAgreeWithComputeMatchForADirectionalRow() {
+        int tenant = TestContext.bean(TenantRegistry.class).indexOf("example");
+        assertTrue(tenant > 0, "沒有載入範例租戶");
+        MatchRuleEngine engine = TestContext.bean(MatchRuleEngine.class);
+        BirthdayRanges table = engine.getBirthdayRanges(tenant);
+
+        int[] scores = new int[12];
+        int[] levels = new int[12];
+        for (int partner = 0; partner < 12; partner++) {
+            MatchRuleEngine.MatchResult match = engine.computeMatch(tenant, Locales.ZH_TW, ARIES, MALE, partner, FEMALE);
+            scores[partner] = match.getScore();
+            levels[partner] = match.getLevelIndex();
+        }
+        for (int minScore = 0; minScore <= 100; minScore++) {
+            int expected = 0;
+            for (int partner = 0; partner < 12; partner++) {
+                if (scores[partner] >= minScore) {
+                    expected |= 1 << partner;
+                }
+            }
+            assertEquals(expected, mask(table.byScore(ARIES, MALE, FEMALE, minScore)), "分數至少 " + minScore);
+        }
+        for (int minLevel = 0; minLevel < MatchRuleEngine.LEVELS.length; minLevel++) {
+            int expected = 0;
+            for (int partner = 0; partner < 12; partner++) {
+                if (levels[partner] <= minLevel) {
+                    expected |= 1 << partner;
+                }
+            }
+            assertEquals(expected, mask(table.byLevel(ARIES, MALE, FEMALE, minLevel)), "等級至少 " + minLevel);
+        }
+    }
+
+    private static void assertRange(BirthdayRanges.Range range, String from, String to, int days, int... zodiacs) {
+        assertEquals(from, range.getFrom());
+        assertEquals(to, range.getTo());
+        assertEquals(days, range.getDays());
+        assertArrayEquals(zodiacs, range.getZodiacs());
+    }
+
+    // 範圍列表包含的星座 (位元)
+    private static int mask(BirthdayRanges.Range[] ranges) {
+        int mask = 0;
+        for (BirthdayRanges.Range range : ranges) {
+            for (int zodiac : range.getZodiacs()) {
+                mask |= 1 << zodiac;
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,201 @@
+package com.SAD_Project.service;
+
+import com.SAD_Project.TestContext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+// 每日運勢的換日用可以調整的時鐘測試 (不等排程，直接呼叫 prepare / rollOver)：
+//   today(now) 在午夜 (endMillis) 那一毫秒換到下一天，快取期限和 Expires 指向設定時區的午夜
+//   產生下一天失敗時由 rollOver 補產生，連 rollOver 都還沒執行時由請求當場產生
+class DailyHoroscopeTest {
+
+    private static final ZoneId TAIPEI = ZoneId.of("Asia/Taipei");
+    private static final LocalDate DATE = LocalDate.of(2026, 3, 10);
+
+    // 產生了幾次，FAILING 設定時產生失敗
+    // 建構子就會產生今天的內容 (那時子類別的欄位還沒初始化)，所以放在 static，每個測試開始時歸零
+    private static final AtomicInteger BUILDS = new AtomicInteger();
+    private static final AtomicBoolean FAILING = new AtomicBoolean();
+
+    @BeforeEach
+    void reset() {
+        BUILDS.set(0);
+        FAILING.set(false);
+    }
+
+    @Test
+    void swapsToNextExactlyAtMidnight() {
+        MutableClock clock = new MutableClock(noon(DATE, TAIPEI), TAIPEI);
+        TestHoroscope daily = new TestHoroscope(clock);
+        try {
+            DailyHoroscope.Day day = daily.today(clock.millis());
+            assertEquals(DATE, day.getDate());
+            daily.prepare(day);
+
+            long midnight = millis(DATE.plusDays(1), TAIPEI);
+            assertSame(day, daily.today(midnight - 1));
+            DailyHoroscope.Day next = daily.today(midnight);
+            assertEquals(DATE.plusDays(1), next.getDate());
+            assertSame(next, daily.today(midnight - 1)); // 換過去之後就不會再回頭
+            assertEquals(2, BUILDS.get());         // 換日用的是 prepare 產生的那一份
+        } finally {
+            daily.destroy();
+        }
+    }
+
+    @Test
+    void maxAgeAndExpiresPointAtMidnightInTheZone() {
+        MutableClock taipei = new MutableClock(noon(DATE, TAIPEI), TAIPEI);
+        TestHoroscope daily = new TestHoroscope(taipei);
+        try {
+            DailyHoroscope.Day day = daily.today(taipei.millis());
+            assertEquals(12 * 3600, day.maxAgeSeconds(taipei.millis()));
+            assertEquals(1, day.maxAgeSeconds(millis(DATE.plusDays(1), TAIPEI) - 1999)); // 不足一秒的部分捨去
+            assertEquals("Tue, 10 Mar 2026 16:00:00 GMT", day.getExpires());             // 台北的午夜是 UTC 16 點
+        } finally {
+            daily.destroy();
+        }
+
+        // 紐約 2026-03-08 凌晨開始夏令時間，這一天只有 23 小時
+        ZoneId newYork = ZoneId.of("America/New_York");
+        LocalDate dst = LocalDate.of(2026, 3, 8);
+        MutableClock clock = new MutableClock(millis(dst, newYork), newYork);
+        daily = new TestHoroscope(clock);
+        try {
+            DailyHoroscope.Day day = daily.today(clock.millis());
+            assertEquals(dst, day.getDate());
+            assertEquals(23 * 3600, day.maxAgeSeconds(clock.millis()));
+            assertEquals("Mon, 9 Mar 2026 04:00:00 GMT", day.getExpires());
+        } finally {
+            daily.destroy();
+        }
+    }
+
+    @Test
+    void failedPrepareIsRebuiltInRollOver() {
+        MutableClock clock = new MutableClock(noon(DATE, TAIPEI), TAIPEI);
+        TestHoroscope daily = new TestHoroscope(clock);
+        try {
+            DailyHoroscope.Day day = daily.today(clock.millis());
+            FAILING.set(true);
+            daily.prepare(day); // 失敗只記錄，next 還是 null
+            assertEquals(2, BUILDS.get()); // 建構子產生今天，加上失敗的這一次
+            FAILING.set(false);
+
+            long midnight = millis(DATE.plusDays(1), TAIPEI);
+            clock.set(midnight + 1000);
+            daily.rollOver(day);
+            assertEquals(3, BUILDS.get());
+            DailyHoroscope.Day rebuilt = daily.today(midnight + 1000);
+            assertEquals(DATE.plusDays(1), rebuilt.getDate());
+            assertEquals(3, BUILDS.get()); // 請求拿到的是 rollOver 產生的那一份
+        } finally {
+            daily.destroy();
+        }
+    }
+
+    @Test
+    void requestAfterMidnightNeverServesYesterday() {
+        MutableClock clock = new MutableClock(noon(DATE, TAIPEI), TAIPEI);
+        TestHoroscope daily = new TestHoroscope(clock);
+        try {
+            // prepare 和 rollOver 都還沒執行 (排程卡住)，過了午夜的請求自己產生今天的內容
+            long midnight = millis(DATE.plusDays(1), TAIPEI);
+            DailyHoroscope.Day today = daily.today(midnight);
+            assertEquals(DATE.plusDays(1), today.getDate());
+            assertSame(today, daily.today(midnight + 1000));
+            assertEquals(2, BUILDS.get());
+
+            // 時鐘跳了好幾天也是換到現在這一天
+            long later = millis(DATE.plusDays(5), TAIPEI) + 3600_000;
+            assertEquals(DATE.plusDays(5), daily.today(later).getDate());
+
+            // 當場產生也失敗就暫時回傳過期的內容 (快取期限 0)，一分鐘內不再試
+            long stale = millis(DATE.plusDays(6), TAIPEI);
+            FAILING.set(true);
+            DailyHoroscope.Day old = daily.today(stale);
+            assertEquals(DATE.plusDays(5), old.getDate());
+            assertEquals(0, old.maxAgeSeconds(stale));
+            FAILING.set(false);
+            int builds = BUILDS.get();
+            assertSame(old, daily.today(stale + 30_000));
+            assertEquals(builds, BUILDS.get());
+            assertEquals(DATE.plusDays(6), daily.today(stale + 60_000).getDate());
+        } finally {
+            daily.destroy();
+        }
+    }
+
+    private static long noon(LocalDate date, ZoneId zone) {
+        return date.atTime(12, 0).atZone(zone).toInstant().toEpochMilli();
+    }
+
+    private static long millis(LocalDate date, ZoneId zone) {
+        ZonedDateTime start = date.atStartOfDay(zone);
+        return start.toInstant().toEpochMilli();
+    }
+
+    // 產生時計數，FAILING 設定時丟出例外
+    private static final class TestHoroscope extends DailyHoroscope {
+        TestHoroscope(Clock clock) {
+            super(TestContext.bean(TenantRegistry.class), TestContext.bean(ZodiacIntroduction.class),
+                    TestContext.bean(MatchRuleEngine.class), clock, 5);
+        }
+
+        @Override
+        Day build(LocalDate date) {
+            BUILDS.incrementAndGet();
+            if (FAILING.get()) {
+                throw new IllegalStateException("測試用的產生失敗");
+            }
+            return super.build(date);
+        }
+    }
+
+    // 測試自己調整時間的時鐘
+    private static final class MutableClock extends Clock {
+        private final ZoneId zone;
+        private volatile long millis;
+
+        MutableClock(long millis, ZoneId zone) {
+            this.millis = millis;
+            this.zone = zone;
+        }
+
+        void set(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return new MutableClock(millis, zone);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
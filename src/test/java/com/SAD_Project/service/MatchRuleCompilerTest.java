@@ -0,0 +1,101 @@
+package com.SAD_Project.service;
+
+import com.SAD_Project.model.Couple;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// 編譯好的查詢表 (索引見 MatchRuleCompiler.index) 裡和性別有關的格子：
+//   預設規則不看性別，任何性別組合的分數、等級、星級都和沒填性別時一樣
+//   gender 條件有方向：男 女 的規則只套用在「男的是第一個星座、女的是第二個星座」，兩個人填的順序對調也一樣；
+//   反方向、同性別、沒填性別的格子都不調整
+class MatchRuleCompilerTest {
+
+    private static final int MALE = Couple.genderIndex("男");
+    private static final int FEMALE = Couple.genderIndex("女");
+    private static final int UNSPECIFIED = MatchRuleCompiler.GENDER_UNSPECIFIED;
+    private static final int[] GENDERS = {MALE, FEMALE, UNSPECIFIED};
+
+    private static final int ARIES = 0;
+    private static final int TAURUS = 1;
+    private static final int LEO = 4;
+
+    @Test
+    void defaultRulesAreGenderNeutral() {
+        MatchRuleCompiler.CompiledRules rules = MatchRuleCompiler.compileResources(MatchRuleCompiler.DEFAULT_RULES);
+        for (int zodiac1 = 0; zodiac1 < 12; zodiac1++) {
+            for (int zodiac2 = 0; zodiac2 < 12; zodiac2++) {
+                int neutral = MatchRuleCompiler.index(zodiac1, UNSPECIFIED, zodiac2, UNSPECIFIED);
+                int swapped = MatchRuleCompiler.index(zodiac2, UNSPECIFIED, zodiac1, UNSPECIFIED);
+                assertEquals(rules.getScore(neutral), rules.getScore(swapped));
+                for (int gender1 : GENDERS) {
+                    for (int gender2 : GENDERS) {
+                        int index = MatchRuleCompiler.index(zodiac1, gender1, zodiac2, gender2);
+                        String cell = zodiac1 + "/" + gender1 + " " + zodiac2 + "/" + gender2;
+                        assertEquals(rules.getScore(neutral), rules.getScore(index), cell);
+                        assertEquals(rules.getLevel(neutral), rules.getLevel(index), cell);
+                        assertEquals(rules.getStars(neutral), rules.getStars(index), cell);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void genderRuleAppliesOnlyInItsDirection() {
+        // 範例租戶：adjust +4 when gender 男 女 and sign 牡羊座 獅子座
+        MatchRuleCompiler.CompiledRules rules = MatchRuleCompiler.compileResources(MatchRuleCompiler.DEFAULT_RULES,
+                "tenants/example/" + MatchRuleEngine.TENANT_RULES);
+        int base = rules.getScore(MatchRuleCompiler.index(ARIES, UNSPECIFIED, LEO, UNSPECIFIED));
+        int boosted = Math.min(100, base + 4);
+
+        // 男牡羊配女獅子，不論誰在前面
+        assertEquals(boosted, score(rules, ARIES, MALE, LEO, FEMALE));
+        assertEquals(boosted, score(rules, LEO, FEMALE, ARIES, MALE));
+        assertEquals(rules.levelFor(boosted), rules.getLevel(MatchRuleCompiler.index(ARIES, MALE, LEO, FEMALE)));
+        assertEquals(rules.starsFor(boosted), rules.getStars(MatchRuleCompiler.index(LEO, FEMALE, ARIES, MALE)));
+
+        // 反方向：女牡羊配男獅子
+        assertEquals(base, score(rules, ARIES, FEMALE, LEO, MALE));
+        assertEquals(base, score(rules, LEO, MALE, ARIES, FEMALE));
+
+        // 同性別、只有一個人填性別、都沒填
+        assertEquals(base, score(rules, ARIES, MALE, LEO, MALE));
+        assertEquals(base, score(rules, ARIES, FEMALE, LEO, FEMALE));
+        assertEquals(base, score(rules, ARIES, MALE, LEO, UNSPECIFIED));
+        assertEquals(base, score(rules, ARIES, UNSPECIFIED, LEO, FEMALE));
+
+        // 其他星座不受影響
+        int other = rules.getScore(MatchRuleCompiler.index(TAURUS, UNSPECIFIED, LEO, UNSPECIFIED));
+        assertEquals(other, score(rules, TAURUS, MALE, LEO, FEMALE));
+        assertEquals(other, score(rules, LEO, FEMALE, TAURUS, MALE));
+    }
+
+    @Test
+    void sameGenderRuleIsSymmetric() {
+        MatchRuleCompiler.CompiledRules base = MatchRuleCompiler.compileResources(MatchRuleCompiler.DEFAULT_RULES);
+        List<String> lines = new ArrayList<>(MatchRuleCompiler.readLines(MatchRuleCompiler.DEFAULT_RULES));
+        lines.add("adjust -6 when gender 女 女 and element 火 水");
+        MatchRuleCompiler.CompiledRules rules = MatchRuleCompiler.compile("test", lines);
+
+        for (int fire : new int[]{0, 4, 8}) {          // 牡羊、獅子、射手
+            for (int water : new int[]{3, 7, 11}) {    // 巨蟹、天蠍、雙魚
+                int neutral = base.getScore(MatchRuleCompiler.index(fire, UNSPECIFIED, water, UNSPECIFIED));
+                int lowered = Math.max(0, neutral - 6);
+                assertEquals(lowered, score(rules, fire, FEMALE, water, FEMALE));
+                assertEquals(lowered, score(rules, water, FEMALE, fire, FEMALE));
+                assertEquals(neutral, score(rules, fire, MALE, water, MALE));
+                assertEquals(neutral, score(rules, fire, FEMALE, water, MALE));
+                assertEquals(neutral, score(rules, fire, MALE, water, FEMALE));
+            }
+        }
+    }
+
+    private static int score(MatchRuleCompiler.CompiledRules rules, int zodiac1, int gender1, int zodiac2, int gender2) {
+        return rules.getScore(MatchRuleCompiler.index(zodiac1, gender1, zodiac2, gender2));
+    }
+}
@@ -0,0 +1,94 @@
+package com.SAD_Project.service;
+
+import com.SAD_Project.TestContext;
+import com.SAD_Project.util.Locales;
+import com.SAD_Project.util.ZodiacCalculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 配對結果的百分位和名次 (MatchRuleEngine.scoreRanks 建的表)：
+//   分數越高百分位不會越低，最高分的名次是 1
+//   一個手算的例子：只有牡羊座的配對 90 分，其他都是 50 分，用 BIRTH_WEIGHTS 加權
+class MatchRuleEngineTest {
+
+    private static final int UNSPECIFIED = MatchRuleCompiler.GENDER_UNSPECIFIED;
+
+    @Test
+    void handComputedPercentileFromBirthWeights() {
+        int[] scores = new int[12 * 12];
+        double[] weights = new double[12 * 12];
+        for (int zodiac1 = 0; zodiac1 < 12; zodiac1++) {
+            for (int zodiac2 = 0; zodiac2 < 12; zodiac2++) {
+                scores[zodiac1 * 12 + zodiac2] = zodiac1 == 0 || zodiac2 == 0 ? 90 : 50;
+                weights[zodiac1 * 12 + zodiac2] = ZodiacCalculator.BIRTH_WEIGHTS[zodiac1] * ZodiacCalculator.BIRTH_WEIGHTS[zodiac2];
+            }
+        }
+        int[][] ranks = MatchRuleEngine.scoreRanks(scores, weights, 12);
+        int[] percentiles = ranks[0];
+
+        // 牡羊座是 3/21 ~ 4/19 共 30 天，一年 365.25 天：w = 30 / 365.25
+        // 90 分的權重是 2w - w² = 0.157525，50 分是 0.842475
+        // 90 分：100 × (0.842475 + 0.157525 / 2) = 92.1 → 92
+        // 50 分：100 × 0.842475 / 2 = 42.1 → 42，中間的分數 84，50 分以下 0，90 分以上 100
+        assertEquals(30 / 365.25, ZodiacCalculator.BIRTH_WEIGHTS[0], 1e-12);
+        assertEquals(92, percentiles[90]);
+        assertEquals(42, percentiles[50]);
+        assertEquals(84, percentiles[70]);
+        assertEquals(0, percentiles[49]);
+        assertEquals(100, percentiles[91]);
+
+        // 名次只算上三角：牡羊座那一列 12 組 90 分 (包含牡羊座配牡羊座)，50 分排在它們後面
+        assertEquals(1, ranks[1][100]);
+        assertEquals(1, ranks[1][90]);
+        assertEquals(13, ranks[1][50]);
+        assertEquals(13 + 66, ranks[1][0]);
+    }
+
+    @Test
+    void percentileRisesWithScoreAndTopScoreRanksFirst() {
+        MatchRuleEngine engine = TestContext.bean(MatchRuleEngine.class);
+        int tenants = TestContext.bean(TenantRegistry.class).size();
+        for (int tenant = 0; tenant < tenants; tenant++) {
+            List<MatchRuleEngine.MatchResult> western = new ArrayList<>();
+            List<MatchRuleEngine.MatchResult> combined = new ArrayList<>();
+            for (int zodiac1 = 0; zodiac1 < 12; zodiac1++) {
+                for (int zodiac2 = 0; zodiac2 < 12; zodiac2++) {
+                    western.add(engine.computeMatch(tenant, Locales.ZH_TW, zodiac1, UNSPECIFIED, zodiac2, UNSPECIFIED));
+                    for (int animal1 = 0; animal1 < 12; animal1++) {
+                        for (int animal2 = 0; animal2 < 12; animal2++) {
+                            combined.add(engine.computeCombinedMatch(tenant, zodiac1, animal1, zodiac2, animal2));
+                        }
+                    }
+                }
+            }
+            assertRanks(western, "租戶 " + tenant + " 單一星座");
+            assertRanks(combined, "租戶 " + tenant + " 合併模式");
+        }
+    }
+
+    // 依分數排序後，百分位不會變低、名次不會變前面，同分的百分位和名次一樣，最高分是第 1 名
+    private static void assertRanks(List<MatchRuleEngine.MatchResult> results, String mode) {
+        results.sort((a, b) -> Integer.compare(a.getScore(), b.getScore()));
+        MatchRuleEngine.MatchResult top = results.get(results.size() - 1);
+        assertEquals(1, top.getRank(), mode);
+        assertTrue(top.getPercentile() <= 100, mode);
+        for (int i = 1; i < results.size(); i++) {
+            MatchRuleEngine.MatchResult lower = results.get(i - 1);
+            MatchRuleEngine.MatchResult higher = results.get(i);
+            String pair = mode + " " + lower.getScore() + " → " + higher.getScore();
+            assertTrue(higher.getPercentile() >= lower.getPercentile(), pair);
+            if (higher.getScore() == lower.getScore()) {
+                assertEquals(lower.getPercentile(), higher.getPercentile(), pair);
+                assertEquals(lower.getRank(), higher.getRank(), pair);
+            } else {
+                assertTrue(higher.getRank() < lower.getRank(), pair);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.SAD_Project.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// 特質搜尋的索引用一份固定的小文件集測試：排名、次數、摘要的開始位置和標示的位置
+//   中文的 bigram 是負數的 int (排序和查表都要用有號的順序)
+//   一個字的查詢是掃一段連續的 bigram，包含文件最後一個字 (下一個字是 0)
+//   重疊的出現只算第一個，英文不分大小寫，摘要不會從 emoji 之類的代理對中間切開
+class TraitIndexTest {
+
+    private static final String EMOJI = "😀"; // 😀，兩個 char
+
+    private static final TraitIndex INDEX = build();
+
+    // 沒有列出來的文件都是空字串
+    private static TraitIndex build() {
+        String[] info = new String[12];
+        String[][] personalities = new String[12][2];
+        info[0] = "固執的人很固執，但是也很浪漫。";
+        personalities[0][0] = "哈哈哈，Romantic and ROMANTIC!";
+        info[1] = "固執";
+        personalities[2][1] = "不固執";
+        info[3] = "我很執";
+        info[4] = "一".repeat(40) + "固執" + "二".repeat(40);
+        info[5] = EMOJI.repeat(20) + "x勇敢y" + EMOJI.repeat(20);
+        return TraitIndex.build(info, personalities);
+    }
+
+    @Test
+    void cjkPhraseRanksByCountThenDocument() {
+        TraitIndex.Result result = INDEX.search("固執", 10);
+        assertEquals(4, result.getTotal());
+        TraitIndex.Hit[] hits = result.getHits();
+        assertHit(hits[0], 0, 0, 2);
+        assertHit(hits[1], 1, 0, 1);
+        assertHit(hits[2], 2, 2, 1);
+        assertHit(hits[3], 4, 0, 1);
+
+        // 短的文件整段都是摘要，兩個位置都標出來
+        assertEquals("固執的人很固執，但是也很浪漫。", hits[0].getSnippet());
+        assertEquals(0, hits[0].getSnippetStart());
+        assertArrayEquals(new int[][]{{0, 2}, {5, 7}}, hits[0].getHighlights());
+
+        // 長的文件只取前後 24 個字，標示的位置相對於摘要
+        assertEquals(16, hits[3].getSnippetStart());
+        assertEquals("一".repeat(24) + "固執" + "二".repeat(24), hits[3].getSnippet());
+        assertArrayEquals(new int[][]{{24, 26}}, hits[3].getHighlights());
+
+        // limit 只限制回傳幾個，total 還是全部
+        TraitIndex.Result limited = INDEX.search("固執", 2);
+        assertEquals(4, limited.getTotal());
+        assertEquals(2, limited.getHits().length);
+    }
+
+    @Test
+    void singleCharacterScansEveryBigramStartingWithIt() {
+        TraitIndex.Result result = INDEX.search("執", 10);
+        assertEquals(5, result.getTotal());
+        TraitIndex.Hit[] hits = result.getHits();
+        assertHit(hits[0], 0, 0, 2);
+        assertArrayEquals(new int[][]{{1, 2}, {6, 7}}, hits[0].getHighlights());
+        assertHit(hits[1], 1, 0, 1);
+        assertHit(hits[2], 2, 2, 1);
+        // 文件最後一個字 (bigram 的下一個字是 0)
+        assertHit(hits[3], 3, 0, 1);
+        assertArrayEquals(new int[][]{{2, 3}}, hits[3].getHighlights());
+        assertHit(hits[4], 4, 0, 1);
+
+        TraitIndex.Result one = INDEX.search("浪", 10);
+        assertEquals(1, one.getTotal());
+        assertArrayEquals(new int[][]{{12, 13}}, one.getHits()[0].getHighlights());
+    }
+
+    @Test
+    void englishIsCaseInsensitive() {
+        for (String query : new String[]{"ROMANTIC", "romantic", "RoMaNtIc"}) {
+            TraitIndex.Result result = INDEX.search(query, 10);
+            assertEquals(1, result.getTotal(), query);
+            TraitIndex.Hit hit = result.getHits()[0];
+            assertHit(hit, 0, 1, 2);
+            assertEquals(0, hit.getSnippetStart());
+            assertArrayEquals(new int[][]{{4, 12}, {17, 25}}, hit.getHighlights());
+            assertEquals("Romantic", hit.getSnippet().substring(4, 12)); // 摘要是原文，不是小寫
+        }
+    }
+
+    @Test
+    void overlappingMatchesCountOnce() {
+        TraitIndex.Result result = INDEX.search("哈哈", 10);
+        assertEquals(1, result.getTotal());
+        assertHit(result.getHits()[0], 0, 1, 1);
+        assertArrayEquals(new int[][]{{0, 2}}, result.getHits()[0].getHighlights());
+    }
+
+    @Test
+    void snippetDoesNotSplitSurrogatePairs() {
+        // 勇敢在 41，往前 24 個字是 17 (emoji 的後半)，往後到 67 也是 emoji 的後半，兩邊都往後移一個字
+        TraitIndex.Hit hit = INDEX.search("勇敢", 10).getHits()[0];
+        assertHit(hit, 5, 0, 1);
+        assertEquals(18, hit.getSnippetStart());
+        assertEquals(EMOJI.repeat(11) + "x勇敢y" + EMOJI.repeat(12), hit.getSnippet());
+        assertArrayEquals(new int[][]{{23, 25}}, hit.getHighlights());
+    }
+
+    @Test
+    void missingQueriesFindNothing() {
+        assertEquals(0, INDEX.search("不存在", 10).getTotal());
+        assertEquals(0, INDEX.search("", 10).getTotal());
+        assertEquals(0, INDEX.search("固執", 0).getHits().length);
+    }
+
+    private static void assertHit(TraitIndex.Hit hit, int zodiacIndex, int field, int count) {
+        assertEquals(zodiacIndex, hit.getZodiacIndex());
+        assertEquals(field, hit.getField());
+        assertEquals(count, hit.getCount());
+    }
+}
@@ -0,0 +1,27 @@
+package com.SAD_Project.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Accept-Language 的解析：權重、簡繁中文的標籤，還有 q=0 (明確不要) 的語言不能被選到
+class LocalesTest {
+
+    @Test
+    void picksHighestQuality() {
+        assertEquals(Locales.ZH_TW, Locales.fromAcceptLanguage(null));
+        assertEquals(Locales.EN, Locales.fromAcceptLanguage("en-US,en;q=0.9"));
+        assertEquals(Locales.ZH_CN, Locales.fromAcceptLanguage("zh-CN,zh;q=0.9,en;q=0.8"));
+        assertEquals(Locales.EN, Locales.fromAcceptLanguage("zh-Hans;q=0.5, en;q=0.7"));
+        assertEquals(Locales.ZH_TW, Locales.fromAcceptLanguage("fr, zh-Hant;q=0.8, en;q=0.6"));
+    }
+
+    @Test
+    void skipsZeroQuality() {
+        assertEquals(Locales.ZH_TW, Locales.fromAcceptLanguage("en;q=0"));
+        assertEquals(Locales.ZH_TW, Locales.fromAcceptLanguage("en;q=0.000"));
+        assertEquals(Locales.ZH_CN, Locales.fromAcceptLanguage("en;q=0, zh-CN;q=0.1"));
+        assertEquals(Locales.EN, Locales.fromAcceptLanguage("zh-CN;q=0,en;q=0.2"));
+        assertEquals(Locales.ZH_TW, Locales.fromAcceptLanguage("zh-CN;q=0, en;q=0.0, fr"));
+    }
+}
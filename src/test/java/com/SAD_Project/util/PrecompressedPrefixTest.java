@@ -0,0 +1,95 @@
+package com.SAD_Project.util;
+
+import com.aayushatharva.brotli4j.decoder.Decoder;
+import com.aayushatharva.brotli4j.decoder.DecoderJNI;
+import com.aayushatharva.brotli4j.decoder.DirectDecompress;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// 手寫的壓縮格式 (gzip 不壓縮區塊的標頭、接著算的 CRC、brotli 不壓縮的 meta-block 和結束區塊) 用標準的解壓縮驗證：
+// gzip 用 GZIPInputStream、brotli 用 brotli4j 的 Decoder，解出來要和 identity(tail) 完全一樣
+// 結尾長度包含邊界 (0、1、255、256、65535)，65536 以上不壓縮，直接回傳原始內容
+class PrecompressedPrefixTest {
+
+    private static final int[] TAIL_LENGTHS = {0, 1, 255, 256, 65535};
+
+    // 和個性分析一樣，開頭是幾 KB 的 JSON 文字
+    private static final PrecompressedPrefix PREFIX = PrecompressedPrefix.of(prefix());
+
+    @Test
+    void gzipDecodesToIdentity() throws IOException {
+        for (int length : TAIL_LENGTHS) {
+            byte[] tail = tail(length);
+            assertArrayEquals(PREFIX.identity(tail), gunzip(PREFIX.gzip(tail)), "結尾長度 " + length);
+        }
+    }
+
+    @Test
+    void brotliDecodesToIdentity() throws IOException {
+        assumeTrue(Brotli.isAvailable(), "這個平台載入不了 brotli");
+        for (int length : TAIL_LENGTHS) {
+            byte[] tail = tail(length);
+            DirectDecompress result = Decoder.decompress(PREFIX.brotli(tail));
+            assertEquals(DecoderJNI.Status.DONE, result.getResultStatus(), "結尾長度 " + length);
+            assertArrayEquals(PREFIX.identity(tail), result.getDecompressedData(), "結尾長度 " + length);
+        }
+    }
+
+    @Test
+    void responsePicksTheAcceptedEncoding() throws IOException {
+        byte[] tail = tail(300);
+        ResponseEntity<byte[]> gzip = PREFIX.toResponse(tail, "gzip", MediaType.APPLICATION_JSON, HttpHeaders.ACCEPT_ENCODING);
+        assertEquals("gzip", gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(PREFIX.identity(tail), gunzip(gzip.getBody()));
+
+        ResponseEntity<byte[]> identity = PREFIX.toResponse(tail, null, MediaType.APPLICATION_JSON, HttpHeaders.ACCEPT_ENCODING);
+        assertNull(identity.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(PREFIX.identity(tail), identity.getBody());
+    }
+
+    @Test
+    void longTailFallsBackToIdentity() {
+        for (int length : new int[]{0x10000, 0x10001, 100_000}) {
+            byte[] tail = tail(length);
+            ResponseEntity<byte[]> response = PREFIX.toResponse(tail, "br, gzip", MediaType.APPLICATION_JSON,
+                    HttpHeaders.ACCEPT_ENCODING);
+            assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), "結尾長度 " + length);
+            assertArrayEquals(PREFIX.identity(tail), response.getBody(), "結尾長度 " + length);
+        }
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] prefix() {
+        StringBuilder json = new StringBuilder("{\"zodiac\":\"牡羊座\",\"personality\":\"");
+        for (int i = 0; i < 200; i++) {
+            json.append("熱情、直率、勇於冒險，第 ").append(i).append(" 句。");
+        }
+        return json.append('"').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // 亂數的結尾 (固定種子)，不好壓縮，也會有 0xff 之類的位元組
+    private static byte[] tail(int length) {
+        byte[] tail = new byte[length];
+        new Random(length).nextBytes(tail);
+        return tail;
+    }
+}
@@ -0,0 +1,39 @@
+package com.SAD_Project.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// 生日解析：字串和位元組兩個版本的結果必須完全一樣 (批次評分和 API 用的是不同的版本)
+class ZodiacCalculatorTest {
+
+    private static final String[] INPUTS = {"3/21", " 12 / 21 ", "12-21", "1990/7/4", "2024-02-29", "1985-01-15",
+            "", "   ", "abc", "1 2/21", "12/2 1", "3/", "/21", "3//21", "3/21/1990/1", "3.21", "12345/1",
+            "3/21x", "13/40", "2/30", "0/1", "99999/1", "1990 /7/ 4", "1990/7/4 "};
+
+    @Test
+    void stringAndBytesAgree() {
+        for (String input : INPUTS) {
+            byte[] bytes = ("##" + input + "##").getBytes(StandardCharsets.US_ASCII);
+            assertEquals(ZodiacCalculator.parseBirthDate(input),
+                    ZodiacCalculator.parseBirthDate(bytes, 2, bytes.length - 2), () -> "輸入：\"" + input + "\"");
+        }
+    }
+
+    @Test
+    void rejectsSpacesBetweenDigits() {
+        byte[] bytes = "1 2/21".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(ZodiacCalculator.ERROR_FORMAT, ZodiacCalculator.parseBirthDate("1 2/21"));
+        assertEquals(ZodiacCalculator.ERROR_FORMAT, ZodiacCalculator.parseBirthDate(bytes, 0, bytes.length));
+        assertEquals(ZodiacCalculator.parseBirthDate("12/21"), ZodiacCalculator.parseBirthDate(" 12 / 21 "));
+    }
+
+    @Test
+    void rejectsNonAsciiBytes() {
+        byte[] bytes = "３/２１".getBytes(StandardCharsets.UTF_8);
+        assertEquals(ZodiacCalculator.ERROR_FORMAT, ZodiacCalculator.parseBirthDate(bytes, 0, bytes.length));
+        assertEquals(ZodiacCalculator.ERROR_MISSING, ZodiacCalculator.parseBirthDate((String) null));
+    }
+}
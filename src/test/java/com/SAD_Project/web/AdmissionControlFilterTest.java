@@ -0,0 +1,130 @@
+package com.SAD_Project.web;
+
+import com.SAD_Project.util.ErrorCode;
+import com.SAD_Project.util.WireFormat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 名額用完時的 503：二進位格式的請求拿到一個位元組的 OVERLOADED 狀態碼 (用戶端的 decode 只看得懂這個)，其他請求拿到 JSON
+// 請求和回應用只記錄內容的假物件代替，名額先用 tryAcquireMatch 拿光
+class AdmissionControlFilterTest {
+
+    @Test
+    void wireRequestsGetTheWireStatus() throws Exception {
+        for (String contentType : new String[]{WireFormat.CONTENT_TYPE, "Application/X-StarSync; v=1"}) {
+            Response response = reject("/api/match", contentType);
+            assertEquals(503, response.status);
+            assertEquals(WireFormat.CONTENT_TYPE, response.contentType);
+            assertArrayEquals(new byte[]{WireFormat.status(ErrorCode.OVERLOADED)}, response.body.toByteArray());
+            assertEquals("1", response.headers.get(HttpHeaders.RETRY_AFTER));
+        }
+    }
+
+    @Test
+    void otherRequestsGetJson() throws Exception {
+        for (String contentType : new String[]{null, MediaType.APPLICATION_JSON_VALUE, WireFormat.CONTENT_TYPE + "-json"}) {
+            Response response = reject("/api/match", contentType);
+            assertEquals(503, response.status);
+            assertEquals(MediaType.APPLICATION_JSON_VALUE, response.contentType);
+            assertTrue(response.body.toString(StandardCharsets.UTF_8).startsWith("{"), contentType);
+            assertEquals(HttpHeaders.ACCEPT_LANGUAGE, response.headers.get(HttpHeaders.VARY));
+        }
+    }
+
+    @Test
+    void contentTypeMatching() {
+        assertTrue(AdmissionControlFilter.isWire(WireFormat.CONTENT_TYPE));
+        assertTrue(AdmissionControlFilter.isWire(WireFormat.CONTENT_TYPE + ";charset=binary"));
+        assertFalse(AdmissionControlFilter.isWire(null));
+        assertFalse(AdmissionControlFilter.isWire("application/x-star"));
+        assertFalse(AdmissionControlFilter.isWire(WireFormat.CONTENT_TYPE + "s"));
+    }
+
+    // 配對的名額拿光之後送一個配對請求，過濾器不會呼叫 chain
+    private static Response reject(String uri, String contentType) throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(true, 0.8, 128, 8, 64, 128, 128, 32);
+        while (filter.tryAcquireMatch()) {
+            // 拿光
+        }
+        Response response = new Response();
+        filter.doFilterInternal(request(uri, contentType), response.proxy(), (req, res) -> {
+            throw new AssertionError("超過上限的請求不應該執行");
+        });
+        return response;
+    }
+
+    private static HttpServletRequest request(String uri, String contentType) {
+        return (HttpServletRequest) Proxy.newProxyInstance(AdmissionControlFilterTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getRequestURI":
+                            return uri;
+                        case "getContentType":
+                            return contentType;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    // 假的回應：記錄狀態碼、標頭和內容
+    private static final class Response {
+        int status;
+        String contentType;
+        final Map<String, String> headers = new HashMap<>();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        HttpServletResponse proxy() {
+            ServletOutputStream out = new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener listener) {
+                }
+            };
+            return (HttpServletResponse) Proxy.newProxyInstance(AdmissionControlFilterTest.class.getClassLoader(),
+                    new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "setStatus":
+                                status = (Integer) args[0];
+                                return null;
+                            case "setContentType":
+                                contentType = (String) args[0];
+                                return null;
+                            case "setHeader":
+                                headers.put((String) args[0], (String) args[1]);
+                                return null;
+                            case "getOutputStream":
+                                return out;
+                            default:
+                                return null;
+                        }
+                    });
+        }
+    }
+}